@@ -0,0 +1,164 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.content;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import android.content.ContentValues;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Inserts rows into a table with compiled statements.
+ * <p>
+ * One INSERT statement is compiled for every distinct set of columns
+ * and reused for all rows with the same set of columns, the values
+ * are bound by position. The statements are only valid during the
+ * transaction they were created in, so {@link #close()} has to be
+ * called before the transaction ends.
+ *
+ * @author René Mach
+ */
+final class InsertStatementCache {
+  private final SQLiteDatabase mDatabase;
+  private final String mTable;
+  private final HashMap<Set<String>, CompiledInsert> mStatementMap;
+
+  private CompiledInsert mLastInsert;
+
+  InsertStatementCache(SQLiteDatabase database, String table) {
+    mDatabase = database;
+    mTable = table;
+    mStatementMap = new HashMap<>();
+  }
+
+  /**
+   * Inserts the given values into the table.
+   * <p>
+   * @param values The values to insert.
+   * @return The row ID of the inserted row or <code>-1</code> if the row wasn't inserted.
+   */
+  long insert(ContentValues values) {
+    if(values == null || values.size() == 0) {
+      return -1;
+    }
+
+    final Set<String> columns = values.keySet();
+
+    // rows of a bulk insert usually have all the same columns
+    CompiledInsert insert = mLastInsert;
+
+    if(insert == null || !insert.mColumnSet.equals(columns)) {
+      insert = mStatementMap.get(columns);
+
+      if(insert == null) {
+        insert = new CompiledInsert(columns);
+        mStatementMap.put(insert.mColumnSet, insert);
+      }
+
+      mLastInsert = insert;
+    }
+
+    return insert.execute(values);
+  }
+
+  /**
+   * Binds the given value of a ContentValues to the given index of the statement.
+   */
+  static void bindValue(SQLiteStatement statement, int index, Object value) {
+    if(value == null) {
+      statement.bindNull(index);
+    }
+    else if(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      statement.bindLong(index, ((Number)value).longValue());
+    }
+    else if(value instanceof Boolean) {
+      statement.bindLong(index, (Boolean)value ? 1 : 0);
+    }
+    else if(value instanceof Double || value instanceof Float) {
+      statement.bindDouble(index, ((Number)value).doubleValue());
+    }
+    else if(value instanceof byte[]) {
+      statement.bindBlob(index, (byte[])value);
+    }
+    else {
+      statement.bindString(index, value.toString());
+    }
+  }
+
+  /**
+   * Closes all compiled statements.
+   */
+  void close() {
+    for(CompiledInsert insert : mStatementMap.values()) {
+      insert.mStatement.close();
+    }
+
+    mStatementMap.clear();
+    mLastInsert = null;
+  }
+
+  private final class CompiledInsert {
+    private final Set<String> mColumnSet;
+    private final String[] mColumns;
+    private final SQLiteStatement mStatement;
+
+    CompiledInsert(Set<String> columns) {
+      mColumnSet = new HashSet<>(columns);
+      mColumns = columns.toArray(new String[0]);
+
+      final StringBuilder sql = new StringBuilder("INSERT INTO ");
+      sql.append(mTable).append(" (");
+
+      for(int i = 0; i < mColumns.length; i++) {
+        if(i > 0) {
+          sql.append(",");
+        }
+
+        sql.append(mColumns[i]);
+      }
+
+      sql.append(") VALUES (");
+
+      for(int i = 0; i < mColumns.length; i++) {
+        sql.append(i > 0 ? ",?" : "?");
+      }
+
+      sql.append(")");
+
+      mStatement = mDatabase.compileStatement(sql.toString());
+    }
+
+    long execute(ContentValues values) {
+      mStatement.clearBindings();
+
+      for(int i = 0; i < mColumns.length; i++) {
+        bindValue(mStatement, i + 1, values.get(mColumns[i]));
+      }
+
+      try {
+        return mStatement.executeInsert();
+      }catch(SQLException e) {
+        // same behavior as SQLiteDatabase.insert()
+        return -1;
+      }
+    }
+  }
+}
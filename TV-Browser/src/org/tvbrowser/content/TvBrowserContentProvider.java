@@ -20,6 +20,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.TimeZone;
@@ -47,7 +48,10 @@ import android.database.sqlite.SQLiteDatabaseLockedException;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
 import androidx.annotation.NonNull;
 import android.text.TextUtils;
 import android.util.Log;
@@ -69,6 +73,25 @@ public class TvBrowserContentProvider extends ContentProvider {
   
   public static boolean INFORM_FOR_CHANGES = true;
   
+  // true if the current data base has the full text index, false as long as the data base wasn't opened
+  private static volatile boolean FULL_TEXT_AVAILABLE = false;
+  
+  /**
+   * Method for {@link #call(String, String, Bundle)} that calculates missing end times
+   * and durations of the programs of the channels given in the extras with
+   * {@link #EXTRA_CHANNEL_IDS} that start at or after the times given with
+   * {@link #EXTRA_START_TIMES}, all programs are calculated if no channels are given. The result contains the number of changed programs with
+   * {@link #RESULT_CHANGED_COUNT} and the last known start time with {@link #RESULT_LAST_START_TIME}.
+   */
+  public static final String METHOD_CALCULATE_MISSING_ENDS = "calculateMissingEnds";
+  public static final String EXTRA_CHANNEL_IDS = "channelIDs";
+  public static final String EXTRA_START_TIMES = "startTimes";
+  public static final String RESULT_CHANGED_COUNT = "changedCount";
+  public static final String RESULT_LAST_START_TIME = "lastStartTime";
+  
+  private static final ContentProviderResult RESULT_NOT_UPDATED = new ContentProviderResult(0);
+  private static final ContentProviderResult RESULT_UPDATED = new ContentProviderResult(1);
+  
   private TvBrowserDataBaseHelper mDataBaseHelper;
   
   private static final int GROUPS = 1;
@@ -404,6 +427,7 @@ public class TvBrowserContentProvider extends ContentProvider {
   public static final String VERSION_KEY_MORE1600_VERSION = "more1600Version";
   public static final String VERSION_KEY_PICTURE0016_VERSION = "picture0016Version";
   public static final String VERSION_KEY_PICTURE1600_VERSION = "picture1600Version";
+  public static final String VERSION_KEY_FRAME_HASHES = "frameHashes";
   
   public static final String[] MARKING_COLUMNS = {
     DATA_KEY_MARKING_MARKING,
@@ -542,6 +566,179 @@ public class TvBrowserContentProvider extends ContentProvider {
     }
   }
 
+  /**
+   * Creates a selection for the data table that selects all programs that
+   * contain the search term like <code>LIKE '%term%'</code> does, but
+   * may also select programs that don't contain it. It has to be combined
+   * with the LIKE condition of the term with AND.
+   * <p>
+   * The full text index only knows the beginning of words, so only the
+   * words of the term that follow a separator in the term must be the
+   * beginning of a word of the program, the first word of the term may be
+   * inside of a word like "krimi" in "Sonntagskrimi". ASCII characters that
+   * aren't letters or digits separate the words like in the simple tokenizer
+   * of the index, the words may be in any text column, so the selection also
+   * works for the concatenation of the text columns.
+   * <p>
+   * @param column The text column the term is searched in or <code>null</code> if the term is searched in all text columns.
+   * @param term The search term of the LIKE condition.
+   * @return The selection or <code>null</code> if the full text index isn't available
+   * or can't narrow the search, in that case only the LIKE condition has to be used.
+   */
+  public static String getFullTextPreFilter(String column, String term) {
+    // LIKE wildcards in the term can match at any position
+    if(!FULL_TEXT_AVAILABLE || term == null || term.indexOf('%') != -1 || term.indexOf('_') != -1) {
+      return null;
+    }
+    
+    final StringBuilder match = new StringBuilder();
+    final StringBuilder word = new StringBuilder();
+    
+    boolean separated = false;
+    
+    for(int i = 0; i <= term.length(); i++) {
+      final char c = i < term.length() ? term.charAt(i) : ' ';
+      
+      if(c < 128 && !Character.isLetterOrDigit(c)) {
+        if(separated && word.length() > 0) {
+          if(match.length() > 0) {
+            match.append(" ");
+          }
+          
+          if(column != null) {
+            match.append(column).append(":");
+          }
+          
+          // lower case words aren't taken as operators, the tokenizer folds only ASCII characters
+          match.append(word).append("*");
+        }
+        
+        word.setLength(0);
+        separated = true;
+      }
+      else {
+        word.append(c < 128 ? Character.toLowerCase(c) : c);
+      }
+    }
+    
+    if(match.length() == 0) {
+      return null;
+    }
+    
+    return TvBrowserDataBaseHelper.DATA_TABLE + "." + KEY_ID + " IN (SELECT docid FROM " + TvBrowserDataBaseHelper.DATA_FTS_TABLE
+        + " WHERE " + TvBrowserDataBaseHelper.DATA_FTS_TABLE + " MATCH '" + match + "')";
+  }
+  
+  @Override
+  public Bundle call(@NonNull String method, String arg, Bundle extras) {
+    if(METHOD_CALCULATE_MISSING_ENDS.equals(method)) {
+      if(IOUtils.isDatabaseAccessible(getContext())) {
+        return calculateMissingEnds(extras);
+      }
+      
+      return null;
+    }
+    
+    return super.call(method, arg, extras);
+  }
+  
+  /* Selects the start time of the next program of the channel of the updated program */
+  private static final String NEXT_START_TIME_SELECTION = " FROM " + TvBrowserDataBaseHelper.DATA_TABLE + " n WHERE n." + CHANNEL_KEY_CHANNEL_ID + "=" + TvBrowserDataBaseHelper.DATA_TABLE + "." + CHANNEL_KEY_CHANNEL_ID + " AND n." + DATA_KEY_STARTTIME + ">" + TvBrowserDataBaseHelper.DATA_TABLE + "." + DATA_KEY_STARTTIME;
+  private static final String MISSING_ENDS_SCOPE = " WHERE " + CHANNEL_KEY_CHANNEL_ID + "=? AND " + DATA_KEY_STARTTIME + ">=?";
+  
+  /* Programs with more than 12 hours until the next program get a duration of 150 minutes */
+  private static final String SQL_LIMIT_MISSING_ENDS = "UPDATE " + TvBrowserDataBaseHelper.DATA_TABLE + " SET "
+      + DATA_KEY_ENDTIME + "=" + DATA_KEY_STARTTIME + "+9000000, "
+      + DATA_KEY_UTC_END_MINUTE_AFTER_MIDNIGHT + "=(" + DATA_KEY_UTC_START_MINUTE_AFTER_MIDNIGHT + "+150)%1440, "
+      + DATA_KEY_DURATION_IN_MINUTES + "=150"
+      + MISSING_ENDS_SCOPE + " AND " + DATA_KEY_ENDTIME + "=0"
+      + " AND (SELECT MIN(n." + DATA_KEY_STARTTIME + ")" + NEXT_START_TIME_SELECTION + ")-" + DATA_KEY_STARTTIME + ">=43200000";
+  
+  /* The other programs end with the start of the next program */
+  private static final String SQL_SET_MISSING_ENDS = "UPDATE " + TvBrowserDataBaseHelper.DATA_TABLE + " SET "
+      + DATA_KEY_ENDTIME + "=(SELECT MIN(n." + DATA_KEY_STARTTIME + ")" + NEXT_START_TIME_SELECTION + "), "
+      + DATA_KEY_UTC_END_MINUTE_AFTER_MIDNIGHT + "=(SELECT n." + DATA_KEY_UTC_START_MINUTE_AFTER_MIDNIGHT + NEXT_START_TIME_SELECTION + " ORDER BY n." + DATA_KEY_STARTTIME + " LIMIT 1)"
+      + MISSING_ENDS_SCOPE + " AND " + DATA_KEY_ENDTIME + "=0"
+      + " AND EXISTS (SELECT 1" + NEXT_START_TIME_SELECTION + ")";
+  
+  private static final String SQL_SET_MISSING_DURATIONS = "UPDATE " + TvBrowserDataBaseHelper.DATA_TABLE + " SET "
+      + DATA_KEY_DURATION_IN_MINUTES + "=(" + DATA_KEY_ENDTIME + "-" + DATA_KEY_STARTTIME + ")/60000"
+      + MISSING_ENDS_SCOPE + " AND " + DATA_KEY_ENDTIME + ">" + DATA_KEY_STARTTIME
+      + " AND IFNULL(" + DATA_KEY_DURATION_IN_MINUTES + ",0)=0";
+  
+  private Bundle calculateMissingEnds(Bundle extras) {
+    final Bundle result = new Bundle();
+    final SQLiteDatabase database = mDataBaseHelper.getWritableDatabase();
+    
+    if(database != null) {
+      long[] channelIDs = extras != null ? extras.getLongArray(EXTRA_CHANNEL_IDS) : null;
+      long[] startTimes = extras != null ? extras.getLongArray(EXTRA_START_TIMES) : null;
+      
+      if(channelIDs == null) {
+        // calculate all data
+        final Cursor channels = database.rawQuery("SELECT DISTINCT " + CHANNEL_KEY_CHANNEL_ID + " FROM " + TvBrowserDataBaseHelper.DATA_TABLE, null);
+        
+        try {
+          channelIDs = new long[channels.getCount()];
+          startTimes = new long[channelIDs.length];
+          
+          for(int i = 0; channels.moveToNext(); i++) {
+            channelIDs[i] = channels.getLong(0);
+          }
+        }finally {
+          IOUtils.close(channels);
+        }
+      }
+      
+      int count = 0;
+      
+      if(channelIDs != null && startTimes != null && channelIDs.length == startTimes.length) {
+        database.beginTransaction();
+        
+        try {
+          final SQLiteStatement[] statements = {
+              database.compileStatement(SQL_LIMIT_MISSING_ENDS),
+              database.compileStatement(SQL_SET_MISSING_ENDS),
+              database.compileStatement(SQL_SET_MISSING_DURATIONS)
+          };
+          
+          for(SQLiteStatement statement : statements) {
+            for(int i = 0; i < channelIDs.length; i++) {
+              statement.bindLong(1, channelIDs[i]);
+              statement.bindLong(2, startTimes[i]);
+              
+              count += statement.executeUpdateDelete();
+            }
+            
+            statement.close();
+          }
+          
+          database.setTransactionSuccessful();
+        }finally {
+          database.endTransaction();
+        }
+      }
+      
+      result.putInt(RESULT_CHANGED_COUNT, count);
+      
+      final Cursor last = database.rawQuery("SELECT MAX(" + DATA_KEY_STARTTIME + ") FROM " + TvBrowserDataBaseHelper.DATA_TABLE, null);
+      
+      try {
+        if(last.moveToFirst() && !last.isNull(0)) {
+          result.putLong(RESULT_LAST_START_TIME, last.getLong(0));
+        }
+      }finally {
+        IOUtils.close(last);
+      }
+      
+      if(count > 0 && INFORM_FOR_CHANGES) {
+        getContext().getContentResolver().notifyChange(CONTENT_URI_DATA, null);
+      }
+    }
+    
+    return result;
+  }
+  
   @Override
   public Uri insert(@NonNull Uri uri, ContentValues values) {
     if(IOUtils.isDatabaseAccessible(getContext())) {
@@ -574,7 +771,7 @@ public class TvBrowserContentProvider extends ContentProvider {
   @NonNull
   @Override
   public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations) throws OperationApplicationException {
-    ArrayList<ContentProviderResult> result = new ArrayList<>(0);
+    ArrayList<ContentProviderResult> result = new ArrayList<>(operations.size());
     
     try {
       SQLiteDatabase database = mDataBaseHelper.getWritableDatabase();
@@ -583,7 +780,8 @@ public class TvBrowserContentProvider extends ContentProvider {
         try {
           database.beginTransaction();
           
-          HashMap<Uri, Uri> updateUris = new HashMap<>();
+          final UpdateStatementCache update = new UpdateStatementCache(database);
+          final HashSet<Uri> updateUris = INFORM_FOR_CHANGES ? new HashSet<>() : null;
           
           for(ContentProviderOperation op : operations) {
             Uri uri = op.getUri();
@@ -599,24 +797,29 @@ public class TvBrowserContentProvider extends ContentProvider {
             
             ContentValues values = op.resolveValueBackReferences(null, 0);
             
-            String segment = uri.getPathSegments().get(1);
+            long id = Long.parseLong(uri.getPathSegments().get(1));
             
-            int count = database.update(table, values, KEY_ID + "=" + segment, null);
+            int count = update.update(table, values, id);
             
-            if(count > 0) {
-              updateUris.put(uri, uri);
+            if(count > 0 && updateUris != null) {
+              updateUris.add(uri);
             }
             
-            result.add(new ContentProviderResult(count));
+            // results are immutable, so the common results can be shared
+            switch(count) {
+              case 0: result.add(RESULT_NOT_UPDATED);break;
+              case 1: result.add(RESULT_UPDATED);break;
+              default: result.add(new ContentProviderResult(count));break;
+            }
           }
           
+          update.close();
+          
           database.setTransactionSuccessful();
           database.endTransaction();
           
-          Set<Uri> uris = updateUris.keySet();
-          
-          if(INFORM_FOR_CHANGES) {
-            for(Uri uri : uris) {
+          if(updateUris != null) {
+            for(Uri uri : updateUris) {
               getContext().getContentResolver().notifyChange(uri, null);
               
               switch (uriMatcher.match(uri)) {
@@ -642,25 +845,32 @@ public class TvBrowserContentProvider extends ContentProvider {
     int count = 0;
     
     if(database != null) {
+      /* the rows of one call are written with one transaction, so a failed
+       * call doesn't leave a part of the rows of its channel days behind */
       database.beginTransaction();
       
-      for(ContentValues value : values) {
-        long rowID = database.insert(TvBrowserDataBaseHelper.DATA_TABLE, "channel", value);
-        
-        if(rowID != -1) {
-          Uri newUri = ContentUris.withAppendedId(CONTENT_URI_DATA, rowID);
+      final InsertStatementCache insert = new InsertStatementCache(database, TvBrowserDataBaseHelper.DATA_TABLE);
+      
+      try {
+        for(ContentValues value : values) {
+          long rowID = insert.insert(value);
           
-          if(INFORM_FOR_CHANGES) {
-            getContext().getContentResolver().notifyChange(newUri, null);
+          if(rowID != -1) {
+            Uri newUri = ContentUris.withAppendedId(CONTENT_URI_DATA, rowID);
+            
+            if(INFORM_FOR_CHANGES) {
+              getContext().getContentResolver().notifyChange(newUri, null);
+            }
+          
+            count++;
           }
-        
-          count++;
         }
+        
+        database.setTransactionSuccessful();
+      }finally {
+        insert.close();
+        database.endTransaction();
       }
-      
-      database.setTransactionSuccessful();
-      database.endTransaction();
-      
 
       if(count == 0) {
         throw new SQLException("Failed to insert row into " + uri + " " + count);
@@ -713,23 +923,29 @@ public class TvBrowserContentProvider extends ContentProvider {
     if(database != null) {
       database.beginTransaction();
       
-      for(ContentValues value : values) {
-        long rowID = database.insert(TvBrowserDataBaseHelper.VERSION_TABLE, "channel", value);
-        
-        if(rowID != -1) {
-          Uri newUri = ContentUris.withAppendedId(CONTENT_URI_DATA_VERSION, rowID);
+      final InsertStatementCache insert = new InsertStatementCache(database, TvBrowserDataBaseHelper.VERSION_TABLE);
+      
+      try {
+        for(ContentValues value : values) {
+          long rowID = insert.insert(value);
           
-          if(INFORM_FOR_CHANGES) {
-            getContext().getContentResolver().notifyChange(newUri, null);
+          if(rowID != -1) {
+            Uri newUri = ContentUris.withAppendedId(CONTENT_URI_DATA_VERSION, rowID);
+            
+            if(INFORM_FOR_CHANGES) {
+              getContext().getContentResolver().notifyChange(newUri, null);
+            }
+          
+            count++;
           }
-        
-          count++;
         }
+        
+        database.setTransactionSuccessful();
+      }finally {
+        insert.close();
+        database.endTransaction();
       }
       
-      database.setTransactionSuccessful();
-      database.endTransaction();
-      
       if(count == 0) {
         throw new SQLException("Failed to insert row into " + uri + " " + count);
       }
@@ -855,6 +1071,8 @@ public class TvBrowserContentProvider extends ContentProvider {
     Log.d("info11", "DATABASEPATH " + path);
     //path = "";
     mDataBaseHelper = new TvBrowserDataBaseHelper(getContext(), path + DATABASE_TVB_NAME, null, TvBrowserDataBaseHelper.DATABASE_VERSION);
+    
+    FULL_TEXT_AVAILABLE = false;
   }
   
   @Override
@@ -974,7 +1192,24 @@ public class TvBrowserContentProvider extends ContentProvider {
             }
 
             StringBuilder b = new StringBuilder(CHANNEL_TABLE + "." + KEY_ID + "=" + TvBrowserDataBaseHelper.DATA_TABLE + "." + CHANNEL_KEY_CHANNEL_ID + " AND ");
-            b.append("((" + DATA_KEY_TITLE + " LIKE '%").append(search).append("%' OR ").append(DATA_KEY_EPISODE_TITLE).append(" LIKE '%").append(search).append("%') AND ").append(DATA_KEY_ENDTIME).append(">=").append(System.currentTimeMillis()).append(" AND NOT ").append(DATA_KEY_DONT_WANT_TO_SEE).append(")");
+            final String titlePreFilter = getFullTextPreFilter(DATA_KEY_TITLE, search);
+            final String episodePreFilter = getFullTextPreFilter(DATA_KEY_EPISODE_TITLE, search);
+            
+            b.append("((");
+            
+            if(titlePreFilter != null) {
+              b.append(titlePreFilter).append(" AND ");
+            }
+            
+            b.append(DATA_KEY_TITLE + " LIKE '%").append(search).append("%' OR ");
+            
+            if(episodePreFilter != null) {
+              b.append(episodePreFilter).append(" AND ");
+            }
+            
+            b.append(DATA_KEY_EPISODE_TITLE).append(" LIKE '%").append(search).append("%') AND ");
+            
+            b.append(DATA_KEY_ENDTIME).append(">=").append(System.currentTimeMillis()).append(" AND NOT ").append(DATA_KEY_DONT_WANT_TO_SEE).append(")");
 
             qb.setTables(TvBrowserDataBaseHelper.DATA_TABLE + " , " + CHANNEL_TABLE);
             qb.appendWhere(b.toString());
@@ -1244,8 +1479,175 @@ public class TvBrowserContentProvider extends ContentProvider {
         + VERSION_KEY_MORE0016_VERSION + " INTEGER, "
         + VERSION_KEY_MORE1600_VERSION + " INTEGER, "
         + VERSION_KEY_PICTURE0016_VERSION + " INTEGER, "
-        + VERSION_KEY_PICTURE1600_VERSION + " INTEGER);";
+        + VERSION_KEY_PICTURE1600_VERSION + " INTEGER, "
+        + VERSION_KEY_FRAME_HASHES + " BLOB);";
+    
+    /*
+     * Secondary indexes of the data and version table, every entry is
+     * {index name, table, indexed columns}. The names contain the version
+     * of the index set, so the index set of a data base is known from the
+     * names of its indexes and a changed set is recreated when the data
+     * base is opened.
+     */
+    private static final int INDEX_SET_VERSION = 1;
+    
+    private static final String[][] INDEX_SET = {
+      {DATA_TABLE + "_channel_start", DATA_TABLE, CHANNEL_KEY_CHANNEL_ID + ", " + DATA_KEY_STARTTIME},
+      {DATA_TABLE + "_start_end", DATA_TABLE, DATA_KEY_STARTTIME + ", " + DATA_KEY_ENDTIME},
+      {DATA_TABLE + "_end", DATA_TABLE, DATA_KEY_ENDTIME},
+      {DATA_TABLE + "_channel_date_prog", DATA_TABLE, CHANNEL_KEY_CHANNEL_ID + ", " + DATA_KEY_UNIX_DATE + ", " + DATA_KEY_DATE_PROG_ID},
+      {DATA_TABLE + "_marking_marking", DATA_TABLE, DATA_KEY_MARKING_MARKING + ", " + DATA_KEY_STARTTIME},
+      {DATA_TABLE + "_marking_favorite", DATA_TABLE, DATA_KEY_MARKING_FAVORITE + ", " + DATA_KEY_STARTTIME},
+      {DATA_TABLE + "_marking_favorite_reminder", DATA_TABLE, DATA_KEY_MARKING_FAVORITE_REMINDER + ", " + DATA_KEY_STARTTIME},
+      {DATA_TABLE + "_marking_reminder", DATA_TABLE, DATA_KEY_MARKING_REMINDER + ", " + DATA_KEY_STARTTIME},
+      {DATA_TABLE + "_marking_sync", DATA_TABLE, DATA_KEY_MARKING_SYNC + ", " + DATA_KEY_STARTTIME},
+      {VERSION_TABLE + "_channel_days", VERSION_TABLE, CHANNEL_KEY_CHANNEL_ID + ", " + VERSION_KEY_DAYS_SINCE_1970}
+    };
+    
+    private static String getIndexName(String baseName, int indexSetVersion) {
+      return baseName + "_idx" + indexSetVersion;
+    }
+    
+    private static void createIndexes(SQLiteDatabase db) {
+      for(String[] index : INDEX_SET) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + getIndexName(index[0], INDEX_SET_VERSION) + " ON " + index[1] + " (" + index[2] + ");");
+      }
+    }
     
+    /*
+     * Brings the indexes of the data and version table to the current index
+     * set. Every explicitly created index that isn't part of the current set
+     * is dropped and the missing indexes are created. The names are read from
+     * sqlite_master, so indexes of older schemas are removed independent
+     * of the names they were created with.
+     */
+    private static void updateIndexes(SQLiteDatabase db) {
+      final HashSet<String> missing = new HashSet<String>();
+      
+      for(String[] index : INDEX_SET) {
+        missing.add(getIndexName(index[0], INDEX_SET_VERSION));
+      }
+      
+      final ArrayList<String> outdated = new ArrayList<String>();
+      final Cursor c = db.rawQuery("SELECT name FROM sqlite_master WHERE type='index' AND sql IS NOT NULL AND tbl_name IN (?,?)", new String[] {DATA_TABLE, VERSION_TABLE});
+      
+      try {
+        if(IOUtils.prepareAccess(c)) {
+          while(c.moveToNext()) {
+            final String name = c.getString(0);
+            
+            if(!missing.remove(name)) {
+              outdated.add(name);
+            }
+          }
+        }
+      }finally {
+        IOUtils.close(c);
+      }
+      
+      if(!outdated.isEmpty() || !missing.isEmpty()) {
+        Log.d("info22", "INDEX SET " + INDEX_SET_VERSION + " outdated: " + outdated + " missing: " + missing);
+        
+        for(String name : outdated) {
+          db.execSQL("DROP INDEX IF EXISTS \"" + name + "\";");
+        }
+        
+        createIndexes(db);
+        db.execSQL("ANALYZE;");
+      }
+    }
+
+    /*
+     * The full text index of the text columns of the data table. The rowid
+     * of the index is the ID of the program in the data table, the triggers
+     * keep the index in sync with the data table. The update triggers only
+     * fire for changes of the text columns, so markings don't reindex the
+     * program. The index uses the default simple tokenizer that folds only
+     * ASCII characters like the LIKE operator does.
+     */
+    private static final String DATA_FTS_TABLE = DATA_TABLE + "_fts";
+
+    private static final String[] FULL_TEXT_COLUMNS = {
+      DATA_KEY_TITLE,
+      DATA_KEY_TITLE_ORIGINAL,
+      DATA_KEY_EPISODE_TITLE,
+      DATA_KEY_EPISODE_TITLE_ORIGINAL,
+      DATA_KEY_SHORT_DESCRIPTION,
+      DATA_KEY_DESCRIPTION,
+      DATA_KEY_ACTORS,
+      DATA_KEY_SERIES,
+      DATA_KEY_REGIE,
+      DATA_KEY_SCRIPT,
+      DATA_KEY_ADDITIONAL_INFO,
+      DATA_KEY_CAMERA,
+      DATA_KEY_MODERATION,
+      DATA_KEY_MUSIC,
+      DATA_KEY_PRODUCER,
+      DATA_KEY_GENRE,
+      DATA_KEY_OTHER_PERSONS
+    };
+
+    private static void createFullTextIndex(SQLiteDatabase db) {
+      final String columns = TextUtils.join(", ", FULL_TEXT_COLUMNS);
+      final StringBuilder newValues = new StringBuilder("new." + KEY_ID);
+
+      for(String column : FULL_TEXT_COLUMNS) {
+        newValues.append(", new.").append(column);
+      }
+
+      // external content tables need SQLite 3.7.9 that is available since Android 4.1
+      final String content = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN ? ", content=\"" + DATA_TABLE + "\"" : "";
+
+      final String insertNew = "INSERT INTO " + DATA_FTS_TABLE + " (docid, " + columns + ") VALUES (" + newValues + ");";
+      final String deleteOld = "DELETE FROM " + DATA_FTS_TABLE + " WHERE docid=old." + KEY_ID + ";";
+
+      db.execSQL("CREATE VIRTUAL TABLE " + DATA_FTS_TABLE + " USING fts4(" + columns + content + ");");
+      db.execSQL("CREATE TRIGGER " + DATA_FTS_TABLE + "_insert AFTER INSERT ON " + DATA_TABLE + " BEGIN " + insertNew + " END;");
+      db.execSQL("CREATE TRIGGER " + DATA_FTS_TABLE + "_delete BEFORE DELETE ON " + DATA_TABLE + " BEGIN " + deleteOld + " END;");
+      db.execSQL("CREATE TRIGGER " + DATA_FTS_TABLE + "_update_before BEFORE UPDATE OF " + columns + " ON " + DATA_TABLE + " BEGIN " + deleteOld + " END;");
+      db.execSQL("CREATE TRIGGER " + DATA_FTS_TABLE + "_update_after AFTER UPDATE OF " + columns + " ON " + DATA_TABLE + " BEGIN " + insertNew + " END;");
+      db.execSQL("INSERT INTO " + DATA_FTS_TABLE + " (docid, " + columns + ") SELECT " + KEY_ID + ", " + columns + " FROM " + DATA_TABLE + ";");
+    }
+
+    private static void dropFullTextIndex(SQLiteDatabase db) {
+      db.execSQL("DROP TRIGGER IF EXISTS " + DATA_FTS_TABLE + "_insert;");
+      db.execSQL("DROP TRIGGER IF EXISTS " + DATA_FTS_TABLE + "_delete;");
+      db.execSQL("DROP TRIGGER IF EXISTS " + DATA_FTS_TABLE + "_update_before;");
+      db.execSQL("DROP TRIGGER IF EXISTS " + DATA_FTS_TABLE + "_update_after;");
+      db.execSQL("DROP TABLE IF EXISTS " + DATA_FTS_TABLE + ";");
+    }
+
+    /*
+     * Creates the full text index, if the SQLite of the device doesn't
+     * support FTS4 the index is missing and the searches use LIKE.
+     */
+    private static void setupFullTextIndex(SQLiteDatabase db) {
+      try {
+        dropFullTextIndex(db);
+        createFullTextIndex(db);
+      }catch(SQLException e) {
+        Log.d("info22", "FULL TEXT INDEX NOT AVAILABLE", e);
+
+        try {
+          dropFullTextIndex(db);
+        }catch(SQLException ignored) {}
+      }
+    }
+
+    private static boolean isFullTextIndexAvailable(SQLiteDatabase db) {
+      boolean result = false;
+
+      final Cursor c = db.rawQuery("SELECT name FROM sqlite_master WHERE type='table' AND name=?", new String[] {DATA_FTS_TABLE});
+
+      try {
+        result = IOUtils.prepareAccessFirst(c);
+      }finally {
+        IOUtils.close(c);
+      }
+
+      return result;
+    }
+
     private final Context mContext;
     
     TvBrowserDataBaseHelper(Context context, String name,
@@ -1260,9 +1662,24 @@ public class TvBrowserContentProvider extends ContentProvider {
       db.execSQL(CREATE_CHANNEL_TABLE);
       db.execSQL(CREATE_DATA_TABLE);
       db.execSQL(CREATE_VERSION_TABLE);
+      createIndexes(db);
+      setupFullTextIndex(db);
+      FULL_TEXT_AVAILABLE = isFullTextIndexAvailable(db);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+      super.onOpen(db);
+      
+      // the index set may have changed without a new version of the data base
+      if(!db.isReadOnly()) {
+        updateIndexes(db);
+      }
+      
+      FULL_TEXT_AVAILABLE = isFullTextIndexAvailable(db);
     }
 
-    private static final int DATABASE_VERSION = 12;
+    private static final int DATABASE_VERSION = 15;
     
     @Override
     public void onUpgrade(final SQLiteDatabase db, int oldVersion, int newVersion) {
@@ -1610,6 +2027,21 @@ public class TvBrowserContentProvider extends ContentProvider {
           db.execSQL("ALTER TABLE " + DATA_TABLE + " ADD COLUMN " + key + MAP_DATA_KEY_TYPE.get(key));
         }
       }
+      
+      // the indexes of version 13 and all later index sets are created in onOpen
+      
+      if(oldVersion < 14) {
+        setupFullTextIndex(db);
+      }
+      
+      if(oldVersion < 15) {
+        // the version table already has the column if it was recreated above
+        if(!columnExists(db, VERSION_TABLE, VERSION_KEY_FRAME_HASHES)) {
+          db.execSQL("ALTER TABLE " + VERSION_TABLE + " ADD COLUMN " + VERSION_KEY_FRAME_HASHES + " BLOB");
+        }
+      }
+      
+      FULL_TEXT_AVAILABLE = isFullTextIndexAvailable(db);
     }
   
     @Override
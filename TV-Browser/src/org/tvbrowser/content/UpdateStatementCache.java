@@ -0,0 +1,140 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.content;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Updates single rows of tables with compiled statements.
+ * <p>
+ * One <code>UPDATE table SET ... WHERE _id=?</code> statement is compiled
+ * for every table and distinct set of columns and reused for all rows of
+ * the table with the same set of columns, the values are bound by position.
+ * {@link #close()} has to be called before the transaction ends.
+ *
+ * @author René Mach
+ */
+final class UpdateStatementCache {
+  private final SQLiteDatabase mDatabase;
+  private final HashMap<String, HashMap<Set<String>, CompiledUpdate>> mTableMap;
+
+  private CompiledUpdate mLastUpdate;
+
+  UpdateStatementCache(SQLiteDatabase database) {
+    mDatabase = database;
+    mTableMap = new HashMap<>();
+  }
+
+  /**
+   * Updates the row with the given ID with the given values.
+   * <p>
+   * @param table The table of the row.
+   * @param values The values to set.
+   * @param id The ID of the row to update.
+   * @return The number of updated rows.
+   */
+  int update(String table, ContentValues values, long id) {
+    if(values == null || values.size() == 0) {
+      return 0;
+    }
+
+    final Set<String> columns = values.keySet();
+
+    // operations of a batch usually have all the same table and columns
+    CompiledUpdate update = mLastUpdate;
+
+    if(update == null || !update.mTable.equals(table) || !update.mColumnSet.equals(columns)) {
+      HashMap<Set<String>, CompiledUpdate> statementMap = mTableMap.get(table);
+
+      if(statementMap == null) {
+        statementMap = new HashMap<>();
+        mTableMap.put(table, statementMap);
+      }
+
+      update = statementMap.get(columns);
+
+      if(update == null) {
+        update = new CompiledUpdate(table, columns);
+        statementMap.put(update.mColumnSet, update);
+      }
+
+      mLastUpdate = update;
+    }
+
+    return update.execute(values, id);
+  }
+
+  /**
+   * Closes all compiled statements.
+   */
+  void close() {
+    for(HashMap<Set<String>, CompiledUpdate> statementMap : mTableMap.values()) {
+      for(CompiledUpdate update : statementMap.values()) {
+        update.mStatement.close();
+      }
+    }
+
+    mTableMap.clear();
+    mLastUpdate = null;
+  }
+
+  private final class CompiledUpdate {
+    private final String mTable;
+    private final Set<String> mColumnSet;
+    private final String[] mColumns;
+    private final SQLiteStatement mStatement;
+
+    CompiledUpdate(String table, Set<String> columns) {
+      mTable = table;
+      mColumnSet = new HashSet<>(columns);
+      mColumns = columns.toArray(new String[0]);
+
+      final StringBuilder sql = new StringBuilder("UPDATE ");
+      sql.append(table).append(" SET ");
+
+      for(int i = 0; i < mColumns.length; i++) {
+        if(i > 0) {
+          sql.append(",");
+        }
+
+        sql.append(mColumns[i]).append("=?");
+      }
+
+      sql.append(" WHERE ").append(TvBrowserContentProvider.KEY_ID).append("=?");
+
+      mStatement = mDatabase.compileStatement(sql.toString());
+    }
+
+    int execute(ContentValues values, long id) {
+      mStatement.clearBindings();
+
+      for(int i = 0; i < mColumns.length; i++) {
+        InsertStatementCache.bindValue(mStatement, i + 1, values.get(mColumns[i]));
+      }
+
+      mStatement.bindLong(mColumns.length + 1, id);
+
+      return mStatement.executeUpdateDelete();
+    }
+  }
+}
@@ -20,6 +20,7 @@ import java.util.HashMap;
 
 import org.tvbrowser.content.TvBrowserContentProvider;
 import org.tvbrowser.tvbrowser.R;
+import org.tvbrowser.utils.ChannelLogoCache;
 import org.tvbrowser.utils.IOUtils;
 import org.tvbrowser.utils.PrefUtils;
 import org.tvbrowser.utils.UiUtils;
@@ -28,7 +29,6 @@ import android.content.Context;
 import android.content.IntentFilter;
 import android.content.SharedPreferences.Editor;
 import android.content.res.Resources;
-import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.graphics.drawable.BitmapDrawable;
@@ -223,24 +223,16 @@ public final class SettingConstants {
         SMALL_LOGO_MAP.clear();
         MEDIUM_LOGO_MAP.clear();
         
-        final Cursor channels = context.getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_CHANNELS, new String[] {TvBrowserContentProvider.KEY_ID,TvBrowserContentProvider.CHANNEL_KEY_LOGO}, TvBrowserContentProvider.CHANNEL_KEY_SELECTION, null, null);
+        // the channel selection or the logos may have changed
+        if(reload) {
+          ChannelLogoCache.reload(context);
+        }
+        
+        final SparseArrayCompat<Bitmap> logos = ChannelLogoCache.getSelectedLogos(context);
         
-        try {
-          if(channels!=null && IOUtils.prepareAccess(channels)) {
-            int keyIndex = channels.getColumnIndex(TvBrowserContentProvider.KEY_ID);
-            int logoIndex = channels.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_LOGO);
-            
-            while(channels.moveToNext()) {
-              Bitmap logoBitmap = UiUtils.createBitmapFromByteArray(channels.getBlob(logoIndex));
-              
-              if(logoBitmap != null) {
-                SMALL_LOGO_MAP.put(channels.getInt(keyIndex), createDrawable(17,context,logoBitmap));
-                MEDIUM_LOGO_MAP.put(channels.getInt(keyIndex), createDrawable(25,context,logoBitmap));
-              }
-            }
-          }
-        }finally {
-          IOUtils.close(channels);
+        for(int i = 0; i < logos.size(); i++) {
+          SMALL_LOGO_MAP.put(logos.keyAt(i), createDrawable(17,context,logos.valueAt(i)));
+          MEDIUM_LOGO_MAP.put(logos.keyAt(i), createDrawable(25,context,logos.valueAt(i)));
         }
       }
     }
@@ -248,7 +248,12 @@ public class ActivityTvBrowserSearchResults extends AppCompatActivity implements
     
     System.arraycopy(TvBrowserContentProvider.MARKING_COLUMNS, 0, projection, 13, TvBrowserContentProvider.MARKING_COLUMNS.length);
         
-    String where = "(" + TvBrowserContentProvider.DATA_KEY_TITLE + " LIKE '%" + query.replace("'", "''") + "%' " + operation + TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE + " LIKE '%" + episodeQuery.replace("'", "''") + "%') AND " + TvBrowserContentProvider.DATA_KEY_ENDTIME + ">=" + System.currentTimeMillis();
+    final String titlePreFilter = TvBrowserContentProvider.getFullTextPreFilter(TvBrowserContentProvider.DATA_KEY_TITLE, query);
+    final String episodePreFilter = TvBrowserContentProvider.getFullTextPreFilter(TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE, episodeQuery);
+    
+    String where = "((" + (titlePreFilter != null ? titlePreFilter + " AND " : "") + TvBrowserContentProvider.DATA_KEY_TITLE + " LIKE '%" + query.replace("'", "''") + "%') " + operation
+        + "(" + (episodePreFilter != null ? episodePreFilter + " AND " : "") + TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE + " LIKE '%" + episodeQuery.replace("'", "''") + "%')) AND " + TvBrowserContentProvider.DATA_KEY_ENDTIME + ">=" + System.currentTimeMillis();
+    
     String sortOrder = TvBrowserContentProvider.DATA_KEY_STARTTIME;
     
     Uri uri = TvBrowserContentProvider.CONTENT_URI_DATA_WITH_CHANNEL;
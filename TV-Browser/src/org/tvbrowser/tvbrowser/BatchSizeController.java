@@ -0,0 +1,175 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.util.Map;
+
+import android.content.ContentValues;
+
+/**
+ * Decides when the pending rows of a {@link MemorySizeConstrictedDatabaseOperation}
+ * are written to the data base.
+ * <p>
+ * The batches are limited by the estimated size of the pending rows and by
+ * the number of pending rows. The size budget is a share of the maximum heap,
+ * it shrinks if the used heap grows or the free heap after a batch dropped
+ * compared to the last batch (the garbage collector couldn't free the memory)
+ * and grows again if there is enough free heap. The row limit is adapted to
+ * the measured time of the last batches, so one batch takes about
+ * {@link #TARGET_BATCH_NANOS}: rows with pictures are written in smaller
+ * batches than rows with only the base data.
+ * <p>
+ * Is only used by the thread that writes the batches or with the lock of
+ * the operation.
+ *
+ * @author René Mach
+ */
+final class BatchSizeController {
+  /* the time one batch should take */
+  private static final long TARGET_BATCH_NANOS = 250000000L;
+  
+  private static final int MIN_ROWS = 20;
+  private static final int MAX_ROWS = 5000;
+  
+  private static final long MIN_BYTES = 256 * 1024;
+  
+  private static final float HIGH_HEAP_USAGE = 0.75f;
+  private static final float LOW_HEAP_USAGE = 0.5f;
+  
+  /* the estimated memory use of a ContentValues entry and of a value object */
+  private static final int ENTRY_OVERHEAD = 48;
+  private static final int VALUE_OVERHEAD = 16;
+  
+  private final Runtime mRuntime;
+  private final long mMaxBytes;
+  
+  private int mRowLimit;
+  private long mByteLimit;
+  
+  /* the smoothed write time per row */
+  private double mNanosPerRow;
+  private long mLastFreeHeap;
+  private int mBatchCount;
+  
+  /**
+   * @param divider The divider for the limits, operations with small
+   * batches use a divider greater than <code>1</code>.
+   */
+  BatchSizeController(int divider) {
+    mRuntime = Runtime.getRuntime();
+    divider = Math.max(1, divider);
+    
+    mMaxBytes = Math.max(MIN_BYTES, mRuntime.maxMemory() / 16 / divider);
+    mByteLimit = mMaxBytes;
+    mRowLimit = Math.max(MIN_ROWS, Math.max(100, (int)(mRuntime.maxMemory()/1000000)) / divider);
+    mNanosPerRow = -1;
+    mLastFreeHeap = -1;
+    mBatchCount = 0;
+  }
+  
+  /**
+   * @param rows The number of pending rows.
+   * @param bytes The estimated size of the pending rows in bytes.
+   * @return <code>true</code> if the pending rows should be written now.
+   */
+  boolean shouldFlush(int rows, long bytes) {
+    return rows > mRowLimit || bytes > mByteLimit;
+  }
+  
+  /**
+   * Adapts the limits to a written batch.
+   * <p>
+   * @param rows The number of rows of the batch.
+   * @param bytes The estimated size of the batch in bytes.
+   * @param nanos The time the batch took in nanoseconds.
+   * @return The metrics of the batch for the update log.
+   */
+  String record(int rows, long bytes, long nanos) {
+    mBatchCount++;
+    
+    if(rows > 0 && nanos > 0) {
+      final double nanosPerRow = (double)nanos / rows;
+      
+      if(mNanosPerRow < 0) {
+        mNanosPerRow = nanosPerRow;
+      }
+      else {
+        mNanosPerRow = mNanosPerRow * 0.7 + nanosPerRow * 0.3;
+      }
+      
+      final int rowLimit = (int)(TARGET_BATCH_NANOS / mNanosPerRow);
+      
+      // change the row limit at most by factor two per batch
+      mRowLimit = Math.max(MIN_ROWS, Math.min(MAX_ROWS, Math.max(mRowLimit / 2, Math.min(mRowLimit * 2, rowLimit))));
+    }
+    
+    final long maxHeap = mRuntime.maxMemory();
+    final long usedHeap = mRuntime.totalMemory() - mRuntime.freeMemory();
+    final long freeHeap = maxHeap - usedHeap;
+    final float heapUsage = (float)usedHeap / maxHeap;
+    
+    // the free heap shrinks although the batch was released, the garbage collector lags behind
+    final boolean gcPressure = mLastFreeHeap >= 0 && freeHeap < mLastFreeHeap / 2;
+    
+    if(heapUsage > HIGH_HEAP_USAGE || gcPressure) {
+      mByteLimit = Math.max(MIN_BYTES, mByteLimit / 2);
+    }
+    else if(heapUsage < LOW_HEAP_USAGE) {
+      mByteLimit = Math.min(mMaxBytes, mByteLimit + mByteLimit / 4);
+    }
+    
+    mLastFreeHeap = freeHeap;
+    
+    return "batch " + mBatchCount + ": rows: " + rows
+        + " KB: " + (bytes / 1024)
+        + " ms: " + (nanos / 1000000)
+        + " heap used: " + (int)(heapUsage * 100) + "%"
+        + (gcPressure ? " GC pressure" : "")
+        + " next row limit: " + mRowLimit
+        + " next KB limit: " + (mByteLimit / 1024);
+  }
+  
+  /**
+   * Estimates the memory size of the given values.
+   * <p>
+   * @param values The values to estimate the size for.
+   * @return The estimated size in bytes.
+   */
+  static long estimateSize(ContentValues values) {
+    long size = ENTRY_OVERHEAD;
+    
+    if(values != null) {
+      for(Map.Entry<String, Object> entry : values.valueSet()) {
+        final Object value = entry.getValue();
+        
+        size += ENTRY_OVERHEAD;
+        
+        if(value instanceof String) {
+          size += VALUE_OVERHEAD + ((String)value).length() * 2L;
+        }
+        else if(value instanceof byte[]) {
+          size += VALUE_OVERHEAD + ((byte[])value).length;
+        }
+        else if(value != null) {
+          size += VALUE_OVERHEAD;
+        }
+      }
+    }
+    
+    return size;
+  }
+}
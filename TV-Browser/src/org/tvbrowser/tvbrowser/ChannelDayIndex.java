@@ -0,0 +1,257 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import org.tvbrowser.content.TvBrowserContentProvider;
+import org.tvbrowser.utils.IOUtils;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+
+/**
+ * The programs of a channel and day that are already in the data base.
+ * <p>
+ * The index is loaded when the first data file of the channel day is read
+ * and only lives as long as the channel day is handled, so the memory for
+ * the current data doesn't depend on the number of channels and days of
+ * an update. The programs are stored in arrays, an open addressing table
+ * maps the key of a frame ID to the position of the program, the title is
+ * kept to recognize changed titles.
+ *
+ * @author René Mach
+ */
+final class ChannelDayIndex {
+  private static final String[] PROJECTION = {
+    TvBrowserContentProvider.KEY_ID,
+    TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID,
+    TvBrowserContentProvider.DATA_KEY_DATE_PROG_STRING_ID,
+    TvBrowserContentProvider.DATA_KEY_TITLE,
+    TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE
+  };
+  
+  /* 64 bit FNV-1a for frame IDs that aren't numbers */
+  private static final long HASH_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long HASH_PRIME = 0x100000001b3L;
+  
+  private final long[] mFrameKeys;
+  private final long[] mProgramIDs;
+  private final String[] mTitles;
+  private final boolean[] mDontWantToSee;
+  private int mSize;
+  
+  /* position + 1 of the program for a frame key, 0 for free slots */
+  private int[] mTable;
+  
+  private ChannelDayIndex(int capacity) {
+    mFrameKeys = new long[capacity];
+    mProgramIDs = new long[capacity];
+    mTitles = new String[capacity];
+    mDontWantToSee = new boolean[capacity];
+    mSize = 0;
+  }
+  
+  /**
+   * Loads the programs of the given channel and day from the data base.
+   * <p>
+   * @param resolver The resolver to use for the query.
+   * @param channelID The ID of the channel in the data base.
+   * @param date The date in milliseconds since 1970 for UTC 0 o'clock.
+   * @return The index of the programs, empty if the data couldn't be read.
+   */
+  static ChannelDayIndex load(ContentResolver resolver, long channelID, long date) {
+    final String where = TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID + "=" + channelID + " AND " + TvBrowserContentProvider.DATA_KEY_UNIX_DATE + "=" + date;
+    
+    ChannelDayIndex index = null;
+    Cursor data = null;
+    
+    try {
+      data = resolver.query(TvBrowserContentProvider.CONTENT_URI_DATA, PROJECTION, where, null, TvBrowserContentProvider.KEY_ID);
+      
+      if(IOUtils.prepareAccess(data)) {
+        index = new ChannelDayIndex(data.getCount());
+        
+        final int keyColumn = data.getColumnIndex(TvBrowserContentProvider.KEY_ID);
+        final int frameIDColumn = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID);
+        final int frameIdStringColumn = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_DATE_PROG_STRING_ID);
+        final int titleColumn = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_TITLE);
+        final int dontWantToSeeColumn = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE);
+        
+        while(!data.isClosed() && data.moveToNext() && index.mSize < index.mFrameKeys.length) {
+          final long frameKey;
+          
+          if(!data.isNull(frameIdStringColumn)) {
+            frameKey = getFrameKey(data.getString(frameIdStringColumn));
+          }
+          else if(!data.isNull(frameIDColumn)) {
+            final int frameID = data.getInt(frameIDColumn);
+            frameKey = frameID >= 0 ? frameID : getFrameKey(String.valueOf(frameID));
+          }
+          else {
+            continue;
+          }
+          
+          index.mFrameKeys[index.mSize] = frameKey;
+          index.mProgramIDs[index.mSize] = data.getLong(keyColumn);
+          index.mTitles[index.mSize] = data.getString(titleColumn);
+          index.mDontWantToSee[index.mSize] = data.getInt(dontWantToSeeColumn) == 1;
+          index.mSize++;
+        }
+      }
+    }catch(IllegalStateException ignored) {
+    }finally {
+      IOUtils.close(data);
+    }
+    
+    if(index == null) {
+      index = new ChannelDayIndex(0);
+    }
+    
+    index.createTable();
+    
+    return index;
+  }
+  
+  private void createTable() {
+    int capacity = 4;
+    
+    while(capacity < mSize * 2) {
+      capacity <<= 1;
+    }
+    
+    mTable = new int[capacity];
+    
+    for(int position = 0; position < mSize; position++) {
+      int slot = getSlot(mFrameKeys[position]);
+      
+      while(mTable[slot] != 0 && mFrameKeys[mTable[slot] - 1] != mFrameKeys[position]) {
+        slot = (slot + 1) & (mTable.length - 1);
+      }
+      
+      // the last program wins for duplicate frame IDs like with the former table
+      mTable[slot] = position + 1;
+    }
+  }
+  
+  private int getSlot(long frameKey) {
+    final long mixed = frameKey * 0x9E3779B97F4A7C15L;
+    
+    return (int)(mixed >>> 32) & (mTable.length - 1);
+  }
+  
+  /**
+   * Converts a frame ID into the key of the index. Frame IDs that are non
+   * negative numbers are the key themselves, all other frame IDs are hashed
+   * into the negative range.
+   * <p>
+   * @param frameID The frame ID.
+   * @return The key of the frame ID.
+   */
+  static long getFrameKey(String frameID) {
+    final int length = frameID.length();
+    
+    if(length > 0 && length < 10 && (length == 1 || frameID.charAt(0) != '0')) {
+      long value = 0;
+      int i = 0;
+      
+      while(i < length && frameID.charAt(i) >= '0' && frameID.charAt(i) <= '9') {
+        value = value * 10 + (frameID.charAt(i++) - '0');
+      }
+      
+      if(i == length) {
+        return value;
+      }
+    }
+    
+    long hash = HASH_OFFSET_BASIS;
+    
+    for(int i = 0; i < length; i++) {
+      hash = (hash ^ frameID.charAt(i)) * HASH_PRIME;
+    }
+    
+    return hash | Long.MIN_VALUE;
+  }
+  
+  /**
+   * @param frameID The ID of the frame.
+   * @return The position of the program of the frame or <code>-1</code> if the frame isn't known.
+   */
+  int indexOf(String frameID) {
+    final long frameKey = getFrameKey(frameID);
+    
+    for(int slot = getSlot(frameKey); mTable[slot] != 0; slot = (slot + 1) & (mTable.length - 1)) {
+      if(mFrameKeys[mTable[slot] - 1] == frameKey) {
+        return mTable[slot] - 1;
+      }
+    }
+    
+    return -1;
+  }
+  
+  /**
+   * @return The number of programs of the channel day.
+   */
+  int size() {
+    return mSize;
+  }
+  
+  long getProgramID(int position) {
+    return mProgramIDs[position];
+  }
+  
+  boolean isDontWantToSee(int position) {
+    return mDontWantToSee[position];
+  }
+  
+  /**
+   * @param position The position of the program.
+   * @param title The title to test.
+   * @return <code>true</code> if the program has the given title.
+   */
+  boolean hasTitle(int position, String title) {
+    return title.equals(mTitles[position]);
+  }
+  
+  /**
+   * @param found The positions of the programs that were found in the new data.
+   * @return The IDs of the programs that weren't found, <code>null</code> if all were found.
+   */
+  long[] getMissingProgramIDs(boolean[] found) {
+    int count = 0;
+    
+    for(int position = 0; position < mSize; position++) {
+      if(!found[position]) {
+        count++;
+      }
+    }
+    
+    if(count == 0) {
+      return null;
+    }
+    
+    final long[] missing = new long[count];
+    
+    count = 0;
+    
+    for(int position = 0; position < mSize; position++) {
+      if(!found[position]) {
+        missing[count++] = mProgramIDs[position];
+      }
+    }
+    
+    return missing;
+  }
+}
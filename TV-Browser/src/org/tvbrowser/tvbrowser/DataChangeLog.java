@@ -0,0 +1,156 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.tvbrowser.content.TvBrowserContentProvider;
+
+import android.os.Bundle;
+
+/**
+ * The log of the channels and days with changed data of a data update.
+ * <p>
+ * The passes after the update use the log to only handle the changed data,
+ * the calculation of missing end times and the favorite pass get their
+ * scope from here. If changes couldn't be assigned to channels and days all data is marked
+ * as changed.
+ *
+ * @author René Mach
+ */
+final class DataChangeLog {
+  /* key is the channel ID, value are the changed dates, the dates are
+   * the values of the unix date column of the data of the changed days */
+  private final HashMap<Long, TreeSet<Long>> mChangedDays;
+  private boolean mAllChanged;
+
+  DataChangeLog() {
+    mChangedDays = new HashMap<>();
+    mAllChanged = false;
+  }
+
+  /**
+   * Marks the data of the given channel and date as changed.
+   * <p>
+   * @param channelID The ID of the channel in the data base.
+   * @param date The date in milliseconds since 1970 for UTC 0 o'clock.
+   */
+  synchronized void add(long channelID, long date) {
+    TreeSet<Long> days = mChangedDays.get(channelID);
+
+    if(days == null) {
+      days = new TreeSet<>();
+      mChangedDays.put(channelID, days);
+    }
+
+    days.add(date);
+  }
+
+  /**
+   * Marks all data as changed.
+   */
+  synchronized void markAll() {
+    mAllChanged = true;
+  }
+
+  synchronized boolean isEmpty() {
+    return !mAllChanged && mChangedDays.isEmpty();
+  }
+
+  synchronized void clear() {
+    mChangedDays.clear();
+    mAllChanged = false;
+  }
+
+  /**
+   * Creates the extras for {@link TvBrowserContentProvider#METHOD_CALCULATE_MISSING_ENDS}
+   * that limit the calculation to the changed data.
+   * <p>
+   * @return The extras, they are empty if all data has changed.
+   */
+  synchronized Bundle getMissingEndsExtras() {
+    final Bundle extras = new Bundle();
+
+    if(!mAllChanged) {
+      final long[] channelIDs = new long[mChangedDays.size()];
+      final long[] startTimes = new long[channelIDs.length];
+
+      int i = 0;
+
+      for(Map.Entry<Long, TreeSet<Long>> entry : mChangedDays.entrySet()) {
+        channelIDs[i] = entry.getKey();
+        // the end of the last program of the day before depends on the first changed day
+        startTimes[i++] = entry.getValue().first() - 24 * 60 * 60000L;
+      }
+
+      extras.putLongArray(TvBrowserContentProvider.EXTRA_CHANNEL_IDS, channelIDs);
+      extras.putLongArray(TvBrowserContentProvider.EXTRA_START_TIMES, startTimes);
+    }
+
+    return extras;
+  }
+
+  /**
+   * Creates the where clause for the data table that selects the changed data.
+   * <p>
+   * @return The where clause or <code>null</code> if all data has changed.
+   */
+  synchronized String getWhereClause() {
+    if(mAllChanged) {
+      return null;
+    }
+
+    final StringBuilder where = new StringBuilder(" ( ");
+
+    if(mChangedDays.isEmpty()) {
+      where.append("0");
+    }
+
+    boolean first = true;
+
+    for(Map.Entry<Long, TreeSet<Long>> entry : mChangedDays.entrySet()) {
+      if(!first) {
+        where.append(" OR ");
+      }
+
+      where.append("( ");
+      where.append(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID).append("=").append(entry.getKey());
+      where.append(" AND ");
+      where.append(TvBrowserContentProvider.DATA_KEY_UNIX_DATE).append(" IN (");
+
+      boolean firstDay = true;
+
+      for(Long day : entry.getValue()) {
+        if(!firstDay) {
+          where.append(",");
+        }
+
+        where.append(day);
+        firstDay = false;
+      }
+
+      where.append(") )");
+      first = false;
+    }
+
+    where.append(" ) ");
+
+    return where.toString();
+  }
+}
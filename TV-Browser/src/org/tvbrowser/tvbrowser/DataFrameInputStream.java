@@ -0,0 +1,268 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.tvbrowser.utils.IOUtils;
+
+/**
+ * A stream that reads the frames of a TV data file directly from the
+ * decompressed file stream.
+ * <p>
+ * The data of a field is read into a scratch buffer that is shared by all
+ * streams of the reading thread and only grows up to the maximum field size,
+ * so the memory needed to read a data file doesn't depend on the size of
+ * the file and reading a field doesn't allocate memory.
+ * <p>
+ * The bytes of a frame can be hashed while they are read, so frames that
+ * didn't change since they were written to the data base can be recognized.
+ *
+ * @author René Mach
+ */
+class DataFrameInputStream extends DataInputStream {
+  private static final int STREAM_BUFFER_SIZE = 8192;
+  private static final int FIELD_BUFFER_START_SIZE = 1024;
+  
+  /* 64 bit FNV-1a */
+  private static final long HASH_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long HASH_PRIME = 0x100000001b3L;
+
+  private static final ThreadLocal<byte[]> FIELD_BUFFER = new ThreadLocal<byte[]>() {
+    @Override
+    protected byte[] initialValue() {
+      return new byte[FIELD_BUFFER_START_SIZE];
+    }
+  };
+
+  private final FrameHashStream mHashStream;
+  private final int mMaxFieldSize;
+  private byte[] mFieldBuffer;
+  private int mFieldLength;
+
+  private DataFrameInputStream(FrameHashStream in, int maxFieldSize) {
+    super(in);
+    mHashStream = in;
+    mMaxFieldSize = maxFieldSize;
+    mFieldBuffer = FIELD_BUFFER.get();
+    mFieldLength = 0;
+  }
+
+  /**
+   * Opens the given data file for reading of the frames.
+   * <p>
+   * @param dataFile The (compressed) data file to read.
+   * @param maxFieldSize The maximum size of a field that is read into memory.
+   * @return The stream for the data file.
+   * @throws IOException If the file could not be opened.
+   */
+  static DataFrameInputStream open(File dataFile, int maxFieldSize) throws IOException {
+    final FileInputStream fileIn = new FileInputStream(dataFile);
+
+    try {
+      return new DataFrameInputStream(new FrameHashStream(new BufferedInputStream(IOUtils.decompressStream(fileIn), STREAM_BUFFER_SIZE)), maxFieldSize);
+    }catch(IOException e) {
+      IOUtils.close(fileIn);
+      throw e;
+    }
+  }
+
+  /**
+   * Reads the data of a field with the given length into the field buffer.
+   * Fields that are bigger than the maximum field size are skipped.
+   * <p>
+   * @param length The number of bytes of the field.
+   * @return <code>true</code> if the field was read into the field buffer,
+   * <code>false</code> if it was skipped.
+   * @throws IOException If the stream ended before the field was read completely.
+   */
+  boolean readField(int length) throws IOException {
+    if(length > mFieldBuffer.length && length <= mMaxFieldSize) {
+      mFieldBuffer = new byte[Math.min(mMaxFieldSize, Math.max(length, mFieldBuffer.length * 2))];
+      FIELD_BUFFER.set(mFieldBuffer);
+    }
+
+    if(length <= mFieldBuffer.length) {
+      readFully(mFieldBuffer, 0, length);
+      mFieldLength = length;
+
+      return true;
+    }
+
+    skipFully(length);
+    mFieldLength = 0;
+
+    return false;
+  }
+
+  /**
+   * Skips the given number of bytes.
+   * <p>
+   * @param length The number of bytes to skip.
+   * @throws IOException If the stream ended before all bytes were skipped.
+   */
+  void skipFully(long length) throws IOException {
+    final boolean hashing = mHashStream.mHashing;
+
+    // the skipped bytes aren't hashed, only their number
+    mHashStream.mHashing = false;
+
+    try {
+      for(long left = length; left > 0;) {
+        long skipped = skip(left);
+
+        if(skipped <= 0) {
+          if(read() == -1) {
+            throw new EOFException();
+          }
+
+          skipped = 1;
+        }
+
+        left -= skipped;
+      }
+    }finally {
+      mHashStream.mHashing = hashing;
+    }
+
+    if(hashing) {
+      mHashStream.update(length);
+    }
+  }
+
+  /**
+   * Reads the given number of bytes without keeping them,
+   * other than with {@link #skipFully(long)} the bytes are
+   * added to the hash of the frame.
+   * <p>
+   * @param length The number of bytes to read.
+   * @throws IOException If the stream ended before all bytes were read.
+   */
+  void readOverFully(int length) throws IOException {
+    while(length > 0) {
+      final int read = read(mFieldBuffer, 0, Math.min(length, mFieldBuffer.length));
+
+      if(read == -1) {
+        throw new EOFException();
+      }
+
+      length -= read;
+    }
+
+    mFieldLength = 0;
+  }
+
+  /**
+   * Starts the hash of a frame, all bytes that are read from
+   * now on until {@link #endFrameHash()} is called are hashed.
+   */
+  void startFrameHash() {
+    mHashStream.mHash = HASH_OFFSET_BASIS;
+    mHashStream.mHashing = true;
+  }
+
+  /**
+   * Stops the hash of the frame.
+   * <p>
+   * @return The 64 bit hash of the bytes read since {@link #startFrameHash()}.
+   */
+  long endFrameHash() {
+    mHashStream.mHashing = false;
+
+    return mHashStream.mHash;
+  }
+
+  /**
+   * @return The integer value of the last read field (Big-Endian).
+   */
+  int getFieldInt() {
+    int result = 0;
+
+    for(int i = 0; i < mFieldLength; i++) {
+      result = (result << 8) | (mFieldBuffer[i] & 0xFF);
+    }
+
+    return result;
+  }
+
+  /**
+   * Decodes the last read field, should only be called for fields
+   * that are really used to prevent needless String creation.
+   * <p>
+   * @return The last read field as String in the default charset.
+   */
+  String getFieldString() {
+    return new String(mFieldBuffer, 0, mFieldLength);
+  }
+
+  /**
+   * @return A copy of the bytes of the last read field.
+   */
+  byte[] getFieldBytes() {
+    return Arrays.copyOf(mFieldBuffer, mFieldLength);
+  }
+
+  /**
+   * Hashes the bytes that are read through it if hashing is enabled.
+   */
+  private static final class FrameHashStream extends FilterInputStream {
+    private boolean mHashing;
+    private long mHash;
+
+    FrameHashStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      final int value = in.read();
+
+      if(mHashing && value != -1) {
+        mHash = (mHash ^ value) * HASH_PRIME;
+      }
+
+      return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      final int read = in.read(b, off, len);
+
+      if(mHashing) {
+        for(int i = 0; i < read; i++) {
+          mHash = (mHash ^ (b[off + i] & 0xFF)) * HASH_PRIME;
+        }
+      }
+
+      return read;
+    }
+
+    void update(long value) {
+      for(int shift = 56; shift >= 0; shift -= 8) {
+        mHash = (mHash ^ ((value >>> shift) & 0xFF)) * HASH_PRIME;
+      }
+    }
+  }
+}
@@ -17,16 +17,20 @@
 package org.tvbrowser.tvbrowser;
 
 import java.util.Locale;
-import java.util.regex.Pattern;
 
 /**
  * A class that contains filter information for title filtering of programs.
+ * <p>
+ * The exclusion either has to be equal to the title or it contains * as
+ * wildcard for any number of characters. Many exclusions are matched at
+ * once with the {@link DontWantToSeeFilter}.
  * 
  * @author René Mach
  */
 public class DontWantToSeeExclusion {
   private String mExclusion;
-  private final Pattern mPrecompiledPattern;
+  /* the parts of the exclusion between the wildcards or null if there is no wildcard */
+  private final String[] mSegments;
   private final boolean mIsCaseSensitive;
   
   public DontWantToSeeExclusion(String exclusion) {
@@ -40,29 +44,85 @@ public class DontWantToSeeExclusion {
     }
     
     if(parts[0].contains("*")) {
-      String pattern = Pattern.quote(mExclusion);
-      pattern = pattern.replace("*", "\\E.*\\Q");
-      mPrecompiledPattern = Pattern.compile(pattern);
+      mSegments = mExclusion.split("\\*", -1);
     }
     else {
-      mPrecompiledPattern = null;
+      mSegments = null;
     }
   }
   
   public boolean matches(String title) {
-    boolean matches;
-    
     if(!mIsCaseSensitive) {
       title = title.toLowerCase(Locale.getDefault());
     }
     
-    if(mPrecompiledPattern != null) {
-      matches = mPrecompiledPattern.matcher(title).matches();
+    return matchesFolded(title);
+  }
+  
+  /**
+   * @param title The title that is already in lower case if this exclusion isn't case sensitive.
+   * @return If the title matches this exclusion.
+   */
+  boolean matchesFolded(String title) {
+    if(mSegments == null) {
+      return title.equals(mExclusion);
     }
-    else {
-      matches = title.equals(mExclusion);
+    
+    final String first = mSegments[0];
+    final String last = mSegments[mSegments.length - 1];
+    
+    if(!title.startsWith(first) || title.length() - first.length() < last.length() || !title.endsWith(last)) {
+      return false;
+    }
+    
+    // the wildcards in between match the segments at the first possible position
+    int index = first.length();
+    final int end = title.length() - last.length();
+    
+    for(int i = 1; i < mSegments.length - 1; i++) {
+      final String segment = mSegments[i];
+      
+      index = title.indexOf(segment, index);
+      
+      if(index < 0 || index + segment.length() > end) {
+        return false;
+      }
+      
+      index += segment.length();
+    }
+    
+    return true;
+  }
+  
+  String getExclusion() {
+    return mExclusion;
+  }
+  
+  boolean isCaseSensitive() {
+    return mIsCaseSensitive;
+  }
+  
+  boolean isWildcard() {
+    return mSegments != null;
+  }
+  
+  /**
+   * @return The longest part of the exclusion between the wildcards,
+   * every title that matches contains this part.
+   */
+  String getLongestSegment() {
+    String result = mExclusion;
+    
+    if(mSegments != null) {
+      result = "";
+      
+      for(String segment : mSegments) {
+        if(segment.length() > result.length()) {
+          result = segment;
+        }
+      }
     }
     
-    return matches;
+    return result;
   }
-}
\ No newline at end of file
+}
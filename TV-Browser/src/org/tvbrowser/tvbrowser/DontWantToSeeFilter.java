@@ -0,0 +1,329 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A compiled index of many {@link DontWantToSeeExclusion} that matches a
+ * title against all exclusions at once.
+ * <p>
+ * Exclusions without wildcard are looked up in hash sets. Each exclusion
+ * with wildcards has a longest part between its wildcards, and every title
+ * that matches the exclusion contains that part. These parts are searched
+ * all at once with an Aho-Corasick automaton, and only exclusions whose part
+ * was found are checked completely. A title is converted to lower case only
+ * once for all exclusions that aren't case sensitive.
+ * <p>
+ * The filter isn't changed after creation, so it can be used by many threads.
+ *
+ * @author René Mach
+ */
+public final class DontWantToSeeFilter {
+  private final HashSet<String> mExactCaseSensitive;
+  private final HashSet<String> mExactFolded;
+  private final WildcardIndex mWildcardCaseSensitive;
+  private final WildcardIndex mWildcardFolded;
+  private final int mSize;
+  
+  public DontWantToSeeFilter(Collection<DontWantToSeeExclusion> exclusions) {
+    mExactCaseSensitive = new HashSet<>();
+    mExactFolded = new HashSet<>();
+    
+    final ArrayList<DontWantToSeeExclusion> wildcardCaseSensitive = new ArrayList<>();
+    final ArrayList<DontWantToSeeExclusion> wildcardFolded = new ArrayList<>();
+    
+    for(DontWantToSeeExclusion exclusion : exclusions) {
+      if(exclusion.isWildcard()) {
+        (exclusion.isCaseSensitive() ? wildcardCaseSensitive : wildcardFolded).add(exclusion);
+      }
+      else {
+        (exclusion.isCaseSensitive() ? mExactCaseSensitive : mExactFolded).add(exclusion.getExclusion());
+      }
+    }
+    
+    mWildcardCaseSensitive = new WildcardIndex(wildcardCaseSensitive);
+    mWildcardFolded = new WildcardIndex(wildcardFolded);
+    mSize = exclusions.size();
+  }
+  
+  /**
+   * Creates the filter for the given saved exclusions.
+   * <p>
+   * @param exclusionValues The saved exclusions of the preferences, may be <code>null</code>.
+   * @return The filter for the exclusions.
+   */
+  public static DontWantToSeeFilter create(Set<String> exclusionValues) {
+    final ArrayList<DontWantToSeeExclusion> exclusions = new ArrayList<>();
+    
+    if(exclusionValues != null) {
+      for(String exclusion : exclusionValues) {
+        exclusions.add(new DontWantToSeeExclusion(exclusion));
+      }
+    }
+    
+    return new DontWantToSeeFilter(exclusions);
+  }
+  
+  public boolean isEmpty() {
+    return mSize == 0;
+  }
+  
+  /**
+   * @param title The title to check.
+   * @return <code>true</code> if the title matches at least one exclusion.
+   */
+  public boolean matches(String title) {
+    if(title == null) {
+      return false;
+    }
+    
+    if(mExactCaseSensitive.contains(title) || mWildcardCaseSensitive.matches(title)) {
+      return true;
+    }
+    
+    if(!mExactFolded.isEmpty() || !mWildcardFolded.isEmpty()) {
+      final String folded = title.toLowerCase(Locale.getDefault());
+      
+      return mExactFolded.contains(folded) || mWildcardFolded.matches(folded);
+    }
+    
+    return false;
+  }
+  
+  /**
+   * The index of exclusions with wildcards.
+   */
+  private static final class WildcardIndex {
+    private static final int[] NO_OUTPUT = new int[0];
+    
+    private final DontWantToSeeExclusion[] mExclusions;
+    /* exclusions that contain only wildcards and have to be checked for every title */
+    private final DontWantToSeeExclusion[] mUnindexed;
+    
+    private final EdgeMap mEdges;
+    private final int[] mFail;
+    /* the exclusions which longest part ends at the node, including the ones of the fail nodes */
+    private final int[][] mOutputs;
+    
+    WildcardIndex(ArrayList<DontWantToSeeExclusion> exclusions) {
+      mExclusions = exclusions.toArray(new DontWantToSeeExclusion[0]);
+      
+      final ArrayList<DontWantToSeeExclusion> unindexed = new ArrayList<>();
+      final ArrayList<HashMap<Character, Integer>> trie = new ArrayList<>();
+      final ArrayList<ArrayList<Integer>> outputs = new ArrayList<>();
+      
+      trie.add(new HashMap<Character, Integer>());
+      outputs.add(null);
+      
+      int edgeCount = 0;
+      
+      for(int i = 0; i < mExclusions.length; i++) {
+        final String key = mExclusions[i].getLongestSegment();
+        
+        if(key.isEmpty()) {
+          unindexed.add(mExclusions[i]);
+          continue;
+        }
+        
+        int node = 0;
+        
+        for(int j = 0; j < key.length(); j++) {
+          Integer child = trie.get(node).get(key.charAt(j));
+          
+          if(child == null) {
+            child = trie.size();
+            trie.get(node).put(key.charAt(j), child);
+            trie.add(new HashMap<Character, Integer>());
+            outputs.add(null);
+            edgeCount++;
+          }
+          
+          node = child;
+        }
+        
+        if(outputs.get(node) == null) {
+          outputs.set(node, new ArrayList<Integer>());
+        }
+        
+        outputs.get(node).add(i);
+      }
+      
+      mUnindexed = unindexed.toArray(new DontWantToSeeExclusion[0]);
+      mEdges = new EdgeMap(edgeCount);
+      mFail = new int[trie.size()];
+      mOutputs = new int[trie.size()][];
+      mOutputs[0] = NO_OUTPUT;
+      
+      for(int node = 0; node < trie.size(); node++) {
+        for(Map.Entry<Character, Integer> edge : trie.get(node).entrySet()) {
+          mEdges.put(node, edge.getKey(), edge.getValue());
+        }
+      }
+      
+      // breadth first, so the fail node of a node is always handled before the node
+      final ArrayDeque<Integer> queue = new ArrayDeque<>();
+      queue.add(0);
+      
+      while(!queue.isEmpty()) {
+        final int node = queue.poll();
+        
+        for(Map.Entry<Character, Integer> edge : trie.get(node).entrySet()) {
+          final char c = edge.getKey();
+          final int child = edge.getValue();
+          
+          int fail = 0;
+          
+          if(node != 0) {
+            fail = mFail[node];
+            
+            while(fail != 0 && mEdges.get(fail, c) < 0) {
+              fail = mFail[fail];
+            }
+            
+            fail = Math.max(0, mEdges.get(fail, c));
+          }
+          
+          mFail[child] = fail;
+          mOutputs[child] = mergeOutputs(outputs.get(child), mOutputs[fail]);
+          
+          queue.add(child);
+        }
+      }
+    }
+    
+    private static int[] mergeOutputs(ArrayList<Integer> own, int[] inherited) {
+      if(own == null) {
+        return inherited;
+      }
+      
+      final int[] result = Arrays.copyOf(inherited, inherited.length + own.size());
+      
+      for(int i = 0; i < own.size(); i++) {
+        result[inherited.length + i] = own.get(i);
+      }
+      
+      return result;
+    }
+    
+    boolean isEmpty() {
+      return mExclusions.length == 0;
+    }
+    
+    boolean matches(String title) {
+      for(DontWantToSeeExclusion exclusion : mUnindexed) {
+        if(exclusion.matchesFolded(title)) {
+          return true;
+        }
+      }
+      
+      if(mFail.length > 1) {
+        int node = 0;
+        
+        for(int i = 0; i < title.length(); i++) {
+          final char c = title.charAt(i);
+          
+          int next;
+          
+          while((next = mEdges.get(node, c)) < 0 && node != 0) {
+            node = mFail[node];
+          }
+          
+          node = Math.max(0, next);
+          
+          for(int exclusion : mOutputs[node]) {
+            if(mExclusions[exclusion].matchesFolded(title)) {
+              return true;
+            }
+          }
+        }
+      }
+      
+      return false;
+    }
+  }
+  
+  /**
+   * The edges of the automaton in an open addressing hash table,
+   * looking up an edge doesn't allocate any memory.
+   */
+  private static final class EdgeMap {
+    private final long[] mKeys;
+    private final int[] mValues;
+    private final int mMask;
+    
+    EdgeMap(int edgeCount) {
+      int capacity = 16;
+      
+      while(capacity < edgeCount * 2) {
+        capacity <<= 1;
+      }
+      
+      mKeys = new long[capacity];
+      mValues = new int[capacity];
+      mMask = capacity - 1;
+      
+      Arrays.fill(mKeys, -1);
+    }
+    
+    private static long key(int node, char c) {
+      return ((long)node << 16) | c;
+    }
+    
+    private int index(long key) {
+      return (int)((key * 0x9E3779B97F4A7C15L) >>> 40) & mMask;
+    }
+    
+    void put(int node, char c, int child) {
+      final long key = key(node, c);
+      int index = index(key);
+      
+      while(mKeys[index] != -1 && mKeys[index] != key) {
+        index = (index + 1) & mMask;
+      }
+      
+      mKeys[index] = key;
+      mValues[index] = child;
+    }
+    
+    /**
+     * @return The child of the node for the character or <code>-1</code> if there is none.
+     */
+    int get(int node, char c) {
+      final long key = key(node, c);
+      int index = index(key);
+      
+      while(mKeys[index] != -1) {
+        if(mKeys[index] == key) {
+          return mValues[index];
+        }
+        
+        index = (index + 1) & mMask;
+      }
+      
+      return -1;
+    }
+  }
+}
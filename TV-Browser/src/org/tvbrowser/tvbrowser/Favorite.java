@@ -62,6 +62,29 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
   public static final String OLD_NAME_KEY = "OLD_NAME_KEY";
   
   private static final String START_DAY_COLUMN = "startDayOfWeek";
+  private static final String START_DAY_EXPRESSION = "(strftime('%w', " + TvBrowserContentProvider.DATA_KEY_STARTTIME + "/1000, 'unixepoch', 'localtime')+1)";
+  
+  // the text columns that are searched by keyword favorites and exclusions
+  private static final String[] CONCAT_COLUMNS = {
+    TvBrowserContentProvider.DATA_KEY_TITLE_ORIGINAL,
+    TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE,
+    TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE_ORIGINAL,
+    TvBrowserContentProvider.DATA_KEY_SHORT_DESCRIPTION,
+    TvBrowserContentProvider.DATA_KEY_DESCRIPTION,
+    TvBrowserContentProvider.DATA_KEY_ACTORS,
+    TvBrowserContentProvider.DATA_KEY_SERIES,
+    TvBrowserContentProvider.DATA_KEY_REGIE,
+    TvBrowserContentProvider.DATA_KEY_SCRIPT,
+    TvBrowserContentProvider.DATA_KEY_ADDITIONAL_INFO,
+    TvBrowserContentProvider.DATA_KEY_CAMERA,
+    TvBrowserContentProvider.DATA_KEY_MODERATION,
+    TvBrowserContentProvider.DATA_KEY_MUSIC,
+    TvBrowserContentProvider.DATA_KEY_PRODUCER,
+    TvBrowserContentProvider.DATA_KEY_GENRE,
+    TvBrowserContentProvider.DATA_KEY_OTHER_PERSONS
+  };
+  
+  private static final String CONCAT_EXPRESSION = createConcatExpression();
   
   public static final String KEY_MARKING_ICON = "org.tvbrowser.tvbrowser.Favorite";
   
@@ -463,6 +486,10 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
     return mUniqueProgramIds;
   }
   
+  synchronized void setUniqueProgramIds(long[] ids) {
+    mUniqueProgramIds = ids;
+  }
+  
   private boolean containsUniqueProgramId(long uniqueId) {
     boolean result = false;
     
@@ -535,53 +562,33 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
     return new WhereClause(where.toString(), selectionArgs);
   }
   
+  private static String createConcatExpression() {
+    final StringBuilder concat = new StringBuilder(TvBrowserContentProvider.DATA_KEY_TITLE);
+    
+    for(String column : CONCAT_COLUMNS) {
+      concat.append(" || ' ' || ifnull(").append(column).append(",\"\")");
+    }
+    
+    return concat.toString();
+  }
+  
   private String getWhereClause() {
     StringBuilder builder = new StringBuilder();
     
-    if(mType == KEYWORD_ONLY_TITLE_TYPE) {
+    final boolean concatTitle = mType == KEYWORD_ONLY_TITLE_TYPE;
+    final boolean concatAll = mType == KEYWORD_TYPE || isHavingExclusions();
+    
+    if(concatTitle) {
       builder.append(", ");
       builder.append(TvBrowserContentProvider.DATA_KEY_TITLE);
     }
     
-    if(mType == KEYWORD_TYPE || isHavingExclusions()) {
+    if(concatAll) {
       builder.append(", ");
-      builder.append(TvBrowserContentProvider.DATA_KEY_TITLE);
-      builder.append(" || ' ' || ifnull(");
-      builder.append(TvBrowserContentProvider.DATA_KEY_TITLE_ORIGINAL);
-      builder.append(",\"\") || ' ' || ifnull(");
-      builder.append(TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE);
-      builder.append(",\"\") || ' ' || ifnull(");
-      builder.append(TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE_ORIGINAL);
-      builder.append(",\"\") || ' ' || ifnull(");
-      builder.append(TvBrowserContentProvider.DATA_KEY_SHORT_DESCRIPTION);
-      builder.append(",\"\") || ' ' || ifnull(");
-      builder.append(TvBrowserContentProvider.DATA_KEY_DESCRIPTION);
-      builder.append(",\"\") || ' ' || ifnull(");
-      builder.append(TvBrowserContentProvider.DATA_KEY_ACTORS);
-      builder.append(",\"\") || ' ' || ifnull(");
-      builder.append(TvBrowserContentProvider.DATA_KEY_SERIES);
-      builder.append(",\"\") || ' ' || ifnull(");
-      builder.append(TvBrowserContentProvider.DATA_KEY_REGIE);
-      builder.append(",\"\") || ' ' || ifnull(");
-      builder.append(TvBrowserContentProvider.DATA_KEY_SCRIPT);
-      builder.append(",\"\") || ' ' || ifnull(");
-      builder.append(TvBrowserContentProvider.DATA_KEY_ADDITIONAL_INFO);
-      builder.append(",\"\") || ' ' || ifnull(");
-      builder.append(TvBrowserContentProvider.DATA_KEY_CAMERA);
-      builder.append(",\"\") || ' ' || ifnull(");
-      builder.append(TvBrowserContentProvider.DATA_KEY_MODERATION);
-      builder.append(",\"\") || ' ' || ifnull(");
-      builder.append(TvBrowserContentProvider.DATA_KEY_MUSIC);
-      builder.append(",\"\") || ' ' || ifnull(");
-      builder.append(TvBrowserContentProvider.DATA_KEY_PRODUCER);
-      builder.append(",\"\") || ' ' || ifnull(");
-      builder.append(TvBrowserContentProvider.DATA_KEY_GENRE);
-      builder.append(",\"\") || ' ' || ifnull(");
-      builder.append(TvBrowserContentProvider.DATA_KEY_OTHER_PERSONS);
-      builder.append(",\"\")");
-    }
-    
-    if(mType == KEYWORD_ONLY_TITLE_TYPE || mType == KEYWORD_TYPE || isHavingExclusions()) {
+      builder.append(CONCAT_EXPRESSION);
+    }
+    
+    if(concatTitle || concatAll) {
       builder.append(" AS ");
       builder.append(TvBrowserContentProvider.CONCAT_RAW_KEY);
       builder.append(" ");
@@ -606,49 +613,59 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
     }*/
     
     if(isDayRestricted()) {
-      builder.append(", (strftime('%w', ");
-      builder.append(TvBrowserContentProvider.DATA_KEY_STARTTIME);
-      builder.append("/1000, 'unixepoch', 'localtime')+1) AS ");
+      builder.append(", ");
+      builder.append(START_DAY_EXPRESSION);
+      builder.append(" AS ");
       builder.append(START_DAY_COLUMN);
     }
     
     builder.append(TvBrowserContentProvider.CONCAT_TABLE_PLACE_HOLDER);
     
+    appendConditions(builder, TvBrowserContentProvider.CONCAT_RAW_KEY, START_DAY_COLUMN);
+    
+    return builder.toString();
+  }
+  
+  /**
+   * Creates the condition that selects the programs of this favorite in a query
+   * of only the data table, the condition doesn't use any aliases of columns.
+   * <p>
+   * @return The condition or an empty String if this favorite doesn't have any condition.
+   */
+  String getMatchCondition() {
+    final StringBuilder builder = new StringBuilder();
+    
+    appendConditions(builder, "(" + CONCAT_EXPRESSION + ")", START_DAY_EXPRESSION);
+    
+    return builder.toString();
+  }
+  
+  private void appendConditions(StringBuilder builder, String concatColumn, String dayColumn) {
     boolean addAnd = false;
     
     if(mType == KEYWORD_ONLY_TITLE_TYPE || mType == KEYWORD_TYPE) {
       builder.append(" ( ");
 
       String column = TvBrowserContentProvider.DATA_KEY_TITLE;
+      String preFilterColumn = TvBrowserContentProvider.DATA_KEY_TITLE;
       
       if(mType == KEYWORD_TYPE) {
-        column = TvBrowserContentProvider.CONCAT_RAW_KEY;
+        column = concatColumn;
+        preFilterColumn = null;
       }
       
-      if(mSearch.contains("AND")) {
-        String[] andParts = mSearch.split("AND");
-        
-        builder.append(column);
-        builder.append(" LIKE '%");
-        
-        for(int i = 0; i < andParts.length-1; i++) {
-          builder.append(andParts[i].trim().replace("'", "''"));
-          builder.append("%'");
+      final String[] andParts = mSearch.contains("AND") ? mSearch.split("AND") : new String[] {mSearch};
+      
+      for(int i = 0; i < andParts.length; i++) {
+        if(i > 0) {
           builder.append(" AND ");
         }
         
-        builder.append(column);
-        builder.append(" LIKE '%");
-        builder.append(andParts[andParts.length-1].trim().replace("'", "''"));
-        builder.append("%' )");
-      }
-      else {
-        builder.append(column);
-        builder.append(" LIKE '%");
-        builder.append(mSearch.trim().replace("'", "''"));
-        builder.append("%' )");
+        appendKeywordCondition(builder, column, preFilterColumn, andParts[i].trim());
       }
       
+      builder.append(" )");
+      
       addAnd = true;
     }
     
@@ -711,7 +728,7 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
         builder.append(" AND ");
       }
       builder.append(" ( ");
-      builder.append(START_DAY_COLUMN);
+      builder.append(dayColumn);
       builder = appendInList(mDayRestriction,builder);
       builder.append(")");
       
@@ -740,14 +757,14 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
       
       for(int i = 0; i < mExclusions.length - 1; i++) {
         builder.append(" ( ");
-        builder.append(TvBrowserContentProvider.CONCAT_RAW_KEY);
+        builder.append(concatColumn);
         builder.append(" LIKE '%");
         builder.append(mExclusions[i].replace("'", "''"));
         builder.append("%' ) OR ");
       }
       
       builder.append(" ( ");
-      builder.append(TvBrowserContentProvider.CONCAT_RAW_KEY);
+      builder.append(concatColumn);
       builder.append(" LIKE '%");
       builder.append(mExclusions[mExclusions.length-1].replace("'", "''"));
       builder.append("%' ) ");
@@ -774,8 +791,27 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
       
       builder.append(" ) ");
     }
+  }
+  
+  /*
+   * Appends the LIKE condition of the search term, the LIKE is only evaluated
+   * for the programs the full text index doesn't rule out.
+   */
+  private static void appendKeywordCondition(StringBuilder builder, String column, String preFilterColumn, String term) {
+    final String preFilter = TvBrowserContentProvider.getFullTextPreFilter(preFilterColumn, term);
     
-    return builder.toString();
+    if(preFilter != null) {
+      builder.append("CASE WHEN ").append(preFilter).append(" THEN ");
+    }
+    
+    builder.append(column);
+    builder.append(" LIKE '%");
+    builder.append(term.replace("'", "''"));
+    builder.append("%'");
+    
+    if(preFilter != null) {
+      builder.append(" ELSE 0 END");
+    }
   }
   
   private StringBuilder appendInList(int[] array, StringBuilder builder) {
@@ -978,6 +1014,20 @@ public class Favorite implements Serializable, Cloneable, Comparable<Favorite> {
     }
   }
   
+  /**
+   * Updates the markings of all given favorites for the programs selected by
+   * the given where clause with one query of the data and one batch update.
+   * <p>
+   * @param context The context to use.
+   * @param favorites The favorites to update the markings for.
+   * @param changedData The where clause for the data table that selects the programs
+   * to handle or <code>null</code> to handle all programs. The markings of all other
+   * programs are kept.
+   */
+  static synchronized void updateFavoriteMarkings(Context context, Favorite[] favorites, String changedData) {
+    new FavoriteMarkingPass(context, favorites).run(changedData);
+  }
+  
   private static void handleRemindersInternal(Context context, ContentResolver resolver, Favorite favorite) {
     String[] projection = {
         TvBrowserContentProvider.KEY_ID,
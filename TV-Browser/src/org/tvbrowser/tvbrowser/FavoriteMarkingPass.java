@@ -0,0 +1,313 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.tvbrowser.content.TvBrowserContentProvider;
+import org.tvbrowser.settings.SettingConstants;
+import org.tvbrowser.utils.IOUtils;
+import org.tvbrowser.utils.ProgramUtils;
+import org.tvbrowser.utils.UiUtils;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.os.RemoteException;
+import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+
+/**
+ * Updates the markings of many favorites with a single pass over the data.
+ * <p>
+ * The conditions of all favorites are compiled into one query, every
+ * favorite gets its own result column that tells if the program matches
+ * the favorite. The conditions are only evaluated in these columns, the
+ * programs that neither match nor were marked before are skipped while
+ * reading the result. The programs the favorites marked before are known from
+ * the unique program IDs of the favorites, so the new marking counts of
+ * a program are calculated from the old counts, the favorites that marked
+ * the program before and the favorites that match now. All changed programs
+ * are written with one batch.
+ *
+ * @author René Mach
+ */
+final class FavoriteMarkingPass {
+  private static final String MATCH_COLUMN_PREFIX = "favoriteMatch";
+
+  private static final String[] MARKING_PROJECTION = {
+    TvBrowserContentProvider.KEY_ID,
+    TvBrowserContentProvider.DATA_KEY_MARKING_FAVORITE,
+    TvBrowserContentProvider.DATA_KEY_MARKING_FAVORITE_REMINDER,
+    TvBrowserContentProvider.DATA_KEY_MARKING_REMINDER,
+    TvBrowserContentProvider.DATA_KEY_REMOVED_REMINDER
+  };
+
+  private final Context mContext;
+  private final Favorite[] mFavorites;
+
+  /* the sorted IDs of the programs that were marked by the favorites */
+  private final long[][] mMarkedIds;
+
+  FavoriteMarkingPass(Context context, Favorite[] favorites) {
+    mContext = context;
+    mFavorites = favorites;
+    mMarkedIds = new long[favorites.length][];
+
+    for(int i = 0; i < favorites.length; i++) {
+      final long[] ids = favorites[i].getUniqueProgramIds();
+
+      mMarkedIds[i] = ids != null ? ids.clone() : new long[0];
+      Arrays.sort(mMarkedIds[i]);
+    }
+  }
+
+  /**
+   * Updates the markings of the favorites for the programs selected by the given
+   * where clause and saves the favorites.
+   * <p>
+   * @param changedData The where clause for the data table that selects the programs
+   * to handle or <code>null</code> to handle all programs.
+   */
+  void run(String changedData) {
+    if(mFavorites.length == 0 || !IOUtils.isDatabaseAccessible(mContext)) {
+      return;
+    }
+
+    final String[] projection = Arrays.copyOf(MARKING_PROJECTION, MARKING_PROJECTION.length + mFavorites.length);
+
+    final long now = System.currentTimeMillis();
+
+    final StringBuilder where = new StringBuilder(" ( ");
+    where.append(TvBrowserContentProvider.DATA_KEY_STARTTIME).append("<=").append(now).append(" AND ");
+    where.append(TvBrowserContentProvider.DATA_KEY_ENDTIME).append(">=").append(now).append(" OR ");
+    where.append(TvBrowserContentProvider.DATA_KEY_STARTTIME).append(">").append(now).append(" ) ");
+
+    if(changedData != null) {
+      where.append(" AND ").append(changedData);
+    }
+
+    /* the conditions are only selected and not used in the where clause too,
+     * as SQLite would evaluate every condition twice for each program */
+    for(int i = 0; i < mFavorites.length; i++) {
+      String condition = mFavorites[i].getMatchCondition();
+
+      // a favorite without any condition matches all programs
+      if(condition.trim().length() == 0) {
+        condition = "1";
+      }
+
+      projection[MARKING_PROJECTION.length + i] = "( " + condition + " ) AS " + MATCH_COLUMN_PREFIX + i;
+    }
+
+    final ArrayList<Long>[] matchedIds = createIdLists();
+    final ArrayList<Long>[] unmarkedIds = createIdLists();
+
+    final ArrayList<ContentProviderOperation> updateValuesList = new ArrayList<>();
+    final ArrayList<Intent> markingIntentList = new ArrayList<>();
+    final ArrayList<String> addedReminderIdList = new ArrayList<>();
+    final ArrayList<String> removedReminderIdList = new ArrayList<>();
+
+    final Cursor cursor = mContext.getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_DATA, projection, where.toString(), null, TvBrowserContentProvider.KEY_ID);
+
+    try {
+      if(IOUtils.prepareAccess(cursor)) {
+        final int idColumn = cursor.getColumnIndex(TvBrowserContentProvider.KEY_ID);
+        final int favoriteColumn = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_MARKING_FAVORITE);
+        final int favoriteReminderColumn = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_MARKING_FAVORITE_REMINDER);
+        final int reminderColumn = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_MARKING_REMINDER);
+        final int removedReminderColumn = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_REMOVED_REMINDER);
+        final int firstMatchColumn = cursor.getColumnIndex(MATCH_COLUMN_PREFIX + 0);
+
+        while(!cursor.isClosed() && cursor.moveToNext()) {
+          final int favoriteCount = cursor.getInt(favoriteColumn);
+
+          if(favoriteCount == 0 && !matchesAny(cursor, firstMatchColumn)) {
+            continue;
+          }
+
+          final long id = cursor.getLong(idColumn);
+
+          int marked = 0;
+          int markedReminder = 0;
+          int matched = 0;
+          int matchedReminder = 0;
+
+          for(int i = 0; i < mFavorites.length; i++) {
+            final boolean wasMarked = Arrays.binarySearch(mMarkedIds[i], id) >= 0;
+            final boolean matches = cursor.getInt(firstMatchColumn + i) != 0;
+
+            if(wasMarked) {
+              marked++;
+
+              if(mFavorites[i].remind()) {
+                markedReminder++;
+              }
+
+              if(!matches) {
+                unmarkedIds[i].add(id);
+              }
+            }
+
+            if(matches) {
+              matched++;
+
+              if(mFavorites[i].remind()) {
+                matchedReminder++;
+              }
+
+              matchedIds[i].add(id);
+            }
+          }
+
+          final int favoriteReminderCount = cursor.getInt(favoriteReminderColumn);
+          final boolean reminder = cursor.getInt(reminderColumn) > 0;
+
+          final int newFavoriteCount = Math.max(0, favoriteCount - marked) + matched;
+          int newFavoriteReminderCount = Math.max(0, favoriteReminderCount - markedReminder);
+
+          if(cursor.getInt(removedReminderColumn) == 0) {
+            newFavoriteReminderCount += matchedReminder;
+          }
+
+          if(newFavoriteCount != favoriteCount || newFavoriteReminderCount != favoriteReminderCount) {
+            final ContentValues values = new ContentValues();
+
+            values.put(TvBrowserContentProvider.DATA_KEY_MARKING_FAVORITE, newFavoriteCount);
+            values.put(TvBrowserContentProvider.DATA_KEY_MARKING_FAVORITE_REMINDER, newFavoriteReminderCount);
+
+            ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA, id));
+            opBuilder.withValues(values);
+
+            updateValuesList.add(opBuilder.build());
+
+            boolean markingsChanged = (favoriteCount == 0) != (newFavoriteCount == 0);
+
+            if(!reminder && favoriteReminderCount == 0 && newFavoriteReminderCount > 0) {
+              addedReminderIdList.add(String.valueOf(id));
+              markingsChanged = true;
+            }
+            else if(!reminder && favoriteReminderCount > 0 && newFavoriteReminderCount == 0) {
+              removedReminderIdList.add(String.valueOf(id));
+              IOUtils.removeReminder(mContext, id);
+              markingsChanged = true;
+            }
+
+            if(markingsChanged) {
+              Intent intent = new Intent(SettingConstants.MARKINGS_CHANGED);
+              intent.putExtra(SettingConstants.EXTRA_MARKINGS_ID, id);
+
+              markingIntentList.add(intent);
+            }
+          }
+        }
+      }
+    }finally {
+      IOUtils.close(cursor);
+    }
+
+    if(!updateValuesList.isEmpty()) {
+      if(!removedReminderIdList.isEmpty()) {
+        ProgramUtils.removeReminderIds(mContext, removedReminderIdList);
+      }
+
+      if(!addedReminderIdList.isEmpty()) {
+        ProgramUtils.addReminderIds(mContext, addedReminderIdList);
+      }
+
+      try {
+        mContext.getContentResolver().applyBatch(TvBrowserContentProvider.AUTHORITY, updateValuesList);
+
+        LocalBroadcastManager localBroadcast = LocalBroadcastManager.getInstance(mContext);
+
+        for(Intent markUpdate : markingIntentList) {
+          localBroadcast.sendBroadcast(markUpdate);
+        }
+      } catch (RemoteException | OperationApplicationException e) {
+        e.printStackTrace();
+      }
+
+      if(!addedReminderIdList.isEmpty()) {
+        ServiceUpdateRemindersAndAutoUpdate.startReminderUpdate(mContext);
+      }
+
+      UiUtils.updateImportantProgramsWidget(mContext.getApplicationContext());
+    }
+
+    for(int i = 0; i < mFavorites.length; i++) {
+      mFavorites[i].setUniqueProgramIds(getUniqueProgramIds(i, changedData == null, matchedIds[i], unmarkedIds[i]));
+      mFavorites[i].save(mContext);
+    }
+  }
+
+  private boolean matchesAny(Cursor cursor, int firstMatchColumn) {
+    for(int i = 0; i < mFavorites.length; i++) {
+      if(cursor.getInt(firstMatchColumn + i) != 0) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private long[] getUniqueProgramIds(int index, boolean allData, ArrayList<Long> matched, ArrayList<Long> unmarked) {
+    final HashSet<Long> ids = new HashSet<>();
+
+    // the markings of the programs that weren't handled are still valid
+    if(!allData) {
+      for(long id : mMarkedIds[index]) {
+        ids.add(id);
+      }
+
+      ids.removeAll(unmarked);
+    }
+
+    ids.addAll(matched);
+
+    if(ids.isEmpty()) {
+      return null;
+    }
+
+    final long[] result = new long[ids.size()];
+
+    int i = 0;
+
+    for(Long id : ids) {
+      result[i++] = id;
+    }
+
+    Arrays.sort(result);
+
+    return result;
+  }
+
+  @SuppressWarnings("unchecked")
+  private ArrayList<Long>[] createIdLists() {
+    final ArrayList<Long>[] lists = new ArrayList[mFavorites.length];
+
+    for(int i = 0; i < lists.length; i++) {
+      lists[i] = new ArrayList<>();
+    }
+
+    return lists;
+  }
+}
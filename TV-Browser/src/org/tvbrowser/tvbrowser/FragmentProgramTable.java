@@ -25,14 +25,17 @@ import java.util.TimeZone;
 
 import org.tvbrowser.content.TvBrowserContentProvider;
 import org.tvbrowser.settings.SettingConstants;
+import org.tvbrowser.utils.ChannelLogoCache;
 import org.tvbrowser.utils.CompatUtils;
 import org.tvbrowser.utils.IOUtils;
 import org.tvbrowser.utils.PrefUtils;
+import org.tvbrowser.utils.ProgramPictureLoader;
 import org.tvbrowser.utils.ProgramUtils;
 import org.tvbrowser.utils.UiUtils;
 import org.tvbrowser.view.ChannelLabel;
 import org.tvbrowser.view.CompactProgramTableLayout;
 import org.tvbrowser.view.ProgramPanel;
+import org.tvbrowser.view.ProgramRecord;
 import org.tvbrowser.view.ProgramTableLayout;
 import org.tvbrowser.view.ProgramTableLayoutConstants;
 import org.tvbrowser.view.TimeBlockProgramTableLayout;
@@ -45,7 +48,6 @@ import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.graphics.Bitmap;
-import android.graphics.drawable.BitmapDrawable;
 import android.os.Build;
 import android.os.Build.VERSION_CODES;
 import android.os.Bundle;
@@ -123,6 +125,23 @@ public class FragmentProgramTable extends Fragment {
 
   private HashMap<String, Integer> mMarkingsMap;
 
+  /* incremented for every load of the programs, loads with an older value are outdated */
+  private volatile int mLoadGeneration;
+  private final Object mLoadLock = new Object();
+
+  private final ProgramTableLayout.OnPanelBindListener mPanelBindListener = new ProgramTableLayout.OnPanelBindListener() {
+    @Override
+    public void onPanelCreated(ProgramPanel panel) {
+      panel.setOnClickListener(mClickListener);
+      registerForContextMenu(panel);
+    }
+
+    @Override
+    public void onPanelBound(ProgramPanel panel, ProgramRecord record) {
+      bindMarkings(panel, record);
+    }
+  };
+
   public void scrollToTime(int time, final MenuItem timeItem) {
     Log.d("info4", "time " + time);
     if(isResumed()) {
@@ -209,20 +228,15 @@ public class FragmentProgramTable extends Fragment {
 
               do {
                 id = c.getLong(c.getColumnIndex(TvBrowserContentProvider.KEY_ID));
-              }while(((getView().findViewWithTag(id) == null) || (value - c.getLong(c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_STARTTIME))) > ((int)(1.25 * 60 * 60000))) && c.moveToNext());
+              }while(((mProgramPanelLayout == null || mProgramPanelLayout.getRecord(id) == null) || (value - c.getLong(c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_STARTTIME))) > ((int)(1.25 * 60 * 60000))) && c.moveToNext());
 
-              if(id != -1 && getView() != null) {
-                final View view = getView().findViewWithTag(id);
+              if(id != -1 && getView() != null && mProgramPanelLayout != null) {
+                final int top = mProgramPanelLayout.getProgramTop(id);
 
-                if(view != null) {
+                if(top >= 0) {
                   final ScrollView scroll = getView().findViewById(R.id.vertical_program_table_scroll);
 
-                  scroll.post(() -> {
-                    int[] location = new int[2];
-                    view.getLocationInWindow(location);
-
-                    scroll.scrollTo(scroll.getScrollX(), scroll.getScrollY()+location[1]);
-                  });
+                  scroll.post(() -> scroll.scrollTo(scroll.getScrollX(), top));
                 }
               }
             }
@@ -284,18 +298,23 @@ public class FragmentProgramTable extends Fragment {
       public void onReceive(Context context, Intent intent) {
         long id = intent.getLongExtra(SettingConstants.EXTRA_MARKINGS_ID, 0);
 
-        if(id > 0 && getView() != null) {
-          View view = getView().findViewWithTag(id);
+        if(id > 0 && getView() != null && mProgramPanelLayout != null) {
+          final ProgramRecord record = mProgramPanelLayout.getRecord(id);
 
-          if(view != null && IOUtils.isDatabaseAccessible(context)) {
+          if(record != null && IOUtils.isDatabaseAccessible(context)) {
             String[] projection = TvBrowserContentProvider.getColumnArrayWithMarkingColumns(TvBrowserContentProvider.KEY_ID,TvBrowserContentProvider.DATA_KEY_STARTTIME,TvBrowserContentProvider.DATA_KEY_ENDTIME);
 
             Cursor cursor = getActivity().getContentResolver().query(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA, id), projection, null, null, null);
-            Log.d("info2", "CURSOR " + cursor);
+
             try {
               if(IOUtils.prepareAccessFirst(cursor)) {
-                Log.d("info2", "SIZE " + cursor.getCount());
-                UiUtils.handleMarkings(getActivity(), cursor, view, null, null, true);
+                record.setMarkedColumns(getMarkedColumns(cursor, id));
+
+                final ProgramPanel panel = mProgramPanelLayout.getPanel(id);
+
+                if(panel != null) {
+                  bindMarkings(panel, record);
+                }
               }
             }finally {
               IOUtils.close(cursor);
@@ -351,23 +370,21 @@ public class FragmentProgramTable extends Fragment {
         if(!isDetached() && getView() != null) {
           if(intent.getBooleanExtra(SettingConstants.DONT_WANT_TO_SEE_ADDED_EXTRA, true)) {
             if(mProgramPanelLayout != null && IOUtils.isDatabaseAccessible(getActivity())) {
-              for(int i = 0; i < mProgramPanelLayout.getChildCount(); i++) {
-                View child = mProgramPanelLayout.getChildAt(i);
-
-                long programID = (Long)child.getTag();
-
-                Cursor test = getActivity().getContentResolver().query(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA,programID), new String[] {TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE}, null, null, null);
+              for(ProgramRecord record : mProgramPanelLayout.getRecords()) {
+                Cursor test = getActivity().getContentResolver().query(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA,record.getProgramID()), new String[] {TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE}, null, null, null);
 
                 try {
                   if(IOUtils.prepareAccessFirst(test)) {
                     if(test.getInt(0) == 1) {
-                      child.setVisibility(View.GONE);
+                      record.setHidden(true);
                     }
                   }
                 }finally {
                   IOUtils.close(test);
                 }
               }
+
+              mProgramPanelLayout.updateVisiblePanels();
             }
           }
           else {
@@ -425,33 +442,42 @@ public class FragmentProgramTable extends Fragment {
           if(mKeepRunning && TvBrowserContentProvider.INFORM_FOR_CHANGES && !mUpdatingLayout) {
             mUpdatingRunningPrograms = true;
 
-            if(!isDetached() && mProgramPanelLayout != null) {
-              for(int k = 0; k < mProgramPanelLayout.getChildCount(); k++) {
-                View mainChild = mProgramPanelLayout.getChildAt(k);
+            final ProgramTableLayout layout = mProgramPanelLayout;
+            final Context context = getActivity();
 
-                if(mainChild instanceof ProgramPanel) {
-                  final ProgramPanel progPanel = (ProgramPanel)mainChild;
+            if(!isDetached() && layout != null && context != null) {
+              for(final ProgramRecord record : layout.getRecords()) {
+                final long programID = record.getProgramID();
 
-                  if(progPanel.isOnAir()) {
-                    handler.post(() -> {
-                      if(!isDetached() && mKeepRunning && IOUtils.isDatabaseAccessible(getActivity())) {
-                        String[] projection = TvBrowserContentProvider.getColumnArrayWithMarkingColumns(TvBrowserContentProvider.KEY_ID,TvBrowserContentProvider.DATA_KEY_STARTTIME,TvBrowserContentProvider.DATA_KEY_ENDTIME);
+                if(record.isOnAir()) {
+                  // the markings of programs that aren't visible are updated when they are bound
+                  handler.post(() -> {
+                    final ProgramPanel progPanel = layout.getPanel(programID);
+
+                    if(progPanel != null && !isDetached() && mKeepRunning && IOUtils.isDatabaseAccessible(getActivity())) {
+                      String[] projection = TvBrowserContentProvider.getColumnArrayWithMarkingColumns(TvBrowserContentProvider.KEY_ID,TvBrowserContentProvider.DATA_KEY_STARTTIME,TvBrowserContentProvider.DATA_KEY_ENDTIME);
 
-                        Cursor c = getActivity().getContentResolver().query(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA, (Long)progPanel.getTag()), projection, null, null, null);
+                      Cursor c = getActivity().getContentResolver().query(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA, programID), projection, null, null, null);
 
-                        try {
-                          if(IOUtils.prepareAccessFirst(c)) {
-                            UiUtils.handleMarkings(getActivity(), c, progPanel, null, null, true);
-                          }
-                        }finally {
-                          IOUtils.close(c);
+                      try {
+                        if(IOUtils.prepareAccessFirst(c)) {
+                          record.setMarkedColumns(getMarkedColumns(c, programID));
+                          bindMarkings(progPanel, record);
                         }
+                      }finally {
+                        IOUtils.close(c);
                       }
-                    });
-                  }
-                  else {
-                    progPanel.checkExpired(handler);
-                  }
+                    }
+                  });
+                }
+                else if(record.checkExpired()) {
+                  handler.post(() -> {
+                    final ProgramPanel progPanel = layout.getPanel(programID);
+
+                    if(progPanel != null) {
+                      progPanel.invalidate();
+                    }
+                  });
                 }
               }
             }
@@ -472,7 +498,9 @@ public class FragmentProgramTable extends Fragment {
       mUpdateThread = new Thread() {
         @Override
         public void run() {
-          if(!isDetached() && getActivity() != null && IOUtils.isDatabaseAccessible(getActivity())) {
+          final ProgramTableLayout layout = mProgramPanelLayout;
+
+          if(!isDetached() && getActivity() != null && layout != null && IOUtils.isDatabaseAccessible(getActivity())) {
             Calendar value = Calendar.getInstance();
             value.setTime(mCurrentDate.getTime());
 
@@ -496,8 +524,6 @@ public class FragmentProgramTable extends Fragment {
             try {
               if(IOUtils.prepareAccess(c)) {
                 int keyColumnIndex = c.getColumnIndex(TvBrowserContentProvider.KEY_ID);
-                int statTimeColumnIndex = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_STARTTIME);
-                int endTimeColumnIndex = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_ENDTIME);
 
                 HashMap<String, Integer> markingColumsIndexMap = new HashMap<>();
 
@@ -510,14 +536,11 @@ public class FragmentProgramTable extends Fragment {
                 }
 
                 while(c.moveToNext()) {
-                  long key = c.getLong(keyColumnIndex);
-
-                  View view = mProgramPanelLayout.findViewWithTag(key);
+                  final long key = c.getLong(keyColumnIndex);
 
-                  if(view != null) {
-                    long startTime = c.getLong(statTimeColumnIndex);
-                    long endTime = c.getLong(endTimeColumnIndex);
+                  final ProgramRecord record = layout.getRecord(key);
 
+                  if(record != null) {
                     ArrayList<String> markedColumns = new ArrayList<>();
 
                     for(String column : TvBrowserContentProvider.MARKING_COLUMNS) {
@@ -528,7 +551,15 @@ public class FragmentProgramTable extends Fragment {
                       }
                     }
 
-                    UiUtils.handleMarkings(getActivity(), null, startTime, endTime, view, IOUtils.getStringArrayFromList(markedColumns), handler, true);
+                    record.setMarkedColumns(IOUtils.getStringArrayFromList(markedColumns));
+
+                    handler.post(() -> {
+                      final ProgramPanel panel = layout.getPanel(key);
+
+                      if(panel != null) {
+                        bindMarkings(panel, record);
+                      }
+                    });
                   }
                 }
               }
@@ -623,7 +654,7 @@ public class FragmentProgramTable extends Fragment {
     where3.append(((TvBrowser)getActivity()).getFilterSelection(true).replace(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID, TvBrowserContentProvider.KEY_ID));
 
     if(IOUtils.isDatabaseAccessible(getActivity())) {
-      Cursor channels = getActivity().getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_CHANNELS, new String[] {TvBrowserContentProvider.KEY_ID,TvBrowserContentProvider.CHANNEL_KEY_NAME,TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER,TvBrowserContentProvider.CHANNEL_KEY_LOGO}, where3.toString(), null, TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER);
+      Cursor channels = getActivity().getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_CHANNELS, new String[] {TvBrowserContentProvider.KEY_ID,TvBrowserContentProvider.CHANNEL_KEY_NAME,TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER}, where3.toString(), null, TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER);
 
       try {
         if(IOUtils.prepareAccess(channels)) {
@@ -652,7 +683,7 @@ public class FragmentProgramTable extends Fragment {
           projectionList.add(TvBrowserContentProvider.DATA_KEY_DESCRIPTION);
 
           if(mPictureShown) {
-            projectionList.add(TvBrowserContentProvider.DATA_KEY_PICTURE);
+            projectionList.add(ProgramPictureLoader.PICTURE_HEADER_PROJECTION);
             projectionList.add(TvBrowserContentProvider.DATA_KEY_PICTURE_COPYRIGHT);
           }
 
@@ -671,6 +702,32 @@ public class FragmentProgramTable extends Fragment {
             addChannelLabelToChannelBar(channels, orderNumberColumn, channelBar, channelIDsOrdered);
           }
 
+          Calendar today = Calendar.getInstance();
+
+          final boolean scrollToNow = today.get(Calendar.DAY_OF_YEAR) == mCurrentDate.get(Calendar.DAY_OF_YEAR) || today.get(Calendar.DAY_OF_YEAR) - 2 == mCurrentDate.get(Calendar.DAY_OF_YEAR);
+
+          final Runnable scrollAfterLoad = () -> {
+            if(scrollToNow) {
+              handler.post(() -> scrollToTime(0,null));
+            }
+
+            handler.post(() -> {
+              if(Build.VERSION.SDK_INT >= VERSION_CODES.ICE_CREAM_SANDWICH) {
+                View view = getView();
+
+                if(view != null) {
+                  View scroll = view.findViewById(R.id.horizontal_program_table_scroll);
+
+                  if(scroll != null) {
+                    scroll.setScrollX(mOldScrollX);
+                  }
+                }
+              }
+
+              mOldScrollX = 0;
+            });
+          };
+
           if(channels.getCount() > 0) {
             mGrowPanels = PrefUtils.getBooleanValue(R.string.PROG_PANEL_GROW, R.bool.prog_panel_grow_default);
 
@@ -681,77 +738,24 @@ public class FragmentProgramTable extends Fragment {
               mProgramPanelLayout = new CompactProgramTableLayout(getActivity(), channelIDsOrdered);
             }
 
+            mProgramPanelLayout.setOnPanelBindListener(mPanelBindListener);
+
             ViewGroup test = programTable.findViewById(R.id.vertical_program_table_scroll);
             test.addView(mProgramPanelLayout);
 
             where += UiUtils.getDontWantToSeeFilterString(getActivity());
             where += ((TvBrowser)getActivity()).getCategoryFilterSelection();
 
-            Cursor cursor = getActivity().getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_DATA, projection, where, null, TvBrowserContentProvider.DATA_KEY_STARTTIME);
-
-            try {
-              if(IOUtils.prepareAccess(cursor)) {
-                mStartTimeIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_STARTTIME);
-                mEndTimeIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_ENDTIME);
-                mTitleIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_TITLE);
-                mChannelIndex = cursor.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID);
-                mGenreIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_GENRE);
-                mEpisodeIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE);
-                mKeyIndex = cursor.getColumnIndex(TvBrowserContentProvider.KEY_ID);
-                mIndexDescriptionShort = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_SHORT_DESCRIPTION);
-                mIndexDescription = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_DESCRIPTION);
-                mPictureIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_PICTURE);
-                mPictureCopyrightIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_PICTURE_COPYRIGHT);
-
-                mMarkingsMap.clear();
-
-                for(String column : TvBrowserContentProvider.MARKING_COLUMNS) {
-                  int index = cursor.getColumnIndex(column);
-
-                  if(index >= 0) {
-                    mMarkingsMap.put(column, index);
-                  }
-                }
-
-                mCategoryIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_CATEGORIES);
-
-                while(cursor.moveToNext()) {
-                  try {
-                    addPanel(cursor, mProgramPanelLayout);
-                  }catch(IllegalStateException ignored) {}
-                }
-              }
-            }finally {
-              IOUtils.close(cursor);
-            }
+            loadPrograms(mProgramPanelLayout, projection, where, scrollAfterLoad);
+          }
+          else {
+            handler.post(scrollAfterLoad);
           }
 
           if(mProgramPanelLayout instanceof CompactProgramTableLayout) {
             channelBar.removeViewAt(0);
             channelBar.removeViewAt(0);
           }
-
-          Calendar test = Calendar.getInstance();
-
-          if(test.get(Calendar.DAY_OF_YEAR) == mCurrentDate.get(Calendar.DAY_OF_YEAR) || test.get(Calendar.DAY_OF_YEAR) - 2 == mCurrentDate.get(Calendar.DAY_OF_YEAR)) {
-            handler.post(() -> scrollToTime(0,null));
-          }
-
-          handler.post(() -> {
-            if(Build.VERSION.SDK_INT >= VERSION_CODES.ICE_CREAM_SANDWICH) {
-              View view = getView();
-
-              if(view != null) {
-                View scroll = view.findViewById(R.id.horizontal_program_table_scroll);
-
-                if(scroll != null) {
-                  scroll.setScrollX(mOldScrollX);
-                }
-              }
-            }
-
-            mOldScrollX = 0;
-          });
         }
       }finally {
         IOUtils.close(channels);
@@ -762,7 +766,9 @@ public class FragmentProgramTable extends Fragment {
   }
 
   private void addChannelLabelToChannelBar(Cursor channels, int orderNumberColumn, LinearLayout channelBar, ArrayList<Integer> channelIDsOrdered) {
-    channelIDsOrdered.add(channels.getInt(channels.getColumnIndex(TvBrowserContentProvider.KEY_ID)));
+    final int channelID = channels.getInt(channels.getColumnIndex(TvBrowserContentProvider.KEY_ID));
+
+    channelIDsOrdered.add(channelID);
 
     String name = channels.getString(channels.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_NAME));
 
@@ -774,17 +780,7 @@ public class FragmentProgramTable extends Fragment {
 
     int orderNumber = channels.getInt(orderNumberColumn);
 
-    Bitmap logo = UiUtils.createBitmapFromByteArray(channels.getBlob(channels.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_LOGO)));
-
-    if(logo != null) {
-      int height = ProgramTableLayoutConstants.getChannelMaxFontHeight();
-
-      float percent = height / (float)logo.getHeight();
-
-      if(percent < 1) {
-        logo = Bitmap.createScaledBitmap(logo, (int)(logo.getWidth() * percent), height, true);
-      }
-    }
+    Bitmap logo = ChannelLogoCache.get(getActivity(), channelID, ProgramTableLayoutConstants.getChannelMaxFontHeight());
 
     ChannelLabel channelLabel = new ChannelLabel(getActivity(), name, logo, orderNumber);
 
@@ -1004,25 +1000,111 @@ public class FragmentProgramTable extends Fragment {
     }
   }
 
-  private void addPanel(final Cursor cursor, final ProgramTableLayout layout) throws IllegalStateException {
+  /*
+   * Loads the programs of the given layout and calculates their positions on a
+   * background thread, the programs are set to the layout on the UI thread.
+   */
+  private void loadPrograms(final ProgramTableLayout layout, final String[] projection, final String where, final Runnable afterLoad) {
+    final Context context = getActivity();
+    final int generation = ++mLoadGeneration;
+    final ProgramRecord.Paints paints = new ProgramRecord.Paints();
+
+    new Thread("LOAD PROGRAM TABLE THREAD") {
+      @Override
+      public void run() {
+        // the column indices are shared, so only one load runs at a time
+        synchronized(mLoadLock) {
+          load();
+        }
+      }
+
+      private void load() {
+        final long loadStart = System.nanoTime();
+        final ArrayList<ProgramRecord> recordList = new ArrayList<>();
+
+        if(generation == mLoadGeneration && IOUtils.isDatabaseAccessible(context)) {
+          Cursor cursor = context.getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_DATA, projection, where, null, TvBrowserContentProvider.DATA_KEY_STARTTIME);
+
+          try {
+            if(IOUtils.prepareAccess(cursor)) {
+              mStartTimeIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_STARTTIME);
+              mEndTimeIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_ENDTIME);
+              mTitleIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_TITLE);
+              mChannelIndex = cursor.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID);
+              mGenreIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_GENRE);
+              mEpisodeIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE);
+              mKeyIndex = cursor.getColumnIndex(TvBrowserContentProvider.KEY_ID);
+              mIndexDescriptionShort = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_SHORT_DESCRIPTION);
+              mIndexDescription = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_DESCRIPTION);
+              mPictureIndex = cursor.getColumnIndex(ProgramPictureLoader.PICTURE_HEADER_COLUMN);
+              mPictureCopyrightIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_PICTURE_COPYRIGHT);
+
+              mMarkingsMap.clear();
+
+              for(String column : TvBrowserContentProvider.MARKING_COLUMNS) {
+                int index = cursor.getColumnIndex(column);
+
+                if(index >= 0) {
+                  mMarkingsMap.put(column, index);
+                }
+              }
+
+              mCategoryIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_CATEGORIES);
+
+              // stop if a newer load was started
+              while(generation == mLoadGeneration && cursor.moveToNext()) {
+                try {
+                  final ProgramRecord record = createRecord(context, cursor, paints);
+
+                  if(record != null) {
+                    recordList.add(record);
+                  }
+                }catch(IllegalStateException ignored) {}
+              }
+            }
+          }finally {
+            IOUtils.close(cursor);
+          }
+        }
+
+        if(generation == mLoadGeneration) {
+          final ProgramRecord[] records = recordList.toArray(new ProgramRecord[0]);
+
+          final long geometryStart = System.nanoTime();
+          final ProgramTableLayout.Geometry geometry = layout.computeGeometry(records);
+
+          Log.d("info4", "PROGRAM TABLE programs: " + records.length + " load ms: " + ((geometryStart - loadStart) / 1000000) + " geometry ms: " + ((System.nanoTime() - geometryStart) / 1000000));
+
+          handler.post(() -> {
+            if(generation == mLoadGeneration && layout == mProgramPanelLayout && !isDetached()) {
+              layout.setPrograms(records, geometry);
+              afterLoad.run();
+            }
+          });
+        }
+      }
+    }.start();
+  }
+
+  private ProgramRecord createRecord(final Context context, final Cursor cursor, final ProgramRecord.Paints paints) throws IllegalStateException {
     if(IOUtils.isCursorAccessable(cursor) && cursor.getColumnIndex(TvBrowserContentProvider.KEY_ID) != -1) {
       final long programId = cursor.getLong(mKeyIndex);
       final long startTime = cursor.getLong(mStartTimeIndex);
       final long endTime = cursor.getLong(mEndTimeIndex);
       String title = cursor.getString(mTitleIndex);
       int channelID = cursor.getInt(mChannelIndex);
-      Spannable categories = IOUtils.getInfoString(cursor.getInt(mCategoryIndex), getResources(), false);
+      Spannable categories = IOUtils.getInfoString(cursor.getInt(mCategoryIndex), context.getResources(), false);
 
-      final ProgramPanel panel = new ProgramPanel(getActivity(), startTime, endTime, title, channelID);
+      final ProgramRecord record = new ProgramRecord(programId, startTime, endTime, title, channelID, paints);
 
       if (mShowGenre) {
-        panel.setGenre(cursor.getString(mGenreIndex));
+        record.setGenre(cursor.getString(mGenreIndex));
       }
       if (mShowEpisode) {
-        panel.setEpisode(cursor.getString(mEpisodeIndex));
+        record.setEpisode(cursor.getString(mEpisodeIndex));
       }
       if (mShowInfo) {
-        panel.setInfoString(categories);
+        record.setInfoString(context, categories);
       }
       if (mShowDescriptionIfRoom) {
         String description = null;
@@ -1033,27 +1115,14 @@ public class FragmentProgramTable extends Fragment {
           description = cursor.getString(mIndexDescriptionShort);
         }
 
-        panel.setDescription(description);
+        record.setDescription(description);
       }
 
-      panel.setOnClickListener(mClickListener);
-      panel.setTag(programId);
-
-      registerForContextMenu(panel);
-
       if (mPictureIndex != -1) {
-        Bitmap logo = UiUtils.createBitmapFromByteArray(cursor.getBlob(mPictureIndex));
-
-        if (logo != null) {
-          BitmapDrawable l = new BitmapDrawable(getResources(), logo);
-          l.setBounds(0, 0, (int) (ProgramTableLayoutConstants.getZoom() * logo.getWidth()), (int) (ProgramTableLayoutConstants.getZoom() * logo.getHeight()));
-
-          panel.setPicture(cursor.getString(mPictureCopyrightIndex), l);
-        }
+        // the picture is loaded when the record is shown
+        record.setPicture(ProgramPictureLoader.getInstance(context), cursor.getString(mPictureCopyrightIndex), cursor.getBlob(mPictureIndex));
       }
 
-      layout.addView(panel);
-
       ArrayList<String> markedColumns = new ArrayList<>();
 
       for (String column : TvBrowserContentProvider.MARKING_COLUMNS) {
@@ -1061,12 +1130,42 @@ public class FragmentProgramTable extends Fragment {
 
         if (value != null && cursor.getInt(value) == 1) {
           markedColumns.add(column);
-        } else if (column.equals(TvBrowserContentProvider.DATA_KEY_MARKING_MARKING) && ProgramUtils.isMarkedWithIcon(getActivity(), programId)) {
+        } else if (column.equals(TvBrowserContentProvider.DATA_KEY_MARKING_MARKING) && ProgramUtils.isMarkedWithIcon(context, programId)) {
           markedColumns.add(column);
         }
       }
 
-      UiUtils.handleMarkings(getActivity(), null, startTime, endTime, panel, IOUtils.getStringArrayFromList(markedColumns), null, true);
+      record.setMarkedColumns(IOUtils.getStringArrayFromList(markedColumns));
+
+      return record;
+    }
+
+    return null;
+  }
+
+  /*
+   * Reads the marking columns of the program from the given cursor.
+   */
+  private String[] getMarkedColumns(Cursor cursor, long programId) {
+    ArrayList<String> markedColumns = new ArrayList<>();
+
+    for(String column : TvBrowserContentProvider.MARKING_COLUMNS) {
+      int index = cursor.getColumnIndex(column);
+
+      if(index >= 0 && cursor.getInt(index) >= 1) {
+        markedColumns.add(column);
+      }
+      else if(column.equals(TvBrowserContentProvider.DATA_KEY_MARKING_MARKING) && ProgramUtils.isMarkedWithIcon(getActivity(), programId)) {
+        markedColumns.add(column);
+      }
+    }
+
+    return IOUtils.getStringArrayFromList(markedColumns);
+  }
+
+  private void bindMarkings(ProgramPanel panel, ProgramRecord record) {
+    if(getActivity() != null) {
+      UiUtils.handleMarkings(getActivity(), null, record.getStartTime(), record.getEndTime(), panel, record.getMarkedColumns(), null, true);
     }
   }
 
@@ -24,6 +24,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.tvbrowser.content.TvBrowserContentProvider;
 import org.tvbrowser.settings.SettingConstants;
 import org.tvbrowser.tvbrowser.LoaderUpdater.UnsupportedFragmentException;
+import org.tvbrowser.utils.ChannelLogoCache;
 import org.tvbrowser.utils.CompatUtils;
 import org.tvbrowser.utils.IOUtils;
 import org.tvbrowser.utils.PrefUtils;
@@ -670,10 +671,12 @@ public class FragmentProgramsList extends Fragment implements LoaderManager.Load
           Cursor channelCursor = null;
           
           try {
-            channelCursor = cr.query(TvBrowserContentProvider.CONTENT_URI_CHANNELS, new String[] {TvBrowserContentProvider.KEY_ID,TvBrowserContentProvider.CHANNEL_KEY_NAME,TvBrowserContentProvider.CHANNEL_KEY_LOGO,TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER}, TvBrowserContentProvider.CHANNEL_KEY_SELECTION + ((TvBrowser) getActivity()).getFilterSelection(true).replace(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID, TvBrowserContentProvider.KEY_ID), null, TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER + " , " + TvBrowserContentProvider.GROUP_KEY_GROUP_ID);
+            channelCursor = cr.query(TvBrowserContentProvider.CONTENT_URI_CHANNELS, new String[] {TvBrowserContentProvider.KEY_ID,TvBrowserContentProvider.CHANNEL_KEY_NAME,TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER}, TvBrowserContentProvider.CHANNEL_KEY_SELECTION + ((TvBrowser) getActivity()).getFilterSelection(true).replace(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID, TvBrowserContentProvider.KEY_ID), null, TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER + " , " + TvBrowserContentProvider.GROUP_KEY_GROUP_ID);
             if(IOUtils.prepareAccessFirst(channelCursor)) {
               do {
-                Bitmap logo = UiUtils.createBitmapFromByteArray(channelCursor.getBlob(channelCursor.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_LOGO)));
+                int id = channelCursor.getInt(channelCursor.getColumnIndex(TvBrowserContentProvider.KEY_ID));
+                
+                Bitmap logo = ChannelLogoCache.get(getActivity(), id);
                               
                 Drawable logoDrawable = null;
                 
@@ -688,8 +691,6 @@ public class FragmentProgramsList extends Fragment implements LoaderManager.Load
                   name = shortName;
                 }
                 
-                int id = channelCursor.getInt(channelCursor.getColumnIndex(TvBrowserContentProvider.KEY_ID));
-                
                 ChannelSelection channelSel = new ChannelSelection(id, channelCursor.getString(channelCursor.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER)) + ". ", name, logoDrawable);
                 
                 channelAdapter.add(channelSel);
@@ -867,12 +868,12 @@ public class FragmentProgramsList extends Fragment implements LoaderManager.Load
     String[] infoCategories = TvBrowserContentProvider.INFO_CATEGORIES_COLUMNS_ARRAY;
     
     if(PrefUtils.getBooleanValue(R.string.SHOW_PICTURE_IN_LISTS, R.bool.show_pictures_in_lists_default)) {
-      projection = new String[15 + TvBrowserContentProvider.MARKING_COLUMNS.length + infoCategories.length];
+      projection = new String[14 + TvBrowserContentProvider.MARKING_COLUMNS.length + infoCategories.length];
       
       projection[projection.length-1] = TvBrowserContentProvider.DATA_KEY_PICTURE;
     }
     else {
-      projection = new String[14 + TvBrowserContentProvider.MARKING_COLUMNS.length + infoCategories.length];
+      projection = new String[13 + TvBrowserContentProvider.MARKING_COLUMNS.length + infoCategories.length];
     }
     
     projection[0] = TvBrowserContentProvider.KEY_ID;
@@ -888,10 +889,9 @@ public class FragmentProgramsList extends Fragment implements LoaderManager.Load
     projection[10] = TvBrowserContentProvider.DATA_KEY_UNIX_DATE;
     projection[11] = TvBrowserContentProvider.CHANNEL_KEY_NAME;
     projection[12] = TvBrowserContentProvider.DATA_KEY_CATEGORIES;
-    projection[13] = TvBrowserContentProvider.CHANNEL_KEY_LOGO;
 
-    System.arraycopy(infoCategories, 0, projection, 14, infoCategories.length);
-    System.arraycopy(TvBrowserContentProvider.MARKING_COLUMNS, 0, projection, 14 + infoCategories.length, TvBrowserContentProvider.MARKING_COLUMNS.length);
+    System.arraycopy(infoCategories, 0, projection, 13, infoCategories.length);
+    System.arraycopy(TvBrowserContentProvider.MARKING_COLUMNS, 0, projection, 13 + infoCategories.length, TvBrowserContentProvider.MARKING_COLUMNS.length);
     
     return projection;
   }
@@ -1380,7 +1380,6 @@ String mPreviousEpisode;
     String mPreviousGenre;
     Spannable mPreviousCategory;
     String mPreviousPictureCopyright;
-    byte[] mPreviousPicture;
 
     int mNowPosition;
     long mNowStart;
@@ -1391,7 +1390,6 @@ String mPreviousEpisode;
     String mNowGenre;
     Spannable mNowCategory;
     String mNowPictureCopyright;
-    byte[] mNowPicture;
     
     int mNextPosition;
     long mNextStart;
@@ -1402,7 +1400,6 @@ String mPreviousEpisode;
     String mNextGenre;
     Spannable mNextCategory;
     String mNextPictureCopyright;
-    byte[] mNextPicture;
 
     boolean mIsComplete;
     
@@ -1427,7 +1424,6 @@ String mPreviousEpisode;
       final int mStartTimeColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_STARTTIME);
       final int mEndTimeColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_ENDTIME);
       final int mTitleColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_TITLE);
-      final int mPictureColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_PICTURE);
       final int mPictureCopyrightColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_PICTURE_COPYRIGHT);
       final int mCategoryColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_CATEGORIES);
       final int mGenreColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_GENRE);
@@ -1490,7 +1486,6 @@ String mPreviousEpisode;
               String genre = null;
               Spannable category = null;
               String pictureCopyright = null;
-              byte[] picture = null;
               
               if(showInfo) {
                 category = IOUtils.getInfoString(c.getInt(mCategoryColumn), getResources());
@@ -1510,7 +1505,6 @@ String mPreviousEpisode;
                     mTitleMap.put(programID, title);
                     block.mPreviousEpisode = episode;
                     block.mPreviousGenre = genre;
-                    block.mPreviousPicture = picture;
                     block.mPreviousPictureCopyright = pictureCopyright;
                     block.mPreviousCategory = category;
                     
@@ -1527,7 +1521,6 @@ String mPreviousEpisode;
                     mTitleMap.put(programID, title);
                     block.mNowEpisode = episode;
                     block.mNowGenre = genre;
-                    block.mNowPicture = picture;
                     block.mNowPictureCopyright = pictureCopyright;
                     block.mNowCategory = category;
                     
@@ -1545,7 +1538,6 @@ String mPreviousEpisode;
                   mTitleMap.put(programID, title);
                   block.mNextEpisode = episode;
                   block.mNextGenre = genre;
-                  block.mNextPicture = picture;
                   block.mNextPictureCopyright = pictureCopyright;
                   block.mNextCategory = category;
                   
@@ -1564,7 +1556,6 @@ String mPreviousEpisode;
                   mTitleMap.put(programID, title);
                   block.mNowEpisode = episode;
                   block.mNowGenre = genre;
-                  block.mNowPicture = picture;
                   block.mNowPictureCopyright = pictureCopyright;
                   block.mNowCategory = category;
                   
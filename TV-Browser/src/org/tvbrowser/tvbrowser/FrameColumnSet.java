@@ -0,0 +1,251 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.util.HashMap;
+
+import org.tvbrowser.content.TvBrowserContentProvider;
+
+/**
+ * A bit set over a fixed table of the data table columns that can be
+ * contained in a data frame.
+ * <p>
+ * Used while reading a frame to know which columns of the level of the
+ * data file weren't contained in the frame and have to be reset.
+ *
+ * @author René Mach
+ */
+final class FrameColumnSet {
+  static final int TYPE_TEXT = 0;
+  static final int TYPE_INTEGER = 1;
+  static final int TYPE_BLOB = 2;
+  static final int TYPE_INFO = 3;
+
+  private static final String[] COLUMNS = {
+    TvBrowserContentProvider.DATA_KEY_STARTTIME,
+    TvBrowserContentProvider.DATA_KEY_ENDTIME,
+    TvBrowserContentProvider.DATA_KEY_TITLE,
+    TvBrowserContentProvider.DATA_KEY_TITLE_ORIGINAL,
+    TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE,
+    TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE_ORIGINAL,
+    TvBrowserContentProvider.DATA_KEY_SHORT_DESCRIPTION,
+    TvBrowserContentProvider.DATA_KEY_DESCRIPTION,
+    TvBrowserContentProvider.DATA_KEY_ACTORS,
+    TvBrowserContentProvider.DATA_KEY_REGIE,
+    TvBrowserContentProvider.DATA_KEY_CUSTOM_INFO,
+    TvBrowserContentProvider.DATA_KEY_CATEGORIES,
+    TvBrowserContentProvider.DATA_KEY_AGE_LIMIT,
+    TvBrowserContentProvider.DATA_KEY_WEBSITE_LINK,
+    TvBrowserContentProvider.DATA_KEY_GENRE,
+    TvBrowserContentProvider.DATA_KEY_ORIGIN,
+    TvBrowserContentProvider.DATA_KEY_NETTO_PLAY_TIME,
+    TvBrowserContentProvider.DATA_KEY_VPS,
+    TvBrowserContentProvider.DATA_KEY_SCRIPT,
+    TvBrowserContentProvider.DATA_KEY_REPETITION_FROM,
+    TvBrowserContentProvider.DATA_KEY_MUSIC,
+    TvBrowserContentProvider.DATA_KEY_MODERATION,
+    TvBrowserContentProvider.DATA_KEY_YEAR,
+    TvBrowserContentProvider.DATA_KEY_REPETITION_ON,
+    TvBrowserContentProvider.DATA_KEY_PICTURE,
+    TvBrowserContentProvider.DATA_KEY_PICTURE_COPYRIGHT,
+    TvBrowserContentProvider.DATA_KEY_PICTURE_DESCRIPTION,
+    TvBrowserContentProvider.DATA_KEY_EPISODE_NUMBER,
+    TvBrowserContentProvider.DATA_KEY_EPISODE_COUNT,
+    TvBrowserContentProvider.DATA_KEY_SEASON_NUMBER,
+    TvBrowserContentProvider.DATA_KEY_PRODUCER,
+    TvBrowserContentProvider.DATA_KEY_CAMERA,
+    TvBrowserContentProvider.DATA_KEY_CUT,
+    TvBrowserContentProvider.DATA_KEY_OTHER_PERSONS,
+    TvBrowserContentProvider.DATA_KEY_RATING,
+    TvBrowserContentProvider.DATA_KEY_PRODUCTION_FIRM,
+    TvBrowserContentProvider.DATA_KEY_AGE_LIMIT_STRING,
+    TvBrowserContentProvider.DATA_KEY_LAST_PRODUCTION_YEAR,
+    TvBrowserContentProvider.DATA_KEY_ADDITIONAL_INFO,
+    TvBrowserContentProvider.DATA_KEY_SERIES,
+    TvBrowserContentProvider.DATA_KEY_PART_NUMBER,
+    TvBrowserContentProvider.DATA_KEY_PART_NUMBER_TOTAL,
+    TvBrowserContentProvider.DATA_KEY_DURATION_ORIGINAL,
+    TvBrowserContentProvider.DATA_KEY_YEAR_PRODUCTION_FIRST,
+    TvBrowserContentProvider.DATA_KEY_KEYWORD_LIST,
+    TvBrowserContentProvider.DATA_KEY_VOD_INFO,
+    TvBrowserContentProvider.DATA_KEY_VOD_LINK,
+    TvBrowserContentProvider.DATA_KEY_GENRE_SUB_LIST,
+    TvBrowserContentProvider.DATA_KEY_UTC_START_MINUTE_AFTER_MIDNIGHT,
+    TvBrowserContentProvider.DATA_KEY_UTC_END_MINUTE_AFTER_MIDNIGHT,
+    TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES,
+    TvBrowserContentProvider.DATA_KEY_INFO_BLACK_AND_WHITE,
+    TvBrowserContentProvider.DATA_KEY_INFO_4_TO_3,
+    TvBrowserContentProvider.DATA_KEY_INFO_16_TO_9,
+    TvBrowserContentProvider.DATA_KEY_INFO_MONO,
+    TvBrowserContentProvider.DATA_KEY_INFO_STEREO,
+    TvBrowserContentProvider.DATA_KEY_INFO_DOLBY_SURROUND,
+    TvBrowserContentProvider.DATA_KEY_INFO_DOLBY_DIGITAL_5_1,
+    TvBrowserContentProvider.DATA_KEY_INFO_SECOND_AUDIO_PROGRAM,
+    TvBrowserContentProvider.DATA_KEY_INFO_CLOSED_CAPTION,
+    TvBrowserContentProvider.DATA_KEY_INFO_LIVE,
+    TvBrowserContentProvider.DATA_KEY_INFO_OMU,
+    TvBrowserContentProvider.DATA_KEY_INFO_FILM,
+    TvBrowserContentProvider.DATA_KEY_INFO_SERIES,
+    TvBrowserContentProvider.DATA_KEY_INFO_NEW,
+    TvBrowserContentProvider.DATA_KEY_INFO_AUDIO_DESCRIPTION,
+    TvBrowserContentProvider.DATA_KEY_INFO_NEWS,
+    TvBrowserContentProvider.DATA_KEY_INFO_SHOW,
+    TvBrowserContentProvider.DATA_KEY_INFO_MAGAZINE,
+    TvBrowserContentProvider.DATA_KEY_INFO_HD,
+    TvBrowserContentProvider.DATA_KEY_INFO_DOCUMENTATION,
+    TvBrowserContentProvider.DATA_KEY_INFO_ART,
+    TvBrowserContentProvider.DATA_KEY_INFO_SPORT,
+    TvBrowserContentProvider.DATA_KEY_INFO_CHILDREN,
+    TvBrowserContentProvider.DATA_KEY_INFO_OTHER,
+    TvBrowserContentProvider.DATA_KEY_INFO_SIGN_LANGUAGE
+  };
+
+  private static final String[] INTEGER_COLUMNS = {
+    TvBrowserContentProvider.DATA_KEY_CATEGORIES,
+    TvBrowserContentProvider.DATA_KEY_AGE_LIMIT,
+    TvBrowserContentProvider.DATA_KEY_NETTO_PLAY_TIME,
+    TvBrowserContentProvider.DATA_KEY_VPS,
+    TvBrowserContentProvider.DATA_KEY_YEAR,
+    TvBrowserContentProvider.DATA_KEY_EPISODE_NUMBER,
+    TvBrowserContentProvider.DATA_KEY_EPISODE_COUNT,
+    TvBrowserContentProvider.DATA_KEY_SEASON_NUMBER,
+    TvBrowserContentProvider.DATA_KEY_RATING,
+    TvBrowserContentProvider.DATA_KEY_LAST_PRODUCTION_YEAR
+  };
+
+  private static final int WORD_COUNT = (COLUMNS.length + 63) / 64;
+
+  private static final HashMap<String, Integer> COLUMN_INDEX_MAP = new HashMap<>(COLUMNS.length * 2);
+  private static final int[] COLUMN_TYPES = new int[COLUMNS.length];
+
+  static {
+    for(int i = 0; i < COLUMNS.length; i++) {
+      COLUMN_INDEX_MAP.put(COLUMNS[i], i);
+    }
+
+    for(String column : INTEGER_COLUMNS) {
+      COLUMN_TYPES[getColumnIndex(column)] = TYPE_INTEGER;
+    }
+
+    for(String column : TvBrowserContentProvider.INFO_CATEGORIES_COLUMNS_ARRAY) {
+      COLUMN_TYPES[getColumnIndex(column)] = TYPE_INFO;
+    }
+
+    COLUMN_TYPES[getColumnIndex(TvBrowserContentProvider.DATA_KEY_PICTURE)] = TYPE_BLOB;
+  }
+
+  private final long[] mRemaining;
+
+  FrameColumnSet() {
+    mRemaining = new long[WORD_COUNT];
+  }
+
+  /**
+   * Creates the mask for the given columns.
+   * <p>
+   * @param columns The columns to include into the mask.
+   * @return The mask with the bits of the given columns set.
+   * @throws IllegalArgumentException If a column isn't contained in the column table.
+   */
+  static long[] createMask(String... columns) {
+    final long[] mask = new long[WORD_COUNT];
+
+    for(String column : columns) {
+      final int index = getColumnIndex(column);
+
+      if(index < 0) {
+        throw new IllegalArgumentException("Unknown frame column: " + column);
+      }
+
+      mask[index >>> 6] |= 1L << index;
+    }
+
+    return mask;
+  }
+
+  private static int getColumnIndex(String column) {
+    final Integer index = COLUMN_INDEX_MAP.get(column);
+
+    return index != null ? index : -1;
+  }
+
+  static String getColumnName(int index) {
+    return COLUMNS[index];
+  }
+
+  static int getColumnType(int index) {
+    return COLUMN_TYPES[index];
+  }
+
+  /**
+   * Resets this set for the next frame, no column is missing afterwards.
+   */
+  void reset() {
+    for(int i = 0; i < WORD_COUNT; i++) {
+      mRemaining[i] = 0;
+    }
+  }
+
+  /**
+   * Adds the columns of the given mask to the missing columns.
+   */
+  void add(long[] mask) {
+    for(int i = 0; i < WORD_COUNT; i++) {
+      mRemaining[i] |= mask[i];
+    }
+  }
+
+  /**
+   * Removes the columns of the given mask from the missing columns.
+   */
+  void removeAll(long[] mask) {
+    for(int i = 0; i < WORD_COUNT; i++) {
+      mRemaining[i] &= ~mask[i];
+    }
+  }
+
+  /**
+   * Marks the given column as written.
+   */
+  void remove(String column) {
+    final int index = getColumnIndex(column);
+
+    if(index >= 0) {
+      mRemaining[index >>> 6] &= ~(1L << index);
+    }
+  }
+
+  /**
+   * @param from The column index to start the search at.
+   * @return The index of the next missing column or <code>-1</code> if there is none.
+   */
+  int nextRemaining(int from) {
+    for(int word = from >>> 6; word < WORD_COUNT; word++) {
+      long bits = mRemaining[word];
+
+      if(word == from >>> 6) {
+        bits &= -1L << from;
+      }
+
+      if(bits != 0) {
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+      }
+    }
+
+    return -1;
+  }
+}
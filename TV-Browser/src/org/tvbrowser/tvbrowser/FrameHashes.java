@@ -0,0 +1,172 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The hashes of the frames of the data files of a channel and day.
+ * <p>
+ * The hashes are stored for every level of data in the version table,
+ * the key of a level is the version column of the level. The hashes
+ * of a level are replaced when a data file of the level is read again,
+ * a frame with a hash that is contained in the old hashes of the level
+ * wasn't changed since it was written to the data base.
+ *
+ * @author René Mach
+ */
+final class FrameHashes {
+  private static final int FORMAT_VERSION = 1;
+  
+  /* key is the version column of the level, values are the sorted hashes */
+  private final HashMap<String, long[]> mLevelHashes;
+  
+  private String mLevel;
+  private long[] mReadHashes;
+  private int mReadCount;
+  
+  private FrameHashes() {
+    mLevelHashes = new HashMap<>();
+  }
+  
+  /**
+   * Reads the frame hashes from the given value of the version table.
+   * <p>
+   * @param value The stored hashes, may be <code>null</code>.
+   * @return The read hashes, empty if the value was <code>null</code> or couldn't be read.
+   */
+  static FrameHashes read(byte[] value) {
+    final FrameHashes result = new FrameHashes();
+    
+    if(value != null) {
+      try {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(value));
+        
+        if(in.readByte() == FORMAT_VERSION) {
+          final int levelCount = in.readByte();
+          
+          for(int i = 0; i < levelCount; i++) {
+            final String level = in.readUTF();
+            final long[] hashes = new long[in.readShort() & 0xFFFF];
+            
+            for(int j = 0; j < hashes.length; j++) {
+              hashes[j] = in.readLong();
+            }
+            
+            result.mLevelHashes.put(level, hashes);
+          }
+        }
+      }catch(IOException e) {
+        // not readable, all frames are handled as changed
+        result.mLevelHashes.clear();
+      }
+    }
+    
+    return result;
+  }
+  
+  /**
+   * @return The frame hashes for storage in the version table.
+   */
+  byte[] toByteArray() {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(bytes);
+    
+    try {
+      out.writeByte(FORMAT_VERSION);
+      out.writeByte(mLevelHashes.size());
+      
+      for(Map.Entry<String, long[]> entry : mLevelHashes.entrySet()) {
+        final long[] hashes = entry.getValue();
+        
+        out.writeUTF(entry.getKey());
+        out.writeShort(hashes.length);
+        
+        for(long hash : hashes) {
+          out.writeLong(hash);
+        }
+      }
+      
+      out.flush();
+    }catch(IOException e) {
+      // cannot happen with a byte array
+    }
+    
+    return bytes.toByteArray();
+  }
+  
+  /**
+   * Starts reading a data file of the given level.
+   * <p>
+   * @param level The version column of the level or <code>null</code> if the level is unknown.
+   */
+  void startLevel(String level) {
+    mLevel = level;
+    mReadHashes = new long[64];
+    mReadCount = 0;
+  }
+  
+  /**
+   * @param hash The hash of a frame of the current level.
+   * @return <code>true</code> if the frame was written with the same content before.
+   */
+  boolean contains(long hash) {
+    final long[] hashes = mLevel != null ? mLevelHashes.get(mLevel) : null;
+    
+    return hashes != null && Arrays.binarySearch(hashes, hash) >= 0;
+  }
+  
+  /**
+   * Adds the hash of a frame of the current level that was handled.
+   * <p>
+   * @param hash The hash of the frame.
+   */
+  void add(long hash) {
+    if(mReadCount == mReadHashes.length) {
+      mReadHashes = Arrays.copyOf(mReadHashes, mReadCount * 2);
+    }
+    
+    mReadHashes[mReadCount++] = hash;
+  }
+  
+  /**
+   * Replaces the hashes of the current level with the hashes of the handled frames.
+   */
+  void endLevel() {
+    if(mLevel != null) {
+      final long[] hashes = Arrays.copyOf(mReadHashes, Math.min(mReadCount, 0xFFFF));
+      Arrays.sort(hashes);
+      
+      mLevelHashes.put(mLevel, hashes);
+    }
+    
+    mLevel = null;
+    mReadHashes = null;
+    mReadCount = 0;
+  }
+  
+  boolean isEmpty() {
+    return mLevelHashes.isEmpty();
+  }
+}
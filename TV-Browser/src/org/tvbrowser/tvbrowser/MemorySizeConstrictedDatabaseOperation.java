@@ -17,7 +17,12 @@
 package org.tvbrowser.tvbrowser;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.tvbrowser.content.TvBrowserContentProvider;
 
@@ -27,16 +32,27 @@ import android.content.Context;
 import android.content.OperationApplicationException;
 import android.net.Uri;
 import android.os.RemoteException;
-import android.util.Log;
 
 /**
  * A class with bulk data base operations that takes the
  * memory size on the system into consideration.
+ * <p>
+ * If a writer is set the operations are handed over to the writer and
+ * the lists of the operations are only used by the thread of the writer,
+ * so the threads that add operations don't share a lock and don't wait
+ * for the data base. Without a writer the operations are synchronized
+ * and run on the thread that adds them.
+ * <p>
+ * The size of the batches is decided by a {@link BatchSizeController}
+ * from the estimated size of the pending rows, the heap usage and the
+ * measured time of the last batches.
  * 
  * @author René Mach
  */
 class MemorySizeConstrictedDatabaseOperation {
-  private static final int TABLE_OPERATION_MIN_SIZE = Math.max(100, (int)(Runtime.getRuntime().maxMemory()/1000000));
+  /* the estimated size of an update operation without known values */
+  private static final int DEFAULT_UPDATE_SIZE = 512;
+  
   private Context mContext;
   
   private ArrayList<ContentValues> mInsertList;
@@ -44,12 +60,25 @@ class MemorySizeConstrictedDatabaseOperation {
   
   private final Uri mInsertUri;
   private int mMinOperationDivider;
-  private final int mOperationDivider;
+  private final BatchSizeController mBatchSize;
+  
+  /* the estimated size of the pending operations in bytes */
+  private long mPendingInsertBytes;
+  private long mPendingUpdateBytes;
+  private String mLogName;
   
-  private boolean mOperationsAvailable;
-  private boolean mOperationsAdded;
+  private volatile boolean mOperationsAvailable;
+  private volatile boolean mOperationsAdded;
+  private volatile boolean mCancelled;
   private final AtomicBoolean mSuccess;
   
+  private final AtomicInteger mInsertedCount;
+  private final AtomicLong mInsertNanos;
+  private final AtomicLong mUpdateNanos;
+  
+  private volatile Executor mWriter;
+  private ArrayList<WriteCallback> mCallbacks;
+  
   public MemorySizeConstrictedDatabaseOperation(Context context, Uri insertUri) {
     this(context,insertUri,1);
   }
@@ -64,102 +93,279 @@ class MemorySizeConstrictedDatabaseOperation {
     mInsertUri = insertUri;
     mSuccess = new AtomicBoolean(true);
     mOperationsAdded = false;
+    mCancelled = false;
+    mInsertedCount = new AtomicInteger();
+    mInsertNanos = new AtomicLong();
+    mUpdateNanos = new AtomicLong();
     
-    if(mMinOperationDivider > 0) {
+    if(minOperationDivider > 0) {
       mMinOperationDivider = minOperationDivider;
     }
     else {
       mMinOperationDivider = 1;
     }
     
-    mOperationDivider = TABLE_OPERATION_MIN_SIZE/mMinOperationDivider;
+    mBatchSize = new BatchSizeController(mMinOperationDivider);
     
     if(insertUri != null) {
       mInsertList = new ArrayList<>();
     }
     
     mUpdateList = new ArrayList<>();
+    mCallbacks = new ArrayList<>();
     
     mOperationsAvailable = false;
   }
   
-  public synchronized void cancel() {
-    if(mInsertList != null && !mInsertList.isEmpty()) {
-      mInsertList.clear();
-    }
+  /**
+   * Sets the writer that runs the data base operations, the writer
+   * has to run the operations in the order they were added on one thread.
+   * Has to be set before the first operation is added.
+   * <p>
+   * @param writer The writer to use or <code>null</code> to run the
+   * data base operations on the thread that adds the operations.
+   */
+  public void setWriter(Executor writer) {
+    mWriter = writer;
+  }
+  
+  /**
+   * Sets the name used to write the metrics of every batch to the data update log.
+   * <p>
+   * @param logName The name of the operation in the log or <code>null</code>
+   * to not log the batches.
+   */
+  public void setLogName(String logName) {
+    mLogName = logName;
+  }
+  
+  /**
+   * Cancels the operations that weren't written yet.
+   */
+  public void cancel() {
+    mCancelled = true;
     
-    if(mUpdateList != null && !mUpdateList.isEmpty()) {
-      mInsertList.clear();
+    if(mWriter == null) {
+      synchronized(this) {
+        release();
+      }
     }
-    
-    mInsertList = null;
-    mUpdateList = null;
-    mContext = null;
   }
   
-  public synchronized void finish() {
-    if(mInsertList != null && !mInsertList.isEmpty()) {
-      insert();
+  /**
+   * Writes all added operations and runs the callbacks that wait for them.
+   */
+  public void finish() {
+    write(() -> {
+      flush();
+      release();
+    });
+  }
+  
+  private void release() {
+    if(mInsertList != null) {
+      mInsertList.clear();
     }
     
-    if(mUpdateList != null && !mUpdateList.isEmpty()) {
-      update();
+    if(mUpdateList != null) {
+      mUpdateList.clear();
     }
     
     mInsertList = null;
     mUpdateList = null;
+    mCallbacks = null;
     mContext = null;
   }
   
-  public synchronized void addInsert(ContentValues insert) {
-    if(mInsertList != null) {
-      mOperationsAvailable = true;
-      mInsertList.add(insert);
-      mOperationsAdded = true;
+  /**
+   * Runs the given callback after all operations that were added
+   * until now were written to the data base.
+   * <p>
+   * @param callback The callback to run, it runs on the writer if
+   * a writer is set.
+   */
+  public void runAfterWrite(final WriteCallback callback) {
+    write(() -> {
+      if(mCallbacks != null) {
+        mCallbacks.add(callback);
+      }
+    });
+  }
+  
+  public void addInsert(final ContentValues insert) {
+    write(() -> {
+      if(mInsertList != null) {
+        mInsertList.add(insert);
+        mPendingInsertBytes += BatchSizeController.estimateSize(insert);
+        added();
+      }
+    });
+  }
+  
+  public void addUpdate(final ContentProviderOperation update) {
+    addUpdate(update, DEFAULT_UPDATE_SIZE);
+  }
+  
+  /**
+   * @param update The update operation.
+   * @param values The values of the update operation to estimate its size.
+   */
+  public void addUpdate(final ContentProviderOperation update, final ContentValues values) {
+    addUpdate(update, BatchSizeController.estimateSize(values));
+  }
+  
+  private void addUpdate(final ContentProviderOperation update, final long bytes) {
+    write(() -> {
+      if(mUpdateList != null) {
+        mUpdateList.add(update);
+        mPendingUpdateBytes += bytes;
+        added();
+      }
+    });
+  }
+  
+  /**
+   * Adds the given operations with one hand over to the writer.
+   * <p>
+   * @param inserts The values to insert, may be empty.
+   * @param updates The update operations, may be empty.
+   * @param updateBytes The estimated size of the update operations in bytes.
+   */
+  public void addAll(final List<ContentValues> inserts, final List<ContentProviderOperation> updates, final long updateBytes) {
+    if(inserts.isEmpty() && updates.isEmpty()) {
+      return;
+    }
+    
+    write(() -> {
+      if(mInsertList != null) {
+        mInsertList.addAll(inserts);
+        
+        for(ContentValues insert : inserts) {
+          mPendingInsertBytes += BatchSizeController.estimateSize(insert);
+        }
+      }
       
-      if(mInsertList.size() > mOperationDivider) {
-        insert();
+      if(mUpdateList != null) {
+        mUpdateList.addAll(updates);
+        mPendingUpdateBytes += updateBytes;
       }
+      
+      added();
+    });
+  }
+  
+  /* called by the writer or with the lock */
+  private void added() {
+    mOperationsAvailable = true;
+    mOperationsAdded = true;
+    
+    final int pendingRows = (mInsertList != null ? mInsertList.size() : 0) + (mUpdateList != null ? mUpdateList.size() : 0);
+    
+    if(mBatchSize.shouldFlush(pendingRows, mPendingInsertBytes + mPendingUpdateBytes)) {
+      flush();
     }
   }
   
-  public synchronized void addUpdate(ContentProviderOperation update) {
-    if(mUpdateList != null) {
-      mOperationsAvailable = true;
-      mUpdateList.add(update);
-      mOperationsAdded = true;
+  /* writes the pending operations and runs the callbacks that wait for them,
+   * called by the writer or with the lock */
+  private void flush() {
+    insert();
+    update();
+    
+    if(mCallbacks != null && !mCallbacks.isEmpty()) {
+      final ArrayList<WriteCallback> callbacks = new ArrayList<>(mCallbacks);
+      mCallbacks.clear();
       
-      if(mUpdateList.size() > mOperationDivider) {
-        update();
+      /* the operations of a callback may have been written by an earlier batch,
+       * so the callbacks only get success if no batch failed until now */
+      final boolean success = mSuccess.get();
+      
+      for(WriteCallback callback : callbacks) {
+        callback.written(success);
       }
     }
   }
   
-  private synchronized void insert() {
+  private void insert() {
     if(mInsertUri != null && mInsertList != null && !mInsertList.isEmpty() && mContext != null) {
-      boolean success = mContext.getContentResolver().bulkInsert(mInsertUri, mInsertList.toArray(new ContentValues[0])) >= mInsertList.size();
+      final ContentValues[] inserts = mInsertList.toArray(new ContentValues[0]);
       
-      mSuccess.compareAndSet(true, success);
+      final long bytes = mPendingInsertBytes;
       
       mInsertList.clear();
+      mPendingInsertBytes = 0;
+      
+      final long start = System.nanoTime();
+      final int inserted = mContext.getContentResolver().bulkInsert(mInsertUri, inserts);
+      
+      final long nanos = System.nanoTime() - start;
+      
+      mInsertNanos.addAndGet(nanos);
+      batchWritten("insert", inserts.length, bytes, nanos);
+      mInsertedCount.addAndGet(inserted);
+      
+      boolean success = inserted >= inserts.length;
+      
+      mSuccess.compareAndSet(true, success);
     }
   }
   
-  private synchronized void update() {
-    Log.d("info9", "update()");
+  private void update() {
     if(mUpdateList != null && !mUpdateList.isEmpty() && mContext != null) {
+      final ArrayList<ContentProviderOperation> updates = new ArrayList<>(mUpdateList);
+      
+      final long bytes = mPendingUpdateBytes;
+      
+      mUpdateList.clear();
+      mPendingUpdateBytes = 0;
+      
       boolean success = false;
-      Log.d("info9", " " + mUpdateList.size());
+      final long start = System.nanoTime();
+      
       try {
-         success = mContext.getContentResolver().applyBatch(TvBrowserContentProvider.AUTHORITY, mUpdateList).length >= mUpdateList.size();
+         success = mContext.getContentResolver().applyBatch(TvBrowserContentProvider.AUTHORITY, updates).length >= updates.size();
       } catch (RemoteException | OperationApplicationException e) {
-        // TODO Auto-generated catch block
-        e.printStackTrace();
+        Logging.log(null, (mLogName != null ? mLogName + " " : "") + "update of " + updates.size() + " rows failed: " + e, Logging.TYPE_DATA_UPDATE, mContext);
       }
       
-      mSuccess.compareAndSet(true, success);
+      final long nanos = System.nanoTime() - start;
       
-      mUpdateList.clear();
+      mUpdateNanos.addAndGet(nanos);
+      batchWritten("update", updates.size(), bytes, nanos);
+      
+      mSuccess.compareAndSet(true, success);
+    }
+  }
+  
+  private void batchWritten(String type, int rows, long bytes, long nanos) {
+    final String metrics = mBatchSize.record(rows, bytes, nanos);
+    
+    if(mLogName != null && mContext != null) {
+      Logging.log(null, mLogName + " " + type + " " + metrics, Logging.TYPE_DATA_UPDATE, mContext);
+    }
+  }
+  
+  /* runs the given task on the writer or with the lock if no writer is set */
+  private void write(final Runnable task) {
+    final Executor writer = mWriter;
+    
+    if(writer != null) {
+      try {
+        writer.execute(() -> {
+          if(!mCancelled) {
+            task.run();
+          }
+        });
+      }catch(RejectedExecutionException e) {
+        mSuccess.set(false);
+      }
+    }
+    else {
+      synchronized(this) {
+        if(!mCancelled) {
+          task.run();
+        }
+      }
     }
   }
   
@@ -167,7 +373,39 @@ class MemorySizeConstrictedDatabaseOperation {
     return mOperationsAvailable;
   }
   
+  /**
+   * @return The number of rows that were inserted into the data base.
+   */
+  public int getInsertedCount() {
+    return mInsertedCount.get();
+  }
+  
+  /**
+   * @return The time in milliseconds that was spent inserting rows into the data base.
+   */
+  public long getInsertMillis() {
+    return mInsertNanos.get() / 1000000;
+  }
+  
+  /**
+   * @return The time in milliseconds that was spent updating rows of the data base.
+   */
+  public long getUpdateMillis() {
+    return mUpdateNanos.get() / 1000000;
+  }
+  
   public boolean wasSuccessful() {
     return mSuccess.get() && mOperationsAdded;
   }
+  
+  /**
+   * The callback that is run after operations were written to the data base.
+   */
+  interface WriteCallback {
+    /**
+     * @param success <code>true</code> if all operations that were added until
+     * the callback was added were written to the data base successfully.
+     */
+    void written(boolean success);
+  }
 }
@@ -21,15 +21,19 @@ import androidx.annotation.NonNull;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
-import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
-import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.tvbrowser.settings.SettingConstants;
+import org.tvbrowser.utils.HostConnectionPool;
 import org.tvbrowser.utils.IOUtils;
 
 /**
@@ -38,6 +42,8 @@ import org.tvbrowser.utils.IOUtils;
  * @author René Mach
  */
 public class Mirror implements Comparable<Mirror> {
+  private static final int PARALLEL_PROBES = 3;
+  
   private final String mUrl;
   private final int mWeight;
   
@@ -52,7 +58,7 @@ public class Mirror implements Comparable<Mirror> {
     return mUrl;
   }
   
-  private int getWeight() {
+  int getWeight() {
     return mWeight;
   }
   
@@ -94,6 +100,11 @@ public class Mirror implements Comparable<Mirror> {
     return mirrors.toArray(mirrorArr);
   }
 
+  @Override
+  public String toString() {
+    return mUrl + "#" + mWeight;
+  }
+  
   @Override
   public int compareTo(@NonNull Mirror another) {
     if(mWeight < another.mWeight) {
@@ -106,64 +117,91 @@ public class Mirror implements Comparable<Mirror> {
     return 0;
   }
   
-  public static Mirror getMirrorToUseForGroup(Mirror[] mirrors, String group, TvDataUpdateService update, boolean checkOnlyConnection) {
-    ArrayList<Mirror> toChooseFrom = new ArrayList<>(Arrays.asList(mirrors));
+  /**
+   * Gets the mirror to use for the given group.
+   * <p>
+   * The mirrors are probed in the order of the {@link MirrorScoreboard},
+   * up to {@value #PARALLEL_PROBES} mirrors are probed at the same time
+   * and the first accepted mirror is used.
+   * <p>
+   * @param mirrors The available mirrors of the group.
+   * @param group The ID of the group.
+   * @param update The data update service.
+   * @param checkOnlyConnection <code>true</code> if only the connection to the mirror
+   * should be checked, <code>false</code> if the date of the data of the mirror
+   * should be checked too.
+   * @return The mirror to use or <code>null</code> if no mirror was accepted.
+   */
+  public static Mirror getMirrorToUseForGroup(Mirror[] mirrors, String group, final TvDataUpdateService update, final boolean checkOnlyConnection) {
+    final MirrorScoreboard scoreboard = MirrorScoreboard.getInstance(update);
+    final List<Mirror> toChooseFrom = scoreboard.order(mirrors);
+    
+    update.doLog("Mirror order for group '" + group + "': " + toChooseFrom);
+    
+    final ExecutorService probePool = Executors.newFixedThreadPool(PARALLEL_PROBES);
     
     Mirror chosen = null;
     
-    while(chosen == null && !toChooseFrom.isEmpty()) {
-      int weightSum = 0;
-      
-      for(Mirror mirror : toChooseFrom) {
-        weightSum += mirror.getWeight();
-      }
-      
-      int limit = new Random().nextInt(weightSum + 1);
-      update.doLog("Mirror weight limit for group '" + group + "': " + limit);
-      
-      final ArrayList<Mirror> mirrorsWithAcceptedWeight = new ArrayList<>();
-      
-      for(int i = toChooseFrom.size()-1; i >= 0; i--) {
-        if(toChooseFrom.get(i).getWeight() >= limit) {
-          mirrorsWithAcceptedWeight.add(toChooseFrom.get(i));
-        }
-        else {
-          update.doLog("NOT accepted mirror for group (weight to low) '" + group + "': " + toChooseFrom.get(i).getUrl());
-        }
-      }
-      
-      while(chosen == null && !mirrorsWithAcceptedWeight.isEmpty()) {
-        final Mirror test = mirrorsWithAcceptedWeight.remove((int)(Math.random() * mirrorsWithAcceptedWeight.size()));
+    try {
+      for(int start = 0; chosen == null && start < toChooseFrom.size(); start += PARALLEL_PROBES) {
+        final CompletionService<Mirror> probes = new ExecutorCompletionService<>(probePool);
+        final int count = Math.min(PARALLEL_PROBES, toChooseFrom.size() - start);
         
-        update.doLog("Accepted weight for group '" + group + "': " + test.getWeight() + " URL: " + test.getUrl());
-        if((!checkOnlyConnection && useMirror(test,group,5000,update)) || IOUtils.isConnectedToServer(test.getUrl(), 5000)) {
-          update.doLog("Accepted mirror for group '" + group + "': " + test.getUrl());
-          chosen = test;
+        for(int i = start; i < start + count; i++) {
+          final Mirror test = toChooseFrom.get(i);
+          
+          probes.submit(() -> probe(test, group, checkOnlyConnection, scoreboard, update) ? test : null);
         }
-        else {
-          toChooseFrom.remove(test);
-          update.doLog("NOT accepted mirror for group '" + group + "': " + test.getUrl());
+        
+        // the first accepted mirror wins, the other probes are still recorded
+        for(int i = 0; chosen == null && i < count; i++) {
+          try {
+            chosen = probes.take().get();
+          }catch(ExecutionException e) {
+            update.doLog("Exception for mirror probe for group '" + group + "': " + e.getCause());
+          }
         }
       }
+    }catch(InterruptedException e) {
+      update.doLog("Mirror probes for group '" + group + "' interrupted");
+    }finally {
+      probePool.shutdown();
+    }
+    
+    if(chosen != null) {
+      update.doLog("Accepted mirror for group '" + group + "': " + chosen.getUrl());
     }
     
     return chosen;
   }
   
+  private static boolean probe(Mirror test, String group, boolean checkOnlyConnection, MirrorScoreboard scoreboard, TvDataUpdateService update) {
+    final long start = System.currentTimeMillis();
+    final boolean accepted = (!checkOnlyConnection && useMirror(test,group,5000,update)) || IOUtils.isConnectedToServer(test.getUrl(), 5000);
+    
+    scoreboard.recordProbe(test.getUrl(), accepted, System.currentTimeMillis() - start);
+    
+    if(!accepted) {
+      update.doLog("NOT accepted mirror for group '" + group + "': " + test.getUrl());
+    }
+    
+    return accepted;
+  }
+  
   private static boolean useMirror(Mirror mirror, String group, int timeout, TvDataUpdateService update) {
     boolean success = false;
-    HttpURLConnection connection  = null;
+    HostConnectionPool.Lease lease = null;
     BufferedReader read = null;
     try{
-      URL myUrl = new URL(mirror.getUrl() + group + "_lastupdate");
+      String myUrl = mirror.getUrl() + group + "_lastupdate";
 
-      connection = (HttpURLConnection) myUrl.openConnection();
-      IOUtils.setConnectionTimeout(connection,timeout);
+      lease = HostConnectionPool.open(myUrl, timeout);
+      HttpURLConnection connection = (HttpURLConnection) lease.getConnection();
       
       int responseCode = connection.getResponseCode();
       update.doLog("HTTP-Response for group: '" + group + "' from URL: " + myUrl);
       if(responseCode == HttpURLConnection.HTTP_OK) {
-        read = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+        read = new BufferedReader(new InputStreamReader(lease.getInputStream()));
         String date = read.readLine();
         
         Date serverDate = DATE_FORMAT.parse(date);
@@ -184,8 +222,12 @@ public class Mirror implements Comparable<Mirror> {
         // Handle your exceptions
       success = false;
     } finally {
+      // the rest of the small file is skipped to keep the connection for the download of the data
+      if(lease != null) {
+        lease.release(false);
+      }
+      
     	IOUtils.close(read);
-    	IOUtils.disconnect(connection);
     }
       
     return success;
@@ -0,0 +1,270 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.tvbrowser.utils.PrefUtils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * The scoreboard of the mirrors with the latency, the throughput and
+ * the failures of the mirrors of the last updates.
+ * <p>
+ * The scores are used to prefer the mirrors that worked best in the past,
+ * a part of the updates still uses the server weights of the mirrors, so
+ * the scores of the other mirrors are updated too. The scores are kept in
+ * the preferences between the updates.
+ *
+ * @author René Mach
+ */
+final class MirrorScoreboard {
+  /* the chance to choose the mirrors by the server weights instead of the scores */
+  private static final double SAMPLE_RATE = 0.2;
+  
+  /* the bytes of the reference download to compare latency and throughput */
+  private static final long REFERENCE_BYTES = 256 * 1024;
+  
+  /* the score of the mirrors without history */
+  private static final long UNKNOWN_SCORE = 10000;
+  
+  private static final long MAX_UNUSED_MILLIS = 60 * 24 * 60 * 60000L;
+  
+  private static final String SEPARATOR = ";";
+  
+  private static MirrorScoreboard INSTANCE;
+  
+  private final HashMap<String, Score> mScores;
+  
+  private MirrorScoreboard(Context context) {
+    mScores = new HashMap<>();
+    
+    final SharedPreferences pref = PrefUtils.getSharedPreferences(PrefUtils.TYPE_PREFERENCES_MIRROR_SCORES, context);
+    
+    if(pref != null) {
+      final long oldest = System.currentTimeMillis() - MAX_UNUSED_MILLIS;
+      
+      for(Map.Entry<String, ?> entry : pref.getAll().entrySet()) {
+        if(entry.getValue() instanceof String) {
+          final Score score = Score.parse((String)entry.getValue());
+          
+          if(score != null && score.mLastUse >= oldest) {
+            mScores.put(entry.getKey(), score);
+          }
+        }
+      }
+    }
+  }
+  
+  static synchronized MirrorScoreboard getInstance(Context context) {
+    if(INSTANCE == null) {
+      INSTANCE = new MirrorScoreboard(context.getApplicationContext());
+    }
+    
+    return INSTANCE;
+  }
+  
+  /**
+   * Orders the given mirrors for the probes, the mirror that should be
+   * probed first is the first of the list.
+   * <p>
+   * @param mirrors The mirrors to order.
+   * @return The ordered mirrors.
+   */
+  List<Mirror> order(Mirror[] mirrors) {
+    final ArrayList<Mirror> ordered = new ArrayList<>(Arrays.asList(mirrors));
+    final HashMap<Mirror, Double> weightKeys = new HashMap<>();
+    
+    // weighted random order, mirrors with higher weight are more likely at the start
+    for(Mirror mirror : mirrors) {
+      weightKeys.put(mirror, Math.pow(Math.random(), 1.0 / Math.max(mirror.getWeight(), 1)));
+    }
+    
+    Collections.sort(ordered, (m1, m2) -> Double.compare(weightKeys.get(m2), weightKeys.get(m1)));
+    
+    if(Math.random() >= SAMPLE_RATE) {
+      final HashMap<Mirror, Long> scores = new HashMap<>();
+      
+      for(Mirror mirror : ordered) {
+        scores.put(mirror, getScore(mirror.getUrl()));
+      }
+      
+      // stable sort, mirrors with the same score stay in weighted order
+      Collections.sort(ordered, (m1, m2) -> Long.compare(scores.get(m1), scores.get(m2)));
+    }
+    
+    return ordered;
+  }
+  
+  /**
+   * Records the result of a probe of a mirror.
+   * <p>
+   * @param url The URL of the mirror.
+   * @param success If the mirror was accepted.
+   * @param millis The time the probe took.
+   */
+  synchronized void recordProbe(String url, boolean success, long millis) {
+    final Score score = getOrCreate(url);
+    
+    score.mProbeCount++;
+    
+    if(success) {
+      score.mLatency = score.mLatency == 0 ? millis : (score.mLatency * 3 + millis) / 4;
+      score.mFailures = 0;
+      score.mLastUse = System.currentTimeMillis();
+    }
+    else {
+      score.mFailureCount++;
+      score.mFailures++;
+    }
+  }
+  
+  /**
+   * Records the throughput of a download from a mirror.
+   * <p>
+   * @param url The URL of the downloaded file.
+   * @param bytes The size of the downloaded file.
+   * @param millis The time the download took.
+   */
+  synchronized void recordDownload(String url, long bytes, long millis) {
+    for(Map.Entry<String, Score> entry : mScores.entrySet()) {
+      if(url.startsWith(entry.getKey())) {
+        final Score score = entry.getValue();
+        final long throughput = bytes * 1000 / Math.max(millis, 1);
+        
+        score.mThroughput = score.mThroughput == 0 ? throughput : (score.mThroughput * 3 + throughput) / 4;
+        score.mLastUse = System.currentTimeMillis();
+        break;
+      }
+    }
+  }
+  
+  /**
+   * @return The expected time in milliseconds for a download from the mirror, failed
+   * probes increase the value.
+   */
+  private synchronized long getScore(String url) {
+    final Score score = mScores.get(url);
+    
+    if(score == null || score.mLatency == 0) {
+      return score != null && score.mFailures > 0 ? UNKNOWN_SCORE * (1 + score.mFailures) : UNKNOWN_SCORE;
+    }
+    
+    long result = score.mLatency;
+    
+    if(score.mThroughput > 0) {
+      result += REFERENCE_BYTES * 1000 / score.mThroughput;
+    }
+    
+    return result * (1 + score.mFailures) * (1 + score.mFailures);
+  }
+  
+  private Score getOrCreate(String url) {
+    Score score = mScores.get(url);
+    
+    if(score == null) {
+      score = new Score();
+      // failed probes don't keep the score, so it expires if the mirror never works
+      score.mLastUse = System.currentTimeMillis();
+      mScores.put(url, score);
+    }
+    
+    return score;
+  }
+  
+  /**
+   * Saves the scores in the preferences.
+   */
+  synchronized void save(Context context) {
+    final SharedPreferences pref = PrefUtils.getSharedPreferences(PrefUtils.TYPE_PREFERENCES_MIRROR_SCORES, context);
+    
+    if(pref != null) {
+      final SharedPreferences.Editor edit = pref.edit();
+      edit.clear();
+      
+      for(Map.Entry<String, Score> entry : mScores.entrySet()) {
+        edit.putString(entry.getKey(), entry.getValue().toString());
+      }
+      
+      edit.commit();
+    }
+  }
+  
+  @Override
+  public synchronized String toString() {
+    final StringBuilder board = new StringBuilder("MIRROR SCOREBOARD:");
+    
+    for(Map.Entry<String, Score> entry : mScores.entrySet()) {
+      final Score score = entry.getValue();
+      
+      board.append("\n  ").append(entry.getKey());
+      board.append(" score: ").append(getScore(entry.getKey()));
+      board.append(" latency: ").append(score.mLatency).append("ms");
+      board.append(" throughput: ").append(score.mThroughput / 1024).append("KiB/s");
+      board.append(" failed probes: ").append(score.mFailureCount).append("/").append(score.mProbeCount);
+      board.append(" failures in a row: ").append(score.mFailures);
+    }
+    
+    return board.toString();
+  }
+  
+  private static final class Score {
+    /* average latency of the successful probes in milliseconds */
+    private long mLatency;
+    /* average throughput of the downloads in bytes per second */
+    private long mThroughput;
+    /* the failed probes since the last successful probe */
+    private int mFailures;
+    private int mFailureCount;
+    private int mProbeCount;
+    /* the time of the last successful probe or download */
+    private long mLastUse;
+    
+    static Score parse(String value) {
+      final String[] parts = value.split(SEPARATOR);
+      Score score = null;
+      
+      if(parts.length == 6) {
+        try {
+          score = new Score();
+          score.mLatency = Long.parseLong(parts[0]);
+          score.mThroughput = Long.parseLong(parts[1]);
+          score.mFailures = Integer.parseInt(parts[2]);
+          score.mFailureCount = Integer.parseInt(parts[3]);
+          score.mProbeCount = Integer.parseInt(parts[4]);
+          score.mLastUse = Long.parseLong(parts[5]);
+        }catch(NumberFormatException e) {
+          score = null;
+        }
+      }
+      
+      return score;
+    }
+    
+    @Override
+    public String toString() {
+      return mLatency + SEPARATOR + mThroughput + SEPARATOR + mFailures + SEPARATOR + mFailureCount + SEPARATOR + mProbeCount + SEPARATOR + mLastUse;
+    }
+  }
+}
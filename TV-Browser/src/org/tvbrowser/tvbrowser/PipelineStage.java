@@ -0,0 +1,138 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A stage of the data update pipeline.
+ * <p>
+ * The stage runs its tasks with a fixed number of threads, the tasks that
+ * wait for a thread are kept in a bounded queue. If the queue is full the
+ * thread that adds a task waits until the stage took a task from the queue,
+ * so a slow stage slows down the stages that feed it instead of collecting
+ * an unlimited amount of downloaded files or decoded rows.
+ * <p>
+ * The stage measures the time its threads are busy, the depth of its queue
+ * and the time other threads had to wait for the queue.
+ *
+ * @author René Mach
+ */
+final class PipelineStage extends ThreadPoolExecutor {
+  private final String mName;
+  private final long mCreated;
+  
+  private final AtomicLong mBusyNanos;
+  private final AtomicLong mBlockedNanos;
+  private final AtomicLong mTaskCount;
+  private final AtomicLong mQueueDepthSum;
+  private volatile int mMaxQueueDepth;
+  
+  private final ThreadLocal<Long> mTaskStart;
+  
+  /**
+   * @param name The name of the stage for the log.
+   * @param threads The number of threads of the stage.
+   * @param queueCapacity The maximum number of tasks that wait for a thread.
+   */
+  PipelineStage(String name, int threads, int queueCapacity) {
+    super(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)));
+    
+    mName = name;
+    mCreated = System.nanoTime();
+    
+    mBusyNanos = new AtomicLong();
+    mBlockedNanos = new AtomicLong();
+    mTaskCount = new AtomicLong();
+    mQueueDepthSum = new AtomicLong();
+    mMaxQueueDepth = 0;
+    
+    mTaskStart = new ThreadLocal<>();
+    
+    setRejectedExecutionHandler((task, executor) -> {
+      if(executor.isShutdown()) {
+        throw new RejectedExecutionException(mName + " is shut down");
+      }
+      
+      final long start = System.nanoTime();
+      
+      try {
+        executor.getQueue().put(task);
+      }catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RejectedExecutionException(mName + " interrupted while waiting for the queue");
+      }finally {
+        mBlockedNanos.addAndGet(System.nanoTime() - start);
+      }
+      
+      // the stage could have been shut down while waiting
+      if(executor.isShutdown() && executor.getQueue().remove(task)) {
+        throw new RejectedExecutionException(mName + " is shut down");
+      }
+    });
+  }
+  
+  @Override
+  public void execute(Runnable command) {
+    final int depth = getQueue().size();
+    
+    mTaskCount.incrementAndGet();
+    mQueueDepthSum.addAndGet(depth);
+    
+    if(depth > mMaxQueueDepth) {
+      mMaxQueueDepth = depth;
+    }
+    
+    super.execute(command);
+  }
+  
+  @Override
+  protected void beforeExecute(Thread t, Runnable r) {
+    super.beforeExecute(t, r);
+    mTaskStart.set(System.nanoTime());
+  }
+  
+  @Override
+  protected void afterExecute(Runnable r, Throwable t) {
+    final Long start = mTaskStart.get();
+    
+    if(start != null) {
+      mBusyNanos.addAndGet(System.nanoTime() - start);
+    }
+    
+    super.afterExecute(r, t);
+  }
+  
+  /**
+   * @return The statistics of the stage for the log.
+   */
+  String getStatistics() {
+    final long tasks = mTaskCount.get();
+    final long wallNanos = Math.max(System.nanoTime() - mCreated, 1);
+    
+    return "PIPELINE STAGE " + mName + ": threads: " + getMaximumPoolSize()
+        + " tasks: " + tasks
+        + " utilization: " + (mBusyNanos.get() * 100 / (wallNanos * getMaximumPoolSize())) + "%"
+        + " average queue depth: " + (tasks > 0 ? mQueueDepthSum.get() / (float)tasks : 0)
+        + " max queue depth: " + mMaxQueueDepth
+        + " producers blocked ms: " + (mBlockedNanos.get() / 1000000);
+  }
+}
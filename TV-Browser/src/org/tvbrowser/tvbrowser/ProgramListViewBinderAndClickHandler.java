@@ -22,6 +22,7 @@ import org.tvbrowser.content.TvBrowserContentProvider;
 import org.tvbrowser.settings.SettingConstants;
 import org.tvbrowser.utils.IOUtils;
 import org.tvbrowser.utils.PrefUtils;
+import org.tvbrowser.utils.ProgramPictureLoader;
 import org.tvbrowser.utils.ProgramUtils;
 import org.tvbrowser.utils.UiUtils;
 
@@ -30,7 +31,9 @@ import android.content.res.Configuration;
 import android.database.Cursor;
 import android.database.StaleDataException;
 import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.graphics.drawable.TransitionDrawable;
 import android.os.Handler;
 import androidx.cursoradapter.widget.SimpleCursorAdapter;
 import android.text.Spannable;
@@ -48,6 +51,8 @@ import android.widget.RelativeLayout;
 import android.widget.TextView;
 
 class ProgramListViewBinderAndClickHandler implements SimpleCursorAdapter.ViewBinder{
+  private static final int PICTURE_FADE_DURATION = 150;
+  
   private final Activity mActivity;
   private final int mDefaultTextColor;
   private final ShowDateInterface mDateShowInterface;
@@ -270,12 +275,23 @@ class ProgramListViewBinderAndClickHandler implements SimpleCursorAdapter.ViewBi
 
           int pictureIndex = cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_PICTURE);
 
+          // the picture is decoded on a background thread, the view may be used for another program until then
+          picture.setTag(R.id.picture_pl, null);
+
           if (pictureIndex >= 0 && showPicture) {
-            Bitmap logo = UiUtils.createBitmapFromByteArray(cursor.getBlob(cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_PICTURE)));
+            final long programID = cursor.getLong(cursor.getColumnIndex(TvBrowserContentProvider.KEY_ID));
+            final ProgramPictureLoader loader = ProgramPictureLoader.getInstance(mActivity);
+            final Bitmap cached = loader.getCached(programID, mZoom, Integer.MAX_VALUE);
 
-            if (logo != null) {
-              picture.setImageBitmap(Bitmap.createScaledBitmap(logo, (int) (mZoom * logo.getWidth()), (int) (mZoom * logo.getHeight()), false));//.setImageDrawable(l);
+            int[] size = null;
+            byte[] data = null;
 
+            if (cached == null) {
+              data = cursor.getBlob(pictureIndex);
+              size = ProgramPictureLoader.getSize(data, mZoom, Integer.MAX_VALUE);
+            }
+
+            if (cached != null || size != null) {
               text.setText(cursor.getString(cursor.getColumnIndex(TvBrowserContentProvider.DATA_KEY_PICTURE_COPYRIGHT)));
               text.setVisibility(View.VISIBLE);
               picture.setVisibility(View.VISIBLE);
@@ -283,6 +299,30 @@ class ProgramListViewBinderAndClickHandler implements SimpleCursorAdapter.ViewBi
               view.setVisibility(View.GONE);
               picture.setVisibility(View.GONE);
             }
+
+            if (cached != null) {
+              picture.setImageBitmap(cached);
+            } else if (size != null) {
+              final Drawable placeholder = ProgramPictureLoader.createPlaceholder(size);
+
+              picture.setImageDrawable(placeholder);
+              picture.setTag(R.id.picture_pl, programID);
+
+              loader.load(programID, data, mZoom, Integer.MAX_VALUE, (id, loaded) -> {
+                if (Long.valueOf(id).equals(picture.getTag(R.id.picture_pl))) {
+                  if (loaded != null) {
+                    TransitionDrawable fade = new TransitionDrawable(new Drawable[] {placeholder, new BitmapDrawable(mActivity.getResources(), loaded)});
+                    fade.setCrossFadeEnabled(true);
+
+                    picture.setImageDrawable(fade);
+                    fade.startTransition(PICTURE_FADE_DURATION);
+                  } else {
+                    text.setVisibility(View.GONE);
+                    picture.setVisibility(View.GONE);
+                  }
+                }
+              });
+            }
           } else {
             view.setVisibility(View.GONE);
             picture.setVisibility(View.GONE);
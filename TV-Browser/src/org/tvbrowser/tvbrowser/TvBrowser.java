@@ -1331,9 +1331,9 @@ public class TvBrowser extends AppCompatActivity {
                 edit.putStringSet(key, exclusions);
                 edit.commit();
 
-                DontWantToSeeExclusion[] exclusionArr = exclusionList.toArray(new DontWantToSeeExclusion[0]);
+                final DontWantToSeeFilter exclusionFilter = new DontWantToSeeFilter(exclusionList);
 
-                if(exclusionArr.length > 0) {
+                if(!exclusionFilter.isEmpty()) {
                   String where = null;
 
                   if(!replace) {
@@ -1366,7 +1366,7 @@ public class TvBrowser extends AppCompatActivity {
 
                         String title = c.getString(titleColumn);
 
-                        boolean filter = UiUtils.filter(title, exclusionArr);
+                        boolean filter = exclusionFilter.matches(title);
                         long progID = c.getLong(keyColumn);
 
                         ContentValues values = new ContentValues();
@@ -3341,7 +3341,7 @@ public class TvBrowser extends AppCompatActivity {
                     int keyColumn = programs.getColumnIndex(TvBrowserContentProvider.KEY_ID);
                     int titleColumn = programs.getColumnIndex(TvBrowserContentProvider.DATA_KEY_TITLE);
 
-                    DontWantToSeeExclusion[] exclusionArr = exclusionList.toArray(new DontWantToSeeExclusion[0]);
+                    final DontWantToSeeFilter exclusionFilter = new DontWantToSeeFilter(exclusionList);
 
                     while(programs.moveToNext()) {
                       int position = programs.getPosition();
@@ -3353,7 +3353,7 @@ public class TvBrowser extends AppCompatActivity {
 
                       String title = programs.getString(titleColumn);
 
-                      boolean filter = UiUtils.filter(title, exclusionArr);
+                      boolean filter = exclusionFilter.matches(title);
                       long progID = programs.getLong(keyColumn);
 
                       ContentValues values = new ContentValues();
@@ -18,8 +18,6 @@ package org.tvbrowser.tvbrowser;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -53,7 +51,9 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.CRC32;
 import java.util.zip.GZIPInputStream;
 
@@ -62,8 +62,11 @@ import org.tvbrowser.content.TvBrowserContentProvider;
 import org.tvbrowser.job.JobDataUpdateAuto;
 import org.tvbrowser.settings.SettingConstants;
 import org.tvbrowser.utils.CompatUtils;
+import org.tvbrowser.utils.ConditionalDownloadCache;
+import org.tvbrowser.utils.HostConnectionPool;
 import org.tvbrowser.utils.IOUtils;
 import org.tvbrowser.utils.PrefUtils;
+import org.tvbrowser.utils.ProgramPictureLoader;
 import org.tvbrowser.utils.ProgramUtils;
 import org.tvbrowser.utils.UiUtils;
 
@@ -85,6 +88,7 @@ import android.database.Cursor;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.net.Uri;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.PowerManager;
@@ -129,9 +133,21 @@ public class TvDataUpdateService extends Service {
   
   // max size of a data field that can be accepted in bytes
   private static final int MAX_DATA_SIZE = 25 * 1024;
+  // max size of a frame that is hashed before its fields are read
+  private static final int MAX_FRAME_HASH_SIZE = 2 * MAX_DATA_SIZE;
+  
+  /* the threads and queue sizes of the stages of the data update pipeline:
+   * download -> decode -> write into the data base */
+  // more downloads than connections per mirror host would only wait for a free connection
+  private static final int PIPELINE_FETCH_THREADS = Math.min(Math.max(Runtime.getRuntime().availableProcessors(), 2), HostConnectionPool.MAX_CONNECTIONS_PER_HOST);
+  private static final int PIPELINE_DECODE_THREADS = Math.max(Runtime.getRuntime().availableProcessors(), 2);
+  private static final int PIPELINE_DECODE_QUEUE_SIZE = 2 * PIPELINE_DECODE_THREADS;
+  private static final int PIPELINE_WRITE_QUEUE_SIZE = 2 * PIPELINE_DECODE_THREADS;
   
   private ExecutorService mThreadPool;
   private ExecutorService mDataUpdatePool;
+  private PipelineStage mDatabaseWriter;
+  private UpdateJournal mJournal;
   private Handler mHandler;
   
   private static final int ID_NOTIFY = 511;
@@ -142,15 +158,20 @@ public class TvDataUpdateService extends Service {
   
   private static Thread ON_START_COMMAND_THEAD;
   
-  private Hashtable<String, Hashtable<String, CurrentDataHolder>> mCurrentData;
   private Hashtable<String, int[]> mCurrentVersionIDs;
   
   private MemorySizeConstrictedDatabaseOperation mDataDatabaseOperation;
   private MemorySizeConstrictedDatabaseOperation mVersionDatabaseOperation;
+  /* time spent for reading of the data files, for the statistics of the update */
+  private final AtomicLong mDecodeNanos = new AtomicLong();
+  /* frames that were skipped because they didn't change, for the statistics of the update */
+  private final AtomicInteger mUnchangedFrameCount = new AtomicInteger();
+  /* the channels and days with changed data of the current update */
+  private final DataChangeLog mChangeLog = new DataChangeLog();
   
   private ArrayList<String> mSyncFavorites;
     
-  private DontWantToSeeExclusion[] mDontWantToSeeValues;
+  private DontWantToSeeFilter mDontWantToSeeFilter;
   
   private ArrayList<String> mChannelsNew;
   private ArrayList<Integer> mChannelsUpdate;
@@ -166,6 +187,7 @@ public class TvDataUpdateService extends Service {
   private int mCountTimedOutConnections;
   
   private int mInternetConnectionTimeout;
+  private ConditionalDownloadCache mDownloadCache;
 
   private void checkAndSetConnectionState(long downloadStart) {
     doLog("UNSTABLE INTERNET CONNECTION ACCEPTABLE: " + mInstableConnectionAcceptable + " " + mInternetConnectionTimeout + " TIMED OUT: " + mCountTimedOutConnections + " IS CONNECTED: " + mIsConnected);
@@ -212,6 +234,7 @@ public class TvDataUpdateService extends Service {
   };
   
   private static final String GROUP_FILE = "groups.txt";
+  private static final String CONDITIONAL_DOWNLOAD_DIRECTORY = "conditionalDownloads";
   
   private static final String DEFAULT_GROUPS_URL = "http://defaultdata.tvbrowser.org/";
   
@@ -325,6 +348,15 @@ public class TvDataUpdateService extends Service {
     TvBrowserContentProvider.DATA_KEY_PICTURE_DESCRIPTION
   };
   
+  /* the highest known field type of EPGfree data,
+   * fields with unknown type are skipped without reading them */
+  private static final int EPGFREE_MAX_FIELD_TYPE = 0x30;
+  
+  private static final long[] MASK_LEVEL_BASE = FrameColumnSet.createMask(FIELDS_LEVEL_BASE);
+  private static final long[] MASK_LEVEL_MORE = FrameColumnSet.createMask(FIELDS_LEVEL_MORE);
+  private static final long[] MASK_LEVEL_PICTURE = FrameColumnSet.createMask(FIELDS_LEVEL_PICTURE);
+  private static final long[] MASK_EPGPAID_POSSIBLE = FrameColumnSet.createMask(FIELDS_EPGPAID_POSSIBLE);
+  
   private boolean mShowNotification;
   
   @Override
@@ -368,6 +400,8 @@ public class TvDataUpdateService extends Service {
             mInternetConnectionTimeout = 15000;
           }
           
+          mDownloadCache = new ConditionalDownloadCache(new File(getCacheDir(), CONDITIONAL_DOWNLOAD_DIRECTORY));
+          
           doLog("Received intent: " + intent);
           
           if(intent != null) {
@@ -531,7 +565,19 @@ public class TvDataUpdateService extends Service {
     final File path = IOUtils.getDownloadDirectory(TvDataUpdateService.this.getApplicationContext());
     
     if(path.isDirectory()) {
-      File[] oldDataFiles = path.listFiles(pathname -> pathname.getName().toLowerCase(Locale.GERMAN).endsWith(".prog.gz"));
+      mJournal = new UpdateJournal(path);
+      
+      // only the completely downloaded files can be used
+      File[] oldDataFiles = path.listFiles(pathname -> {
+        boolean result = pathname.getName().toLowerCase(Locale.GERMAN).endsWith(".prog.gz");
+        
+        if(result && !mJournal.isDownloaded(pathname)) {
+          deleteFile(pathname);
+          result = false;
+        }
+        
+        return result;
+      });
       
       if(oldDataFiles != null && oldDataFiles.length > 0) {
         mBuilder.setContentText(getString(R.string.update_data_notification_reload_file));
@@ -661,21 +707,20 @@ public class TvDataUpdateService extends Service {
           Set<String> exclusions = PrefUtils.getStringSetValue(R.string.I_DONT_WANT_TO_SEE_ENTRIES, null);
           
           if(exclusions != null) {
-            mDontWantToSeeValues = new DontWantToSeeExclusion[exclusions.size()];
-            
-            int i = 0;
-            
-            for(String exclusion : exclusions) {
-              mDontWantToSeeValues[i++] = new DontWantToSeeExclusion(exclusion);
-            }
+            mDontWantToSeeFilter = DontWantToSeeFilter.create(exclusions);
           }
           
-          readCurrentData();
+          deleteOldData();
           
-          mDataUpdatePool = Executors.newFixedThreadPool(Math.max(Runtime.getRuntime().availableProcessors(), 2));
+          mDataUpdatePool = new PipelineStage("DECODE", PIPELINE_DECODE_THREADS, PIPELINE_DECODE_QUEUE_SIZE);
+          mDatabaseWriter = new PipelineStage("WRITE", 1, PIPELINE_WRITE_QUEUE_SIZE);
           
           mDataDatabaseOperation = new MemorySizeConstrictedDatabaseOperation(TvDataUpdateService.this,TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE);
           mVersionDatabaseOperation = new MemorySizeConstrictedDatabaseOperation(TvDataUpdateService.this,TvBrowserContentProvider.CONTENT_URI_DATA_VERSION,10);
+          mDataDatabaseOperation.setWriter(mDatabaseWriter);
+          mVersionDatabaseOperation.setWriter(mDatabaseWriter);
+          mDataDatabaseOperation.setLogName("DATA BATCH");
+          mVersionDatabaseOperation.setLogName("VERSION BATCH");
          /* mDataInsertList = new ArrayList<ContentValues>();
           mDataUpdateList = new ArrayList<ContentProviderOperation>();
           */
@@ -716,6 +761,8 @@ public class TvDataUpdateService extends Service {
           if(mVersionDatabaseOperation != null) {
             mVersionDatabaseOperation.finish();
           }
+          
+          mJournal.close(finishDatabaseWriter());
 
           mBuilder.setProgress(100, 0, true);
           notification.notify(ID_NOTIFY, mBuilder.build());
@@ -725,11 +772,6 @@ public class TvDataUpdateService extends Service {
             mCurrentVersionIDs = null;
           }
           
-          if(mCurrentData != null) {
-            mCurrentData.clear();
-            mCurrentData = null;
-          }
-          
           updateMap.clear();
         }
       }
@@ -769,12 +811,19 @@ public class TvDataUpdateService extends Service {
       int notUpdatedSize = mDataUpdatePool.shutdownNow().size();
       doLog("onDestroy(), notUpdatedSize: " + notUpdatedSize);
     }
+    if(mDatabaseWriter != null && !mDatabaseWriter.isTerminated()) {
+      int notWrittenSize = mDatabaseWriter.shutdownNow().size();
+      doLog("onDestroy(), notWrittenSize: " + notWrittenSize);
+    }
     if(mDataDatabaseOperation != null) {
       mDataDatabaseOperation.cancel();
     }
     if(mVersionDatabaseOperation != null) {
       mVersionDatabaseOperation.cancel();
     }
+    if(mJournal != null) {
+      mJournal.close(false);
+    }
     if(mEpgPaidChannelIds != null) {
       mEpgPaidChannelIds.clear();
     }
@@ -1523,7 +1572,7 @@ public class TvDataUpdateService extends Service {
     doLog("LOAD GROUPS FROM '" + mirror + "' to '" + groups + "'");
     if(mIsConnected && mirror != null) {
       try {
-        IOUtils.saveUrl(groups.getAbsolutePath(), mirror, mInternetConnectionTimeout);
+        mDownloadCache.download(mirror, groups, mInternetConnectionTimeout);
         doLog("START GROUP UPDATE");
         updateGroups(groups, path, autoUpdate);
       } catch (Throwable t) {
@@ -1873,7 +1922,7 @@ public class TvDataUpdateService extends Service {
                     
                     long downloadStart = System.currentTimeMillis();
                     
-                    if(mIsConnected && IOUtils.saveUrl(group.getAbsolutePath(), url + info.getUrlFileName(), mInternetConnectionTimeout)) {
+                    if(mIsConnected && mDownloadCache.download(url + info.getUrlFileName(), group, mInternetConnectionTimeout)) {
                       doLog("End channel download for group '" + info.getFileName() + "' successful from: " + url);
                       groupSucces = addChannels(group,info);
                       
@@ -1885,7 +1934,7 @@ public class TvDataUpdateService extends Service {
                         
                         File mirrors = new File(path,info.getMirrorFileName());
                         
-                        if(mIsConnected && IOUtils.saveUrl(mirrors.getAbsolutePath(), url + info.getMirrorUrlFileName(), mInternetConnectionTimeout)) {
+                        if(mIsConnected && mDownloadCache.download(url + info.getMirrorUrlFileName(), mirrors, mInternetConnectionTimeout)) {
                           updateMirror(mirrors);
                         }
                         
@@ -1930,6 +1979,9 @@ public class TvDataUpdateService extends Service {
         
         mDataDatabaseOperation.finish();
         success.andUpdateBoolean(mDataDatabaseOperation.wasSuccessful());
+        
+        // decode the changed logos once for all views and widgets
+        SettingConstants.initializeLogoMap(getApplicationContext(), true);
       }
       else {
         success.setBoolean(false);
@@ -1988,6 +2040,9 @@ public class TvDataUpdateService extends Service {
     
     edit.commit();
     
+    doLog(HostConnectionPool.getStatistics());
+    doLog(mDownloadCache.getStatistics());
+    
     Intent updateDone = new Intent(SettingConstants.CHANNEL_DOWNLOAD_COMPLETE);
     updateDone.putExtra(SettingConstants.EXTRA_CHANNEL_DOWNLOAD_SUCCESSFULLY, success.getBoolean());
     updateDone.putExtra(SettingConstants.EXTRA_CHANNEL_DOWNLOAD_AUTO_UPDATE, autoUpdate);
@@ -2219,7 +2274,7 @@ public class TvDataUpdateService extends Service {
               ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_CHANNELS, uniqueChannelId));
               opBuilder.withValues(values);
               
-              mDataDatabaseOperation.addUpdate(opBuilder.build());
+              mDataDatabaseOperation.addUpdate(opBuilder.build(), values);
               //updateValuesList.add(opBuilder.build());
               
               if(!((String)((Object[])channelValues)[1]).trim().equals(name.trim())) {
@@ -2231,9 +2286,6 @@ public class TvDataUpdateService extends Service {
             returnValue = false;
           }
         }
-        
-        
-        //returnValue = handleDatabaseInsertAndUpdate(insertValuesList, updateValuesList, returnValue);
       } catch (FileNotFoundException e) {
         returnValue = false;
         e.printStackTrace();
@@ -2249,25 +2301,6 @@ public class TvDataUpdateService extends Service {
     
     return returnValue;
   }
-  /*
-  private synchronized boolean handleDatabaseInsertAndUpdate(final ArrayList<ContentValues> insertValuesList, final ArrayList<ContentProviderOperation> updateValuesList, boolean returnValue) {
-    if(insertValuesList != null && !insertValuesList.isEmpty()) {
-      if(insertValuesList.size() > getContentResolver().bulkInsert(TvBrowserContentProvider.CONTENT_URI_CHANNELS, insertValuesList.toArray(new ContentValues[insertValuesList.size()]))) {
-        returnValue = false;
-      }
-    }
-    if(updateValuesList != null && !updateValuesList.isEmpty()) {
-      try {
-        if(updateValuesList.size() > getContentResolver().applyBatch(TvBrowserContentProvider.AUTHORITY, updateValuesList).length) {
-          returnValue = false;
-        }
-      } catch (Exception e) {
-        returnValue = false;
-      }
-    }
-    
-    return returnValue;
-  }*/
   
   private byte[] getXmlBytes(boolean syncFav, boolean syncMarkings) {
     StringBuilder where = new StringBuilder();
@@ -2557,131 +2590,40 @@ public class TvDataUpdateService extends Service {
       mBuilder.setContentText(getResources().getText(R.string.update_notification_calculate));
       notification.notify(ID_NOTIFY, mBuilder.build());
       
-      // Only ID, channel ID, start and end time are needed for update, so use only these columns
-      String[] projection = {
-          TvBrowserContentProvider.KEY_ID,
-          TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID,
-          TvBrowserContentProvider.DATA_KEY_STARTTIME,
-          TvBrowserContentProvider.DATA_KEY_ENDTIME,
-          TvBrowserContentProvider.DATA_KEY_NETTO_PLAY_TIME,
-          TvBrowserContentProvider.CHANNEL_KEY_TIMEZONE,
-          TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES
-      };
+      final long start = System.currentTimeMillis();
       
-      long lastKnownDate = SettingConstants.DATA_LAST_DATE_NO_DATA;
-      ArrayList<ContentProviderOperation> updateValuesList = new ArrayList<>();
+      // only the channels with changed data need to be calculated again
+      final Bundle extras = mChangeLog.getMissingEndsExtras();
       
-      Cursor c = getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_DATA_WITH_CHANNEL, projection, null, null, TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID + " , " + TvBrowserContentProvider.DATA_KEY_STARTTIME + " DESC");
+      final Bundle result = getContentResolver().call(TvBrowserContentProvider.CONTENT_URI_DATA, TvBrowserContentProvider.METHOD_CALCULATE_MISSING_ENDS, null, extras);
       
-      try {
-        // only if there are data update it
-        if(IOUtils.prepareAccess(c)) {
-          int nettoColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_NETTO_PLAY_TIME);
-          
-          int keyIDColumn = c.getColumnIndex(TvBrowserContentProvider.KEY_ID);
-          int channelKeyColumn = c.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID);
-          int startTimeColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_STARTTIME);
-          int endTimeColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_ENDTIME);
-          int timeZoneColumn = c.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_TIMEZONE);
-          int durationColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES);
-          
-          long lastStartTime = -1;
-          int lastChannelKey = -1;
-          
-          Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-          Calendar cal = null;
-          
-          while(c.moveToNext()) {
-            long progID = c.getLong(keyIDColumn);
-            int channelKey = c.getInt(channelKeyColumn);
-            long meStart = c.getLong(startTimeColumn);
-            long end = c.getLong(endTimeColumn);
-            long nettoPlayTime = 0;
-            long duration = c.getLong(durationColumn);
-                                
-            if(c.isNull(nettoColumn)) {
-              nettoPlayTime = c.getLong(nettoColumn) * 60000;
-            }
-            
-            if(lastChannelKey == channelKey) {
-              cal = Calendar.getInstance(TimeZone.getTimeZone(c.getString(timeZoneColumn)));
-              
-              // if end not set or net play time larger than next start or next time not end time
-              if(end == 0 || (nettoPlayTime > (lastStartTime - meStart))/* || (lastProgram && end != nextStart && ((nextStart - meStart) < (3 * 60 * 60000)))*/) {
-                if(nettoPlayTime > (lastStartTime - meStart)) {
-                  lastStartTime = meStart + nettoPlayTime;
-                }
-                else if((lastStartTime - meStart) >= (12 * 60 * 60000)) {
-                  lastStartTime = meStart + (long)(2.5 * 60 * 60000);
-                }
-                
-                utc.setTimeInMillis((cal.getTimeInMillis() / 60000 * 60000));
-                
-                ContentValues values = new ContentValues();
-                values.put(TvBrowserContentProvider.DATA_KEY_ENDTIME, lastStartTime);
-                values.put(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES, (int)((lastStartTime-meStart)/60000));
-                
-                cal.setTimeInMillis(lastStartTime);
-                
-                int startHour = cal.get(Calendar.HOUR_OF_DAY);
-                int startMinute = cal.get(Calendar.MILLISECOND);
-                
-                // Normalize start hour and minute to 2014-12-31 to have the same time base on all occasions
-                utc.setTimeInMillis((IOUtils.normalizeTime(cal, startHour, startMinute, 30).getTimeInMillis() / 60000 * 60000));
-                
-                values.put(TvBrowserContentProvider.DATA_KEY_UTC_END_MINUTE_AFTER_MIDNIGHT, utc.get(Calendar.HOUR_OF_DAY) * 60 + utc.get(Calendar.MINUTE));
-                
-                ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, progID));
-                opBuilder.withValues(values);
-                
-                updateValuesList.add(opBuilder.build());
-              }
-              else if(end != 0 && duration == 0) {
-                ContentValues values = new ContentValues();
-                values.put(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES, (int)((end-meStart)/60000));
-                
-                ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, progID));
-                opBuilder.withValues(values);
-                
-                updateValuesList.add(opBuilder.build());
-              }
-            }
-            else {
-              lastKnownDate = Math.max(meStart, lastKnownDate);
-            }
-            
-            lastChannelKey = channelKey;
-            lastStartTime = meStart;
-          }
-        }
-      }finally {
-        IOUtils.close(c);
-      }
-      
-      if(!updateValuesList.isEmpty()) {
-        getContentResolver().applyBatch(TvBrowserContentProvider.AUTHORITY, updateValuesList);
+      if(result != null) {
+        doLog("MISSING ENDS CALCULATED FOR " + result.getInt(TvBrowserContentProvider.RESULT_CHANGED_COUNT) + " PROGRAMS IN " + (System.currentTimeMillis() - start) + " ms");
+        
+        Editor edit = PrefUtils.getSharedPreferences(PrefUtils.TYPE_PREFERENCES_SHARED_GLOBAL, TvDataUpdateService.this).edit();
+        edit.putLong(getString(R.string.PREF_LAST_KNOWN_DATA_DATE), result.getLong(TvBrowserContentProvider.RESULT_LAST_START_TIME, SettingConstants.DATA_LAST_DATE_NO_DATA));
+        edit.commit();
       }
-      
-      Editor edit = PrefUtils.getSharedPreferences(PrefUtils.TYPE_PREFERENCES_SHARED_GLOBAL, TvDataUpdateService.this).edit();
-      edit.putLong(getString(R.string.PREF_LAST_KNOWN_DATA_DATE), lastKnownDate);
-      edit.commit();
     }catch(Throwable t) {
       Log.d("info13", "", t);
     }
     
     finishUpdate(notification,updateFavorites,syncAllowed);
   }
-    
+  
   private void finishUpdate(NotificationManager notification, boolean updateFavorites, boolean syncAllowed) {
     doLog("FINISH DATA UPDATE");
     IOUtils.handleDataUpdatePreferences(getApplicationContext());
     TvBrowserContentProvider.INFORM_FOR_CHANGES = true;
     getContentResolver().notifyChange(TvBrowserContentProvider.CONTENT_URI_DATA, null);
+    ProgramPictureLoader.clear();
   
     if(updateFavorites) {
       updateFavorites(notification);
     }
     
+    mChangeLog.clear();
+    
     if(syncAllowed && mIsConnected) {
       syncPrograms(notification,R.string.update_data_notification_synchronize_favorites, mSyncFavorites, TvBrowserContentProvider.DATA_KEY_MARKING_FAVORITE, TvBrowserContentProvider.DATA_KEY_MARKING_SYNC, TvBrowserContentProvider.DATA_KEY_REMOVED_SYNC);
       mSyncFavorites = null;
@@ -2726,7 +2668,7 @@ public class TvDataUpdateService extends Service {
     
     TvDataUpdateService.this.sendBroadcast(inform);
     
-    mDontWantToSeeValues = null;
+    mDontWantToSeeFilter = null;
     
     // Data update complete inform user
     mHandler.post(() -> ToastCompat.makeText(TvDataUpdateService.this, R.string.update_complete, ToastCompat.LENGTH_LONG).show());
@@ -2758,38 +2700,23 @@ public class TvDataUpdateService extends Service {
     }
   }
   
-  private AtomicInteger mFavoriteUpdateCount;
-  
   private void updateFavorites(final NotificationManager notification) {
-    final Favorite[] favorites = Favorite.getAllFavorites(TvDataUpdateService.this);
+    // markings of data that didn't change are still valid
+    final Favorite[] favorites = mChangeLog.isEmpty() ? new Favorite[0] : Favorite.getAllFavorites(TvDataUpdateService.this);
+    final String changedData = mChangeLog.getWhereClause();
     
-    mBuilder.setProgress(favorites.length, 0, false);
+    doLog("UPDATE FAVORITES FOR CHANGED DATA: " + (changedData != null ? changedData : "ALL"));
+    
+    mBuilder.setProgress(0, 0, true);
     mBuilder.setContentText(getResources().getText(R.string.update_data_notification_favorites));
     notification.notify(ID_NOTIFY, mBuilder.build());
     
-    ExecutorService updateFavorites = Executors.newFixedThreadPool(Math.max(Runtime.getRuntime().availableProcessors(), 2));
-    
-    mFavoriteUpdateCount = new AtomicInteger(1);
-    
-    for(final Favorite favorite : favorites) {
-      if(!updateFavorites.isShutdown()) {
-        updateFavorites.execute(new Thread("DATA UPDATE FAVORITE UPDATE THREAD") {
-          @Override
-          public void run() {
-            Favorite.handleFavoriteMarking(TvDataUpdateService.this, favorite, Favorite.TYPE_MARK_REMOVE);
-            Favorite.handleFavoriteMarking(TvDataUpdateService.this, favorite, Favorite.TYPE_MARK_ADD);
-            mBuilder.setProgress(favorites.length, mFavoriteUpdateCount.getAndIncrement(), false);
-            notification.notify(ID_NOTIFY, mBuilder.build());
-          }
-        });
-      }
-    }
+    final long start = System.currentTimeMillis();
     
-    updateFavorites.shutdown();
+    // all favorites are matched with one pass over the changed data
+    Favorite.updateFavoriteMarkings(TvDataUpdateService.this, favorites, changedData);
     
-    try {
-      updateFavorites.awaitTermination(favorites.length, TimeUnit.MINUTES);
-    } catch (InterruptedException ignored) {}
+    doLog("FAVORITES UPDATED: " + favorites.length + " FAVORITES IN " + (System.currentTimeMillis() - start) + " ms");
     
     notification.cancel(ID_NOTIFY);
     
@@ -2828,7 +2755,7 @@ public class TvDataUpdateService extends Service {
       File groups = new File(path,GROUP_FILE);
       BufferedReader in = null;
       try {
-        IOUtils.saveUrl(groups.getAbsolutePath(), groupTxt, mInternetConnectionTimeout);
+        mDownloadCache.download(groupTxt, groups, mInternetConnectionTimeout);
         
         if(groups.isFile()) {
           in = new BufferedReader(new InputStreamReader(new FileInputStream(groups)));
@@ -2902,11 +2829,16 @@ public class TvDataUpdateService extends Service {
     
     final File path = IOUtils.getDownloadDirectory(TvDataUpdateService.this.getApplicationContext());
     
+    mJournal = new UpdateJournal(path);
+    
     final File[] oldDataFiles = path.listFiles(pathname -> pathname.getName().toLowerCase(Locale.GERMAN).endsWith(".gz"));
 
     if(oldDataFiles != null) {
       for (File oldFile : oldDataFiles) {
-        deleteFile(oldFile);
+        // the downloaded files of a stopped update are checked and reused when they are needed again
+        if(!mJournal.contains(oldFile)) {
+          deleteFile(oldFile);
+        }
       }
     }
 
@@ -2915,13 +2847,7 @@ public class TvDataUpdateService extends Service {
     Set<String> exclusions = PrefUtils.getStringSetValue(R.string.I_DONT_WANT_TO_SEE_ENTRIES, null);
     
     if(exclusions != null) {
-      mDontWantToSeeValues = new DontWantToSeeExclusion[exclusions.size()];
-      
-      int i = 0;
-      
-      for(String exclusion : exclusions) {
-        mDontWantToSeeValues[i++] = new DontWantToSeeExclusion(exclusion);
-      }
+      mDontWantToSeeFilter = DontWantToSeeFilter.create(exclusions);
     }
     
     if(PrefUtils.getBooleanValue(R.string.LOAD_FULL_DATA, R.bool.load_full_data_default)) {
@@ -2970,6 +2896,7 @@ public class TvDataUpdateService extends Service {
     int downloadCountTemp = 0;
     doLog("readCurrentVersionIDs()");
     readCurrentVersionIDs();
+    resetUncommittedVersions();
     
     DataHandler epgFreeDataHandler = new EPGfreeDataHandler();
     DataHandler epgDonateDataHandler = new EPGdonateDataHandler();
@@ -3301,8 +3228,13 @@ public class TvDataUpdateService extends Service {
     
     final int downloadCount = downloadMirrorList.size() + downloadCountTemp;
     doLog("Data files to load " + downloadCount);
-    mThreadPool = Executors.newFixedThreadPool(Math.max(Runtime.getRuntime().availableProcessors(), 2));
-    mDataUpdatePool = Executors.newFixedThreadPool(Math.max(Runtime.getRuntime().availableProcessors(), 2));
+    // the download tasks only hold the channel updates, so all can be queued
+    final PipelineStage fetchStage = new PipelineStage("FETCH", PIPELINE_FETCH_THREADS, downloadMirrorList.size() + updateList.size());
+    final PipelineStage decodeStage = new PipelineStage("DECODE", PIPELINE_DECODE_THREADS, PIPELINE_DECODE_QUEUE_SIZE);
+    
+    mThreadPool = fetchStage;
+    mDataUpdatePool = decodeStage;
+    mDatabaseWriter = new PipelineStage("WRITE", 1, PIPELINE_WRITE_QUEUE_SIZE);
     
     mBuilder.setProgress(downloadCount, 0, false);
     notification.notify(ID_NOTIFY, mBuilder.build());
@@ -3317,7 +3249,7 @@ public class TvDataUpdateService extends Service {
             
             if(mIsConnected) {
               try {
-                IOUtils.saveUrl(mirrorFile.getAbsolutePath(), mirror.getDownloadURL(), mInternetConnectionTimeout);
+                mDownloadCache.download(mirror.getDownloadURL(), mirrorFile, mInternetConnectionTimeout);
                 updateMirror(mirrorFile);
                 mCurrentDownloadCount++;
                 
@@ -3333,11 +3265,17 @@ public class TvDataUpdateService extends Service {
         });
       }
     }
-    //mDontWantToSeeValues = null;
+    //mDontWantToSeeFilter = null;
     Log.d("info5", "updateCount " + downloadCountTemp);
     
     mDataDatabaseOperation = new MemorySizeConstrictedDatabaseOperation(TvDataUpdateService.this,TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE);
     mVersionDatabaseOperation = new MemorySizeConstrictedDatabaseOperation(TvDataUpdateService.this,TvBrowserContentProvider.CONTENT_URI_DATA_VERSION,10);
+    mDataDatabaseOperation.setWriter(mDatabaseWriter);
+    mVersionDatabaseOperation.setWriter(mDatabaseWriter);
+    mDataDatabaseOperation.setLogName("DATA BATCH");
+    mVersionDatabaseOperation.setLogName("VERSION BATCH");
+    mDecodeNanos.set(0);
+    mUnchangedFrameCount.set(0);
    /* mDataInsertList = new ArrayList<ContentValues>();
     mDataUpdateList = new ArrayList<ContentProviderOperation>();*/
     
@@ -3345,7 +3283,7 @@ public class TvDataUpdateService extends Service {
     mVersionUpdateList = new ArrayList<ContentProviderOperation>();
     */
     if(downloadCountTemp > 0) {
-      readCurrentData();
+      deleteOldData();
               
       for(final ChannelUpdate update : updateList) {
         if(!mThreadPool.isShutdown()) {
@@ -3392,6 +3330,27 @@ public class TvDataUpdateService extends Service {
       mVersionDatabaseOperation.finish();
     }
     
+    final PipelineStage writeStage = mDatabaseWriter;
+    mJournal.close(finishDatabaseWriter());
+    
+    if(mDataDatabaseOperation != null) {
+      logInsertStatistics(mDataDatabaseOperation, mVersionDatabaseOperation);
+    }
+    
+    doLog(fetchStage.getStatistics());
+    doLog(decodeStage.getStatistics());
+    
+    if(writeStage != null) {
+      doLog(writeStage.getStatistics());
+    }
+    
+    doLog(HostConnectionPool.getStatistics());
+    doLog(mDownloadCache.getStatistics());
+    
+    final MirrorScoreboard scoreboard = MirrorScoreboard.getInstance(TvDataUpdateService.this);
+    scoreboard.save(TvDataUpdateService.this);
+    doLog(scoreboard.toString());
+    
 //      insert(mDataInsertList);
    // insertVersion(mVersionInsertList);
     
@@ -3411,11 +3370,6 @@ public class TvDataUpdateService extends Service {
       mCurrentVersionIDs.clear();
       mCurrentVersionIDs = null;
     }
-    
-    if(mCurrentData != null) {
-      mCurrentData.clear();
-      mCurrentData = null;
-    }
 
     if(downloadCountTemp > 0 || !PrefUtils.getBooleanValue(R.string.PREF_EPGPAID_FIRST_DOWNLOAD_DONE, false)) {
       to.setTimeZone(TimeZone.getTimeZone("UTC"));
@@ -3816,12 +3770,6 @@ public class TvDataUpdateService extends Service {
     }
   }
   
-  private static final class CurrentDataHolder {
-    long mProgramID;
-    boolean mDontWantToSee;
-    String mTitle;
-  }
-  
   private void readCurrentVersionIDs() {
     if(mCurrentVersionIDs != null) {
       mCurrentVersionIDs.clear();
@@ -3831,7 +3779,19 @@ public class TvDataUpdateService extends Service {
     }
     
     Cursor ids = null; try {
-    ids = getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_DATA_VERSION, null, null, null, TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID);
+    // the frame hashes are loaded only for the channel days that are updated
+    final String[] projection = {
+        TvBrowserContentProvider.KEY_ID,
+        TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID,
+        TvBrowserContentProvider.VERSION_KEY_DAYS_SINCE_1970,
+        TvBrowserContentProvider.VERSION_KEY_BASE_VERSION,
+        TvBrowserContentProvider.VERSION_KEY_MORE0016_VERSION,
+        TvBrowserContentProvider.VERSION_KEY_MORE1600_VERSION,
+        TvBrowserContentProvider.VERSION_KEY_PICTURE0016_VERSION,
+        TvBrowserContentProvider.VERSION_KEY_PICTURE1600_VERSION
+    };
+    
+    ids = getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_DATA_VERSION, projection, null, null, TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID);
     
     if(ids.getCount() > 0) {
       ids.moveToPosition(-1);
@@ -3864,82 +3824,46 @@ public class TvDataUpdateService extends Service {
     } finally {IOUtils.close(ids);}
   }
   
-  private void readCurrentData() {
-    try {
-      IOUtils.deleteOldData(TvDataUpdateService.this);
-    }catch(Throwable t) {
-      doLog(t.toString());
-    }
-    
-    if(mCurrentData != null) {
-      mCurrentData.clear();
-    }
-    else {
-      mCurrentData = new Hashtable<>();
-    }
+  /**
+   * Loads the frame hashes of the data that was written for the given channel and day.
+   * <p>
+   * @return The frame hashes, empty if there is no written data for the channel and day.
+   */
+  private FrameHashes loadFrameHashes(long channelID, long daysSince1970) {
+    final int[] versionInfo = mCurrentVersionIDs != null ? mCurrentVersionIDs.get(channelID + "_" + daysSince1970) : null;
     
-    String[] projection = {TvBrowserContentProvider.KEY_ID, TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID, TvBrowserContentProvider.DATA_KEY_UNIX_DATE, TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID, TvBrowserContentProvider.DATA_KEY_DATE_PROG_STRING_ID, TvBrowserContentProvider.DATA_KEY_TITLE, TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE};
+    byte[] hashes = null;
     
-    Cursor data = getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_DATA, projection, null, null, TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID + ", " + TvBrowserContentProvider.DATA_KEY_UNIX_DATE + ", " + TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID + ", " + TvBrowserContentProvider.DATA_KEY_DATE_PROG_STRING_ID);
+    // the hashes of a channel day that wasn't written completely don't match the data base
+    if(versionInfo != null && !mJournal.isUncommitted(channelID, daysSince1970)) {
+      final String[] projection = {TvBrowserContentProvider.VERSION_KEY_FRAME_HASHES};
+      
+      Cursor version = null; try {
+        version = getContentResolver().query(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA_VERSION, versionInfo[0]), projection, null, null, null);
+        
+        if(version != null && version.moveToFirst()) {
+          hashes = version.getBlob(version.getColumnIndex(TvBrowserContentProvider.VERSION_KEY_FRAME_HASHES));
+        }
+      }catch(Throwable t) {
+        doLog("Frame hashes not loaded: " + t);
+      } finally {IOUtils.close(version);}
+    }
     
+    return FrameHashes.read(hashes);
+  }
+  
+  /**
+   * Deletes the old data before the update, the data of a channel and day
+   * that is in the data base is loaded when its first data file is read.
+   */
+  private void deleteOldData() {
     try {
-      Hashtable<String, CurrentDataHolder> current = null;
-      String currentKey = null;
-      
-      int keyColumn = data.getColumnIndex(TvBrowserContentProvider.KEY_ID);
-      int frameIDColumn = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID);
-      int frameIdStringColumn = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_DATE_PROG_STRING_ID);
-      int channelColumn = data.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID);
-      int unixDateColumn = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_UNIX_DATE);
-      int titleColumn = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_TITLE);
-      int dontWantToSeeColumn = data.getColumnIndex(TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE);
-      
-      if(IOUtils.prepareAccess(data)) {
-        try {
-          while(!data.isClosed() && data.moveToNext()) {
-            long programKey = data.getInt(keyColumn);
-            String frameID = null;
-            
-            if(!data.isNull(frameIdStringColumn)) {
-              frameID = data.getString(frameIdStringColumn);
-            }
-            else if(!data.isNull(frameIDColumn)) {
-              frameID = String.valueOf(data.getInt(frameIDColumn));
-            }
-            
-            if(frameID != null && mCurrentData != null) {
-              int channelID = data.getInt(channelColumn);
-              long unixDate = data.getLong(unixDateColumn);
-              
-              String testKey = channelID + "_" + unixDate;
-              
-              if(currentKey == null || !currentKey.equals(testKey)) {
-                currentKey = testKey;
-                current = mCurrentData.get(testKey);
-                
-                if(current == null) {
-                  current = new Hashtable<>();
-                  
-                  mCurrentData.put(currentKey, current);
-                }
-              }
-              
-              CurrentDataHolder holder = new CurrentDataHolder();
-              
-              holder.mProgramID = programKey;
-              holder.mTitle = data.getString(titleColumn);
-              holder.mDontWantToSee = data.getInt(dontWantToSeeColumn) == 1;
-              
-              current.put(frameID, holder);
-            }
-          }
-        }catch(IllegalStateException ignored) {
-        }catch(NullPointerException ignored) {}
-      }
-    }finally {
-      IOUtils.close(data);
+      IOUtils.deleteOldData(TvDataUpdateService.this);
+    }catch(Throwable t) {
+      doLog(t.toString());
     }
   }
+
   
   private void updateMirror(File mirrorFile) {
     if(mirrorFile.isFile()) {
@@ -4001,7 +3925,7 @@ public class TvDataUpdateService extends Service {
     if(mIsConnected) {
       InputStream in = null;
       try {
-        IOUtils.saveUrl(path.getAbsolutePath(), summaryurl, mInternetConnectionTimeout);
+        mDownloadCache.download(summaryurl, path, mInternetConnectionTimeout);
         
         if(path.isFile()) {
           if(summary instanceof EPGfreeSummary) {
@@ -4069,16 +3993,44 @@ public class TvDataUpdateService extends Service {
     return summary;
   }
   
-  private static void addArrayToList(ArrayList<String> list, String[] values) {
-    if(values != null && list != null) {
-      Collections.addAll(list, values);
+  private static void prepareFrameColumns(ChannelUpdate update, int level, Set<String> epgPaidChannelIds) {
+    final FrameColumnSet columns = update.getFrameColumns();
+    
+    columns.reset();
+    
+    switch(level)  {
+      case LEVEL_BASE: {
+        columns.add(MASK_LEVEL_BASE);
+        
+        if(update.mContainsDescription) {
+          columns.add(MASK_LEVEL_MORE);
+        }
+        if(update.mContainsPicture) {
+          columns.add(MASK_LEVEL_PICTURE);
+        }
+      }break;
+      case LEVEL_MORE: columns.add(MASK_LEVEL_MORE);break;
+      case LEVEL_PICTURE: columns.add(MASK_LEVEL_PICTURE);break;
+    }
+    
+    if(epgPaidChannelIds != null && epgPaidChannelIds.contains(update.getChannelIDString())) {
+      columns.removeAll(MASK_EPGPAID_POSSIBLE);
     }
   }
   
-  private static void removeEpgPaidFieldsIfNecessary(ArrayList<String> columnList, String channelId, Set<String> epgPaidChannelIds) {
-    if(columnList != null && channelId != null && epgPaidChannelIds != null && epgPaidChannelIds.contains(channelId)) {
-      for(String field : FIELDS_EPGPAID_POSSIBLE) {
-        columnList.remove(field);
+  /**
+   * Resets all columns of the frame that are missing in the frame
+   * but belong to the level of the data file.
+   */
+  private static void resetMissingFrameColumns(FrameColumnSet columns, ContentValues values) {
+    for(int index = columns.nextRemaining(0); index >= 0; index = columns.nextRemaining(index + 1)) {
+      final String columnName = FrameColumnSet.getColumnName(index);
+      
+      switch(FrameColumnSet.getColumnType(index)) {
+        case FrameColumnSet.TYPE_INTEGER: values.put(columnName, (Integer)null);break;
+        case FrameColumnSet.TYPE_BLOB: values.put(columnName, (byte[])null);break;
+        case FrameColumnSet.TYPE_INFO: values.put(columnName, 0);break;
+        default: values.put(columnName, (String)null);break;
       }
     }
   }
@@ -4152,56 +4104,67 @@ public class TvDataUpdateService extends Service {
   }
   
   private interface DataHandler {
-    Object[] readValuesFromDataFile(ChannelUpdate update, DataInputStream in, int level) throws Throwable;
+    Object[] readValuesFromDataFile(ChannelUpdate update, DataFrameInputStream in, int level) throws Throwable;
     
-    DataInfo readDataInfo(ChannelUpdate update, DataInputStream in, UrlFileHolder dataUrlFileHolder) throws IOException;
+    DataInfo readDataInfo(ChannelUpdate update, DataFrameInputStream in, UrlFileHolder dataUrlFileHolder) throws IOException;
     
     void updateVersionTableInternal(ChannelUpdate update);
+    
+    /**
+     * @param fileName The name of a data file.
+     * @return The column of the version table for the level of the file or <code>null</code> if the level is unknown.
+     */
+    String getVersionColumn(String fileName);
   }
   
   private class EPGfreeDataHandler implements DataHandler {
     @Override
-    public Object[] readValuesFromDataFile(ChannelUpdate update, DataInputStream in, int level)
+    public Object[] readValuesFromDataFile(ChannelUpdate update, DataFrameInputStream in, int level)
         throws IOException {
-      short id = (short)(in.read() & 0xFF);
-      int count = (short)(in.read() & 0xFF);
+      in.startFrameHash();
+      
+      short id = (short)in.readUnsignedByte();
+      int count = (short)in.readUnsignedByte();
             
       if(count == 0) {
-        byte[] addBytes = new byte[(((in.read() & 0xFF) << 8) | (in.read() & 0xFF))];
-        
-        //noinspection ResultOfMethodCallIgnored
-        in.read(addBytes);
+        in.readField(in.readUnsignedShort());
         
-        id = (short)((in.read() & 0xFF) + IOUtils.getIntForBytes(addBytes));
-        count = (short)(in.read() & 0xFF);
+        id = (short)(in.readUnsignedByte() + in.getFieldInt());
+        count = (short)in.readUnsignedByte();
       }
       
-      ArrayList<String> columnList = new ArrayList<>();
+      final String frameID = String.valueOf(id);
       
-      switch(level)  {
-        case LEVEL_BASE: {
-          addArrayToList(columnList,FIELDS_LEVEL_BASE);
-          
-          if(update.mContainsDescription) {
-            addArrayToList(columnList,FIELDS_LEVEL_MORE);
-          }
-          if(update.mContainsPicture) {
-            addArrayToList(columnList,FIELDS_LEVEL_PICTURE);
-          }
-        }break;
-        case LEVEL_MORE: addArrayToList(columnList,FIELDS_LEVEL_MORE);break;
-        case LEVEL_PICTURE: addArrayToList(columnList,FIELDS_LEVEL_PICTURE);break;
+      /* the fields are hashed before they are read, the fields of a
+       * known frame with unchanged hash don't need to be read at all */
+      Long frameHash = null;
+      
+      in.mark(MAX_FRAME_HASH_SIZE);
+      
+      if(readFieldsOver(in, count)) {
+        frameHash = in.endFrameHash();
+        
+        if(update.isFrameUnchanged(frameID, frameHash)) {
+          return new Object[] {frameID, Boolean.FALSE, frameHash, Boolean.TRUE};
+        }
       }
-
-      removeEpgPaidFieldsIfNecessary(columnList, String.valueOf(update.getChannelID()), mEpgPaidChannelIds);
+      else {
+        in.endFrameHash();
+      }
+      
+      in.reset();
+      
+      final FrameColumnSet columnList = update.getFrameColumns();
       
-      ContentValues values = update.mContentValueList.get(String.valueOf(id));
+      prepareFrameColumns(update, level, mEpgPaidChannelIds);
+      
+      ContentValues values = update.mContentValueList.get(frameID);
       
       boolean isNew = false;
       
       if(values == null) {
         values = new ContentValues();
-        update.mContentValueList.put(String.valueOf(id), values);
+        update.mContentValueList.put(frameID, values);
         isNew = true;
       }
       
@@ -4211,49 +4174,28 @@ public class TvDataUpdateService extends Service {
         values.put(TvBrowserContentProvider.CHANNEL_KEY_CHANNEL_ID, update.getChannelID());
       }
       
-      byte[] fieldInfoBuffer = new byte[4];
-      
-      Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-      Calendar cal = Calendar.getInstance(update.getTimeZone());
+      final Calendar utc = update.getUtcCalendar();
+      final Calendar cal = update.getLocalCalendar();
       
       for(byte field = 0; field < count; field++) {
-        //noinspection ResultOfMethodCallIgnored
-        in.read(fieldInfoBuffer);
-        byte fieldType = fieldInfoBuffer[0];
+        byte fieldType = in.readByte();
         
-        int dataCount = ((fieldInfoBuffer[1] & 0xFF) << 16) | ((fieldInfoBuffer[2] & 0xFF) << 8) | (fieldInfoBuffer[3] & 0xFF);//((in.read() & 0xFF) << 16) | ((in.read() & 0xFF) << 8) | (in.read() & 0xFF);
+        int dataCount = (in.readUnsignedByte() << 16) | in.readUnsignedShort();
         
-        byte[] data = null;
+        String columnName = null;
         
+        if(fieldType <= 0 || fieldType > EPGFREE_MAX_FIELD_TYPE) {
+          // unknown field, no need to read it into memory
+          in.skipFully(dataCount);
+        }
         /* only read data fields with maximum size of MAX_DATA_SIZE
-         * into memory for usage to prevent OutOfMemoryErrors
+         * into memory for usage to prevent OutOfMemoryErrors,
+         * too big data fields are skipped by the stream
          */
-        if(dataCount <= MAX_DATA_SIZE) {
-          data = new byte[dataCount];
-        
-          int read = 0;
-          
-          while(read < dataCount) {    
-            read += in.read(data, read, dataCount-read);
-          }
-        }
-        else {
-          fieldType = Byte.MAX_VALUE;
-          
-          /* read all bytes from stream of too big data
-           * field to set right start of next field
-           */
-          while(dataCount > 0 && in.read() != -1) {
-            dataCount--;
-          }
-        }
-        
-        String columnName = null;
-        
-        if(data != null) {
+        else if(in.readField(dataCount)) {
           switch(fieldType) {
             case 1: {
-                            int startTime = IOUtils.getIntForBytes(data);
+                            int startTime = in.getFieldInt();
                             utc.setTimeInMillis(update.getDate());
                             
                             cal.set(Calendar.DAY_OF_MONTH, utc.get(Calendar.DAY_OF_MONTH));
@@ -4278,7 +4220,7 @@ public class TvDataUpdateService extends Service {
                             columnList.remove(TvBrowserContentProvider.DATA_KEY_UTC_START_MINUTE_AFTER_MIDNIGHT);
                          }break;
             case 2: {
-              int endTime = IOUtils.getIntForBytes(data);
+              int endTime = in.getFieldInt();
               
               utc.setTimeInMillis(update.getDate());
               
@@ -4311,18 +4253,18 @@ public class TvDataUpdateService extends Service {
               
               columnList.remove(TvBrowserContentProvider.DATA_KEY_UTC_END_MINUTE_AFTER_MIDNIGHT);
            }break;
-            case 3: values.put(columnName = TvBrowserContentProvider.DATA_KEY_TITLE, new String(data));break;
-            case 4: values.put(columnName = TvBrowserContentProvider.DATA_KEY_TITLE_ORIGINAL, new String(data));break;
-            case 5: values.put(columnName = TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE, new String(data));break;
-            case 6: values.put(columnName = TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE_ORIGINAL, new String(data));break;
-            case 7: values.put(columnName = TvBrowserContentProvider.DATA_KEY_SHORT_DESCRIPTION, new String(data));break;
-            case 8: values.put(columnName = TvBrowserContentProvider.DATA_KEY_DESCRIPTION, new String(data));break;
-            case 9: values.put(columnName = TvBrowserContentProvider.DATA_KEY_DURATION_ORIGINAL, new String(data));break;
-            case 0xA: values.put(columnName = TvBrowserContentProvider.DATA_KEY_ACTORS, new String(data));break;
-            case 0xB: values.put(columnName = TvBrowserContentProvider.DATA_KEY_REGIE, new String(data));break;
-            case 0xC: values.put(columnName = TvBrowserContentProvider.DATA_KEY_CUSTOM_INFO, new String(data));break;
+            case 3: values.put(columnName = TvBrowserContentProvider.DATA_KEY_TITLE, in.getFieldString());break;
+            case 4: values.put(columnName = TvBrowserContentProvider.DATA_KEY_TITLE_ORIGINAL, in.getFieldString());break;
+            case 5: values.put(columnName = TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE, in.getFieldString());break;
+            case 6: values.put(columnName = TvBrowserContentProvider.DATA_KEY_EPISODE_TITLE_ORIGINAL, in.getFieldString());break;
+            case 7: values.put(columnName = TvBrowserContentProvider.DATA_KEY_SHORT_DESCRIPTION, in.getFieldString());break;
+            case 8: values.put(columnName = TvBrowserContentProvider.DATA_KEY_DESCRIPTION, in.getFieldString());break;
+            case 9: values.put(columnName = TvBrowserContentProvider.DATA_KEY_DURATION_ORIGINAL, in.getFieldString());break;
+            case 0xA: values.put(columnName = TvBrowserContentProvider.DATA_KEY_ACTORS, in.getFieldString());break;
+            case 0xB: values.put(columnName = TvBrowserContentProvider.DATA_KEY_REGIE, in.getFieldString());break;
+            case 0xC: values.put(columnName = TvBrowserContentProvider.DATA_KEY_CUSTOM_INFO, in.getFieldString());break;
             case 0xD: {
-                int categories = IOUtils.getIntForBytes(data);
+                int categories = in.getFieldInt();
                 
                 values.put(columnName = TvBrowserContentProvider.DATA_KEY_CATEGORIES, categories);
                 
@@ -4331,49 +4273,47 @@ public class TvDataUpdateService extends Service {
                   columnList.remove(TvBrowserContentProvider.INFO_CATEGORIES_COLUMNS_ARRAY[i]);
                 }
               }break;
-            case 0xE: values.put(columnName = TvBrowserContentProvider.DATA_KEY_AGE_LIMIT, IOUtils.getIntForBytes(data));break;
-            case 0xF: values.put(columnName = TvBrowserContentProvider.DATA_KEY_WEBSITE_LINK, new String(data));break;
-            case 0x10: values.put(columnName = TvBrowserContentProvider.DATA_KEY_GENRE, new String(data));break;
-            case 0x11: values.put(columnName = TvBrowserContentProvider.DATA_KEY_ORIGIN, new String(data));break;
-            case 0x12: values.put(columnName = TvBrowserContentProvider.DATA_KEY_NETTO_PLAY_TIME, IOUtils.getIntForBytes(data));break;
-            case 0x13: values.put(columnName = TvBrowserContentProvider.DATA_KEY_VPS, IOUtils.getIntForBytes(data));break;
-            case 0x14: values.put(columnName = TvBrowserContentProvider.DATA_KEY_SCRIPT, new String(data));break;
-            case 0x15: values.put(columnName = TvBrowserContentProvider.DATA_KEY_REPETITION_FROM, new String(data));break;
-            case 0x16: values.put(columnName = TvBrowserContentProvider.DATA_KEY_MUSIC, new String(data));break;
-            case 0x17: values.put(columnName = TvBrowserContentProvider.DATA_KEY_MODERATION, new String(data));break;
-            case 0x18: values.put(columnName = TvBrowserContentProvider.DATA_KEY_YEAR, IOUtils.getIntForBytes(data));break;
-            case 0x19: values.put(columnName = TvBrowserContentProvider.DATA_KEY_REPETITION_ON, new String(data));break;
-            case 0x1A: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PICTURE, data);break;
-            case 0x1B: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PICTURE_COPYRIGHT, new String(data));break;
-            case 0x1C: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PICTURE_DESCRIPTION, new String(data));break;
-            case 0x1D: values.put(columnName = TvBrowserContentProvider.DATA_KEY_EPISODE_NUMBER, IOUtils.getIntForBytes(data));break;
-            case 0x1E: values.put(columnName = TvBrowserContentProvider.DATA_KEY_EPISODE_COUNT, IOUtils.getIntForBytes(data));break;
-            case 0x1F: values.put(columnName = TvBrowserContentProvider.DATA_KEY_SEASON_NUMBER, IOUtils.getIntForBytes(data));break;
-            case 0x20: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PRODUCER, new String(data));break;
-            case 0x21: values.put(columnName = TvBrowserContentProvider.DATA_KEY_CAMERA, new String(data));break;
-            case 0x22: values.put(columnName = TvBrowserContentProvider.DATA_KEY_CUT, new String(data));break;
-            case 0x23: values.put(columnName = TvBrowserContentProvider.DATA_KEY_OTHER_PERSONS, new String(data));break;
-            case 0x24: values.put(columnName = TvBrowserContentProvider.DATA_KEY_RATING, IOUtils.getIntForBytes(data));break;
-            case 0x25: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PRODUCTION_FIRM, new String(data));break;
-            case 0x26: values.put(columnName = TvBrowserContentProvider.DATA_KEY_AGE_LIMIT_STRING, new String(data));break;
-            case 0x27: values.put(columnName = TvBrowserContentProvider.DATA_KEY_LAST_PRODUCTION_YEAR, IOUtils.getIntForBytes(data));break;
-            case 0x28: values.put(columnName = TvBrowserContentProvider.DATA_KEY_ADDITIONAL_INFO, new String(data));break;
-            case 0x29: values.put(columnName = TvBrowserContentProvider.DATA_KEY_SERIES, new String(data));break;
-            case 0x2A: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PART_NUMBER, IOUtils.getIntForBytes(data));break;
-            case 0x2B: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PART_NUMBER_TOTAL, IOUtils.getIntForBytes(data));break;
-            case 0x2C: values.put(columnName = TvBrowserContentProvider.DATA_KEY_KEYWORD_LIST, new String(data));break;
-            case 0x2D: values.put(columnName = TvBrowserContentProvider.DATA_KEY_VOD_INFO, new String(data));break;
-            case 0x2E: values.put(columnName = TvBrowserContentProvider.DATA_KEY_VOD_LINK, new String(data));break;
-            case 0x2F: values.put(columnName = TvBrowserContentProvider.DATA_KEY_GENRE_SUB_LIST, new String(data));break;
-            case 0x30: values.put(columnName = TvBrowserContentProvider.DATA_KEY_YEAR_PRODUCTION_FIRST, IOUtils.getIntForBytes(data));break;
+            case 0xE: values.put(columnName = TvBrowserContentProvider.DATA_KEY_AGE_LIMIT, in.getFieldInt());break;
+            case 0xF: values.put(columnName = TvBrowserContentProvider.DATA_KEY_WEBSITE_LINK, in.getFieldString());break;
+            case 0x10: values.put(columnName = TvBrowserContentProvider.DATA_KEY_GENRE, in.getFieldString());break;
+            case 0x11: values.put(columnName = TvBrowserContentProvider.DATA_KEY_ORIGIN, in.getFieldString());break;
+            case 0x12: values.put(columnName = TvBrowserContentProvider.DATA_KEY_NETTO_PLAY_TIME, in.getFieldInt());break;
+            case 0x13: values.put(columnName = TvBrowserContentProvider.DATA_KEY_VPS, in.getFieldInt());break;
+            case 0x14: values.put(columnName = TvBrowserContentProvider.DATA_KEY_SCRIPT, in.getFieldString());break;
+            case 0x15: values.put(columnName = TvBrowserContentProvider.DATA_KEY_REPETITION_FROM, in.getFieldString());break;
+            case 0x16: values.put(columnName = TvBrowserContentProvider.DATA_KEY_MUSIC, in.getFieldString());break;
+            case 0x17: values.put(columnName = TvBrowserContentProvider.DATA_KEY_MODERATION, in.getFieldString());break;
+            case 0x18: values.put(columnName = TvBrowserContentProvider.DATA_KEY_YEAR, in.getFieldInt());break;
+            case 0x19: values.put(columnName = TvBrowserContentProvider.DATA_KEY_REPETITION_ON, in.getFieldString());break;
+            case 0x1A: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PICTURE, in.getFieldBytes());break;
+            case 0x1B: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PICTURE_COPYRIGHT, in.getFieldString());break;
+            case 0x1C: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PICTURE_DESCRIPTION, in.getFieldString());break;
+            case 0x1D: values.put(columnName = TvBrowserContentProvider.DATA_KEY_EPISODE_NUMBER, in.getFieldInt());break;
+            case 0x1E: values.put(columnName = TvBrowserContentProvider.DATA_KEY_EPISODE_COUNT, in.getFieldInt());break;
+            case 0x1F: values.put(columnName = TvBrowserContentProvider.DATA_KEY_SEASON_NUMBER, in.getFieldInt());break;
+            case 0x20: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PRODUCER, in.getFieldString());break;
+            case 0x21: values.put(columnName = TvBrowserContentProvider.DATA_KEY_CAMERA, in.getFieldString());break;
+            case 0x22: values.put(columnName = TvBrowserContentProvider.DATA_KEY_CUT, in.getFieldString());break;
+            case 0x23: values.put(columnName = TvBrowserContentProvider.DATA_KEY_OTHER_PERSONS, in.getFieldString());break;
+            case 0x24: values.put(columnName = TvBrowserContentProvider.DATA_KEY_RATING, in.getFieldInt());break;
+            case 0x25: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PRODUCTION_FIRM, in.getFieldString());break;
+            case 0x26: values.put(columnName = TvBrowserContentProvider.DATA_KEY_AGE_LIMIT_STRING, in.getFieldString());break;
+            case 0x27: values.put(columnName = TvBrowserContentProvider.DATA_KEY_LAST_PRODUCTION_YEAR, in.getFieldInt());break;
+            case 0x28: values.put(columnName = TvBrowserContentProvider.DATA_KEY_ADDITIONAL_INFO, in.getFieldString());break;
+            case 0x29: values.put(columnName = TvBrowserContentProvider.DATA_KEY_SERIES, in.getFieldString());break;
+            case 0x2A: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PART_NUMBER, in.getFieldInt());break;
+            case 0x2B: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PART_NUMBER_TOTAL, in.getFieldInt());break;
+            case 0x2C: values.put(columnName = TvBrowserContentProvider.DATA_KEY_KEYWORD_LIST, in.getFieldString());break;
+            case 0x2D: values.put(columnName = TvBrowserContentProvider.DATA_KEY_VOD_INFO, in.getFieldString());break;
+            case 0x2E: values.put(columnName = TvBrowserContentProvider.DATA_KEY_VOD_LINK, in.getFieldString());break;
+            case 0x2F: values.put(columnName = TvBrowserContentProvider.DATA_KEY_GENRE_SUB_LIST, in.getFieldString());break;
+            case 0x30: values.put(columnName = TvBrowserContentProvider.DATA_KEY_YEAR_PRODUCTION_FIRST, in.getFieldInt());break;
           }
           
           if(columnName != null) {
             columnList.remove(columnName);
           }
         }
-        
-        data = null;
       }
       
       if(values.containsKey(TvBrowserContentProvider.DATA_KEY_STARTTIME) && !values.containsKey(TvBrowserContentProvider.DATA_KEY_ENDTIME)) {
@@ -4390,35 +4330,44 @@ public class TvDataUpdateService extends Service {
         columnList.remove(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES);
       }
       
-      for(String columnName : columnList) {
-        if(columnName.equals(TvBrowserContentProvider.DATA_KEY_CATEGORIES) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_AGE_LIMIT) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_NETTO_PLAY_TIME) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_VPS) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_YEAR) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_EPISODE_NUMBER) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_EPISODE_COUNT) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_SEASON_NUMBER) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_RATING) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_LAST_PRODUCTION_YEAR)) {
-          values.put(columnName, (Integer)null);
-        }
-        else if(columnName.equals(TvBrowserContentProvider.DATA_KEY_PICTURE)) {
-          values.put(columnName, (byte[])null);
-        }
-        else if(columnNameFromInfo(columnName)) {
-          values.put(columnName, 0);
+      resetMissingFrameColumns(columnList, values);
+      
+      return new Object[] {frameID, isNew, frameHash, Boolean.FALSE};
+    }
+    
+    /**
+     * Reads over the fields of a frame to hash them.
+     * <p>
+     * @return <code>true</code> if all fields were read, <code>false</code> if the
+     * frame is too big to be read again.
+     */
+    private boolean readFieldsOver(DataFrameInputStream in, int count) throws IOException {
+      int read = 0;
+      
+      for(int field = 0; field < count; field++) {
+        if(read + 4 > MAX_FRAME_HASH_SIZE) {
+          return false;
         }
-        else {
-          values.put(columnName, (String)null);
+        
+        in.readByte();
+        
+        final int dataCount = (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+        
+        read += 4;
+        
+        if(read + dataCount > MAX_FRAME_HASH_SIZE) {
+          return false;
         }
+        
+        in.readOverFully(dataCount);
+        read += dataCount;
       }
       
-      return new Object[] {String.valueOf(id),isNew};
+      return true;
     }
 
     @Override
-    public DataInfo readDataInfo(ChannelUpdate update, DataInputStream in, UrlFileHolder dataUrlFileHolder) throws IOException{
+    public DataInfo readDataInfo(ChannelUpdate update, DataFrameInputStream in, UrlFileHolder dataUrlFileHolder) throws IOException{
       /* EPGfree data
        * fileInfoBuffer[0] contains file version
        * fileInfoBuffer[1] contains data version
@@ -4426,8 +4375,7 @@ public class TvDataUpdateService extends Service {
        */
       byte[] fileInfoBuffer = new byte[3];
       
-      //noinspection ResultOfMethodCallIgnored
-      in.read(fileInfoBuffer);
+      in.readFully(fileInfoBuffer);
       
       return new DataInfo(fileInfoBuffer[0],fileInfoBuffer[1],dataUrlFileHolder.getFrameCount((short)(fileInfoBuffer[2] & 0xFF)));
     }
@@ -4443,26 +4391,15 @@ public class TvDataUpdateService extends Service {
       
       for(String fileName : update.mVersionMap.keySet()) {
         Byte dataVersion = update.mVersionMap.get(fileName);
+        String versionColumn = getVersionColumn(fileName);
         
-        if(dataVersion != null) {
-          if(fileName.toLowerCase(Locale.GERMAN).contains(SettingConstants.EPG_FREE_LEVEL_NAMES[0])) {
-            values.put(TvBrowserContentProvider.VERSION_KEY_BASE_VERSION,dataVersion);
-          }
-          else if(fileName.toLowerCase(Locale.GERMAN).contains(SettingConstants.EPG_FREE_LEVEL_NAMES[1])) {
-            values.put(TvBrowserContentProvider.VERSION_KEY_MORE0016_VERSION,dataVersion);
-          }
-          else if(fileName.toLowerCase(Locale.GERMAN).contains(SettingConstants.EPG_FREE_LEVEL_NAMES[2])) {
-            values.put(TvBrowserContentProvider.VERSION_KEY_MORE1600_VERSION,dataVersion);
-          }
-          else if(fileName.toLowerCase(Locale.GERMAN).contains(SettingConstants.EPG_FREE_LEVEL_NAMES[3])) {
-            values.put(TvBrowserContentProvider.VERSION_KEY_PICTURE0016_VERSION,dataVersion);
-          }
-          else if(fileName.toLowerCase(Locale.GERMAN).contains(SettingConstants.EPG_FREE_LEVEL_NAMES[4])) {
-            values.put(TvBrowserContentProvider.VERSION_KEY_PICTURE1600_VERSION,dataVersion);
-          }
+        if(dataVersion != null && versionColumn != null) {
+          values.put(versionColumn,dataVersion);
         }
       }
       
+      update.putFrameHashes(values);
+      
       int[] versionInfo = mCurrentVersionIDs.get(update.getChannelID() + "_" + daysSince1970);
       
       if(versionInfo == null && mVersionDatabaseOperation != null) {
@@ -4473,10 +4410,33 @@ public class TvDataUpdateService extends Service {
         ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA_VERSION, versionInfo[0]));
         opBuilder.withValues(values);
      
-        mVersionDatabaseOperation.addUpdate(opBuilder.build());
+        mVersionDatabaseOperation.addUpdate(opBuilder.build(), values);
         //addVersionUpdate(opBuilder.build());
       }
     }
+    
+    @Override
+    public String getVersionColumn(String fileName) {
+      final String name = fileName.toLowerCase(Locale.GERMAN);
+      
+      if(name.contains(SettingConstants.EPG_FREE_LEVEL_NAMES[0])) {
+        return TvBrowserContentProvider.VERSION_KEY_BASE_VERSION;
+      }
+      else if(name.contains(SettingConstants.EPG_FREE_LEVEL_NAMES[1])) {
+        return TvBrowserContentProvider.VERSION_KEY_MORE0016_VERSION;
+      }
+      else if(name.contains(SettingConstants.EPG_FREE_LEVEL_NAMES[2])) {
+        return TvBrowserContentProvider.VERSION_KEY_MORE1600_VERSION;
+      }
+      else if(name.contains(SettingConstants.EPG_FREE_LEVEL_NAMES[3])) {
+        return TvBrowserContentProvider.VERSION_KEY_PICTURE0016_VERSION;
+      }
+      else if(name.contains(SettingConstants.EPG_FREE_LEVEL_NAMES[4])) {
+        return TvBrowserContentProvider.VERSION_KEY_PICTURE1600_VERSION;
+      }
+      
+      return null;
+    }
   }
   
   private class EPGpaidDataHandler {
@@ -4650,7 +4610,9 @@ public class TvDataUpdateService extends Service {
               ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, programId));
               opBuilder.withValues(values);
            
-              mDataDatabaseOperation.addUpdate(opBuilder.build());
+              mDataDatabaseOperation.addUpdate(opBuilder.build(), values);
+              // the channel of the program isn't known here
+              mChangeLog.markAll();
             }
             else {
               result.setHadUnknownIds();
@@ -4673,28 +4635,16 @@ public class TvDataUpdateService extends Service {
   private class EPGdonateDataHandler implements DataHandler {
     
     @Override
-    public Object[] readValuesFromDataFile(ChannelUpdate update, DataInputStream in, int level) throws IOException {
+    public Object[] readValuesFromDataFile(ChannelUpdate update, DataFrameInputStream in, int level) throws IOException {
+      // the fields of this format have no common length, so the frame is hashed while it is read
+      in.startFrameHash();
+      
       String id = in.readUTF();
       byte count = in.readByte();
             
-      ArrayList<String> columnList = new ArrayList<>();
-      
-      switch(level)  {
-        case LEVEL_BASE: {
-          addArrayToList(columnList,FIELDS_LEVEL_BASE);
-          
-          if(update.mContainsDescription) {
-            addArrayToList(columnList,FIELDS_LEVEL_MORE);
-          }
-          if(update.mContainsPicture) {
-            addArrayToList(columnList,FIELDS_LEVEL_PICTURE);
-          }
-        }break;
-        case LEVEL_MORE: addArrayToList(columnList,FIELDS_LEVEL_MORE);break;
-        case LEVEL_PICTURE: addArrayToList(columnList,FIELDS_LEVEL_PICTURE);break;
-      }
+      final FrameColumnSet columnList = update.getFrameColumns();
       
-      removeEpgPaidFieldsIfNecessary(columnList, String.valueOf(update.getChannelID()), mEpgPaidChannelIds);
+      prepareFrameColumns(update, level, mEpgPaidChannelIds);
       
       ContentValues values = update.mContentValueList.get(id);
       
@@ -4776,34 +4726,12 @@ public class TvDataUpdateService extends Service {
           case 0x17: values.put(columnName = TvBrowserContentProvider.DATA_KEY_MODERATION, in.readUTF());break;
           case 0x18: values.put(columnName = TvBrowserContentProvider.DATA_KEY_YEAR, in.readShort());break;
           case 0x19: values.put(columnName = TvBrowserContentProvider.DATA_KEY_REPETITION_ON, in.readUTF());break;
-          case 0x1A: {  byte[] data = null;
-                        int dataCount = in.readInt();
-                        
-                        /* only read data fields with maximum size of MAX_DATA_SIZE
-                         * into memory for usage to prevent OutOfMemoryErrors
+          case 0x1A: {  /* only read data fields with maximum size of MAX_DATA_SIZE
+                         * into memory for usage to prevent OutOfMemoryErrors,
+                         * too big data fields are skipped by the stream
                          */
-                        if(dataCount <= MAX_DATA_SIZE) {
-                          data = new byte[dataCount];
-                        
-                          int read = 0;
-                          
-                          while(read < dataCount) {    
-                            read += in.read(data, read, dataCount-read);
-                          }
-                        }
-                        else {
-                          fieldType = Byte.MAX_VALUE;
-                          
-                          /* read all bytes from stream of too big data
-                           * field to set right start of next field
-                           */
-                          while(dataCount > 0 && in.read() != -1) {
-                            dataCount--;
-                          }
-                        }
-                        
-                        if(data != null) {
-                          values.put(columnName = TvBrowserContentProvider.DATA_KEY_PICTURE, data);
+                        if(in.readField(in.readInt())) {
+                          values.put(columnName = TvBrowserContentProvider.DATA_KEY_PICTURE, in.getFieldBytes());
                         }
                      }break;
           case 0x1B: values.put(columnName = TvBrowserContentProvider.DATA_KEY_PICTURE_COPYRIGHT, in.readUTF());break;
@@ -4842,35 +4770,23 @@ public class TvDataUpdateService extends Service {
         columnList.remove(TvBrowserContentProvider.DATA_KEY_DURATION_IN_MINUTES);
       }
       
-      for(String columnName : columnList) {
-        if(columnName.equals(TvBrowserContentProvider.DATA_KEY_CATEGORIES) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_AGE_LIMIT) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_NETTO_PLAY_TIME) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_VPS) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_YEAR) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_EPISODE_NUMBER) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_EPISODE_COUNT) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_SEASON_NUMBER) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_RATING) ||
-           columnName.equals(TvBrowserContentProvider.DATA_KEY_LAST_PRODUCTION_YEAR)) {
-          values.put(columnName, (Integer)null);
-        }
-        else if(columnName.equals(TvBrowserContentProvider.DATA_KEY_PICTURE)) {
-          values.put(columnName, (byte[])null);
-        }
-        else if(columnNameFromInfo(columnName)) {
-          values.put(columnName, 0);
-        }
-        else {
-          values.put(columnName, (String)null);
+      resetMissingFrameColumns(columnList, values);
+      
+      final long frameHash = in.endFrameHash();
+      
+      if(update.isFrameUnchanged(id, frameHash)) {
+        if(isNew) {
+          update.mContentValueList.remove(id);
         }
+        
+        return new Object[] {id, isNew, frameHash, Boolean.TRUE};
       }
       
-      return new Object[] {id,isNew};
+      return new Object[] {id, isNew, frameHash, Boolean.FALSE};
     }
 
     @Override
-    public DataInfo readDataInfo(ChannelUpdate update, DataInputStream in, UrlFileHolder urlFileHolder) throws IOException {
+    public DataInfo readDataInfo(ChannelUpdate update, DataFrameInputStream in, UrlFileHolder urlFileHolder) throws IOException {
       byte fileVersion = in.readByte();
       byte dataVersion = in.readByte();
       
@@ -4888,20 +4804,15 @@ public class TvDataUpdateService extends Service {
       
       for(String fileName : update.mVersionMap.keySet()) {
         Byte dataVersion = update.mVersionMap.get(fileName);
+        String versionColumn = getVersionColumn(fileName);
         Log.d("info21","ADD VERSION INFO " + fileName + " " + update.getChannelID() + "_" + daysSince1970 + " " + dataVersion);
-        if(dataVersion != null) {
-          if(fileName.toLowerCase(Locale.GERMAN).contains(SettingConstants.EPG_DONATE_LEVEL_NAMES[0])) {
-            values.put(TvBrowserContentProvider.VERSION_KEY_BASE_VERSION,dataVersion.intValue());
-          }
-          else if(fileName.toLowerCase(Locale.GERMAN).contains(SettingConstants.EPG_DONATE_LEVEL_NAMES[1])) {
-            values.put(TvBrowserContentProvider.VERSION_KEY_MORE1600_VERSION,dataVersion.intValue());
-          }
-          else if(fileName.toLowerCase(Locale.GERMAN).contains(SettingConstants.EPG_DONATE_LEVEL_NAMES[2])) {
-            values.put(TvBrowserContentProvider.VERSION_KEY_PICTURE1600_VERSION,dataVersion.intValue());
-          }
+        if(dataVersion != null && versionColumn != null) {
+          values.put(versionColumn,dataVersion.intValue());
         }
       }
       
+      update.putFrameHashes(values);
+      
       int[] versionInfo = mCurrentVersionIDs.get(update.getChannelID() + "_" + daysSince1970);
       
       Log.d("info21","currentInfo " + Arrays.toString(versionInfo) + " BASE " + values.getAsByte(TvBrowserContentProvider.VERSION_KEY_BASE_VERSION));
@@ -4914,10 +4825,27 @@ public class TvDataUpdateService extends Service {
         ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA_VERSION, versionInfo[0]));
         opBuilder.withValues(values);
      
-        mVersionDatabaseOperation.addUpdate(opBuilder.build());
+        mVersionDatabaseOperation.addUpdate(opBuilder.build(), values);
         //addVersionUpdate(opBuilder.build());
       }
     }
+    
+    @Override
+    public String getVersionColumn(String fileName) {
+      final String name = fileName.toLowerCase(Locale.GERMAN);
+      
+      if(name.contains(SettingConstants.EPG_DONATE_LEVEL_NAMES[0])) {
+        return TvBrowserContentProvider.VERSION_KEY_BASE_VERSION;
+      }
+      else if(name.contains(SettingConstants.EPG_DONATE_LEVEL_NAMES[1])) {
+        return TvBrowserContentProvider.VERSION_KEY_MORE1600_VERSION;
+      }
+      else if(name.contains(SettingConstants.EPG_DONATE_LEVEL_NAMES[2])) {
+        return TvBrowserContentProvider.VERSION_KEY_PICTURE1600_VERSION;
+      }
+      
+      return null;
+    }
   }
   
   /**
@@ -4935,10 +4863,25 @@ public class TvDataUpdateService extends Service {
     private HashMap<String, Byte> mVersionMap;
     private ArrayList<ContentValues> mInsertValuesList;
     private LongSparseArray<ContentValues> mUpdateValueMap;
+    private ArrayList<File> mHandledFiles;
+    /* the frame IDs of the known programs with unchanged base data */
+    private HashSet<String> mUnchangedFrames;
     private boolean mContainsPicture;
     private boolean mContainsDescription;
     private final DataHandler mDataHandler;
     
+    /* reused for all frames of this update, the frames
+     * of an update are read by one thread only */
+    private TimeZone mTimeZoneValue;
+    private FrameColumnSet mFrameColumns;
+    private Calendar mUtcCalendar;
+    private Calendar mLocalCalendar;
+    
+    /* the frame hashes and the programs in the data base of the
+     * channel day, loaded with the first data file */
+    private FrameHashes mFrameHashes;
+    private ChannelDayIndex mCurrentData;
+    
     /**
      * @param date Start time in milliseconds since 1970 for UTC 0 o'clock.
      */
@@ -4962,6 +4905,8 @@ public class TvDataUpdateService extends Service {
       mInsertValuesList = new ArrayList<>();
       mVersionMap = new HashMap<>();
       mUpdateValueMap = new LongSparseArray<>();
+      mHandledFiles = new ArrayList<>();
+      mUnchangedFrames = new HashSet<>();
       mContainsDescription = false;
       mContainsPicture = false;
     }
@@ -4977,14 +4922,81 @@ public class TvDataUpdateService extends Service {
       return mChannelID;
     }
     
+    String getChannelIDString() {
+      return String.valueOf(mChannelID);
+    }
+    
     TimeZone getTimeZone() {
-      return TimeZone.getTimeZone(mTimeZone);
+      if(mTimeZoneValue == null) {
+        mTimeZoneValue = TimeZone.getTimeZone(mTimeZone);
+      }
+      
+      return mTimeZoneValue;
+    }
+    
+    FrameColumnSet getFrameColumns() {
+      if(mFrameColumns == null) {
+        mFrameColumns = new FrameColumnSet();
+      }
+      
+      return mFrameColumns;
+    }
+    
+    Calendar getUtcCalendar() {
+      if(mUtcCalendar == null) {
+        mUtcCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+      }
+      
+      return mUtcCalendar;
+    }
+    
+    Calendar getLocalCalendar() {
+      if(mLocalCalendar == null) {
+        mLocalCalendar = Calendar.getInstance(getTimeZone());
+      }
+      
+      return mLocalCalendar;
     }
     
     long getDate() {
       return mDate;
     }
     
+    ChannelDayIndex getCurrentData() {
+      if(mCurrentData == null) {
+        mCurrentData = ChannelDayIndex.load(getContentResolver(), mChannelID, mDate);
+      }
+      
+      return mCurrentData;
+    }
+    
+    FrameHashes getFrameHashes() {
+      if(mFrameHashes == null) {
+        mFrameHashes = loadFrameHashes(mChannelID, mDate / 24 / 60 / 60000);
+      }
+      
+      return mFrameHashes;
+    }
+    
+    /**
+     * @param frameID The ID of the frame.
+     * @param frameHash The hash of the frame in the data file that is read.
+     * @return <code>true</code> if the program of the frame is known and the
+     * frame didn't change since it was written to the data base.
+     */
+    boolean isFrameUnchanged(String frameID, long frameHash) {
+      return mCurrentData != null && mFrameHashes != null && mCurrentData.indexOf(frameID) >= 0 && mFrameHashes.contains(frameHash);
+    }
+    
+    /**
+     * Puts the frame hashes of the read data files into the given values of the version table.
+     */
+    void putFrameHashes(ContentValues values) {
+      if(mFrameHashes != null && !mFrameHashes.isEmpty()) {
+        values.put(TvBrowserContentProvider.VERSION_KEY_FRAME_HASHES, mFrameHashes.toByteArray());
+      }
+    }
+    
     boolean toDownload() {
       return !mUrlList.isEmpty();
     }
@@ -5036,7 +5048,13 @@ public class TvDataUpdateService extends Service {
           try {
             long downloadStart = System.currentTimeMillis();
             
-            if(IOUtils.saveUrl(updateFile.getAbsolutePath(), url, mInternetConnectionTimeout)) {
+            if(mJournal.isDownloaded(url, updateFile)) {
+              doLog("Reuse downloaded file: " + updateFile.getName());
+              downloadList.add(new UrlFileHolder(updateFile, url));
+            }
+            else if(IOUtils.saveUrl(updateFile.getAbsolutePath(), url, mInternetConnectionTimeout)) {
+              MirrorScoreboard.getInstance(TvDataUpdateService.this).recordDownload(url, updateFile.length(), System.currentTimeMillis() - downloadStart);
+              mJournal.downloaded(url, updateFile);
               downloadList.add(new UrlFileHolder(updateFile, url));
             }
             else {
@@ -5073,6 +5091,15 @@ public class TvDataUpdateService extends Service {
     }
     
     private void handleData() {
+      final long daysSince1970 = mDate / 24 / 60 / 60000;
+      
+      mChangeLog.add(mChannelID, mDate);
+      mJournal.started(mChannelID, daysSince1970);
+      
+      final ArrayList<ContentValues> inserts = new ArrayList<>(mInsertValuesList.size());
+      final ArrayList<ContentProviderOperation> updates = new ArrayList<>();
+      long updateBytes = 0;
+      
       if(!mInsertValuesList.isEmpty()) {
         Collections.sort(mInsertValuesList, (lhs, rhs) -> {
           if(lhs.containsKey(TvBrowserContentProvider.DATA_KEY_STARTTIME) && rhs.containsKey(TvBrowserContentProvider.DATA_KEY_STARTTIME)) {
@@ -5135,9 +5162,8 @@ public class TvDataUpdateService extends Service {
            toAdd = mInsertValuesList.get(i);
          }
          for(ContentValues values : mInsertValuesList) {
-           if(values.containsKey(TvBrowserContentProvider.DATA_KEY_STARTTIME) && mDataDatabaseOperation != null) {
-             mDataDatabaseOperation.addInsert(values);
-             //addInsert(values);
+           if(values.containsKey(TvBrowserContentProvider.DATA_KEY_STARTTIME)) {
+             inserts.add(values);
            }
          }
        }
@@ -5147,21 +5173,63 @@ public class TvDataUpdateService extends Service {
            final long programID = mUpdateValueMap.keyAt(i);
            ContentValues value = mUpdateValueMap.get(programID);
            
-           if(value != null && mDataDatabaseOperation != null) {
+           if(value != null) {
              ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, programID));
              opBuilder.withValues(value);
           
-             mDataDatabaseOperation.addUpdate(opBuilder.build());
-             //addUpdate(opBuilder.build());
+             updates.add(opBuilder.build());
+             updateBytes += BatchSizeController.estimateSize(value);
            }
          }
        }
        
+       // the rows of the channel day are handed over to the data base writer at once
+       if(mDataDatabaseOperation != null) {
+         mDataDatabaseOperation.addAll(inserts, updates, updateBytes);
+       }
+       
        mDataHandler.updateVersionTableInternal(this);
-         
+       
+       commitAfterWrite(daysSince1970);
+       
        clear();
     }
     
+    /**
+     * Records the channel day as written in the journal and deletes the data
+     * files after the data and the version of the day were written successfully.
+     * If writing failed the day stays uncommitted, so it's loaded again by the
+     * next update.
+     */
+    private void commitAfterWrite(final long daysSince1970) {
+      final ArrayList<File> handledFiles = mHandledFiles;
+      final UpdateJournal journal = mJournal;
+      final MemorySizeConstrictedDatabaseOperation dataOperation = mDataDatabaseOperation;
+      final MemorySizeConstrictedDatabaseOperation versionOperation = mVersionDatabaseOperation;
+      
+      if(dataOperation != null && versionOperation != null) {
+        final AtomicInteger pendingOperations = new AtomicInteger(2);
+        final AtomicBoolean written = new AtomicBoolean(true);
+        
+        final MemorySizeConstrictedDatabaseOperation.WriteCallback commit = success -> {
+          if(!success) {
+            written.set(false);
+          }
+          
+          if(pendingOperations.decrementAndGet() == 0 && written.get()) {
+            journal.committed(mChannelID, daysSince1970);
+            
+            for(File file : handledFiles) {
+              deleteFile(file);
+            }
+          }
+        };
+        
+        dataOperation.runAfterWrite(commit);
+        versionOperation.runAfterWrite(commit);
+      }
+    }
+    
     void clear() {
       mContentValueList.clear();
       mVersionMap.clear();
@@ -5177,6 +5245,10 @@ public class TvDataUpdateService extends Service {
       mVersionMap = null;
       mUpdateValueMap = null;
       mInsertValuesList = null;
+      mHandledFiles = null;
+      mUnchangedFrames = null;
+      mFrameHashes = null;
+      mCurrentData = null;
     }
     
     private void handleDownload(UrlFileHolder dataUrlFileHolder) {
@@ -5184,39 +5256,23 @@ public class TvDataUpdateService extends Service {
       Log.d("info21", "FILE " + dataFile.getAbsolutePath());
       if(dataFile.isFile()) {
         doLog("Read data from file: " +dataFile.getAbsolutePath());
-        DataInputStream in = null;
+        DataFrameInputStream in = null;
+        final long decodeStart = System.nanoTime();
+        
         try {
-          ByteArrayOutputStream temp = null;
-          try {
-            in = new DataInputStream(new BufferedInputStream(IOUtils.decompressStream(new FileInputStream(dataFile))));
-            temp = new ByteArrayOutputStream();
-            
-            byte[] buffer = new byte[8192];
-            
-            int count = 0;
-            int readCount = 0;
-            
-            while((count = in.read(buffer)) > 0) {
-              temp.write(buffer, readCount, count);
-            }
-            
-            IOUtils.close(in);
-            
-            in = new DataInputStream(new ByteArrayInputStream(temp.toByteArray()));
-          }catch(IOException ignored) {
-           
-          } finally {
-            IOUtils.close(temp);
-          }
+          // frames are read directly from the decompressed file stream
+          in = DataFrameInputStream.open(dataFile, MAX_DATA_SIZE);
           
           final DataInfo dataInfo = mDataHandler.readDataInfo(this, in, dataUrlFileHolder);
           
-          doLog("Frame count of data file: '" +dataFile.getName() + "': " + dataInfo.getFrameCount() + " CURRENT DATA STATE: " + (mCurrentData != null));
-          ArrayList<String> missingFrameIDs = null;
-                  
-          String key = getChannelID() + "_" + getDate();
+          final ChannelDayIndex current = getCurrentData();
+          
+          doLog("Frame count of data file: '" +dataFile.getName() + "': " + dataInfo.getFrameCount() + " CURRENT DATA COUNT: " + current.size());
+          
+          // the positions of the known programs that are contained in the base data
+          boolean[] foundPrograms = null;
           
-          Hashtable<String, CurrentDataHolder> current = mCurrentData.get(key);
+          getFrameHashes().startLevel(mDataHandler.getVersionColumn(dataFile.getName()));
           
           int level = LEVEL_BASE;
           
@@ -5229,14 +5285,10 @@ public class TvDataUpdateService extends Service {
           
           doLogData(" LEVEL " + level);
           
-          if(current != null && level == LEVEL_BASE) {
-            Set<String> keySet = current.keySet();
-            
-            missingFrameIDs = new ArrayList<>(keySet.size());
-
-            missingFrameIDs.addAll(keySet);
+          if(current.size() > 0 && level == LEVEL_BASE) {
+            foundPrograms = new boolean[current.size()];
             
-            doLog("CURRENT FRAMES COUNT FOR '" + dataFile.getName() + "' " + missingFrameIDs.size());
+            doLog("CURRENT FRAMES COUNT FOR '" + dataFile.getName() + "' " + current.size());
           }
           
           for(int i = 0; i < dataInfo.getFrameCount(); i++) {
@@ -5245,54 +5297,77 @@ public class TvDataUpdateService extends Service {
               
               String frameID = (String)info[0];
               boolean isNew =  (Boolean)info[1];
+              Long frameHash = (Long)info[2];
+              
+              final int position = current.indexOf(frameID);
+              final long programID = position >= 0 ? current.getProgramID(position) : -1;
               
               ContentValues contentValues = mContentValueList.get(frameID);
               
+              if((Boolean)info[3]) {
+                // frame didn't change, the program is kept as it is
+                if(foundPrograms != null && position >= 0) {
+                  foundPrograms[position] = true;
+                }
+                
+                if(level == LEVEL_BASE) {
+                  mUnchangedFrames.add(frameID);
+                  
+                  // values of other levels that were read before the unchanged base data
+                  if(contentValues != null && mUpdateValueMap.get(programID) == null) {
+                    mUpdateValueMap.put(programID, contentValues);
+                  }
+                }
+                else if(contentValues != null) {
+                  // the base data resets the columns of the other levels, the unchanged data of the level is kept
+                  for(String column : level == LEVEL_MORE ? FIELDS_LEVEL_MORE : FIELDS_LEVEL_PICTURE) {
+                    contentValues.remove(column);
+                  }
+                }
+                
+                mFrameHashes.add(frameHash);
+                mUnchangedFrameCount.incrementAndGet();
+                continue;
+              }
+              
               if(contentValues == null) {
                 break;
               }
               
-              long programID = -1;
-              CurrentDataHolder value = null;
-              
-              if(current != null) {
-                value = current.get(frameID);
-                
-                if(value != null) {
-                  programID = value.mProgramID;
-                }
+              if(frameHash != null) {
+                mFrameHashes.add(frameHash);
               }
               
               if(contentValues.size() > 0) {
-                if(missingFrameIDs != null) {
-                  missingFrameIDs.remove(frameID);
+                if(foundPrograms != null && position >= 0) {
+                  foundPrograms[position] = true;
                 }
                 
                 if(programID >= 0) {
-                  if(level == LEVEL_BASE && mDontWantToSeeValues != null) {
+                  if(level == LEVEL_BASE && mDontWantToSeeFilter != null) {
                     String title = contentValues.getAsString(TvBrowserContentProvider.DATA_KEY_TITLE);
                     
                     if(title != null) {
-                      if(title.equals(value.mTitle)) {
-                        contentValues.put(TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE, value.mDontWantToSee ? 1 : 0);
+                      if(current.hasTitle(position, title)) {
+                        contentValues.put(TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE, current.isDontWantToSee(position) ? 1 : 0);
                       }
-                      else if(UiUtils.filter(title, mDontWantToSeeValues)) {
+                      else if(mDontWantToSeeFilter.matches(title)) {
                         contentValues.put(TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE, 1);
                       }
                     }
                   }
                   
-                  // program known update it
-                  if(isNew && isValidDataContent(contentValues)) {
+                  // program known update it, the base data is already in the data base if it didn't change
+                  if(isNew && (isValidDataContent(contentValues) || mUnchangedFrames.contains(frameID))) {
                     mUpdateValueMap.put(programID, contentValues);
                   }
                 }
                 else if(contentValues.containsKey(TvBrowserContentProvider.DATA_KEY_STARTTIME) && contentValues.get(TvBrowserContentProvider.DATA_KEY_STARTTIME) != null) {
                   // program unknown insert it
-                  if(level == LEVEL_BASE && mDontWantToSeeValues != null) {
+                  if(level == LEVEL_BASE && mDontWantToSeeFilter != null) {
                     String title = contentValues.getAsString(TvBrowserContentProvider.DATA_KEY_TITLE);
                     
-                    if(UiUtils.filter(title, mDontWantToSeeValues)) {
+                    if(mDontWantToSeeFilter.matches(title)) {
                       contentValues.put(TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE, 1);
                     }
                   }
@@ -5319,20 +5394,28 @@ public class TvDataUpdateService extends Service {
               doLog("Error read data file: '" +dataFile.getAbsolutePath() + "': " + t.getMessage() + " " + message.toString());
             }
           }
+          mDecodeNanos.addAndGet(System.nanoTime() - decodeStart);
+          
           Log.d("info21", "VERSION " + dataFile.getName() + " " + dataInfo.getDataVersion());
           mVersionMap.put(dataFile.getName(), dataInfo.getDataVersion());
           
-          if(level == LEVEL_BASE && missingFrameIDs != null && !missingFrameIDs.isEmpty()) {
-            StringBuilder where = new StringBuilder(" ( ( ");
+          final long[] missingProgramIDs = foundPrograms != null ? current.getMissingProgramIDs(foundPrograms) : null;
+          
+          if(level == LEVEL_BASE && missingProgramIDs != null) {
+            StringBuilder where = new StringBuilder(" ( ");
             
-            where.append(TvBrowserContentProvider.DATA_KEY_DATE_PROG_ID);
+            where.append(TvBrowserContentProvider.KEY_ID);
             where.append(" IN ( ");
-            where.append(TextUtils.join(", ", missingFrameIDs));
-            where.append(" ) ) OR ( ");
-            where.append(TvBrowserContentProvider.DATA_KEY_DATE_PROG_STRING_ID);
-            where.append(" IN ( '");
-            where.append(TextUtils.join("', '", missingFrameIDs));            
-            where.append("' ) ) ) ");
+            
+            for(int i = 0; i < missingProgramIDs.length; i++) {
+              if(i > 0) {
+                where.append(", ");
+              }
+              
+              where.append(missingProgramIDs[i]);
+            }
+            
+            where.append(" ) ) ");
             where.append(" AND ");
             where.append(" ( ");
             where.append(TvBrowserContentProvider.DATA_KEY_UNIX_DATE);
@@ -5366,9 +5449,14 @@ public class TvDataUpdateService extends Service {
           Log.d("info5", "error data update", e);
         } finally {
           IOUtils.close(in);
+          
+          if(mFrameHashes != null) {
+            mFrameHashes.endLevel();
+          }
         }
         
-        deleteFile(dataFile);
+        // the file is deleted after its data was written to the data base
+        mHandledFiles.add(dataFile);
         
         doLog("Read data DONE from file: " +dataFile.getAbsolutePath());
       }
@@ -5384,14 +5472,64 @@ public class TvDataUpdateService extends Service {
     }
   }
   
-  private boolean columnNameFromInfo(String columnName) {
-    for(String name : TvBrowserContentProvider.INFO_CATEGORIES_COLUMNS_ARRAY) {
-      if(name.equals(columnName)) {
-        return true;
+  /**
+   * Waits until the database writer has written all handed over operations.
+   * <p>
+   * @return <code>true</code> if all operations were written.
+   */
+  private boolean finishDatabaseWriter() {
+    final PipelineStage writer = mDatabaseWriter;
+    boolean result = true;
+    
+    if(writer != null) {
+      writer.shutdown();
+      
+      try {
+        if(!writer.awaitTermination(30, TimeUnit.MINUTES)) {
+          doLog("NOT WRITTEN DATABASE OPERATIONS " + writer.shutdownNow().size());
+          result = false;
+        }
+      } catch (InterruptedException e) {
+        doLog("DATABASE WRITER INTERRUPTED " + e.getLocalizedMessage());
+        result = false;
       }
+      
+      mDatabaseWriter = null;
     }
     
-    return false;
+    return result;
+  }
+  
+  /**
+   * Sets the versions of the channel days that weren't written to the data base
+   * by a stopped update to 0, so the data of the days is loaded again.
+   */
+  private void resetUncommittedVersions() {
+    final Set<String> uncommitted = mJournal.getUncommittedChannelDays();
+    
+    for(String key : uncommitted) {
+      final int[] versionInfo = mCurrentVersionIDs.get(key);
+      
+      if(versionInfo != null) {
+        Arrays.fill(versionInfo, 1, versionInfo.length, 0);
+      }
+    }
+    
+    doLog("UPDATE JOURNAL: resumable: " + mJournal.isResumable() + " channel days to load again: " + uncommitted.size());
+  }
+  
+  private void logInsertStatistics(MemorySizeConstrictedDatabaseOperation data, MemorySizeConstrictedDatabaseOperation version) {
+    final int inserted = data.getInsertedCount();
+    final long insertMillis = data.getInsertMillis();
+    
+    // the rate only counts the time of the inserts, not of the updates and the version rows
+    doLog("DATA UPDATE STATISTICS: inserted rows: " + inserted
+        + " rows/sec: " + (insertMillis > 0 ? inserted * 1000L / insertMillis : inserted)
+        + " insert ms: " + insertMillis
+        + " update ms: " + data.getUpdateMillis()
+        + " version ms: " + (version != null ? version.getInsertMillis() + version.getUpdateMillis() : 0)
+        + " decoding ms: " + (mDecodeNanos.get() / 1000000)
+        + " unchanged frames: " + mUnchangedFrameCount.get());
   }
   
   private static boolean isValidDataContent(ContentValues values) {
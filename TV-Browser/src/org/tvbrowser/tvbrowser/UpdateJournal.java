@@ -0,0 +1,328 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.tvbrowser;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.tvbrowser.utils.IOUtils;
+
+import android.util.Log;
+
+/**
+ * The journal of a data update, it allows to resume an update that
+ * was stopped before it was finished.
+ * <p>
+ * The journal records the downloaded data files with their size, checksum
+ * and download time and for every channel and day if its data was handed
+ * to the data base and if it was written to the data base. The records are
+ * appended to a file in the download directory as soon as they happen.
+ * The next update reuses the downloaded files that are still valid and
+ * not older than {@link #MAX_DOWNLOAD_AGE} and loads the data of the
+ * channels and days that weren't written again. After an update was
+ * finished only the channels and days that weren't written are kept.
+ *
+ * @author René Mach
+ */
+final class UpdateJournal {
+  private static final String JOURNAL_FILE = "update.journal";
+  
+  private static final String SEPARATOR = "\t";
+  
+  /* the maximum age of a downloaded file that is reused, newer data files
+   * could be available on the server for older downloads */
+  private static final long MAX_DOWNLOAD_AGE = 2 * 60 * 60 * 1000L;
+  
+  private static final String RECORD_DOWNLOADED = "D";
+  private static final String RECORD_STARTED = "S";
+  private static final String RECORD_COMMITTED = "C";
+  
+  private final File mJournalFile;
+  
+  /* key is the file name */
+  private final HashMap<String, DownloadedFile> mDownloadedFiles;
+  /* the channel days (channel ID + "_" + days since 1970) that
+   * were handed to the data base but weren't written */
+  private final HashSet<String> mUncommitted;
+  
+  private Writer mOut;
+  
+  /**
+   * Loads the journal from the given directory.
+   * <p>
+   * @param directory The download directory of the data update.
+   */
+  UpdateJournal(File directory) {
+    mJournalFile = new File(directory, JOURNAL_FILE);
+    mDownloadedFiles = new HashMap<>();
+    mUncommitted = new HashSet<>();
+    
+    if(mJournalFile.isFile()) {
+      load();
+    }
+  }
+  
+  private void load() {
+    BufferedReader in = null;
+    
+    try {
+      in = new BufferedReader(new InputStreamReader(new FileInputStream(mJournalFile), "UTF-8"));
+      
+      String line;
+      
+      while((line = in.readLine()) != null) {
+        final String[] parts = line.split(SEPARATOR);
+        
+        try {
+          if(parts.length == 6 && parts[0].equals(RECORD_DOWNLOADED)) {
+            final DownloadedFile downloaded = new DownloadedFile(parts[2], Long.parseLong(parts[3]), Long.parseLong(parts[4]), Long.parseLong(parts[5]));
+            
+            if(downloaded.isCurrent()) {
+              mDownloadedFiles.put(parts[1], downloaded);
+            }
+          }
+          else if(parts.length == 3 && parts[0].equals(RECORD_STARTED)) {
+            mUncommitted.add(getKey(Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+          }
+          else if(parts.length == 3 && parts[0].equals(RECORD_COMMITTED)) {
+            mUncommitted.remove(getKey(Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+          }
+        }catch(NumberFormatException e) {
+          // the last record can be incomplete if the update was killed while writing it
+        }
+      }
+    }catch(IOException e) {
+      Log.d("info5", "UPDATE JOURNAL NOT READ " + e);
+    }finally {
+      IOUtils.close(in);
+    }
+  }
+  
+  private static String getKey(long channelID, long daysSince1970) {
+    return channelID + "_" + daysSince1970;
+  }
+  
+  /**
+   * @return <code>true</code> if the journal contains records of an update that wasn't finished.
+   */
+  synchronized boolean isResumable() {
+    return !mDownloadedFiles.isEmpty() || !mUncommitted.isEmpty();
+  }
+  
+  /**
+   * @return The keys (channel ID + "_" + days since 1970) of the channel days of
+   * which the data was handed to the data base but wasn't written.
+   */
+  synchronized Set<String> getUncommittedChannelDays() {
+    return new HashSet<>(mUncommitted);
+  }
+  
+  /**
+   * @return <code>true</code> if the data of the given channel and day was
+   * handed to the data base but wasn't written.
+   */
+  synchronized boolean isUncommitted(long channelID, long daysSince1970) {
+    return mUncommitted.contains(getKey(channelID, daysSince1970));
+  }
+  
+  /**
+   * @param file The file to check.
+   * @return <code>true</code> if the journal has a record for the file, the file isn't checked.
+   */
+  synchronized boolean contains(File file) {
+    return mDownloadedFiles.containsKey(file.getName());
+  }
+  
+  /**
+   * @param file The file to check.
+   * @return <code>true</code> if the file was downloaded completely by an update.
+   */
+  boolean isDownloaded(File file) {
+    final DownloadedFile downloaded;
+    
+    synchronized(this) {
+      downloaded = mDownloadedFiles.get(file.getName());
+    }
+    
+    return downloaded != null && downloaded.isCurrent() && downloaded.matches(file);
+  }
+  
+  /**
+   * @param url The URL the file should be loaded from.
+   * @param file The file to check.
+   * @return <code>true</code> if the file was downloaded completely from the given URL.
+   */
+  boolean isDownloaded(String url, File file) {
+    final DownloadedFile downloaded;
+    
+    synchronized(this) {
+      downloaded = mDownloadedFiles.get(file.getName());
+    }
+    
+    return downloaded != null && downloaded.mUrl.equals(url) && downloaded.isCurrent() && downloaded.matches(file);
+  }
+  
+  /**
+   * Records that the given file was downloaded completely.
+   * <p>
+   * @param url The URL the file was loaded from.
+   * @param file The downloaded file.
+   */
+  void downloaded(String url, File file) {
+    final long checksum = calculateChecksum(file);
+    
+    if(checksum != -1) {
+      final DownloadedFile downloaded = new DownloadedFile(url, file.length(), checksum, System.currentTimeMillis());
+      
+      synchronized(this) {
+        mDownloadedFiles.put(file.getName(), downloaded);
+        append(RECORD_DOWNLOADED, file.getName(), url, String.valueOf(downloaded.mSize), String.valueOf(checksum), String.valueOf(downloaded.mTime));
+      }
+    }
+  }
+  
+  /**
+   * Records that the data of the given channel and day is handed to the data base.
+   */
+  synchronized void started(long channelID, long daysSince1970) {
+    mUncommitted.add(getKey(channelID, daysSince1970));
+    append(RECORD_STARTED, String.valueOf(channelID), String.valueOf(daysSince1970));
+  }
+  
+  /**
+   * Records that the data of the given channel and day was written to the data base.
+   */
+  synchronized void committed(long channelID, long daysSince1970) {
+    mUncommitted.remove(getKey(channelID, daysSince1970));
+    append(RECORD_COMMITTED, String.valueOf(channelID), String.valueOf(daysSince1970));
+  }
+  
+  private void append(String... values) {
+    try {
+      if(mOut == null) {
+        mOut = new OutputStreamWriter(new FileOutputStream(mJournalFile, true), "UTF-8");
+      }
+      
+      final StringBuilder record = new StringBuilder();
+      
+      for(int i = 0; i < values.length; i++) {
+        if(i > 0) {
+          record.append(SEPARATOR);
+        }
+        
+        record.append(values[i]);
+      }
+      
+      record.append("\n");
+      
+      // the record has to be in the file if the process is killed
+      mOut.write(record.toString());
+      mOut.flush();
+    }catch(IOException e) {
+      Log.d("info5", "UPDATE JOURNAL NOT WRITTEN " + e);
+    }
+  }
+  
+  /**
+   * Closes the journal. If the update was finished the records of the
+   * downloaded files are removed and the journal file is deleted, only
+   * the channels and days that weren't written to the data base are
+   * kept for the next update.
+   * <p>
+   * @param finished <code>true</code> if the update was finished.
+   */
+  synchronized void close(boolean finished) {
+    IOUtils.close(mOut);
+    mOut = null;
+    
+    if(finished) {
+      mDownloadedFiles.clear();
+      
+      if(mJournalFile.isFile() && !mJournalFile.delete()) {
+        mJournalFile.deleteOnExit();
+      }
+      
+      if(!mUncommitted.isEmpty()) {
+        for(String key : mUncommitted) {
+          final int index = key.indexOf('_');
+          append(RECORD_STARTED, key.substring(0, index), key.substring(index + 1));
+        }
+        
+        IOUtils.close(mOut);
+        mOut = null;
+      }
+    }
+  }
+  
+  private static long calculateChecksum(File file) {
+    final CRC32 crc = new CRC32();
+    final byte[] buffer = new byte[8192];
+    
+    InputStream in = null;
+    
+    try {
+      in = new FileInputStream(file);
+      
+      int count;
+      
+      while((count = in.read(buffer)) != -1) {
+        crc.update(buffer, 0, count);
+      }
+    }catch(IOException e) {
+      return -1;
+    }finally {
+      IOUtils.close(in);
+    }
+    
+    return crc.getValue();
+  }
+  
+  private static final class DownloadedFile {
+    private final String mUrl;
+    private final long mSize;
+    private final long mChecksum;
+    private final long mTime;
+    
+    DownloadedFile(String url, long size, long checksum, long time) {
+      mUrl = url;
+      mSize = size;
+      mChecksum = checksum;
+      mTime = time;
+    }
+    
+    boolean isCurrent() {
+      final long age = System.currentTimeMillis() - mTime;
+      
+      return age >= 0 && age <= MAX_DOWNLOAD_AGE;
+    }
+    
+    boolean matches(File file) {
+      return file.isFile() && file.length() == mSize && calculateChecksum(file) == mChecksum;
+    }
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.utils;
+
+import java.util.HashMap;
+
+import org.tvbrowser.content.TvBrowserContentProvider;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.util.Log;
+import androidx.collection.SparseArrayCompat;
+
+/**
+ * The decoded channel logos of the process.
+ * <p>
+ * The logos are decoded once and kept by the ID of the channel, scaled
+ * variants of the logos are kept by the ID of the channel and the maximum
+ * height of the variant. Logos that aren't known are read from the data base
+ * when they are requested the first time, {@link #reload(Context)} decodes the
+ * logos of all selected channels with one query and has to be called after
+ * the logos or the channel selection in the data base were changed.
+ * <p>
+ * The logos are read and decoded without holding a lock, a reload replaces
+ * all logos at once, so the logos can be requested during a reload.
+ *
+ * @author René Mach
+ */
+public final class ChannelLogoCache {
+  private static final Object RELOAD_LOCK = new Object();
+  
+  private static volatile Logos LOGOS = new Logos(new SparseArrayCompat<>(), false);
+  
+  private ChannelLogoCache() {}
+  
+  /**
+   * Gets the logo of the given channel.
+   * <p>
+   * @param context The context to use.
+   * @param channelID The ID of the channel in the data base.
+   * @return The logo or <code>null</code> if the channel has no logo.
+   */
+  public static Bitmap get(Context context, int channelID) {
+    final Logos logos = LOGOS;
+    
+    synchronized(logos) {
+      if(logos.mLogos.indexOfKey(channelID) >= 0) {
+        return logos.mLogos.get(channelID);
+      }
+    }
+    
+    Bitmap logo = null;
+    
+    if(IOUtils.isDatabaseAccessible(context)) {
+      final Cursor channel = context.getContentResolver().query(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_CHANNELS, channelID), new String[] {TvBrowserContentProvider.CHANNEL_KEY_LOGO}, null, null, null);
+      
+      try {
+        if(IOUtils.prepareAccessFirst(channel)) {
+          logo = UiUtils.createBitmapFromByteArray(channel.getBlob(channel.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_LOGO)));
+          
+          synchronized(logos) {
+            logos.mLogos.put(channelID, logo);
+          }
+        }
+      }finally {
+        IOUtils.close(channel);
+      }
+    }
+    
+    return logo;
+  }
+  
+  /**
+   * Gets the logo of the given channel scaled down to the given height.
+   * <p>
+   * @param context The context to use.
+   * @param channelID The ID of the channel in the data base.
+   * @param maxHeight The maximum height of the logo, smaller logos aren't scaled.
+   * @return The logo or <code>null</code> if the channel has no logo.
+   */
+  public static Bitmap get(Context context, int channelID, int maxHeight) {
+    final Logos logos = LOGOS;
+    final Long key = ((long)channelID << 32) | (maxHeight & 0xFFFFFFFFL);
+    
+    Bitmap logo;
+    
+    synchronized(logos) {
+      logo = logos.mScaledLogos.get(key);
+    }
+    
+    if(logo == null) {
+      logo = get(context, channelID);
+      
+      if(logo != null) {
+        float percent = maxHeight / (float)logo.getHeight();
+        
+        if(percent < 1) {
+          logo = Bitmap.createScaledBitmap(logo, (int)(logo.getWidth() * percent), maxHeight, true);
+        }
+        
+        synchronized(logos) {
+          logos.mScaledLogos.put(key, logo);
+        }
+      }
+    }
+    
+    return logo;
+  }
+  
+  /**
+   * Removes all logos and decodes the logos of the selected channels.
+   * <p>
+   * @param context The context to use.
+   */
+  public static void reload(Context context) {
+    // reloads don't overtake each other, so the logos of the last reload are kept
+    synchronized(RELOAD_LOCK) {
+      final long start = System.currentTimeMillis();
+      
+      final SparseArrayCompat<Bitmap> decoded = new SparseArrayCompat<>();
+      boolean selectedLoaded = false;
+      
+      if(IOUtils.isDatabaseAccessible(context)) {
+        final Cursor channels = context.getContentResolver().query(TvBrowserContentProvider.CONTENT_URI_CHANNELS, new String[] {TvBrowserContentProvider.KEY_ID,TvBrowserContentProvider.CHANNEL_KEY_LOGO}, TvBrowserContentProvider.CHANNEL_KEY_SELECTION, null, null);
+        
+        try {
+          if(IOUtils.prepareAccess(channels)) {
+            final int keyIndex = channels.getColumnIndex(TvBrowserContentProvider.KEY_ID);
+            final int logoIndex = channels.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_LOGO);
+            
+            while(channels.moveToNext()) {
+              decoded.put(channels.getInt(keyIndex), UiUtils.createBitmapFromByteArray(channels.getBlob(logoIndex)));
+            }
+            
+            selectedLoaded = true;
+          }
+        }finally {
+          IOUtils.close(channels);
+        }
+      }
+      
+      LOGOS = new Logos(decoded, selectedLoaded);
+      
+      Log.d("info4", "CHANNEL LOGOS decoded: " + decoded.size() + " ms: " + (System.currentTimeMillis() - start));
+    }
+  }
+  
+  /**
+   * Gets the logos of the selected channels, the logos are decoded
+   * if they weren't decoded since the last reload.
+   * <p>
+   * @param context The context to use.
+   * @return The logos of the channels with a logo, key is the channel ID.
+   */
+  public static SparseArrayCompat<Bitmap> getSelectedLogos(Context context) {
+    if(!LOGOS.mSelectedLoaded) {
+      reload(context);
+    }
+    
+    final Logos current = LOGOS;
+    
+    synchronized(current) {
+      final SparseArrayCompat<Bitmap> logos = new SparseArrayCompat<>(current.mLogos.size());
+      
+      for(int i = 0; i < current.mLogos.size(); i++) {
+        if(current.mLogos.valueAt(i) != null) {
+          logos.put(current.mLogos.keyAt(i), current.mLogos.valueAt(i));
+        }
+      }
+      
+      return logos;
+    }
+  }
+  
+  /*
+   * The logos of one reload, the instance is locked for the access
+   * of the maps, but never while logos are read or decoded.
+   */
+  private static final class Logos {
+    /* key is the channel ID, value is the logo or null if the channel has no logo */
+    private final SparseArrayCompat<Bitmap> mLogos;
+    /* key is the channel ID in the upper and the maximum height in the lower 32 bits */
+    private final HashMap<Long, Bitmap> mScaledLogos;
+    private final boolean mSelectedLoaded;
+    
+    private Logos(SparseArrayCompat<Bitmap> logos, boolean selectedLoaded) {
+      mLogos = logos;
+      mScaledLogos = new HashMap<>();
+      mSelectedLoaded = selectedLoaded;
+    }
+  }
+}
@@ -0,0 +1,279 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.util.Properties;
+
+import android.util.Log;
+
+/**
+ * Downloads files with conditional requests.
+ * <p>
+ * A copy of every downloaded file is kept in the cache directory together
+ * with the validators (ETag and Last-Modified) the server sent for it. The
+ * next download of the URL sends the validators to the server and if the
+ * server answers that the file didn't change, the copy is used instead of
+ * downloading the file again. Copies that weren't used for
+ * {@value #MAX_UNUSED_DAYS} days are removed.
+ *
+ * @author René Mach
+ */
+public final class ConditionalDownloadCache {
+  private static final int MAX_UNUSED_DAYS = 30;
+  
+  private static final String DATA_EXTENSION = ".data";
+  private static final String META_EXTENSION = ".meta";
+  
+  private static final String KEY_URL = "url";
+  private static final String KEY_ETAG = "etag";
+  private static final String KEY_LAST_MODIFIED = "lastModified";
+  
+  private final File mDirectory;
+  
+  private int mRequestCount;
+  private int mHitCount;
+  private long mLoadedBytes;
+  private long mSavedBytes;
+  
+  /**
+   * Creates a cache that keeps the copies in the given directory and
+   * removes the copies that weren't used for a long time.
+   * <p>
+   * @param directory The directory for the copies.
+   */
+  public ConditionalDownloadCache(File directory) {
+    mDirectory = directory;
+    
+    if(!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+      Log.d("info51", "CACHE DIRECTORY NOT CREATED: " + mDirectory);
+    }
+    
+    removeUnused();
+  }
+  
+  /**
+   * Downloads the given URL into the given file, the local copy is used
+   * if the file on the server didn't change since the last download.
+   * <p>
+   * @param urlString The URL to load from.
+   * @param target The file to save to.
+   * @param timeout The maximum time in milliseconds to wait for the connection
+   * and for data while reading.
+   * @return <code>true</code> if the file was saved successfully, <code>false</code> otherwise.
+   */
+  public boolean download(String urlString, File target, int timeout) {
+    final String key = Integer.toHexString(urlString.hashCode());
+    final File data = new File(mDirectory, key + DATA_EXTENSION);
+    final File meta = new File(mDirectory, key + META_EXTENSION);
+    
+    final Properties validators = readValidators(meta, data, urlString);
+    
+    HostConnectionPool.Lease lease = null;
+    
+    boolean success = false;
+    boolean complete = false;
+    
+    try {
+      lease = UrlDownloader.openConnection(urlString, timeout);
+      final URLConnection connection = lease.getConnection();
+      
+      if(validators != null) {
+        final String eTag = validators.getProperty(KEY_ETAG);
+        final String lastModified = validators.getProperty(KEY_LAST_MODIFIED);
+        
+        if(eTag != null) {
+          connection.setRequestProperty("If-None-Match", eTag);
+        }
+        if(lastModified != null) {
+          connection.setRequestProperty("If-Modified-Since", lastModified);
+        }
+      }
+      
+      final int responseCode = connection instanceof HttpURLConnection ? ((HttpURLConnection)connection).getResponseCode() : HttpURLConnection.HTTP_OK;
+      
+      if(responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && validators != null) {
+        complete = true;
+        success = copy(data, target);
+        
+        if(success) {
+          addStatistics(true, data.length());
+          
+          //noinspection ResultOfMethodCallIgnored
+          meta.setLastModified(System.currentTimeMillis());
+        }
+      }
+      else if(responseCode == HttpURLConnection.HTTP_OK) {
+        success = UrlDownloader.write(lease.getInputStream(), target);
+        complete = true;
+        
+        if(success) {
+          addStatistics(false, target.length());
+          storeCopy(connection, urlString, target, data, meta);
+        }
+      }
+    }catch(IOException e) {
+      Log.d("info51", "CONDITIONAL DOWNLOAD FAILED: " + urlString + " " + e);
+    }finally {
+      if(lease != null) {
+        lease.release(complete);
+      }
+    }
+    
+    return success;
+  }
+  
+  /**
+   * Returns the statistics of the downloads since the last call and resets them.
+   * <p>
+   * @return The statistics of the downloads.
+   */
+  public synchronized String getStatistics() {
+    final StringBuilder statistics = new StringBuilder("CONDITIONAL DOWNLOAD STATISTICS: requests: ");
+    
+    statistics.append(mRequestCount).append(" not modified: ").append(mHitCount);
+    statistics.append(" hit ratio: ").append(mRequestCount > 0 ? (mHitCount * 100 / mRequestCount) : 0).append("%");
+    statistics.append(" bytes loaded: ").append(mLoadedBytes).append(" bytes saved: ").append(mSavedBytes);
+    
+    mRequestCount = 0;
+    mHitCount = 0;
+    mLoadedBytes = 0;
+    mSavedBytes = 0;
+    
+    return statistics.toString();
+  }
+  
+  private synchronized void addStatistics(boolean hit, long bytes) {
+    mRequestCount++;
+    
+    if(hit) {
+      mHitCount++;
+      mSavedBytes += bytes;
+    }
+    else {
+      mLoadedBytes += bytes;
+    }
+  }
+  
+  private Properties readValidators(File meta, File data, String urlString) {
+    Properties validators = null;
+    
+    if(meta.isFile() && data.isFile()) {
+      InputStream in = null;
+      
+      try {
+        in = new FileInputStream(meta);
+        
+        final Properties properties = new Properties();
+        properties.load(in);
+        
+        // different URLs can have the same key
+        if(urlString.equals(properties.getProperty(KEY_URL))) {
+          validators = properties;
+        }
+      }catch(IOException e) {
+        Log.d("info51", "CACHE ENTRY NOT READ: " + meta + " " + e);
+      }finally {
+        IOUtils.close(in);
+      }
+    }
+    
+    return validators;
+  }
+  
+  private void storeCopy(URLConnection connection, String urlString, File target, File data, File meta) {
+    final String eTag = connection.getHeaderField("ETag");
+    final String lastModified = connection.getHeaderField("Last-Modified");
+    
+    deleteFile(meta);
+    
+    if(eTag != null || lastModified != null) {
+      final Properties validators = new Properties();
+      validators.setProperty(KEY_URL, urlString);
+      
+      if(eTag != null) {
+        validators.setProperty(KEY_ETAG, eTag);
+      }
+      if(lastModified != null) {
+        validators.setProperty(KEY_LAST_MODIFIED, lastModified);
+      }
+      
+      OutputStream out = null;
+      
+      try {
+        if(copy(target, data)) {
+          out = new FileOutputStream(meta);
+          validators.store(out, null);
+        }
+      }catch(IOException e) {
+        Log.d("info51", "CACHE ENTRY NOT WRITTEN: " + meta + " " + e);
+        
+        IOUtils.close(out);
+        out = null;
+        
+        deleteFile(meta);
+      }finally {
+        IOUtils.close(out);
+      }
+    }
+    else {
+      deleteFile(data);
+    }
+  }
+  
+  private static boolean copy(File source, File target) throws IOException {
+    InputStream in = null;
+    
+    try {
+      in = new FileInputStream(source);
+      
+      return UrlDownloader.write(in, target);
+    }finally {
+      IOUtils.close(in);
+    }
+  }
+  
+  private void removeUnused() {
+    final File[] metaFiles = mDirectory.listFiles((dir, name) -> name.endsWith(META_EXTENSION));
+    
+    if(metaFiles != null) {
+      final long oldest = System.currentTimeMillis() - MAX_UNUSED_DAYS * 24L * 60 * 60000;
+      
+      for(File meta : metaFiles) {
+        if(meta.lastModified() < oldest) {
+          final String name = meta.getName();
+          
+          deleteFile(new File(mDirectory, name.substring(0, name.length() - META_EXTENSION.length()) + DATA_EXTENSION));
+          deleteFile(meta);
+        }
+      }
+    }
+  }
+  
+  private static void deleteFile(File file) {
+    if(file.isFile() && !file.delete()) {
+      file.deleteOnExit();
+    }
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Manages the HTTP connections to the mirror hosts, so the persistent
+ * connections of the platform connection pool are reused for many files.
+ * <p>
+ * The platform keeps a connection alive for the next request to the same
+ * host if the body of the response was read completely and the connection
+ * wasn't disconnected. All connections opened with this class are released
+ * that way whenever possible. The number of parallel connections for every
+ * host is limited below the five connections per host the platform keeps
+ * alive by default, so a finished connection is always available for the
+ * next request to the host.
+ * <p>
+ * The statistics count how often a connection that was kept alive before
+ * was available for a request. The platform doesn't tell if it really reused
+ * that connection.
+ *
+ * @author René Mach
+ */
+public final class HostConnectionPool {
+  /** The maximum number of parallel and persistent connections for a host */
+  public static final int MAX_CONNECTIONS_PER_HOST = 4;
+  
+  /* the time the platform keeps idle connections alive */
+  private static final long KEEP_ALIVE_MILLIS = 5 * 60000L;
+  
+  /* the maximum number of bytes that are read from an unread response to keep its connection */
+  private static final int MAX_DRAIN_BYTES = 64 * 1024;
+  
+  private static final HashMap<String, Host> HOST_MAP = new HashMap<>();
+  
+  private HostConnectionPool() {}
+  
+  /**
+   * Opens a connection for the given URL, waits if all connections to the host are in use.
+   * The time waited for a free connection doesn't count for the timeout.
+   * <p>
+   * @param urlString The URL to open.
+   * @param timeout The connect and read timeout in milliseconds.
+   * @return The lease of the connection that has to be released with {@link Lease#release(boolean)}.
+   * @throws IOException If the connection could not be opened.
+   */
+  public static Lease open(String urlString, int timeout) throws IOException {
+    final URL url = new URL(urlString);
+    final Host host = getHost(url.getHost());
+    
+    try {
+      // every lease is released after its timeout at the latest
+      host.mPermits.acquire();
+    }catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for connection to " + url.getHost());
+    }
+    
+    host.acquired();
+    
+    try {
+      final URLConnection connection = url.openConnection();
+      IOUtils.setConnectionTimeout(connection, timeout);
+      
+      return new Lease(host, connection);
+    }catch(IOException | RuntimeException e) {
+      host.released(false);
+      throw e;
+    }
+  }
+  
+  private static Host getHost(String name) {
+    synchronized(HOST_MAP) {
+      Host host = HOST_MAP.get(name);
+      
+      if(host == null) {
+        host = new Host();
+        HOST_MAP.put(name, host);
+      }
+      
+      return host;
+    }
+  }
+  
+  /**
+   * Returns the statistics of all hosts since the last call and resets them.
+   * <p>
+   * @return The statistics of the hosts.
+   */
+  public static String getStatistics() {
+    final StringBuilder statistics = new StringBuilder("CONNECTION STATISTICS:");
+    
+    synchronized(HOST_MAP) {
+      for(Map.Entry<String, Host> entry : HOST_MAP.entrySet()) {
+        entry.getValue().appendStatistics(entry.getKey(), statistics);
+      }
+    }
+    
+    return statistics.toString();
+  }
+  
+  /**
+   * A connection that was opened with the pool.
+   */
+  public static final class Lease {
+    private final Host mHost;
+    private final URLConnection mConnection;
+    private InputStream mInputStream;
+    private boolean mReleased;
+    
+    private Lease(Host host, URLConnection connection) {
+      mHost = host;
+      mConnection = connection;
+      mReleased = false;
+    }
+    
+    public URLConnection getConnection() {
+      return mConnection;
+    }
+    
+    public InputStream getInputStream() throws IOException {
+      if(mInputStream == null) {
+        mInputStream = mConnection.getInputStream();
+      }
+      
+      return mInputStream;
+    }
+    
+    /**
+     * Releases the connection, the connection is kept alive if the response was
+     * read completely or the rest of the response is small enough to be skipped.
+     * <p>
+     * @param complete <code>true</code> if the body of the response was read completely.
+     */
+    public void release(boolean complete) {
+      if(mReleased) {
+        return;
+      }
+      
+      mReleased = true;
+      
+      boolean keep = complete;
+      
+      if(!keep) {
+        keep = drain();
+      }
+      
+      IOUtils.close(mInputStream);
+      
+      if(!keep) {
+        IOUtils.disconnect(mConnection);
+      }
+      
+      mHost.released(keep);
+    }
+    
+    private boolean drain() {
+      boolean result = false;
+      
+      try {
+        final InputStream in = getInputStream();
+        long skipped = 0;
+        
+        while(skipped <= MAX_DRAIN_BYTES) {
+          final long count = in.skip(MAX_DRAIN_BYTES);
+          
+          if(count > 0) {
+            skipped += count;
+          }
+          else if(in.read() == -1) {
+            result = true;
+            break;
+          }
+          else {
+            skipped++;
+          }
+        }
+      }catch(IOException ignored) {
+        // error responses don't have an input stream, the connection can't be kept
+      }
+      
+      return result;
+    }
+  }
+  
+  private static final class Host {
+    private final Semaphore mPermits;
+    
+    private int mIdleConnections;
+    private long mLastRelease;
+    
+    private int mRequestCount;
+    private int mReusableCount;
+    private int mClosedCount;
+    
+    Host() {
+      mPermits = new Semaphore(MAX_CONNECTIONS_PER_HOST, true);
+    }
+    
+    synchronized void acquired() {
+      if(System.currentTimeMillis() - mLastRelease > KEEP_ALIVE_MILLIS) {
+        mIdleConnections = 0;
+      }
+      
+      mRequestCount++;
+      
+      if(mIdleConnections > 0) {
+        mIdleConnections--;
+        mReusableCount++;
+      }
+    }
+    
+    void released(boolean keep) {
+      synchronized(this) {
+        if(keep) {
+          mIdleConnections = Math.min(mIdleConnections + 1, MAX_CONNECTIONS_PER_HOST);
+          mLastRelease = System.currentTimeMillis();
+        }
+        else {
+          mClosedCount++;
+        }
+      }
+      
+      mPermits.release();
+    }
+    
+    synchronized void appendStatistics(String name, StringBuilder statistics) {
+      if(mRequestCount > 0) {
+        statistics.append("\n  ").append(name);
+        statistics.append(" requests: ").append(mRequestCount);
+        statistics.append(" keep-alive available: ").append(mReusableCount);
+        statistics.append(" new connections: ").append(mRequestCount - mReusableCount);
+        statistics.append(" closed: ").append(mClosedCount);
+      }
+      
+      mRequestCount = 0;
+      mReusableCount = 0;
+      mClosedCount = 0;
+    }
+  }
+}
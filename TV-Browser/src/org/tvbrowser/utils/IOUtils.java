@@ -433,54 +433,12 @@ public final class IOUtils {
    * <p>
    * @param filename The file to save to.
    * @param urlString The URL to load from.
-   * @param timeout The timeout of the download in milliseconds.
+   * @param timeout The maximum time in milliseconds to wait for the connection and for data while reading.
    * <p> 
    * @return <code>true</code> if the file was downloaded successfully, <code>false</code> otherwise.
    */
   public static boolean saveUrl(final String filename, final String urlString, final int timeout) {
-    final AtomicBoolean wasSaved = new AtomicBoolean(false);
-    final AtomicInteger count = new AtomicInteger(0);
-    
-    new Thread("SAVE URL THREAD") {
-      public void run() {
-        FileOutputStream fout = null;
-        
-        try {
-          byte[] byteArr = loadUrl(urlString, count);
-          
-          fout = new FileOutputStream(filename);
-          fout.getChannel().truncate(0);
-          fout.write(byteArr, 0, byteArr.length);
-          fout.flush();
-          
-          wasSaved.set(true);
-        }
-        catch(IOException ignored) {
-        }
-        finally {
-          close(fout);
-        }
-      }
-    }.start();
-    
-    Thread wait = new Thread("SAVE URL WAITING THREAD") {
-      public void run() {
-        while(!wasSaved.get() && count.getAndIncrement() < (timeout / 100)) {
-          try {
-            sleep(100);
-          } catch (InterruptedException ignored) {}
-        }
-      }
-    };
-    wait.start();
-        
-    try {
-      wait.join();
-    } catch (InterruptedException e) {
-      Log.d("info51", "INTERRUPTED", e);
-    }
-    
-    return wasSaved.get();
+    return UrlDownloader.download(urlString, new File(filename), timeout);
   }
   
   /**
@@ -755,14 +713,11 @@ public final class IOUtils {
     
     new Thread("NETWORK CONNECTION CHECK THREAD") {
       public void run() {
-    	  URLConnection connection = null;
+    	  HostConnectionPool.Lease lease = null;
         try {
-          URL myUrl = new URL(url);
+          lease = HostConnectionPool.open(url, timeout);
           
-          connection = myUrl.openConnection();
-          IOUtils.setConnectionTimeout(connection,timeout);
-          
-          HttpURLConnection httpConnection = (HttpURLConnection)connection;
+          HttpURLConnection httpConnection = (HttpURLConnection)lease.getConnection();
           
           if(httpConnection != null) {
             int responseCode = httpConnection.getResponseCode();
@@ -774,7 +729,10 @@ public final class IOUtils {
           e.printStackTrace();
         }
         finally  {
-          disconnect(connection);
+          // the small body of the check is skipped to keep the connection for the update
+          if(lease != null) {
+            lease.release(false);
+          }
         }
       }
     }.start();
@@ -191,6 +191,7 @@ public class PrefUtils {
   public static final int TYPE_PREFERENCES_MARKINGS = 4;
   public static final int TYPE_PREFERENCES_MARKING_REMINDERS = 5;
   public static final int TYPE_PREFERENCES_MARKING_SYNC = 6;
+  public static final int TYPE_PREFERENCES_MIRROR_SCORES = 7;
   
   private static final String PREFERENCES_FAVORITE = "preferencesFavorite";
   private static final String PREFERENCES_FILTER = "filterPreferences";
@@ -198,6 +199,7 @@ public class PrefUtils {
   private static final String PREFERENCES_MARKINGS = "markings";
   private static final String PREFERENCES_MARKING_REMINDERS = "markingsReminders";
   private static final String PREFERENCES_MARKING_SYNC = "markingsSynchronization";
+  private static final String PREFERENCES_MIRROR_SCORES = "mirrorScores";
 
   public static SharedPreferences getSharedPreferences(int type) {
     return getSharedPreferences(type, mContext);
@@ -215,6 +217,7 @@ public class PrefUtils {
         case TYPE_PREFERENCES_MARKINGS: pref = context.getSharedPreferences(PREFERENCES_MARKINGS, Context.MODE_PRIVATE);break;
         case TYPE_PREFERENCES_MARKING_REMINDERS: pref = context.getSharedPreferences(PREFERENCES_MARKING_REMINDERS, Context.MODE_PRIVATE);break;
         case TYPE_PREFERENCES_MARKING_SYNC: pref = context.getSharedPreferences(PREFERENCES_MARKING_SYNC, Context.MODE_PRIVATE);break;
+        case TYPE_PREFERENCES_MIRROR_SCORES: pref = context.getSharedPreferences(PREFERENCES_MIRROR_SCORES, Context.MODE_PRIVATE);break;
       }
     }
     
@@ -0,0 +1,348 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.tvbrowser.content.TvBrowserContentProvider;
+
+import android.app.ActivityManager;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.ShapeDrawable;
+import android.graphics.drawable.shapes.RectShape;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+/**
+ * Loads the pictures of programs on background threads.
+ * <p>
+ * The pictures are decoded with a sample size to the size they are shown
+ * with and kept in a cache that uses an eighth of the memory class of the
+ * app. If the picture data isn't given it is read from the data base by the
+ * ID of the program, so the views don't need to keep the picture data. The
+ * requests that were made last are handled first, as they are for the views
+ * that are visible now.
+ *
+ * @author René Mach
+ */
+public final class ProgramPictureLoader {
+  private static final int LOAD_THREADS = 2;
+  
+  /** The number of bytes of the picture data that are enough to read the size of most pictures. */
+  private static final int HEADER_LENGTH = 4096;
+  
+  /** The name of the column that contains the beginning of the picture data. */
+  public static final String PICTURE_HEADER_COLUMN = "pictureHeader";
+  
+  /**
+   * The projection expression that selects only the beginning of the picture data
+   * as {@link #PICTURE_HEADER_COLUMN}, to read the size of the picture without
+   * reading the whole picture.
+   */
+  public static final String PICTURE_HEADER_PROJECTION = "substr(" + TvBrowserContentProvider.DATA_KEY_PICTURE + ",1," + HEADER_LENGTH + ") AS " + PICTURE_HEADER_COLUMN;
+  
+  private static ProgramPictureLoader INSTANCE;
+  
+  private final Context mContext;
+  private final Handler mHandler;
+  private final LruCache<String, Bitmap> mCache;
+  private final ThreadPoolExecutor mExecutor;
+  
+  /* key is the cache key, value are the callbacks that wait for the picture */
+  private final HashMap<String, ArrayList<Callback>> mPendingMap;
+  
+  private ProgramPictureLoader(Context context) {
+    mContext = context.getApplicationContext();
+    mHandler = new Handler(Looper.getMainLooper());
+    mPendingMap = new HashMap<>();
+    
+    final ActivityManager activityManager = (ActivityManager)mContext.getSystemService(Context.ACTIVITY_SERVICE);
+    final int memoryClass = activityManager != null ? activityManager.getMemoryClass() : 32;
+    
+    mCache = new LruCache<String, Bitmap>(memoryClass * 1024 * 1024 / 8) {
+      @Override
+      protected int sizeOf(String key, Bitmap value) {
+        return value.getByteCount();
+      }
+    };
+    
+    // last in first out
+    mExecutor = new ThreadPoolExecutor(LOAD_THREADS, LOAD_THREADS, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingDeque<Runnable>() {
+      @Override
+      public boolean offer(Runnable runnable) {
+        return offerFirst(runnable);
+      }
+    }, runnable -> {
+      final Thread thread = new Thread(runnable, "PROGRAM PICTURE THREAD");
+      thread.setPriority(Thread.MIN_PRIORITY);
+      
+      return thread;
+    });
+  }
+  
+  public static synchronized ProgramPictureLoader getInstance(Context context) {
+    if(INSTANCE == null) {
+      INSTANCE = new ProgramPictureLoader(context);
+    }
+    
+    return INSTANCE;
+  }
+  
+  /**
+   * Removes all pictures from the cache, the pictures of the programs
+   * may have changed with a data update.
+   */
+  public static synchronized void clear() {
+    if(INSTANCE != null) {
+      INSTANCE.mCache.evictAll();
+    }
+  }
+  
+  /**
+   * Gets the picture of the program from the cache.
+   * <p>
+   * @param programID The ID of the program.
+   * @param scale The factor to scale the picture with.
+   * @param maxWidth The maximum width of the picture.
+   * @return The picture or <code>null</code> if the picture isn't in the cache.
+   */
+  public Bitmap getCached(long programID, float scale, int maxWidth) {
+    return mCache.get(getKey(programID, scale, maxWidth));
+  }
+  
+  /**
+   * Loads the picture of the program on a background thread, the callback
+   * is informed on the UI thread.
+   * <p>
+   * @param programID The ID of the program.
+   * @param data The picture data or <code>null</code> to read the data from the data base.
+   * @param scale The factor to scale the picture with.
+   * @param maxWidth The maximum width of the picture.
+   * @param callback The callback to inform about the loaded picture.
+   */
+  public void load(final long programID, final byte[] data, final float scale, final int maxWidth, Callback callback) {
+    final String key = getKey(programID, scale, maxWidth);
+    final Bitmap cached = mCache.get(key);
+    
+    if(cached != null) {
+      callback.pictureLoaded(programID, cached);
+      return;
+    }
+    
+    synchronized(mPendingMap) {
+      ArrayList<Callback> callbacks = mPendingMap.get(key);
+      
+      if(callbacks != null) {
+        callbacks.add(callback);
+        return;
+      }
+      
+      callbacks = new ArrayList<>();
+      callbacks.add(callback);
+      mPendingMap.put(key, callbacks);
+    }
+    
+    mExecutor.execute(() -> {
+      Bitmap picture = null;
+      
+      try {
+        picture = decode(data != null ? data : loadData(programID), scale, maxWidth);
+        
+        if(picture != null) {
+          mCache.put(key, picture);
+        }
+      }catch(OutOfMemoryError e) {
+        mCache.evictAll();
+      }
+      
+      final Bitmap loaded = picture;
+      
+      mHandler.post(() -> {
+        final ArrayList<Callback> callbacks;
+        
+        synchronized(mPendingMap) {
+          callbacks = mPendingMap.remove(key);
+        }
+        
+        if(callbacks != null) {
+          for(Callback waiting : callbacks) {
+            waiting.pictureLoaded(programID, loaded);
+          }
+        }
+      });
+    });
+  }
+  
+  private byte[] loadData(long programID) {
+    byte[] data = null;
+    
+    if(IOUtils.isDatabaseAccessible(mContext)) {
+      final Cursor picture = mContext.getContentResolver().query(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA, programID), new String[] {TvBrowserContentProvider.DATA_KEY_PICTURE}, null, null, null);
+      
+      try {
+        if(IOUtils.prepareAccessFirst(picture)) {
+          data = picture.getBlob(picture.getColumnIndex(TvBrowserContentProvider.DATA_KEY_PICTURE));
+        }
+      }finally {
+        IOUtils.close(picture);
+      }
+    }
+    
+    return data;
+  }
+  
+  private static String getKey(long programID, float scale, int maxWidth) {
+    return programID + "_" + scale + "_" + maxWidth;
+  }
+  
+  /**
+   * Reads the size of the picture from the beginning of the picture data, see {@link #PICTURE_HEADER_PROJECTION}.
+   * If the size isn't contained in the beginning of the data the whole picture data is read
+   * from the data base, so this must not be called on the UI thread.
+   * <p>
+   * @param programID The ID of the program.
+   * @param header The beginning of the picture data.
+   * @param scale The factor to scale the picture with.
+   * @param maxWidth The maximum width of the picture.
+   * @return The width and the height the picture is shown with or
+   * <code>null</code> if the program has no picture.
+   */
+  public int[] getSize(long programID, byte[] header, float scale, int maxWidth) {
+    int[] size = getSize(header, scale, maxWidth);
+    
+    if(size == null && header != null && header.length >= HEADER_LENGTH) {
+      // the size is stored after big meta data
+      size = getSize(loadData(programID), scale, maxWidth);
+    }
+    
+    return size;
+  }
+  
+  /**
+   * Reads the size of the picture without decoding it.
+   * <p>
+   * @param data The picture data.
+   * @param scale The factor to scale the picture with.
+   * @param maxWidth The maximum width of the picture.
+   * @return The width and the height the picture is shown with or
+   * <code>null</code> if the data is no picture.
+   */
+  public static int[] getSize(byte[] data, float scale, int maxWidth) {
+    final BitmapFactory.Options options = readBounds(data);
+    
+    return options != null ? getTargetSize(options.outWidth, options.outHeight, scale, maxWidth) : null;
+  }
+  
+  private static BitmapFactory.Options readBounds(byte[] data) {
+    if(data == null || data.length == 0) {
+      return null;
+    }
+    
+    final BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inJustDecodeBounds = true;
+    
+    BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    
+    return options.outWidth > 0 && options.outHeight > 0 ? options : null;
+  }
+  
+  private static int[] getTargetSize(int width, int height, float scale, int maxWidth) {
+    float targetWidth = Math.min(scale * width, maxWidth);
+    
+    return new int[] {Math.max(1, (int)targetWidth), Math.max(1, (int)(height * targetWidth / width))};
+  }
+  
+  /*
+   * Decodes the picture with the largest sample size that keeps it at
+   * least as big as needed and scales it to the needed size.
+   */
+  private static Bitmap decode(byte[] data, float scale, int maxWidth) {
+    final BitmapFactory.Options options = readBounds(data);
+    
+    if(options == null) {
+      return null;
+    }
+    
+    final int[] size = getTargetSize(options.outWidth, options.outHeight, scale, maxWidth);
+    
+    int sampleSize = 1;
+    
+    while(options.outWidth / (sampleSize * 2) >= size[0] && options.outHeight / (sampleSize * 2) >= size[1]) {
+      sampleSize *= 2;
+    }
+    
+    options.inJustDecodeBounds = false;
+    options.inSampleSize = sampleSize;
+    
+    Bitmap picture = null;
+    
+    try {
+      picture = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    } catch (NullPointerException ignored) {
+    }
+    
+    if(picture != null && (picture.getWidth() != size[0] || picture.getHeight() != size[1])) {
+      final Bitmap scaled = Bitmap.createScaledBitmap(picture, size[0], size[1], true);
+      
+      if(scaled != picture) {
+        picture.recycle();
+      }
+      
+      picture = scaled;
+    }
+    
+    return picture;
+  }
+  
+  /**
+   * Creates an invisible drawable with the size of the picture to show
+   * until the picture is loaded.
+   * <p>
+   * @param size The size of the picture.
+   * @return The placeholder.
+   */
+  public static ShapeDrawable createPlaceholder(int[] size) {
+    final ShapeDrawable placeholder = new ShapeDrawable(new RectShape());
+    placeholder.getPaint().setColor(0);
+    placeholder.setIntrinsicWidth(size[0]);
+    placeholder.setIntrinsicHeight(size[1]);
+    
+    return placeholder;
+  }
+  
+  /**
+   * The callback for loaded pictures.
+   */
+  public interface Callback {
+    /**
+     * Called on the UI thread when the picture was loaded.
+     * <p>
+     * @param programID The ID of the program.
+     * @param picture The picture or <code>null</code> if the program has no picture.
+     */
+    void pictureLoaded(long programID, Bitmap picture);
+  }
+}
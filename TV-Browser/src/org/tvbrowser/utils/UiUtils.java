@@ -116,6 +116,7 @@ import org.tvbrowser.settings.SettingConstants;
 import org.tvbrowser.tvbrowser.ActivityFavoriteEdit;
 import org.tvbrowser.tvbrowser.ActivityTvBrowserSearchResults;
 import org.tvbrowser.tvbrowser.DontWantToSeeExclusion;
+import org.tvbrowser.tvbrowser.DontWantToSeeFilter;
 import org.tvbrowser.tvbrowser.Favorite;
 import org.tvbrowser.tvbrowser.InfoActivity;
 import org.tvbrowser.tvbrowser.NamedFields;
@@ -390,7 +391,7 @@ public final class UiUtils {
                 Cursor channel = null;
 
                 try {
-                  channel = context.getContentResolver().query(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_CHANNELS, channelID), new String[]{TvBrowserContentProvider.CHANNEL_KEY_NAME, TvBrowserContentProvider.CHANNEL_KEY_LOGO, TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER}, null, null, null);
+                  channel = context.getContentResolver().query(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_CHANNELS, channelID), new String[]{TvBrowserContentProvider.CHANNEL_KEY_NAME, TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER}, null, null, null);
 
                   if (IOUtils.prepareAccessFirst(channel)) {
                     final StringBuilder channelName = new StringBuilder();
@@ -407,7 +408,7 @@ public final class UiUtils {
                     final java.text.DateFormat timeFormat = DateFormat.getTimeFormat(context);
                     date.setText(resources.getString(R.string.detail_date_format, start, dateFormat.format(start), timeFormat.format(start), timeFormat.format(new Date(endTime)), channelName));
 
-                    Bitmap logo = UiUtils.createBitmapFromByteArray(channel.getBlob(channel.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_LOGO)));
+                    Bitmap logo = ChannelLogoCache.get(context, channelID);
 
                     if (logo != null) {
                       float scale = resources.getDisplayMetrics().density;
@@ -1456,7 +1457,7 @@ public final class UiUtils {
                     int keyColumn = c.getColumnIndex(TvBrowserContentProvider.KEY_ID);
                     int titleColumn = c.getColumnIndex(TvBrowserContentProvider.DATA_KEY_TITLE);
 
-                    DontWantToSeeExclusion[] exclusionArr = exclusionList.toArray(new DontWantToSeeExclusion[0]);
+                    final DontWantToSeeFilter exclusionFilter = new DontWantToSeeFilter(exclusionList);
 
                     while (c.moveToNext()) {
                       builder.setProgress(size, count++, false);
@@ -1465,7 +1466,7 @@ public final class UiUtils {
                       String title = c.getString(titleColumn);
 
                       ContentValues values = new ContentValues();
-                      values.put(TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE, (UiUtils.filter(title, exclusionArr) ? 1 : 0));
+                      values.put(TvBrowserContentProvider.DATA_KEY_DONT_WANT_TO_SEE, (exclusionFilter.matches(title) ? 1 : 0));
 
                       ContentProviderOperation.Builder opBuilder = ContentProviderOperation.newUpdate(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_DATA_UPDATE, c.getLong(keyColumn)));
                       opBuilder.withValues(values);
@@ -1852,33 +1853,6 @@ Log.d("info22", pattern);
     return exclusion.matches(title);
   }
 
-  public static boolean filter(String title, DontWantToSeeExclusion[] values) {
-    boolean found = false;
-
-    if (title != null) {
-      if (values == null) {
-        Set<String> exclusionValues = PrefUtils.getStringSetValue(R.string.I_DONT_WANT_TO_SEE_ENTRIES, null);
-
-        values = new DontWantToSeeExclusion[exclusionValues.size()];
-
-        int i = 0;
-
-        for (String exclusion : exclusionValues) {
-          values[i++] = new DontWantToSeeExclusion(exclusion);
-        }
-      }
-
-        for (DontWantToSeeExclusion value : values) {
-          if (filter(title, value)) {
-            found = true;
-            break;
-          }
-        }
-      }
-
-    return found;
-  }
-
   public static int getColor(int key, Context context) throws NullPointerException {
     if (context == null) {
       throw new NullPointerException("Context parameter is null.");
@@ -2967,7 +2941,7 @@ Log.d("info22", pattern);
           Cursor channel = null;
 
           try {
-            channel = context.getContentResolver().query(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_CHANNELS, channelID), new String[]{TvBrowserContentProvider.CHANNEL_KEY_NAME, TvBrowserContentProvider.CHANNEL_KEY_LOGO, TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER}, null, null, null);
+            channel = context.getContentResolver().query(ContentUris.withAppendedId(TvBrowserContentProvider.CONTENT_URI_CHANNELS, channelID), new String[]{TvBrowserContentProvider.CHANNEL_KEY_NAME, TvBrowserContentProvider.CHANNEL_KEY_ORDER_NUMBER}, null, null, null);
 
             if (IOUtils.prepareAccessFirst(channel)) {
               final StringBuilder channelName = new StringBuilder();
@@ -2984,7 +2958,7 @@ Log.d("info22", pattern);
               final java.text.DateFormat timeFormat = DateFormat.getTimeFormat(context);
               date.setText(resources.getString(R.string.detail_date_format, start, dateFormat.format(start), timeFormat.format(start), timeFormat.format(new Date(endTime)), channelName));
 
-              Bitmap logo = UiUtils.createBitmapFromByteArray(channel.getBlob(channel.getColumnIndex(TvBrowserContentProvider.CHANNEL_KEY_LOGO)));
+              Bitmap logo = ChannelLogoCache.get(context, channelID);
 
               if (logo != null) {
                 float scale = resources.getDisplayMetrics().density;
@@ -0,0 +1,150 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.util.Locale;
+
+import android.util.Log;
+
+/**
+ * Downloads URLs directly into files.
+ * <p>
+ * The body of the response is streamed through a reusable buffer of the
+ * downloading thread into a temporary file that replaces the target file
+ * after the download was completed, so the memory needed for a download
+ * doesn't depend on the size of the file and an incomplete download never
+ * replaces an existing file. Timeouts are handled by the connect and read
+ * timeouts of the connection, so no additional threads are needed. The
+ * connections are opened with the {@link HostConnectionPool}, so a completely
+ * read connection is kept alive for the next download from the host. The
+ * methods block until the download is done and have to be called from
+ * a background thread.
+ *
+ * @author René Mach
+ */
+public final class UrlDownloader {
+  private static final int BUFFER_SIZE = 16 * 1024;
+  
+  /* the maximum time to wait for the connection and for every read */
+  private static final int MAX_SOCKET_TIMEOUT = 15000;
+  
+  private static final String TEMP_FILE_EXTENSION = ".part";
+  
+  private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>() {
+    @Override
+    protected byte[] initialValue() {
+      return new byte[BUFFER_SIZE];
+    }
+  };
+  
+  private UrlDownloader() {}
+  
+  /**
+   * Downloads the given URL into the given file.
+   * <p>
+   * @param urlString The URL to load from.
+   * @param target The file to save to.
+   * @param timeout The maximum time in milliseconds to wait for the connection
+   * and for data while reading.
+   * @return <code>true</code> if the file was downloaded successfully, <code>false</code> otherwise.
+   */
+  public static boolean download(String urlString, File target, int timeout) {
+    HostConnectionPool.Lease lease = null;
+    
+    boolean success = false;
+    boolean complete = false;
+    
+    try {
+      lease = openConnection(urlString, timeout);
+      success = write(lease.getInputStream(), target);
+      complete = true;
+    }catch(IOException e) {
+      Log.d("info51", "DOWNLOAD FAILED: " + urlString + " " + e);
+    }finally {
+      if(lease != null) {
+        lease.release(complete);
+      }
+    }
+    
+    return success;
+  }
+  
+  /**
+   * Streams the given input stream into the given file, the file is
+   * only replaced if the stream was read completely.
+   * <p>
+   * @param in The stream to read, it isn't closed.
+   * @param target The file to save to.
+   * @return <code>true</code> if the file was replaced, <code>false</code> otherwise.
+   * @throws IOException If reading or writing failed.
+   */
+  static boolean write(InputStream in, File target) throws IOException {
+    final File temp = new File(target.getPath() + TEMP_FILE_EXTENSION);
+    
+    FileOutputStream out = null;
+    boolean success = false;
+    
+    try {
+      out = new FileOutputStream(temp);
+      
+      final byte[] buffer = BUFFER.get();
+      int count;
+      
+      while((count = in.read(buffer)) != -1) {
+        out.write(buffer, 0, count);
+      }
+      
+      IOUtils.close(out);
+      out = null;
+      
+      success = replace(temp, target);
+    }finally {
+      IOUtils.close(out);
+      
+      if(!success && temp.isFile() && !temp.delete()) {
+        temp.deleteOnExit();
+      }
+    }
+    
+    return success;
+  }
+  
+  static HostConnectionPool.Lease openConnection(String urlString, int timeout) throws IOException {
+    final HostConnectionPool.Lease lease = HostConnectionPool.open(urlString, timeout > 0 ? Math.min(timeout, MAX_SOCKET_TIMEOUT) : MAX_SOCKET_TIMEOUT);
+    final URLConnection connection = lease.getConnection();
+    
+    if(urlString.toLowerCase(Locale.US).endsWith(".gz")) {
+      connection.setRequestProperty("Accept-Encoding", "gzip,deflate");
+    }
+    
+    return lease;
+  }
+  
+  private static boolean replace(File temp, File target) {
+    if(temp.renameTo(target)) {
+      return true;
+    }
+    
+    // renaming fails on some file systems if the target exists
+    return (!target.exists() || target.delete()) && temp.renameTo(target);
+  }
+}
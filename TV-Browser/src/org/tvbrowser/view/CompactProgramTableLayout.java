@@ -34,49 +34,37 @@ public class CompactProgramTableLayout extends ProgramTableLayout {
   }
 
   @Override
-  protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-    int widthSpec = MeasureSpec.makeMeasureSpec(ProgramTableLayoutConstants.COLUMN_WIDTH, MeasureSpec.EXACTLY);
+  public Geometry computeGeometry(ProgramRecord[] records) {
+    final int[] lefts = new int[records.length];
+    final int[] tops = new int[records.length];
+    final int[] heights = new int[records.length];
+    
+    final int[] columns = getColumnIndices(records);
+    
     int[] currentColumnHeight = new int[getColumnCount()];
     
     int maxHeight = 0;
     
-    for(int i = 0; i < getChildCount(); i++) {
-      ProgramPanel progPanel = (ProgramPanel)getChildAt(i);
-      
-      int sortIndex = getIndexForChannelID(progPanel.getChannelID());
+    for(int i = 0; i < records.length; i++) {
+      int sortIndex = columns[i];
       
       if(sortIndex >= 0) {
-        progPanel.measure(widthSpec, 0);
+        lefts[i] = sortIndex * (ProgramTableLayoutConstants.COLUMN_WIDTH + ProgramTableLayoutConstants.GAP);
+        tops[i] = currentColumnHeight[sortIndex];
+        heights[i] = records[i].getMinHeight();
         
-        currentColumnHeight[sortIndex] += progPanel.getMeasuredHeight();
+        currentColumnHeight[sortIndex] += heights[i];
         
         maxHeight = Math.max(maxHeight, currentColumnHeight[sortIndex]);
       }
     }
     
-    setMeasuredDimension((ProgramTableLayoutConstants.COLUMN_WIDTH+ProgramTableLayoutConstants.GAP) * getColumnCount(), maxHeight);
+    return new Geometry(columns, getColumnCount(), lefts, tops, heights, getEmptyWidth(), maxHeight);
   }
   
   @Override
-  protected void onLayout(boolean changed, int l, int t, int r, int b) {
-    int[] currentColumnHeight = new int[getColumnCount()];
-    
-    for(int i = 0; i < getChildCount(); i++) {
-      ProgramPanel progPanel = (ProgramPanel)getChildAt(i);
-      
-      int sortIndex = getIndexForChannelID(progPanel.getChannelID());
-      
-      if(sortIndex >= 0) {
-        int x = l + sortIndex * (ProgramTableLayoutConstants.COLUMN_WIDTH + ProgramTableLayoutConstants.GAP);
-        int y = t + currentColumnHeight[sortIndex];
-              
-        currentColumnHeight[sortIndex] += progPanel.getMeasuredHeight();
-        
-        if(progPanel.getVisibility() != GONE) {
-          progPanel.layout(x, y, x + ProgramTableLayoutConstants.COLUMN_WIDTH + ProgramTableLayoutConstants.GAP, y + progPanel.getMeasuredHeight());
-        }
-      }
-    }
+  int getEmptyWidth() {
+    return (ProgramTableLayoutConstants.COLUMN_WIDTH+ProgramTableLayoutConstants.GAP) * getColumnCount();
   }
   
   @Override
@@ -17,229 +17,114 @@
 package org.tvbrowser.view;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Paint;
 import android.graphics.PorterDuff;
-import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
-import android.os.Handler;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
-import android.text.Spannable;
+import androidx.core.view.ViewCompat;
+
 import android.text.TextPaint;
 import android.util.AttributeSet;
 import android.view.View;
 
-import org.tvbrowser.utils.IOUtils;
 import org.tvbrowser.utils.PrefUtils;
+import org.tvbrowser.utils.ProgramPictureLoader;
 
-import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Iterator;
-
+/**
+ * Shows a {@link ProgramRecord} in the program table.
+ * <p>
+ * The panels are recycled by the {@link ProgramTableLayout}, a panel
+ * shows the record it was bound to last. The lines of the record are
+ * broken before, so drawing a panel doesn't allocate objects. The picture
+ * of the record is loaded when the record is bound, until it is loaded the
+ * space of the picture is filled and the loaded picture is faded in.
+ */
 public class ProgramPanel extends View {
-  private Date mStartTime;
-  private final long mEndTime;
-  private String mTitle;
-  private String mEpisode;
-  private String mGenre;
-  private String mPictureCopyright;
-  private ColorLine[] mCategoriesString;
-  private BitmapDrawable mPicture;
-  private String mDescription;
+  private static final String SEPARATOR = ",";
+  private static final int PICTURE_FADE_DURATION = 150;
+  
+  private ProgramRecord mRecord;
   private int mMaxDescriptionLines;
-
-  private boolean mIsExpired;
   
-  private final int mChannelID;
+  private BitmapDrawable mPicture;
+  private boolean mPictureExpired;
+  /* the time the picture was loaded to fade it in, 0 if the picture was in the cache */
+  private long mPictureLoadTime;
   
-  private Rect mStartTimeBounds = new Rect();
-  private int mBigRowCount;
-  private int mSmallRowCount;
-  private int mSuperSmallCount;
-  private String mStartTimeString;
+  private final ProgramPictureLoader.Callback mPictureCallback = (programID, picture) -> {
+    if(picture != null && mRecord != null && mRecord.getProgramID() == programID) {
+      setPicture(picture);
+      mPictureLoadTime = SystemClock.uptimeMillis();
+      invalidate();
+    }
+  };
 
   /** View constructors for XML inflation (used by tools) */
   public ProgramPanel(Context context, AttributeSet attributeSet, int defStyleAttr) {
     super(context, attributeSet, defStyleAttr);
-    mChannelID = 0;
-    mEndTime = 0L;
   }
 
-  public ProgramPanel(Context context, final long startTime, final long endTime, final String title, final int channelID) {
+  public ProgramPanel(Context context) {
     super(context);
     
-    mBigRowCount = 0;
-    mSmallRowCount = 0;
-    mSuperSmallCount = 0;
     mMaxDescriptionLines = 0;
-    mEndTime = endTime;
-    mChannelID = channelID;
-    setStartTime(startTime);
-    setTitle(title);
   }
   
-  private void setTitle(String title) {
-    Object[] result = getBreakerText(title, getTextWidth() - mStartTimeBounds.width() - ProgramTableLayoutConstants.TIME_TITLE_GAP, ProgramTableLayoutConstants.NOT_EXPIRED_TITLE_PAINT);
-    
-    mTitle = result[0].toString();
-    mBigRowCount = (Integer)result[1];
-  }
-
-  private void setStartTime(long startTime) {
-    mStartTime = new Date(startTime);
-    
-    mStartTimeString = ProgramTableLayoutConstants.TIME_FORMAT.format(mStartTime);
-    
-    ProgramTableLayoutConstants.NOT_EXPIRED_TITLE_PAINT.getTextBounds(mStartTimeString, 0, mStartTimeString.length(), mStartTimeBounds);
-  }
-
-  public void setDescription(String description) {
-    if(description != null) {
-      Object[] result = getBreakerText(description.replaceAll("\n+"," "), getTextWidth() - mStartTimeBounds.width() - ProgramTableLayoutConstants.TIME_TITLE_GAP, ProgramTableLayoutConstants.NOT_EXPIRED_PICTURE_COPYRIGHT_PAINT, false);
-      mDescription = result[0].toString();
-    }
-    else {
-      mDescription = null;
-    }
-  }
-  
-  public void setInfoString(Spannable value) {
-    if(value != null && value.toString().trim().length() > 0) {
-      Object[] result = getBreakerText(value.toString(), getTextWidth() - mStartTimeBounds.width() - ProgramTableLayoutConstants.TIME_TITLE_GAP, ProgramTableLayoutConstants.NOT_EXPIRED_PICTURE_COPYRIGHT_PAINT);
-      
-      String all = result[0].toString();
-      
-      String[] lines = all.split("\n");
-      
-      mCategoriesString = new ColorLine[lines.length];
-      
-      HashMap<String, Integer> categoryColorMap = IOUtils.loadCategoryColorMap(getContext());
-      
-      for(int i = 0; i < lines.length; i++) {
-        mCategoriesString[i] = new ColorLine();
-        
-        String[] lineParts = lines[i].split(",");
-        
-        for(int j = 0; j < lineParts.length-1; j++) {
-          mCategoriesString[i].addEntry(new ColorEntry(categoryColorMap.get(lineParts[j].trim()), lineParts[j], true));
-        }
-        
-        if(lineParts.length > 0) {
-          mCategoriesString[i].addEntry(new ColorEntry(categoryColorMap.get(lineParts[lineParts.length-1].trim()), lineParts[lineParts.length-1], (i != lines.length-1)));
-        }
-      }      
-      
-      mSuperSmallCount += (Integer)result[1];
-    }
-  }
-
-
-  /*
-   * Breaks the given String into string with line breaks at needed positions.
-   */
-  private static Object[] getBreakerText(String temp, int width, Paint toCheck) {
-    return getBreakerText(temp,width,toCheck,true);
-  }
-
-  /*
-   * Breaks the given String into string with line breaks at needed positions.
+  /**
+   * Binds the given record to this panel.
+   * <p>
+   * @param record The record to show.
    */
-  private static Object[] getBreakerText(String temp, int width, Paint toCheck, boolean minusBreak) {
-    StringBuilder parts = new StringBuilder();
-    
-    temp = temp.trim().replace("\u00AD", "");
-    
-    int rowCount = 0;
+  void bind(ProgramRecord record) {
+    mRecord = record;
+    mMaxDescriptionLines = 0;
+    mPicture = null;
+    mPictureLoadTime = 0;
     
-    do {
-      int length = toCheck.breakText(temp, true, width, null);
-      float measured = toCheck.measureText(temp);
+    if(record.hasPicture()) {
+      final ProgramPictureLoader loader = ProgramPictureLoader.getInstance(getContext());
+      final Bitmap cached = loader.getCached(record.getProgramID(), 1f, record.getPictureWidth());
       
-      if(length < temp.length() && measured >= width) {
-        int bestBreak = minusBreak ? temp.lastIndexOf("-", length-1) : -1;
-        
-        if(bestBreak == -1) {
-          bestBreak = temp.lastIndexOf(" ", length-1);
-        }
-        
-        if(bestBreak == -1) {
-          bestBreak = temp.lastIndexOf(",", length-1);
-        }
-        
-        if(bestBreak == -1) {
-          bestBreak = temp.lastIndexOf("/", length-1);
-        }
-        
-        if(bestBreak > 0) {
-          parts.append(temp.substring(0, bestBreak+1).trim()).append("\n");
-          temp = temp.substring(bestBreak+1).trim();
-        }
-        else {
-          parts.append(temp.substring(0, length-1).trim()).append("\n");
-          temp = temp.substring(length-1).trim();
-        }
+      if(cached != null) {
+        setPicture(cached);
       }
       else {
-        parts.append(temp);
-        temp = "";
+        loader.load(record.getProgramID(), null, 1f, record.getPictureWidth(), mPictureCallback);
       }
-      
-      rowCount++;
-    }while(!temp.trim().isEmpty());
-    
-    return new Object[] {parts.toString(),rowCount};
-  }
-
-  public void setGenre(String genre) {
-    if(genre != null && !genre.trim().isEmpty()) {
-      Object[] result = getBreakerText(genre.trim(), getTextWidth() - mStartTimeBounds.width() - ProgramTableLayoutConstants.TIME_TITLE_GAP, ProgramTableLayoutConstants.NOT_EXPIRED_GENRE_EPISODE_PAINT);
-      
-      mGenre = result[0].toString();
-      mSmallRowCount += (Integer)result[1];
     }
+    
+    setTag(record.getProgramID());
+    invalidate();
   }
   
-  private int getTextWidth() {
-    return ProgramTableLayoutConstants.COLUMN_WIDTH - ProgramTableLayoutConstants.PADDING_SIDE * 3;
+  private void setPicture(Bitmap picture) {
+    mPicture = new BitmapDrawable(getResources(), picture);
+    mPicture.setBounds(0, 0, mRecord.getPictureWidth(), mRecord.getPictureHeight());
+    mPictureExpired = false;
+    
+    updatePictureFilter();
   }
   
-  public void setEpisode(String episode) {
-    if(episode != null && !episode.trim().isEmpty()) {
-      Object[] result = getBreakerText(episode.trim(), getTextWidth() - mStartTimeBounds.width() - ProgramTableLayoutConstants.TIME_TITLE_GAP, ProgramTableLayoutConstants.NOT_EXPIRED_GENRE_EPISODE_PAINT);
+  /* grays the picture of an expired program */
+  private void updatePictureFilter() {
+    if(!mPictureExpired && mRecord.isExpired()) {
+      if(PrefUtils.isDarkTheme()) {
+        mPicture.setColorFilter(ContextCompat.getColor(getContext(), org.tvbrowser.tvbrowser.R.color.dark_gray), PorterDuff.Mode.DARKEN);
+      }
+      else {
+        mPicture.setColorFilter(ContextCompat.getColor(getContext(), android.R.color.darker_gray), PorterDuff.Mode.LIGHTEN);
+      }
       
-      mEpisode = result[0].toString();
-      mSmallRowCount += (Integer)result[1];
+      mPictureExpired = true;
     }
   }
   
-  public void setPicture(String copyright, BitmapDrawable picture) {
-    if(copyright != null && !copyright.trim().isEmpty() && picture != null) {
-      Object[] result = getBreakerText(copyright.trim(), ProgramTableLayoutConstants.COLUMN_WIDTH - mStartTimeBounds.width() - ProgramTableLayoutConstants.TIME_TITLE_GAP, ProgramTableLayoutConstants.NOT_EXPIRED_PICTURE_COPYRIGHT_PAINT);
-      
-      mPictureCopyright = result[0].toString();
-      mSuperSmallCount += (Integer)result[1];
-      
-      mPicture = picture;
-      
-      float percent = mPicture.getBounds().width() / (float)(getTextWidth() - mStartTimeBounds.width() - ProgramTableLayoutConstants.TIME_TITLE_GAP);
-      
-      if(percent > 1) {
-        mPicture.setBounds(0, 0, (int)(mPicture.getBounds().width() / percent), (int)(mPicture.getBounds().height() / percent));
-      }
-      
-      if(isExpired()) {
-        if(PrefUtils.isDarkTheme()) {
-          mPicture.setColorFilter(ContextCompat.getColor(getContext(), org.tvbrowser.tvbrowser.R.color.dark_gray), PorterDuff.Mode.DARKEN);
-        }
-        else {
-          mPicture.setColorFilter(ContextCompat.getColor(getContext(), android.R.color.darker_gray), PorterDuff.Mode.LIGHTEN);
-        }
-      }
-    }
+  public ProgramRecord getRecord() {
+    return mRecord;
   }
   
   @Override
@@ -252,83 +137,93 @@ public class ProgramPanel extends View {
     if(height > minHeight) {
       mMaxDescriptionLines = (height-minHeight)/ProgramTableLayoutConstants.SUPER_SMALL_MAX_FONT_HEIGHT;
     }
+    else {
+      mMaxDescriptionLines = 0;
+    }
 
     setMeasuredDimension(ProgramTableLayoutConstants.COLUMN_WIDTH, height);
   }
 
   public int getMinHeight() {
-    int pictureHeight = 0;
-
-    if(mPictureCopyright != null && !mPictureCopyright.trim().isEmpty() && mPicture != null) {
-      pictureHeight = mPicture.getBounds().height();
-    }
-
-    return ProgramTableLayoutConstants.BIG_MAX_FONT_HEIGHT * mBigRowCount + ProgramTableLayoutConstants.SMALL_MAX_FONT_HEIGHT * mSmallRowCount + pictureHeight + mSuperSmallCount * ProgramTableLayoutConstants.SUPER_SMALL_MAX_FONT_HEIGHT;
+    return mRecord != null ? mRecord.getMinHeight() : 0;
   }
   
   @Override
   protected void onDraw(Canvas canvas) {
     super.onDraw(canvas);
     
+    final ProgramRecord record = mRecord;
+    
+    if(record == null) {
+      return;
+    }
+    
     canvas.translate(ProgramTableLayoutConstants.PADDING_SIDE, 0);
     
     TextPaint toUseForTimeAndTitle = ProgramTableLayoutConstants.NOT_EXPIRED_TITLE_PAINT;
     TextPaint toUseForGenreAndEpisode = ProgramTableLayoutConstants.NOT_EXPIRED_GENRE_EPISODE_PAINT;
     TextPaint toUseForPictureCopyright = ProgramTableLayoutConstants.NOT_EXPIRED_PICTURE_COPYRIGHT_PAINT;
     
-    if(isExpired()) {
+    if(record.isExpired()) {
       toUseForTimeAndTitle = ProgramTableLayoutConstants.EXPIRED_TITLE_PAINT;
       toUseForGenreAndEpisode = ProgramTableLayoutConstants.EXPIRED_GENRE_EPISODE_PAINT;
       toUseForPictureCopyright = ProgramTableLayoutConstants.EXPIRED_PICTURE_COPYRIGHT_PAINT;
     }
     
     // draw start time
-    canvas.drawText(mStartTimeString, 0, ProgramTableLayoutConstants.BIG_MAX_FONT_HEIGHT - ProgramTableLayoutConstants.BIG_FONT_DESCEND, toUseForTimeAndTitle);
+    canvas.drawText(record.getStartTimeString(), 0, ProgramTableLayoutConstants.BIG_MAX_FONT_HEIGHT - ProgramTableLayoutConstants.BIG_FONT_DESCEND, toUseForTimeAndTitle);
     
-    canvas.translate(mStartTimeBounds.width() + ProgramTableLayoutConstants.TIME_TITLE_GAP, 0);
-    
-    String[] lines = mTitle.split("\n");
+    canvas.translate(record.getStartTimeWidth() + ProgramTableLayoutConstants.TIME_TITLE_GAP, 0);
     
     // draw title
-    for(int i = 0; i < lines.length; i++) {
-      canvas.drawText(lines[i], 0, (i+1) * ProgramTableLayoutConstants.BIG_MAX_FONT_HEIGHT - ProgramTableLayoutConstants.BIG_FONT_DESCEND, toUseForTimeAndTitle);
-    }
-    
-    canvas.translate(0, lines.length * ProgramTableLayoutConstants.BIG_MAX_FONT_HEIGHT);
+    canvas.translate(0, record.getTitle().draw(canvas, toUseForTimeAndTitle, ProgramTableLayoutConstants.BIG_MAX_FONT_HEIGHT, ProgramTableLayoutConstants.BIG_FONT_DESCEND, Integer.MAX_VALUE));
     
     // draw picture copyright and picture
-    if(mPictureCopyright != null && mPicture != null) {
-      mPicture.draw(canvas);
-      
-      canvas.translate(0, mPicture.getBounds().height());
-      
-      lines = mPictureCopyright.split("\n");
-      
-      for(int i = 0; i < lines.length; i++) {
-        canvas.drawText(lines[i], 0, (i+1) * ProgramTableLayoutConstants.SUPER_SMALL_MAX_FONT_HEIGHT - ProgramTableLayoutConstants.SUPER_SMALL_FONT_DESCEND, toUseForPictureCopyright);
+    if(record.hasPicture()) {
+      if(mPicture != null) {
+        updatePictureFilter();
+        
+        int alpha = 255;
+        
+        if(mPictureLoadTime != 0) {
+          final long elapsed = SystemClock.uptimeMillis() - mPictureLoadTime;
+          
+          if(elapsed < PICTURE_FADE_DURATION) {
+            alpha = (int)(255 * elapsed / PICTURE_FADE_DURATION);
+            ViewCompat.postInvalidateOnAnimation(this);
+          }
+          else {
+            mPictureLoadTime = 0;
+          }
+        }
+        
+        mPicture.setAlpha(alpha);
+        mPicture.draw(canvas);
+      }
+      else {
+        canvas.drawRect(0, 0, record.getPictureWidth(), record.getPictureHeight(), ProgramTableLayoutConstants.BLOCK_PAINT);
       }
       
-      canvas.translate(0, lines.length * ProgramTableLayoutConstants.SUPER_SMALL_MAX_FONT_HEIGHT);
+      canvas.translate(0, record.getPictureHeight());
+      canvas.translate(0, record.getPictureCopyright().draw(canvas, toUseForPictureCopyright, ProgramTableLayoutConstants.SUPER_SMALL_MAX_FONT_HEIGHT, ProgramTableLayoutConstants.SUPER_SMALL_FONT_DESCEND, Integer.MAX_VALUE));
     }
     
     // draw additional info
-    if(mCategoriesString != null) {
-      //lines = mInfoString.split("\n");
-      
+    final ProgramRecord.ColorLine[] categories = record.getCategories();
+    
+    if(categories != null) {
       final int oldColor = toUseForPictureCopyright.getColor();
+      final float separatorWidth = toUseForPictureCopyright.measureText(SEPARATOR);
       
-      final String separator = ",";
-      final float separatorWidth = toUseForPictureCopyright.measureText(separator);
-      
-      for(int i = 0; i < mCategoriesString.length; i++) {
+      for(int i = 0; i < categories.length; i++) {
         canvas.save();
         
-        for(Iterator<ColorEntry> it = mCategoriesString[i].getEntries(); it.hasNext();) {
-          ColorEntry entry = it.next();
+        for(int j = 0; j < categories[i].getEntryCount(); j++) {
+          ProgramRecord.ColorEntry entry = categories[i].getEntry(j);
           
           Integer color = entry.getColor();
           
-          if(color != null && !isExpired()) {
+          if(color != null && !record.isExpired()) {
             toUseForPictureCopyright.setColor(color);
           }
           else {
@@ -337,185 +232,51 @@ public class ProgramPanel extends View {
           
           canvas.drawText(entry.getText(), 0, (i+1) * ProgramTableLayoutConstants.SUPER_SMALL_MAX_FONT_HEIGHT - ProgramTableLayoutConstants.SUPER_SMALL_FONT_DESCEND, toUseForPictureCopyright);
           
-          canvas.translate(entry.measure(toUseForPictureCopyright), 0);
+          canvas.translate(entry.getWidth(), 0);
           
           if(entry.needsSeparator()) {
             toUseForPictureCopyright.setColor(oldColor);
             
-            canvas.drawText(separator, 0, (i+1) * ProgramTableLayoutConstants.SUPER_SMALL_MAX_FONT_HEIGHT - ProgramTableLayoutConstants.SUPER_SMALL_FONT_DESCEND, toUseForPictureCopyright);
+            canvas.drawText(SEPARATOR, 0, (i+1) * ProgramTableLayoutConstants.SUPER_SMALL_MAX_FONT_HEIGHT - ProgramTableLayoutConstants.SUPER_SMALL_FONT_DESCEND, toUseForPictureCopyright);
             canvas.translate(separatorWidth, 0);
           }
         }
         
         canvas.restore();
-        /*
-        String first = lines[i].substring(0, lines[i].length()/2);
-        String second = lines[i].substring(lines[i].length()/2);
-        
-        canvas.save();
-        
-        toUseForPictureCopyright.setColor(Color.BLUE);
-        
-        canvas.drawText(first, 0, (i+1) * ProgramTableLayoutConstants.SUPER_SMALL_MAX_FONT_HEIGHT - ProgramTableLayoutConstants.SUPER_SMALL_FONT_DESCEND, toUseForPictureCopyright);
-        
-        canvas.translate(toUseForPictureCopyright.measureText(first), 0);
-        
-        toUseForPictureCopyright.setColor(Color.RED);
-        
-        canvas.drawText(second, 0, (i+1) * ProgramTableLayoutConstants.SUPER_SMALL_MAX_FONT_HEIGHT - ProgramTableLayoutConstants.SUPER_SMALL_FONT_DESCEND, toUseForPictureCopyright);
-        
-        canvas.restore();*/
       }
       
       toUseForPictureCopyright.setColor(oldColor);
       
-      canvas.translate(0, mCategoriesString.length * ProgramTableLayoutConstants.SUPER_SMALL_MAX_FONT_HEIGHT);
+      canvas.translate(0, categories.length * ProgramTableLayoutConstants.SUPER_SMALL_MAX_FONT_HEIGHT);
     }
     
     // draw genre
-    if(mGenre != null) {
-      lines = mGenre.split("\n");
-      
-      for(int i = 0; i < lines.length; i++) {
-        canvas.drawText(lines[i], 0, (i+1) * ProgramTableLayoutConstants.SMALL_MAX_FONT_HEIGHT - ProgramTableLayoutConstants.SMALL_FONT_DESCEND, toUseForGenreAndEpisode);
-      }
-      
-      canvas.translate(0, lines.length * ProgramTableLayoutConstants.SMALL_MAX_FONT_HEIGHT);
+    if(record.getGenre() != null) {
+      canvas.translate(0, record.getGenre().draw(canvas, toUseForGenreAndEpisode, ProgramTableLayoutConstants.SMALL_MAX_FONT_HEIGHT, ProgramTableLayoutConstants.SMALL_FONT_DESCEND, Integer.MAX_VALUE));
     }
     
     // draw episode title
-    if(mEpisode != null) {
-      lines = mEpisode.split("\n");
-      
-      for(int i = 0; i < lines.length; i++) {
-        canvas.drawText(lines[i], 0, (i+1) * ProgramTableLayoutConstants.SMALL_MAX_FONT_HEIGHT - ProgramTableLayoutConstants.SMALL_FONT_DESCEND, toUseForGenreAndEpisode);
-      }
-
-      canvas.translate(0, lines.length * ProgramTableLayoutConstants.SMALL_MAX_FONT_HEIGHT);
+    if(record.getEpisode() != null) {
+      canvas.translate(0, record.getEpisode().draw(canvas, toUseForGenreAndEpisode, ProgramTableLayoutConstants.SMALL_MAX_FONT_HEIGHT, ProgramTableLayoutConstants.SMALL_FONT_DESCEND, Integer.MAX_VALUE));
     }
 
-    if(mMaxDescriptionLines > 0 && mDescription != null) {
-      lines = mDescription.split("\n");
-
-      for(int i = 0; i < Math.min(lines.length,mMaxDescriptionLines); i++) {
-        canvas.drawText(lines[i], 0, (i+1) * ProgramTableLayoutConstants.SUPER_SMALL_MAX_FONT_HEIGHT - ProgramTableLayoutConstants.SUPER_SMALL_FONT_DESCEND, toUseForPictureCopyright);
-      }
-    }
-  }
-  
-  public void checkExpired(Handler handler) {
-    if(!mIsExpired && isExpired()) {
-      if(mPicture != null) {
-        mPicture.setColorFilter(ContextCompat.getColor(getContext(), android.R.color.darker_gray), PorterDuff.Mode.LIGHTEN);
-      }
-      
-      handler.post(() -> {
-        try {
-          invalidate();
-        }catch(Throwable ignored) {}
-      });
+    if(mMaxDescriptionLines > 0 && record.getDescription() != null) {
+      record.getDescription().draw(canvas, toUseForPictureCopyright, ProgramTableLayoutConstants.SUPER_SMALL_MAX_FONT_HEIGHT, ProgramTableLayoutConstants.SUPER_SMALL_FONT_DESCEND, mMaxDescriptionLines);
     }
   }
   
-  public boolean isOnAir() {
-    return mStartTime.getTime() <= System.currentTimeMillis() && mEndTime > System.currentTimeMillis();
-  }
-  
-  private boolean isExpired() {
-    if(!mIsExpired) {
-      mIsExpired = mEndTime < System.currentTimeMillis();
-    }
-    
-    return mIsExpired;
-  }
-  
-  public int getChannelID() {
-    return mChannelID;
-  }
-  
-  public int getEndHour(Calendar test) {
-    Calendar cal = Calendar.getInstance();
-    cal.setTimeInMillis(mEndTime);
-    
-    int hour = cal.get(Calendar.HOUR_OF_DAY);
-    
-    if(test.get(Calendar.DAY_OF_YEAR) + 1 == cal.get(Calendar.DAY_OF_YEAR)) {
-      hour += 24;
-    }
-    
-    return hour;
-  }
-  
-  public int getStartHour(Calendar test) {
-    Calendar cal = Calendar.getInstance();
-    cal.setTime(mStartTime);
-    
-    int hour = cal.get(Calendar.HOUR_OF_DAY);
-    
-    if(test.get(Calendar.DAY_OF_YEAR) + 1 == cal.get(Calendar.DAY_OF_YEAR)) {
-      hour += 24;
-    }
-    
-    return hour;
-  }
-  
+  /**
+   * Removes the bound record from this panel.
+   */
   public void clear() {
-    mEpisode = null;
-    mGenre = null;
+    mRecord = null;
     mPicture = null;
-    mPictureCopyright = null;
-    mStartTimeBounds = null;
-    mStartTimeString = null;
-    mTitle = null;
+    setTag(null);
   }
   
   @NonNull
   @Override
   public String toString() {
-    return mStartTime + " '" + mTitle + "' on " + mChannelID;
-  }
-  
-  private static final class ColorEntry {
-    private final Integer mColor;
-    private final String mText;
-    private final boolean mNeedsSeparator;
-    
-    ColorEntry(Integer color, String text, boolean needsSeparator) {
-      mColor = color;
-      mText = text;
-      mNeedsSeparator = needsSeparator;
-    }
-    
-    float measure(Paint paint) {
-      return paint.measureText(mText);
-    }
-    
-    String getText() {
-      return mText;
-    }
-    
-    Integer getColor() {
-      return mColor;
-    }
-    
-    boolean needsSeparator() {
-      return mNeedsSeparator;
-    }
-  }
-  
-  private static final class ColorLine {
-    private final ArrayList<ColorEntry> mEntryList;
-    
-    ColorLine() {
-      mEntryList = new ArrayList<>();
-    }
-    
-    Iterator<ColorEntry> getEntries() {
-      return mEntryList.iterator();
-    }
-    
-    void addEntry(ColorEntry entry) {
-      mEntryList.add(entry);
-    }
+    return String.valueOf(mRecord);
   }
 }
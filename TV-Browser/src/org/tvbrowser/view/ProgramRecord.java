@@ -0,0 +1,359 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.view;
+
+import android.content.Context;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.text.Spannable;
+
+import androidx.annotation.NonNull;
+
+import org.tvbrowser.utils.IOUtils;
+import org.tvbrowser.utils.ProgramPictureLoader;
+
+import java.util.HashMap;
+
+/**
+ * The data of a program in the program table.
+ * <p>
+ * The records of all programs of a day are created and the text of the
+ * records is broken into lines on a background thread, the program table
+ * only binds the records of the visible programs to {@link ProgramPanel}s.
+ * The lines are kept as {@link ProgramTextLayout}s, so drawing a record
+ * doesn't need to break or split texts. Only the size of the picture is
+ * kept, the picture is loaded when the record is bound to a panel.
+ * <p>
+ * The texts are measured with the {@link Paints} given to the record,
+ * the paints of the program table are only used on the UI thread.
+ *
+ * @author René Mach
+ */
+public final class ProgramRecord {
+  private final long mProgramID;
+  private final int mChannelID;
+  private final long mStartTime;
+  private final long mEndTime;
+  
+  private final String mStartTimeString;
+  private final int mStartTimeWidth;
+  
+  private final String mTitle;
+  private final ProgramTextLayout mTitleLayout;
+  private ProgramTextLayout mEpisode;
+  private ProgramTextLayout mGenre;
+  private ProgramTextLayout mPictureCopyright;
+  private ColorLine[] mCategoriesString;
+  private int mPictureWidth;
+  private int mPictureHeight;
+  private ProgramTextLayout mDescription;
+  
+  private int mBigRowCount;
+  private int mSmallRowCount;
+  private int mSuperSmallCount;
+  
+  private String[] mMarkedColumns;
+  private boolean mHidden;
+  private boolean mIsExpired;
+  
+  private final Paints mPaints;
+  
+  /**
+   * @param paints The paints to measure the texts of the record with,
+   * they must only be used by the thread that creates the record.
+   */
+  public ProgramRecord(final long programID, final long startTime, final long endTime, final String title, final int channelID, final Paints paints) {
+    mProgramID = programID;
+    mStartTime = startTime;
+    mEndTime = endTime;
+    mChannelID = channelID;
+    mPaints = paints;
+    
+    mStartTimeString = ProgramTableLayoutConstants.TIME_FORMAT.format(startTime);
+    
+    final Rect startTimeBounds = new Rect();
+    paints.mTitle.getTextBounds(mStartTimeString, 0, mStartTimeString.length(), startTimeBounds);
+    mStartTimeWidth = startTimeBounds.width();
+    
+    mTitle = title;
+    mTitleLayout = ProgramTextLayout.obtain(title, getTextWidth(), paints.mTitle, true);
+    mBigRowCount = mTitleLayout.getRowCount();
+  }
+  
+  public void setDescription(String description) {
+    if(description != null) {
+      mDescription = ProgramTextLayout.obtain(description.replaceAll("\n+"," "), getTextWidth(), mPaints.mSmall, false);
+    }
+    else {
+      mDescription = null;
+    }
+  }
+  
+  public void setInfoString(Context context, Spannable value) {
+    if(value != null && value.toString().trim().length() > 0) {
+      final ProgramTextLayout layout = ProgramTextLayout.obtain(value.toString(), getTextWidth(), mPaints.mSmall, true);
+      final int lineCount = layout.getLineCount();
+      
+      mCategoriesString = new ColorLine[lineCount];
+      
+      HashMap<String, Integer> categoryColorMap = IOUtils.loadCategoryColorMap(context);
+      
+      for(int i = 0; i < lineCount; i++) {
+        String[] lineParts = layout.getLine(i).split(",");
+        
+        final ColorEntry[] entries = new ColorEntry[lineParts.length];
+        
+        for(int j = 0; j < lineParts.length-1; j++) {
+          entries[j] = new ColorEntry(categoryColorMap.get(lineParts[j].trim()), lineParts[j], true, mPaints.mSmall);
+        }
+        
+        if(lineParts.length > 0) {
+          entries[lineParts.length-1] = new ColorEntry(categoryColorMap.get(lineParts[lineParts.length-1].trim()), lineParts[lineParts.length-1], (i != lineCount-1), mPaints.mSmall);
+        }
+        
+        mCategoriesString[i] = new ColorLine(entries);
+      }
+      
+      mSuperSmallCount += layout.getRowCount();
+    }
+  }
+  
+  public void setGenre(String genre) {
+    if(genre != null && !genre.trim().isEmpty()) {
+      mGenre = ProgramTextLayout.obtain(genre.trim(), getTextWidth(), mPaints.mGenreEpisode, true);
+      mSmallRowCount += mGenre.getRowCount();
+    }
+  }
+  
+  public void setEpisode(String episode) {
+    if(episode != null && !episode.trim().isEmpty()) {
+      mEpisode = ProgramTextLayout.obtain(episode.trim(), getTextWidth(), mPaints.mGenreEpisode, true);
+      mSmallRowCount += mEpisode.getRowCount();
+    }
+  }
+  
+  /**
+   * Sets the picture of the program, only the beginning of the picture
+   * data is given to read the size of the picture, the picture itself
+   * is loaded when the record is shown.
+   * <p>
+   * @param loader The loader to read the size of the picture with.
+   * @param copyright The copyright of the picture.
+   * @param pictureHeader The beginning of the picture data, see {@link ProgramPictureLoader#PICTURE_HEADER_PROJECTION}.
+   */
+  public void setPicture(ProgramPictureLoader loader, String copyright, byte[] pictureHeader) {
+    if(copyright != null && !copyright.trim().isEmpty() && pictureHeader != null) {
+      final int[] size = loader.getSize(mProgramID, pictureHeader, ProgramTableLayoutConstants.getZoom(), getTextWidth());
+      
+      if(size != null) {
+        mPictureCopyright = ProgramTextLayout.obtain(copyright.trim(), ProgramTableLayoutConstants.COLUMN_WIDTH - mStartTimeWidth - ProgramTableLayoutConstants.TIME_TITLE_GAP, mPaints.mSmall, true);
+        mSuperSmallCount += mPictureCopyright.getRowCount();
+        
+        mPictureWidth = size[0];
+        mPictureHeight = size[1];
+      }
+    }
+  }
+  
+  /**
+   * @param markedColumns The marking columns the program is marked with.
+   */
+  public void setMarkedColumns(String[] markedColumns) {
+    mMarkedColumns = markedColumns;
+  }
+  
+  public String[] getMarkedColumns() {
+    return mMarkedColumns;
+  }
+  
+  /**
+   * @param hidden If the program should not be shown in the program table,
+   * the space of a hidden program stays free.
+   */
+  public void setHidden(boolean hidden) {
+    mHidden = hidden;
+  }
+  
+  public boolean isHidden() {
+    return mHidden;
+  }
+  
+  /* the width for the text right of the start time */
+  private int getTextWidth() {
+    return ProgramTableLayoutConstants.COLUMN_WIDTH - ProgramTableLayoutConstants.PADDING_SIDE * 3 - mStartTimeWidth - ProgramTableLayoutConstants.TIME_TITLE_GAP;
+  }
+  
+  /**
+   * @return The height the program needs to show all its values but the description.
+   */
+  public int getMinHeight() {
+    return ProgramTableLayoutConstants.BIG_MAX_FONT_HEIGHT * mBigRowCount + ProgramTableLayoutConstants.SMALL_MAX_FONT_HEIGHT * mSmallRowCount + mPictureHeight + mSuperSmallCount * ProgramTableLayoutConstants.SUPER_SMALL_MAX_FONT_HEIGHT;
+  }
+  
+  public boolean isOnAir() {
+    return mStartTime <= System.currentTimeMillis() && mEndTime > System.currentTimeMillis();
+  }
+  
+  /**
+   * Checks if the program expired since the last check.
+   * <p>
+   * @return <code>true</code> if the program expired since the last check.
+   */
+  public boolean checkExpired() {
+    return !mIsExpired && isExpired();
+  }
+  
+  boolean isExpired() {
+    if(!mIsExpired) {
+      mIsExpired = mEndTime < System.currentTimeMillis();
+    }
+    
+    return mIsExpired;
+  }
+  
+  public long getProgramID() {
+    return mProgramID;
+  }
+  
+  public int getChannelID() {
+    return mChannelID;
+  }
+  
+  public long getStartTime() {
+    return mStartTime;
+  }
+  
+  public long getEndTime() {
+    return mEndTime;
+  }
+  
+  String getStartTimeString() {
+    return mStartTimeString;
+  }
+  
+  int getStartTimeWidth() {
+    return mStartTimeWidth;
+  }
+  
+  ProgramTextLayout getTitle() {
+    return mTitleLayout;
+  }
+  
+  ProgramTextLayout getEpisode() {
+    return mEpisode;
+  }
+  
+  ProgramTextLayout getGenre() {
+    return mGenre;
+  }
+  
+  ProgramTextLayout getDescription() {
+    return mDescription;
+  }
+  
+  ProgramTextLayout getPictureCopyright() {
+    return mPictureCopyright;
+  }
+  
+  boolean hasPicture() {
+    return mPictureCopyright != null;
+  }
+  
+  int getPictureWidth() {
+    return mPictureWidth;
+  }
+  
+  int getPictureHeight() {
+    return mPictureHeight;
+  }
+  
+  ColorLine[] getCategories() {
+    return mCategoriesString;
+  }
+  
+  @NonNull
+  @Override
+  public String toString() {
+    return mStartTimeString + " '" + mTitle + "' on " + mChannelID;
+  }
+  
+  static final class ColorEntry {
+    private final Integer mColor;
+    private final String mText;
+    private final boolean mNeedsSeparator;
+    
+    /* the expired and not expired paints have the same text size */
+    private final float mWidth;
+    
+    ColorEntry(Integer color, String text, boolean needsSeparator, Paint paint) {
+      mColor = color;
+      mText = text;
+      mNeedsSeparator = needsSeparator;
+      mWidth = paint.measureText(text);
+    }
+    
+    float getWidth() {
+      return mWidth;
+    }
+    
+    String getText() {
+      return mText;
+    }
+    
+    Integer getColor() {
+      return mColor;
+    }
+    
+    boolean needsSeparator() {
+      return mNeedsSeparator;
+    }
+  }
+  
+  /**
+   * Copies of the paints the texts of the program table are measured with.
+   * Paint isn't thread safe and the paints of the program table are used
+   * by the UI thread, so a thread that creates records needs its own copies.
+   * Has to be created on the UI thread.
+   */
+  public static final class Paints {
+    private final Paint mTitle;
+    private final Paint mGenreEpisode;
+    private final Paint mSmall;
+    
+    public Paints() {
+      mTitle = new Paint(ProgramTableLayoutConstants.NOT_EXPIRED_TITLE_PAINT);
+      mGenreEpisode = new Paint(ProgramTableLayoutConstants.NOT_EXPIRED_GENRE_EPISODE_PAINT);
+      mSmall = new Paint(ProgramTableLayoutConstants.NOT_EXPIRED_PICTURE_COPYRIGHT_PAINT);
+    }
+  }
+  
+  static final class ColorLine {
+    private final ColorEntry[] mEntries;
+    
+    ColorLine(ColorEntry[] entries) {
+      mEntries = entries;
+    }
+    
+    int getEntryCount() {
+      return mEntries.length;
+    }
+    
+    ColorEntry getEntry(int index) {
+      return mEntries[index];
+    }
+  }
+}
@@ -17,44 +17,355 @@
 package org.tvbrowser.view;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 
 import android.content.Context;
+import android.graphics.Rect;
 import android.util.AttributeSet;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 
+/**
+ * The base class for the layouts of the program table.
+ * <p>
+ * The layout doesn't create a view for every program, the programs are kept
+ * as {@link ProgramRecord}s and the position of every record is calculated
+ * by {@link #computeGeometry(ProgramRecord[])}, which can be called on a
+ * background thread. Only the records that intersect the visible area of
+ * the layout are bound to {@link ProgramPanel}s, the panels of records
+ * that are scrolled out are recycled for the records that are scrolled in.
+ * The records of every column are sorted by their top in the geometry, so
+ * the visible records of a column are found with a binary search.
+ */
 public abstract class ProgramTableLayout extends ViewGroup {
   private final List<Integer> mChannelIDsOrdered;
+  
+  private ProgramRecord[] mRecords;
+  /* key is the program ID, value is the index of the record */
+  private HashMap<Long, Integer> mRecordIndices;
+  private Geometry mGeometry;
+  
+  /* the panels bound to the records, same index as the records */
+  private ProgramPanel[] mBoundPanels;
+  /* the indices of the records that are bound to panels */
+  private int[] mBoundIndices;
+  private int mBoundCount;
+  private final ArrayList<ProgramPanel> mPanelPool;
+  private final Rect mVisibleRect;
+  
+  private OnPanelBindListener mBindListener;
+  
+  private final ViewTreeObserver.OnScrollChangedListener mScrollListener = this::updateVisiblePanels;
 
   /** View constructors for XML inflation (used by tools) */
   public ProgramTableLayout(Context context, AttributeSet attributeSet, int defStyleAttr) {
     super(context, attributeSet, defStyleAttr);
     mChannelIDsOrdered = new ArrayList<>();
+    mPanelPool = new ArrayList<>();
+    mVisibleRect = new Rect();
   }
 
   ProgramTableLayout(Context context, List<Integer> channelIDsOrdered) {
     super(context);
     
     mChannelIDsOrdered = channelIDsOrdered;
+    mPanelPool = new ArrayList<>();
+    mVisibleRect = new Rect();
+  }
+  
+  /**
+   * Gets the columns of the given records, the columns are looked up in a
+   * sorted copy of the channel IDs, so every record takes a binary search.
+   * <p>
+   * @param records The records to get the columns for.
+   * @return The column of every record or <code>-1</code> for records
+   * of channels that aren't shown.
+   */
+  final int[] getColumnIndices(ProgramRecord[] records) {
+    final int[] sortedChannelIDs = new int[mChannelIDsOrdered.size()];
+    
+    for(int i = 0; i < sortedChannelIDs.length; i++) {
+      sortedChannelIDs[i] = mChannelIDsOrdered.get(i);
+    }
+    
+    Arrays.sort(sortedChannelIDs);
+    
+    final int[] sortedColumns = new int[sortedChannelIDs.length];
+    
+    for(int i = sortedChannelIDs.length - 1; i >= 0; i--) {
+      sortedColumns[Arrays.binarySearch(sortedChannelIDs, mChannelIDsOrdered.get(i))] = i;
+    }
+    
+    final int[] columns = new int[records.length];
+    
+    for(int i = 0; i < records.length; i++) {
+      final int index = Arrays.binarySearch(sortedChannelIDs, records[i].getChannelID());
+      
+      columns[i] = index >= 0 ? sortedColumns[index] : -1;
+    }
+    
+    return columns;
   }
   
-  final int getIndexForChannelID(int channelID) {
-    for(int i = 0; i < mChannelIDsOrdered.size(); i++) {
-      if(mChannelIDsOrdered.get(i) == channelID) {
-        return i;
+  /**
+   * Calculates the positions of the given records in this layout.
+   * Doesn't change the layout, so it can be called on any thread.
+   * <p>
+   * @param records The records to calculate the positions for.
+   * @return The positions of the records.
+   */
+  public abstract Geometry computeGeometry(ProgramRecord[] records);
+  
+  /**
+   * @return The width of the layout without programs.
+   */
+  abstract int getEmptyWidth();
+  
+  /**
+   * Sets the programs of this layout, has to be called on the UI thread.
+   * <p>
+   * @param records The records of the programs.
+   * @param geometry The positions of the records calculated by
+   * {@link #computeGeometry(ProgramRecord[])} for the given records.
+   */
+  public void setPrograms(ProgramRecord[] records, Geometry geometry) {
+    recycleAll();
+    
+    mRecords = records;
+    mRecordIndices = new HashMap<>(records.length * 4 / 3 + 1);
+    
+    for(int i = 0; i < records.length; i++) {
+      mRecordIndices.put(records[i].getProgramID(), i);
+    }
+    
+    mGeometry = geometry;
+    mBoundPanels = new ProgramPanel[records.length];
+    mBoundIndices = new int[16];
+    mBoundCount = 0;
+    
+    requestLayout();
+    invalidate();
+  }
+  
+  final Geometry getGeometry() {
+    return mGeometry;
+  }
+  
+  /**
+   * @return The records of the programs of this layout, the array must not be changed.
+   */
+  public ProgramRecord[] getRecords() {
+    return mRecords != null ? mRecords : new ProgramRecord[0];
+  }
+  
+  public void setOnPanelBindListener(OnPanelBindListener listener) {
+    mBindListener = listener;
+  }
+  
+  private int indexOf(long programID) {
+    final Integer index = mRecordIndices != null ? mRecordIndices.get(programID) : null;
+    
+    return index != null ? index : -1;
+  }
+  
+  /**
+   * @param programID The ID of the program.
+   * @return The record of the program or <code>null</code> if the program isn't in this layout.
+   */
+  public ProgramRecord getRecord(long programID) {
+    final int index = indexOf(programID);
+    
+    return index >= 0 ? mRecords[index] : null;
+  }
+  
+  /**
+   * @param programID The ID of the program.
+   * @return The panel the program is currently bound to or <code>null</code>
+   * if the program isn't visible.
+   */
+  public ProgramPanel getPanel(long programID) {
+    final int index = indexOf(programID);
+    
+    return index >= 0 ? mBoundPanels[index] : null;
+  }
+  
+  /**
+   * @param programID The ID of the program.
+   * @return The top of the program in this layout or <code>-1</code> if
+   * the program isn't in this layout.
+   */
+  public int getProgramTop(long programID) {
+    final int index = indexOf(programID);
+    
+    return index >= 0 && mGeometry != null ? mGeometry.mTops[index] : -1;
+  }
+  
+  @Override
+  protected void onAttachedToWindow() {
+    super.onAttachedToWindow();
+    getViewTreeObserver().addOnScrollChangedListener(mScrollListener);
+  }
+  
+  @Override
+  protected void onDetachedFromWindow() {
+    getViewTreeObserver().removeOnScrollChangedListener(mScrollListener);
+    super.onDetachedFromWindow();
+  }
+  
+  @Override
+  protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    if(mGeometry != null) {
+      setMeasuredDimension(mGeometry.mWidth, mGeometry.mHeight);
+    }
+    else {
+      setMeasuredDimension(getEmptyWidth(), 0);
+    }
+  }
+  
+  @Override
+  protected void onLayout(boolean changed, int l, int t, int r, int b) {
+    for(int i = 0; i < mBoundCount; i++) {
+      layoutPanel(mBoundPanels[mBoundIndices[i]], mBoundIndices[i]);
+    }
+    
+    updateVisiblePanels();
+  }
+  
+  /**
+   * Binds the records that are in the visible area of this layout to panels
+   * and recycles the panels of the records that are out of the visible area.
+   * Has to be called on the UI thread after records were hidden or shown.
+   */
+  public void updateVisiblePanels() {
+    if(mRecords == null || mGeometry == null) {
+      return;
+    }
+    
+    final boolean visible = isShown() && getLocalVisibleRect(mVisibleRect);
+    
+    // bind the programs before they are scrolled in
+    mVisibleRect.inset(-ProgramTableLayoutConstants.COLUMN_WIDTH, -mVisibleRect.height() / 2);
+    
+    boolean changed = false;
+    
+    for(int i = mBoundCount - 1; i >= 0; i--) {
+      if(!visible || !isInViewport(mBoundIndices[i])) {
+        recycle(i);
+        changed = true;
       }
     }
     
-    return -1;
+    if(visible) {
+      final Geometry geometry = mGeometry;
+      
+      for(int column = 0; column < geometry.getColumnCount(); column++) {
+        final int start = geometry.mColumnStarts[column];
+        
+        if(start < geometry.mColumnStarts[column + 1] && isColumnInViewport(geometry.mLefts[geometry.mColumnRecords[start]])) {
+          final int end = geometry.getEndPosition(column, mVisibleRect.bottom);
+          
+          for(int position = geometry.getFirstPosition(column, mVisibleRect.top); position < end; position++) {
+            final int index = geometry.mColumnRecords[position];
+            
+            if(mBoundPanels[index] == null && isInViewport(index)) {
+              bind(index);
+              changed = true;
+            }
+          }
+        }
+      }
+    }
+    
+    if(changed) {
+      invalidate();
+    }
+  }
+  
+  private boolean isColumnInViewport(int left) {
+    return left < mVisibleRect.right && left + ProgramTableLayoutConstants.COLUMN_WIDTH + ProgramTableLayoutConstants.GAP > mVisibleRect.left;
+  }
+  
+  private boolean isInViewport(int index) {
+    final int left = mGeometry.mLefts[index];
+    final int top = mGeometry.mTops[index];
+    
+    return !mRecords[index].isHidden() && mGeometry.mHeights[index] > 0 && isColumnInViewport(left)
+        && top < mVisibleRect.bottom && top + mGeometry.mHeights[index] > mVisibleRect.top;
+  }
+  
+  private void bind(int index) {
+    ProgramPanel panel;
+    
+    if(mPanelPool.isEmpty()) {
+      panel = new ProgramPanel(getContext());
+      
+      if(mBindListener != null) {
+        mBindListener.onPanelCreated(panel);
+      }
+    }
+    else {
+      panel = mPanelPool.remove(mPanelPool.size() - 1);
+    }
+    
+    panel.bind(mRecords[index]);
+    
+    if(mBindListener != null) {
+      mBindListener.onPanelBound(panel, mRecords[index]);
+    }
+    
+    panel.measure(MeasureSpec.makeMeasureSpec(ProgramTableLayoutConstants.COLUMN_WIDTH, MeasureSpec.EXACTLY), MeasureSpec.makeMeasureSpec(mGeometry.mHeights[index], MeasureSpec.EXACTLY));
+    
+    addViewInLayout(panel, -1, generateDefaultLayoutParams(), true);
+    layoutPanel(panel, index);
+    
+    mBoundPanels[index] = panel;
+    
+    if(mBoundCount == mBoundIndices.length) {
+      mBoundIndices = Arrays.copyOf(mBoundIndices, mBoundCount * 2);
+    }
+    
+    mBoundIndices[mBoundCount++] = index;
+  }
+  
+  private void layoutPanel(ProgramPanel panel, int index) {
+    final int x = mGeometry.mLefts[index];
+    final int y = mGeometry.mTops[index];
+    
+    panel.layout(x, y, x + ProgramTableLayoutConstants.COLUMN_WIDTH + ProgramTableLayoutConstants.GAP, y + panel.getMeasuredHeight());
+  }
+  
+  /* recycles the panel of the bound record at the given position of the bound indices */
+  private void recycle(int boundPosition) {
+    final int index = mBoundIndices[boundPosition];
+    final ProgramPanel panel = mBoundPanels[index];
+    
+    mBoundPanels[index] = null;
+    mBoundIndices[boundPosition] = mBoundIndices[--mBoundCount];
+    
+    removeViewInLayout(panel);
+    panel.clear();
+    
+    mPanelPool.add(panel);
+  }
+  
+  private void recycleAll() {
+    while(mBoundCount > 0) {
+      recycle(mBoundCount - 1);
+    }
   }
 
   public void clear() {
-    for(int i = getChildCount()-1; i >= 0; i--) {
-      View view = getChildAt(i);
-      removeView(view);
-      ((ProgramPanel)view).clear();
-    }
+    recycleAll();
+    
+    mRecords = null;
+    mRecordIndices = null;
+    mGeometry = null;
+    mBoundPanels = null;
+    mBoundIndices = null;
+    mPanelPool.clear();
   }
   
   final int getColumnCount() {
@@ -67,4 +378,144 @@ public abstract class ProgramTableLayout extends ViewGroup {
    */
   @Override
   public void addChildrenForAccessibility(ArrayList<View> childrenForAccessibility) {}
-}
\ No newline at end of file
+  
+  /**
+   * Is informed about the panels of the layout.
+   */
+  public interface OnPanelBindListener {
+    /**
+     * Called once for every panel that is created by the layout.
+     * <p>
+     * @param panel The created panel.
+     */
+    void onPanelCreated(ProgramPanel panel);
+    
+    /**
+     * Called every time a record is bound to a panel.
+     * <p>
+     * @param panel The panel.
+     * @param record The record that is bound to the panel.
+     */
+    void onPanelBound(ProgramPanel panel, ProgramRecord record);
+  }
+  
+  /**
+   * The positions of the records of a layout.
+   * <p>
+   * The records with a height are also grouped by their column and sorted
+   * by their top, the records of a column are at the positions from
+   * <code>mColumnStarts[column]</code> to <code>mColumnStarts[column + 1]</code>
+   * of <code>mColumnRecords</code>.
+   */
+  public static class Geometry {
+    final int[] mLefts;
+    final int[] mTops;
+    final int[] mHeights;
+    final int mWidth;
+    final int mHeight;
+    
+    final int[] mColumnStarts;
+    final int[] mColumnRecords;
+    /* the maximum bottom of the records of a column up to the position */
+    private final int[] mColumnMaxBottoms;
+    
+    /**
+     * @param columns The column of every record, <code>-1</code> for records that aren't shown.
+     * @param columnCount The number of columns.
+     */
+    Geometry(int[] columns, int columnCount, int[] lefts, int[] tops, int[] heights, int width, int height) {
+      mLefts = lefts;
+      mTops = tops;
+      mHeights = heights;
+      mWidth = width;
+      mHeight = height;
+      
+      mColumnStarts = new int[columnCount + 1];
+      
+      for(int i = 0; i < columns.length; i++) {
+        if(columns[i] >= 0 && heights[i] > 0) {
+          mColumnStarts[columns[i] + 1]++;
+        }
+      }
+      
+      for(int column = 0; column < columnCount; column++) {
+        mColumnStarts[column + 1] += mColumnStarts[column];
+      }
+      
+      // top and index of the records, so sorting the keys sorts the records by their top
+      final long[] keys = new long[mColumnStarts[columnCount]];
+      final int[] next = Arrays.copyOf(mColumnStarts, columnCount);
+      
+      for(int i = 0; i < columns.length; i++) {
+        if(columns[i] >= 0 && heights[i] > 0) {
+          keys[next[columns[i]]++] = ((long)tops[i] << 32) | i;
+        }
+      }
+      
+      mColumnRecords = new int[keys.length];
+      mColumnMaxBottoms = new int[keys.length];
+      
+      for(int column = 0; column < columnCount; column++) {
+        Arrays.sort(keys, mColumnStarts[column], mColumnStarts[column + 1]);
+        
+        int maxBottom = 0;
+        
+        for(int position = mColumnStarts[column]; position < mColumnStarts[column + 1]; position++) {
+          final int index = (int)keys[position];
+          
+          maxBottom = Math.max(maxBottom, tops[index] + heights[index]);
+          
+          mColumnRecords[position] = index;
+          mColumnMaxBottoms[position] = maxBottom;
+        }
+      }
+    }
+    
+    final int getColumnCount() {
+      return mColumnStarts.length - 1;
+    }
+    
+    /**
+     * @return The first position of the column of which the record or a
+     * record before ends below the given y.
+     */
+    final int getFirstPosition(int column, int y) {
+      int low = mColumnStarts[column];
+      int high = mColumnStarts[column + 1];
+      
+      while(low < high) {
+        final int middle = (low + high) >>> 1;
+        
+        if(mColumnMaxBottoms[middle] <= y) {
+          low = middle + 1;
+        }
+        else {
+          high = middle;
+        }
+      }
+      
+      return low;
+    }
+    
+    /**
+     * @return The position after the last record of the column that starts above the given y.
+     */
+    final int getEndPosition(int column, int y) {
+      int low = mColumnStarts[column];
+      int high = mColumnStarts[column + 1];
+      
+      while(low < high) {
+        final int middle = (low + high) >>> 1;
+        
+        if(mTops[mColumnRecords[middle]] < y) {
+          low = middle + 1;
+        }
+        else {
+          high = middle;
+        }
+      }
+      
+      return low;
+    }
+  }
+}
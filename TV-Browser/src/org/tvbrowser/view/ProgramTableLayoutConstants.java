@@ -209,6 +209,9 @@ public class ProgramTableLayoutConstants {
     
     SUPER_SMALL_FONT_DESCEND = Math.abs(NOT_EXPIRED_PICTURE_COPYRIGHT_PAINT.getFontMetricsInt().descent);
     SUPER_SMALL_MAX_FONT_HEIGHT = SUPER_SMALL_FONT_DESCEND + Math.abs(NOT_EXPIRED_PICTURE_COPYRIGHT_PAINT.getFontMetricsInt().ascent)+1;
+    
+    // the layouts of the old sizes can't be used anymore
+    ProgramTextLayout.clearCache();
 
     Log.d("info67","BIG_MAX_FONT_HEIGHT " + BIG_MAX_FONT_HEIGHT  + " SMALL_MAX_FONT_HEIGHT " + SMALL_MAX_FONT_HEIGHT + " SUPER_SMALL_MAX_FONT_HEIGHT " +SUPER_SMALL_MAX_FONT_HEIGHT);
   }
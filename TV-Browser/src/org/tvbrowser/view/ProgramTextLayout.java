@@ -0,0 +1,212 @@
+/*
+ * TV-Browser for Android
+ * Copyright (C) 2019 René Mach (rene@tvbrowser.org)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify or merge the Software,
+ * furthermore to publish and distribute the Software free of charge without modifications and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.tvbrowser.view;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.util.LruCache;
+
+/**
+ * The immutable lines of a text of the program table broken for a width.
+ * <p>
+ * Breaking a text measures it many times, so the layouts are kept in a cache
+ * that is shared by all records and day switches. The key of a layout are the
+ * text, the width and the typeface and text size of the paint, so changes of
+ * the zoom or the column width lead to new layouts and layouts measured with
+ * copies of a paint are shared. Drawing a layout doesn't allocate objects.
+ *
+ * @author René Mach
+ */
+final class ProgramTextLayout {
+  /* the size of the cache is counted in chars of the texts, a cached text needs
+   * memory for the key and for the lines, so the cache uses about a 32th of the heap */
+  private static final LruCache<Key, ProgramTextLayout> CACHE = new LruCache<Key, ProgramTextLayout>((int)Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 32 / 4)) {
+    @Override
+    protected int sizeOf(Key key, ProgramTextLayout value) {
+      return key.mText.length() + 1;
+    }
+  };
+  
+  private final String[] mLines;
+  private final int mRowCount;
+  
+  private ProgramTextLayout(String[] lines, int rowCount) {
+    mLines = lines;
+    mRowCount = rowCount;
+  }
+  
+  /**
+   * Gets the layout of the given text from the cache or breaks the text
+   * if it isn't in the cache.
+   * <p>
+   * @param text The text to break.
+   * @param width The maximum width of a line.
+   * @param paint The paint the text is drawn with.
+   * @param minusBreak If the text may be broken after a minus.
+   * @return The layout of the text.
+   */
+  static ProgramTextLayout obtain(String text, int width, Paint paint, boolean minusBreak) {
+    final Key key = new Key(text, width, paint, minusBreak);
+    
+    ProgramTextLayout layout = CACHE.get(key);
+    
+    if(layout == null) {
+      layout = breakText(text, width, paint, minusBreak);
+      CACHE.put(key, layout);
+    }
+    
+    return layout;
+  }
+  
+  /**
+   * Removes all layouts from the cache.
+   */
+  static void clearCache() {
+    CACHE.evictAll();
+  }
+  
+  /*
+   * Breaks the given String into lines at needed positions.
+   */
+  private static ProgramTextLayout breakText(String temp, int width, Paint toCheck, boolean minusBreak) {
+    StringBuilder parts = new StringBuilder();
+    
+    temp = temp.trim().replace("\u00AD", "");
+    
+    int rowCount = 0;
+    
+    do {
+      int length = toCheck.breakText(temp, true, width, null);
+      float measured = toCheck.measureText(temp);
+      
+      if(length < temp.length() && measured >= width) {
+        int bestBreak = minusBreak ? temp.lastIndexOf("-", length-1) : -1;
+        
+        if(bestBreak == -1) {
+          bestBreak = temp.lastIndexOf(" ", length-1);
+        }
+        
+        if(bestBreak == -1) {
+          bestBreak = temp.lastIndexOf(",", length-1);
+        }
+        
+        if(bestBreak == -1) {
+          bestBreak = temp.lastIndexOf("/", length-1);
+        }
+        
+        if(bestBreak > 0) {
+          parts.append(temp.substring(0, bestBreak+1).trim()).append("\n");
+          temp = temp.substring(bestBreak+1).trim();
+        }
+        else {
+          parts.append(temp.substring(0, length-1).trim()).append("\n");
+          temp = temp.substring(length-1).trim();
+        }
+      }
+      else {
+        parts.append(temp);
+        temp = "";
+      }
+      
+      rowCount++;
+    }while(!temp.trim().isEmpty());
+    
+    return new ProgramTextLayout(parts.toString().split("\n"), rowCount);
+  }
+  
+  /**
+   * @return The number of rows the text needs in the program table.
+   */
+  int getRowCount() {
+    return mRowCount;
+  }
+  
+  int getLineCount() {
+    return mLines.length;
+  }
+  
+  String getLine(int index) {
+    return mLines[index];
+  }
+  
+  /**
+   * Draws the lines of this layout from the top of the canvas.
+   * <p>
+   * @param canvas The canvas to draw on.
+   * @param paint The paint to draw with.
+   * @param lineHeight The height of a line.
+   * @param descend The descend of the font.
+   * @param maxLines The maximum number of lines to draw.
+   * @return The height of the drawn lines.
+   */
+  int draw(Canvas canvas, Paint paint, int lineHeight, int descend, int maxLines) {
+    final int count = Math.min(mLines.length, maxLines);
+    
+    for(int i = 0; i < count; i++) {
+      canvas.drawText(mLines[i], 0, (i+1) * lineHeight - descend, paint);
+    }
+    
+    return count * lineHeight;
+  }
+  
+  private static final class Key {
+    private final String mText;
+    private final int mWidth;
+    private final Typeface mTypeface;
+    private final float mTextSize;
+    private final boolean mMinusBreak;
+    private final int mHashCode;
+    
+    Key(String text, int width, Paint paint, boolean minusBreak) {
+      mText = text;
+      mWidth = width;
+      mTypeface = paint.getTypeface();
+      mTextSize = paint.getTextSize();
+      mMinusBreak = minusBreak;
+      
+      int hashCode = text.hashCode();
+      hashCode = 31 * hashCode + width;
+      hashCode = 31 * hashCode + System.identityHashCode(mTypeface);
+      hashCode = 31 * hashCode + Float.floatToIntBits(mTextSize);
+      hashCode = 31 * hashCode + (minusBreak ? 1 : 0);
+      
+      mHashCode = hashCode;
+    }
+    
+    @Override
+    public int hashCode() {
+      return mHashCode;
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+      if(this == obj) {
+        return true;
+      }
+      
+      if(!(obj instanceof Key)) {
+        return false;
+      }
+      
+      final Key other = (Key)obj;
+      
+      return mHashCode == other.mHashCode && mWidth == other.mWidth && mTypeface == other.mTypeface
+          && mTextSize == other.mTextSize && mMinusBreak == other.mMinusBreak && mText.equals(other.mText);
+    }
+  }
+}
@@ -26,8 +26,7 @@ import java.util.Calendar;
 import java.util.List;
 
 public class TimeBlockProgramTableLayout extends ProgramTableLayout {
-  private final int[] mBlockHeights;
-  private final int[] mBlockCumulatedHeights;
+  private final int mBlockCount;
   private final int mBlockSize;
   private final Calendar mCurrentShownDay;
   
@@ -38,8 +37,7 @@ public class TimeBlockProgramTableLayout extends ProgramTableLayout {
   public TimeBlockProgramTableLayout(Context context, AttributeSet attributeSet, int defStyleAttr) {
     super(context, attributeSet, defStyleAttr);
     mGrowToBlock = true;
-    mBlockHeights = new int[(ProgramTableLayoutConstants.HOURS/200) + (ProgramTableLayoutConstants.HOURS % 200 > 0 ? 1 : 0)];
-    mBlockCumulatedHeights = new int[mBlockHeights.length];
+    mBlockCount = (ProgramTableLayoutConstants.HOURS/200) + (ProgramTableLayoutConstants.HOURS % 200 > 0 ? 1 : 0);
     mBlockSize = 200;
     mCurrentShownDay = Calendar.getInstance();
   }
@@ -48,74 +46,86 @@ public class TimeBlockProgramTableLayout extends ProgramTableLayout {
     super(context, channelIDsOrdered);
     mGrowToBlock = growToBlock;
 
-    mBlockHeights = new int[(ProgramTableLayoutConstants.HOURS/blockSize) + (ProgramTableLayoutConstants.HOURS % blockSize > 0 ? 1 : 0)];
-    mBlockCumulatedHeights = new int[mBlockHeights.length];
+    mBlockCount = (ProgramTableLayoutConstants.HOURS/blockSize) + (ProgramTableLayoutConstants.HOURS % blockSize > 0 ? 1 : 0);
     mBlockSize = blockSize;
     mCurrentShownDay = day;
   }
 
+  /*
+   * All values are calculated once into arrays, the per block and column
+   * values have the index block * columnCount + column.
+   */
   @Override
-  protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-    int[][] blockHeightCalc = new int[mBlockHeights.length][getColumnCount()];
-    int[][] blockProgCount = new int[mBlockHeights.length][getColumnCount()];
+  public Geometry computeGeometry(ProgramRecord[] records) {
+    final int columnCount = getColumnCount();
     
-    int widthSpec = MeasureSpec.makeMeasureSpec(ProgramTableLayoutConstants.COLUMN_WIDTH, MeasureSpec.EXACTLY);
+    final int[] blockHeights = new int[mBlockCount];
+    final int[] blockCumulatedHeights = new int[mBlockCount];
     
-    for(int i = 0; i < getChildCount(); i++) {
-      ProgramPanel progPanel = (ProgramPanel)getChildAt(i);
-      
-      int sortIndex = getIndexForChannelID(progPanel.getChannelID());
-      int block = progPanel.getStartHour(mCurrentShownDay) / mBlockSize;
+    final int[] lefts = new int[records.length];
+    final int[] tops = new int[records.length];
+    final int[] heights = new int[records.length];
+    
+    final int[] columns = getColumnIndices(records);
+    final int[] blocks = new int[records.length];
+    
+    final int[] blockHeightCalc = new int[mBlockCount * columnCount];
+    final int[] blockProgCount = new int[mBlockCount * columnCount];
+    
+    final HourTable hourTable = new HourTable(mCurrentShownDay);
+    
+    for(int i = 0; i < records.length; i++) {
+      blocks[i] = hourTable.getHour(records[i].getStartTime()) / mBlockSize;
       
-      if(block >= 0 && sortIndex >= 0 && block < blockProgCount.length) {
-        progPanel.measure(widthSpec, 0);
-        blockHeightCalc[block][sortIndex] += progPanel.getMeasuredHeight();
-        blockProgCount[block][sortIndex]++;
+      if(blocks[i] >= 0 && columns[i] >= 0 && blocks[i] < mBlockCount) {
+        heights[i] = records[i].getMinHeight();
+        
+        blockHeightCalc[blocks[i] * columnCount + columns[i]] += heights[i];
+        blockProgCount[blocks[i] * columnCount + columns[i]]++;
+      }
+      else {
+        blocks[i] = -1;
       }
     }
     
     int height = 0;
     
-    for(int block = 0; block < blockHeightCalc.length; block++) {
+    for(int block = 0; block < mBlockCount; block++) {
       int maxBlockHeight = 0;
       
-      for(int column : blockHeightCalc[block]) {
-        maxBlockHeight = Math.max(column, maxBlockHeight);
+      for(int column = 0; column < columnCount; column++) {
+        maxBlockHeight = Math.max(blockHeightCalc[block * columnCount + column], maxBlockHeight);
       }
       
       height += maxBlockHeight;
-      mBlockHeights[block] = maxBlockHeight;
-      
-      if(block < blockHeightCalc.length) {
-        mBlockCumulatedHeights[block] = height;
-      }
+      blockHeights[block] = maxBlockHeight;
+      blockCumulatedHeights[block] = height;
     }
     
-    if(mGrowToBlock) {
-      int[][] blockCurrentProgCount = new int[mBlockHeights.length][getColumnCount()];
+    final int[] blockCurrentProgCount = new int[mBlockCount * columnCount];
+    final int[] currentBlockHeight = new int[mBlockCount * columnCount];
+    
+    for(int i = 0; i < records.length; i++) {
+      final int block = blocks[i];
+      final int sortIndex = columns[i];
       
-      for(int i = 0; i < getChildCount(); i++) {
-        ProgramPanel progPanel = (ProgramPanel)getChildAt(i);
+      if(block >= 0) {
+        final int index = block * columnCount + sortIndex;
         
-        int sortIndex = getIndexForChannelID(progPanel.getChannelID());
-        int block = progPanel.getStartHour(mCurrentShownDay) / mBlockSize;
-        
-        if(block >= 0 && sortIndex >= 0 && block < mBlockHeights.length) {
-          int maxBlockHeight = mBlockHeights[block];
-          int heightDiff = maxBlockHeight - blockHeightCalc[block][sortIndex];
-          int blockProgCountValue = blockProgCount[block][sortIndex];
+        if(mGrowToBlock) {
+          int heightDiff = blockHeights[block] - blockHeightCalc[index];
+          int blockProgCountValue = blockProgCount[index];
           
-          blockCurrentProgCount[block][sortIndex]++;
+          blockCurrentProgCount[index]++;
           
           int addHeight = heightDiff/blockProgCountValue;
           
-          int count = 1;
-          
-          int endBlock = progPanel.getEndHour(mCurrentShownDay) / mBlockSize;
-          
-          if(blockCurrentProgCount[block][sortIndex] == blockProgCountValue) {
-            while((block + count) < (mBlockHeights.length) && blockProgCount[block + count][sortIndex] == 0 && endBlock > block + count) {
-              addHeight += mBlockHeights[block + count++];
+          if(blockCurrentProgCount[index] == blockProgCountValue) {
+            int count = 1;
+            int endBlock = hourTable.getHour(records[i].getEndTime()) / mBlockSize;
+            
+            while((block + count) < mBlockCount && blockProgCount[index + count * columnCount] == 0 && endBlock > block + count) {
+              addHeight += blockHeights[block + count++];
             }
             
             if(count == 1) {
@@ -123,54 +133,44 @@ public class TimeBlockProgramTableLayout extends ProgramTableLayout {
             }
           }
           
-          int newHeightSpec = MeasureSpec.makeMeasureSpec(progPanel.getMeasuredHeight() + addHeight, MeasureSpec.EXACTLY);
-          
-          progPanel.measure(widthSpec, newHeightSpec);
+          heights[i] += addHeight;
         }
-      }
-    }
-    
-    setMeasuredDimension(ProgramTableLayoutConstants.ROW_HEADER + ProgramTableLayoutConstants.GAP + (ProgramTableLayoutConstants.COLUMN_WIDTH+ProgramTableLayoutConstants.GAP) * getColumnCount(), height);
-  }
-  
-  @Override
-  protected void onLayout(boolean changed, int l, int t, int r, int b) {
-    int[][] currentBlockHeight = new int[mBlockHeights.length][getColumnCount()];
-    
-    for(int i = 0; i < getChildCount(); i++) {
-      ProgramPanel progPanel = (ProgramPanel)getChildAt(i);
-      
-      int sortIndex = getIndexForChannelID(progPanel.getChannelID());
-      int block = progPanel.getStartHour(mCurrentShownDay) / mBlockSize;
-      
-      if(block >= 0 && sortIndex >= 0 && block < currentBlockHeight.length) {
-        int x = l + ProgramTableLayoutConstants.ROW_HEADER + ProgramTableLayoutConstants.GAP + sortIndex * (ProgramTableLayoutConstants.COLUMN_WIDTH + ProgramTableLayoutConstants.GAP);
-        int y = t + currentBlockHeight[block][sortIndex];
+        
+        lefts[i] = ProgramTableLayoutConstants.ROW_HEADER + ProgramTableLayoutConstants.GAP + sortIndex * (ProgramTableLayoutConstants.COLUMN_WIDTH + ProgramTableLayoutConstants.GAP);
+        tops[i] = currentBlockHeight[index];
         
         if(block > 0) {
-          y += mBlockCumulatedHeights[block-1];
+          tops[i] += blockCumulatedHeights[block-1];
         }
         
-        currentBlockHeight[block][sortIndex] += progPanel.getMeasuredHeight();
-        
-        if(progPanel.getVisibility() != GONE) {
-          progPanel.layout(x, y, x + ProgramTableLayoutConstants.COLUMN_WIDTH + ProgramTableLayoutConstants.GAP, y + progPanel.getMeasuredHeight());
-        }
+        currentBlockHeight[index] += heights[i];
       }
     }
+    
+    return new BlockGeometry(columns, columnCount, lefts, tops, heights, getEmptyWidth(), height, blockHeights, blockCumulatedHeights);
+  }
+  
+  @Override
+  int getEmptyWidth() {
+    return ProgramTableLayoutConstants.ROW_HEADER + ProgramTableLayoutConstants.GAP + (ProgramTableLayoutConstants.COLUMN_WIDTH+ProgramTableLayoutConstants.GAP) * getColumnCount();
   }
   
   @Override
   protected void dispatchDraw(Canvas canvas) {
-    for(int i = 0; i < mBlockHeights.length; i++) {
+    final BlockGeometry geometry = (BlockGeometry)getGeometry();
+    
+    final int[] blockHeights = geometry != null ? geometry.mBlockHeights : new int[mBlockCount];
+    final int[] blockCumulatedHeights = geometry != null ? geometry.mBlockCumulatedHeights : new int[mBlockCount];
+    
+    for(int i = 0; i < blockHeights.length; i++) {
       if(i % 2 == 1) {
-        canvas.drawRect(0, mBlockCumulatedHeights[i-1], canvas.getWidth(), mBlockCumulatedHeights[i-1] + mBlockHeights[i], ProgramTableLayoutConstants.BLOCK_PAINT);
+        canvas.drawRect(0, blockCumulatedHeights[i-1], canvas.getWidth(), blockCumulatedHeights[i-1] + blockHeights[i], ProgramTableLayoutConstants.BLOCK_PAINT);
       }
       
       int y = ProgramTableLayoutConstants.FONT_SIZE_ASCENT;
       
       if(i > 0) {
-        y += mBlockCumulatedHeights[i-1];
+        y += blockCumulatedHeights[i-1];
       }
       
       int time = i * mBlockSize;
@@ -192,4 +192,75 @@ public class TimeBlockProgramTableLayout extends ProgramTableLayout {
     
     super.dispatchDraw(canvas);
   }
-}
\ No newline at end of file
+  
+  private static final class BlockGeometry extends Geometry {
+    private final int[] mBlockHeights;
+    private final int[] mBlockCumulatedHeights;
+    
+    BlockGeometry(int[] columns, int columnCount, int[] lefts, int[] tops, int[] heights, int width, int height, int[] blockHeights, int[] blockCumulatedHeights) {
+      super(columns, columnCount, lefts, tops, heights, width, height);
+      mBlockHeights = blockHeights;
+      mBlockCumulatedHeights = blockCumulatedHeights;
+    }
+  }
+  
+  /**
+   * Maps times to the hours used for the blocks: the hour of the day for
+   * the shown day and the hour of the day plus 24 for the next day.
+   * The hours of the shown day and the two following days are calculated
+   * once, so the hour of a time is looked up without a Calendar.
+   */
+  private static final class HourTable {
+    private static final long HOUR_MILLIS = 60 * 60000L;
+    private static final int HOUR_COUNT = 72;
+    
+    private final Calendar mCalendar;
+    private final int mDayOfYear;
+    private final long mStart;
+    private final int[] mHours;
+    
+    HourTable(Calendar day) {
+      mDayOfYear = day.get(Calendar.DAY_OF_YEAR);
+      
+      mCalendar = Calendar.getInstance();
+      mCalendar.setTimeInMillis(day.getTimeInMillis());
+      mCalendar.set(Calendar.MINUTE, 0);
+      mCalendar.set(Calendar.SECOND, 0);
+      mCalendar.set(Calendar.MILLISECOND, 0);
+      
+      mStart = mCalendar.getTimeInMillis();
+      mHours = new int[HOUR_COUNT];
+      
+      for(int i = 0; i < HOUR_COUNT; i++) {
+        mHours[i] = calculateHour(mStart + i * HOUR_MILLIS);
+        
+        // time zones with a daylight saving shift of less than an hour
+        if(mHours[i] != calculateHour(mStart + (i + 1) * HOUR_MILLIS - 1)) {
+          mHours[i] = -1;
+        }
+      }
+    }
+    
+    int getHour(long time) {
+      final long index = (time - mStart) / HOUR_MILLIS;
+      
+      if(time >= mStart && index < HOUR_COUNT && mHours[(int)index] >= 0) {
+        return mHours[(int)index];
+      }
+      
+      return calculateHour(time);
+    }
+    
+    private int calculateHour(long time) {
+      mCalendar.setTimeInMillis(time);
+      
+      int hour = mCalendar.get(Calendar.HOUR_OF_DAY);
+      
+      if(mDayOfYear + 1 == mCalendar.get(Calendar.DAY_OF_YEAR)) {
+        hour += 24;
+      }
+      
+      return hour;
+    }
+  }
+}